@@ -0,0 +1,315 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Shared payloads for the benchmarks.
+ */
+final class BenchmarkData {
+    
+    private static final String[] CATEGORIES = {"fruit", "vegetable", "dairy", "bakery", "frozen food"};
+    private static final String[] WORDS = {"alpha", "order", "status", "customer", "shipping", "region", "timeout",
+        "retry", "enabled", "version", "delivery", "address", "payment", "pending", "approved", "warehouse",
+        "threshold", "notification", "São Paulo", "café", "international", "limit", "user", "name", "value"};
+    
+    private BenchmarkData() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+    
+    /**
+     * Builds {meta: {...}, items: [rows uniform objects]}, encoded by TOON as a tabular array.
+     */
+    static Map<String, Object> tabular(final int rows) {
+        final List<Object> items = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", i);
+            item.put("name", "Product " + i);
+            item.put("price", (i % 1000) / 10.0 + 0.99);
+            item.put("active", i % 3 != 0);
+            item.put("category", CATEGORIES[i % CATEGORIES.length]);
+            item.put("stock", i * 7L % 500);
+            items.add(item);
+        }
+        final Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("total", rows);
+        meta.put("source", "benchmark");
+        final Map<String, Object> document = new LinkedHashMap<>();
+        document.put("meta", meta);
+        document.put("items", items);
+        return document;
+    }
+    
+    /**
+     * Builds the rows of {@link #tabular(int)} as beans, for serializer-driven conversions.
+     */
+    static List<Product> products(final int rows) {
+        final List<Product> products = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            products.add(new Product(i, "Product " + i, (i % 1000) / 10.0 + 0.99, i % 3 != 0,
+                    CATEGORIES[i % CATEGORIES.length], i * 7L % 500));
+        }
+        return products;
+    }
+    
+    /**
+     * Builds {items: [rows objects with the given number of columns]}, a wide tabular array
+     * cycling through int, decimal, boolean and string columns named c0, c1, ...
+     */
+    static Map<String, Object> wide(final int rows, final int columns) {
+        final List<Object> items = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final Map<String, Object> item = new LinkedHashMap<>();
+            for (int c = 0; c < columns; c++) {
+                final Object value;
+                switch (c % 4) {
+                    case 0:
+                        value = i * 31L + c;
+                        break;
+                    case 1:
+                        value = (i + c) % 1000 / 10.0 + 0.25;
+                        break;
+                    case 2:
+                        value = (i + c) % 3 == 0;
+                        break;
+                    default:
+                        value = CATEGORIES[(i + c) % CATEGORIES.length] + " " + i;
+                        break;
+                }
+                item.put("c" + c, value);
+            }
+            items.add(item);
+        }
+        final Map<String, Object> document = new LinkedHashMap<>();
+        document.put("items", items);
+        return document;
+    }
+    
+    /**
+     * Builds a flat object with the given number of scalar fields, plus a short inline array every tenth field.
+     */
+    static Map<String, Object> flat(final int fields) {
+        final Map<String, Object> document = new LinkedHashMap<>();
+        for (int i = 0; i < fields; i++) {
+            final Object value;
+            switch (i % 5) {
+                case 0:
+                    value = i;
+                    break;
+                case 1:
+                    value = i / 4.0;
+                    break;
+                case 2:
+                    value = i % 2 == 0;
+                    break;
+                default:
+                    value = CATEGORIES[i % CATEGORIES.length] + " " + i;
+                    break;
+            }
+            document.put("field" + i, value);
+            if (i % 10 == 9) {
+                document.put("list" + i, List.of(i, i + 1, i + 2, i + 3, i + 4));
+            }
+        }
+        return document;
+    }
+    
+    /**
+     * Builds a mixed corpus of payloads: tabular arrays of many sizes, beans, wide and flat
+     * objects, nested configuration trees, arrays of objects with differing keys, text-heavy
+     * records, arrays of numbers and tabular rows holding inline objects and arrays, with
+     * random values drawn from the seed.
+     */
+    static List<Object> corpus(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final List<Object> corpus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final int rows = 1 + random.nextInt(random.nextBoolean() ? 8 : 400);
+            switch (i % 10) {
+                case 0:
+                    corpus.add(tabular(rows));
+                    break;
+                case 1:
+                    corpus.add(products(rows));
+                    break;
+                case 2:
+                    corpus.add(wide(1 + random.nextInt(50), 2 + random.nextInt(30)));
+                    break;
+                case 3:
+                    corpus.add(flat(1 + random.nextInt(60)));
+                    break;
+                case 4:
+                    corpus.add(tree(random, 0));
+                    break;
+                case 5:
+                    corpus.add(records(random, rows, false));
+                    break;
+                case 6:
+                    corpus.add(records(random, rows, true));
+                    break;
+                case 7:
+                    corpus.add(numbers(random, rows));
+                    break;
+                case 8:
+                    corpus.add(members(random, rows));
+                    break;
+                default:
+                    final Map<String, Object> document = new LinkedHashMap<>();
+                    document.put("id", random.nextInt(100_000));
+                    document.put("config", tree(random, 1));
+                    document.put("entries", records(random, rows, random.nextBoolean()));
+                    corpus.add(document);
+                    break;
+            }
+        }
+        return corpus;
+    }
+    
+    /**
+     * Builds a random object nested a few levels deep, as configuration documents are.
+     */
+    private static Map<String, Object> tree(final Random random, final int depth) {
+        final Map<String, Object> node = new LinkedHashMap<>();
+        final int fields = 1 + random.nextInt(8);
+        for (int f = 0; f < fields; f++) {
+            final String key = WORDS[random.nextInt(WORDS.length)] + (f % 3 == 0 ? "_" + WORDS[f % WORDS.length] : "");
+            final int kind = random.nextInt(depth < 4 ? 8 : 5);
+            if (kind >= 6) {
+                node.put(key, tree(random, depth + 1));
+            } else if (kind == 5) {
+                node.put(key, List.of(WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)]));
+            } else {
+                node.put(key, scalar(random));
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * Builds {records: [...]}: uniform records, or records with optional fields and a nested
+     * object so they are expanded; string fields hold sentences.
+     */
+    private static Map<String, Object> records(final Random random, final int rows, final boolean ragged) {
+        final List<Object> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final Map<String, Object> record = new LinkedHashMap<>();
+            record.put("id", i);
+            record.put("title", sentence(random, 2 + random.nextInt(4)));
+            record.put("description", sentence(random, random.nextInt(30)));
+            record.put("score", random.nextInt(1000) / 10.0);
+            if (ragged && random.nextInt(3) == 0) {
+                record.put("tags", List.of(WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)]));
+            }
+            if (ragged && random.nextBoolean()) {
+                final Map<String, Object> author = new LinkedHashMap<>();
+                author.put("name", sentence(random, 2));
+                author.put("verified", random.nextBoolean());
+                record.put("author", author);
+            }
+            records.add(record);
+        }
+        final Map<String, Object> document = new LinkedHashMap<>();
+        document.put("records", records);
+        return document;
+    }
+    
+    /**
+     * Builds {members: [...]}: records sharing their keys whose address and tags are null in
+     * the first row, so the array is tabular and later rows hold them inline as {k:v,...}
+     * and [n]: a,b cells.
+     */
+    private static Map<String, Object> members(final Random random, final int rows) {
+        final List<Object> members = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            final Map<String, Object> member = new LinkedHashMap<>();
+            member.put("id", i);
+            member.put("name", sentence(random, 2));
+            Map<String, Object> address = null;
+            if (i > 0 && random.nextBoolean()) {
+                address = new LinkedHashMap<>();
+                address.put("street", sentence(random, 2));
+                address.put("city", WORDS[random.nextInt(WORDS.length)]);
+                address.put("zip", 10_000 + random.nextInt(90_000));
+            }
+            member.put("address", address);
+            member.put("tags", i > 0 && random.nextInt(3) == 0
+                    ? List.of(WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)]) : null);
+            members.add(member);
+        }
+        final Map<String, Object> document = new LinkedHashMap<>();
+        document.put("members", members);
+        return document;
+    }
+    
+    /**
+     * Builds {series: [numbers], matrix: [[numbers]]}.
+     */
+    private static Map<String, Object> numbers(final Random random, final int count) {
+        final List<Object> series = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            series.add(random.nextBoolean() ? (Object) random.nextInt(100_000) : (Object) (random.nextInt(10_000) / 100.0));
+        }
+        final List<Object> matrix = new ArrayList<>();
+        for (int r = 0; r < 1 + count / 20; r++) {
+            matrix.add(List.of(random.nextInt(10), random.nextInt(100), random.nextInt(1000)));
+        }
+        final Map<String, Object> document = new LinkedHashMap<>();
+        document.put("series", series);
+        document.put("matrix", matrix);
+        return document;
+    }
+    
+    private static Object scalar(final Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return random.nextInt(1_000_000);
+            case 1:
+                return random.nextInt(100_000) / 100.0;
+            case 2:
+                return random.nextBoolean();
+            case 3:
+                return null;
+            case 4:
+                return sentence(random, 1 + random.nextInt(12));
+            default:
+                return WORDS[random.nextInt(WORDS.length)];
+        }
+    }
+    
+    private static String sentence(final Random random, final int words) {
+        final StringBuilder sentence = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+    
+    /**
+     * Bean with the fields of a {@link #tabular(int)} row.
+     */
+    public static final class Product {
+        public final int id;
+        public final String name;
+        public final double price;
+        public final boolean active;
+        public final String category;
+        public final long stock;
+        
+        Product(final int id, final String name, final double price, final boolean active, final String category,
+                final long stock) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.active = active;
+            this.category = category;
+            this.stock = stock;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.ModelType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting the tokens of a JSON payload of 1 KB, 100 KB and 10 MB with {@link TokenCounter}
+ * against encoding it and reading the size of the token list. Run with {@code -prof gc} to
+ * compare allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenCounterAllocationBenchmark {
+    
+    @Param({"GPT_4", "GPT_4O"})
+    public String model;
+    
+    @Param({"1024", "102400", "10485760"})
+    public int length;
+    
+    private ModelType modelType;
+    private Encoding encoding;
+    private String text;
+    
+    @Setup
+    public void setUp() throws IOException {
+        modelType = ModelType.valueOf(model);
+        encoding = Encodings.newLazyEncodingRegistry().getEncodingForModel(modelType);
+        final String json = new ObjectMapper().writeValueAsString(BenchmarkData.tabular(length / 40 + 1));
+        text = json.substring(0, length);
+    }
+    
+    @Benchmark
+    public int encodeSize() {
+        return encoding.encode(text).size();
+    }
+    
+    @Benchmark
+    public int countTokens() {
+        return TokenCounter.countTokens(text, modelType);
+    }
+}
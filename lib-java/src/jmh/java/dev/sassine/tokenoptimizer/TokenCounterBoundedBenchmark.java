@@ -0,0 +1,60 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knuddels.jtokkit.api.ModelType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting the tokens of both candidates of a tabular payload in full against counting the
+ * TOON candidate in full and the JSON candidate only up to the TOON count, as {@code optimize}
+ * does when tokens decide.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenCounterBoundedBenchmark {
+    
+    @Param({"generic", "GPT_4"})
+    public String model;
+    
+    @Param({"1000", "10000"})
+    public int rows;
+    
+    private ModelType modelType;
+    private String json;
+    private String toon;
+    
+    @Setup
+    public void setUp() throws IOException {
+        modelType = "generic".equals(model) ? null : ModelType.valueOf(model);
+        final Object value = BenchmarkData.tabular(rows);
+        json = new ObjectMapper().writeValueAsString(value);
+        toon = ToonConverter.toToon(value);
+    }
+    
+    @Benchmark
+    public int full() {
+        return TokenCounter.countTokens(toon, modelType) + TokenCounter.countTokens(json, modelType);
+    }
+    
+    @Benchmark
+    public int bounded() {
+        final int toonTokens = TokenCounter.countTokens(toon, modelType);
+        return toonTokens + TokenCounter.countTokensUpTo(json, modelType, toonTokens);
+    }
+}
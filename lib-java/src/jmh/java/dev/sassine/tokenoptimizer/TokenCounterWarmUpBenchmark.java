@@ -0,0 +1,67 @@
+package dev.sassine.tokenoptimizer;
+
+import com.knuddels.jtokkit.api.ModelType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the first requests in a fresh JVM: counting tokens with three models (two of
+ * them sharing cl100k_base) and optimizing a table, cold or after {@link TokenOptimizer#warmUp}.
+ * Each fork measures a single call.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Benchmark)
+public class TokenCounterWarmUpBenchmark {
+    
+    private static final ModelType[] MODELS = {ModelType.GPT_4, ModelType.GPT_3_5_TURBO, ModelType.GPT_4O};
+    
+    private Object payload;
+    
+    @Setup
+    public void setUp() {
+        payload = BenchmarkData.tabular(200);
+    }
+    
+    /**
+     * Warms the optimizer up before the measured call.
+     */
+    @State(Scope.Benchmark)
+    public static class WarmedUp {
+        @Setup
+        public void warmUp() {
+            TokenOptimizer.warmUp(MODELS);
+        }
+    }
+    
+    @Benchmark
+    public int cold() {
+        return firstRequests();
+    }
+    
+    @Benchmark
+    public int warmedUp(final WarmedUp warmedUp) {
+        return firstRequests();
+    }
+    
+    private int firstRequests() {
+        final OptimizationResult result = TokenOptimizer.optimize(payload, ModelType.GPT_4);
+        int tokens = result.getOptimalTokenCount();
+        for (final ModelType model : MODELS) {
+            tokens += TokenCounter.countTokens(result.getJsonContent(), model);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,70 @@
+package dev.sassine.tokenoptimizer;
+
+import com.knuddels.jtokkit.api.ModelType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Optimizing a stream of payloads of a few shapes (product beans and tabular maps of 512 to
+ * 1023 rows, as a service sending the same DTOs would) with a shape decision cache that
+ * re-checks 1% of hits, against measuring both formats of every payload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenOptimizerDecisionCacheBenchmark {
+    
+    @Param({"generic", "GPT_4"})
+    public String model;
+    
+    private ModelType modelType;
+    private List<Object> payloads;
+    private OptimizationPolicy measured;
+    private OptimizationPolicy cached;
+    
+    @Setup
+    public void setUp() {
+        modelType = "generic".equals(model) ? null : ModelType.valueOf(model);
+        final Random random = new Random(42);
+        payloads = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            final int rows = 512 + random.nextInt(512);
+            payloads.add(i % 2 == 0 ? BenchmarkData.products(rows) : BenchmarkData.tabular(rows));
+        }
+        measured = OptimizationPolicy.builder().build();
+        cached = OptimizationPolicy.builder()
+                .decisionCache(FormatDecisionCache.builder().sampleRate(0.01).build())
+                .build();
+    }
+    
+    @Benchmark
+    public void measured(final Blackhole blackhole) {
+        for (final Object payload : payloads) {
+            blackhole.consume(TokenOptimizer.optimize(payload, modelType, measured, OptimizationCriteria.TOKENS));
+        }
+    }
+    
+    @Benchmark
+    public void cached(final Blackhole blackhole) {
+        for (final Object payload : payloads) {
+            blackhole.consume(TokenOptimizer.optimize(payload, modelType, cached, OptimizationCriteria.TOKENS));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package dev.sassine.tokenoptimizer;
+
+import com.knuddels.jtokkit.api.ModelType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Optimizing a mixed corpus with the format predicted from the shape of each payload against
+ * rendering and counting both formats. The setup prints the accuracy of the prediction on the
+ * corpus: how many payloads it decided, how many of those decisions differ from the measured
+ * ones, and the mean error of the predicted token count of the format not rendered.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenOptimizerPredictionBenchmark {
+    
+    private static final OptimizationPolicy MEASURED = OptimizationPolicy.builder().build();
+    private static final OptimizationPolicy PREDICTED = OptimizationPolicy.builder().predictFormat(true).build();
+    
+    @Param({"generic", "GPT_4"})
+    public String model;
+    
+    private ModelType modelType;
+    private List<Object> corpus;
+    
+    @Setup
+    public void setUp() {
+        modelType = "generic".equals(model) ? null : ModelType.valueOf(model);
+        corpus = BenchmarkData.corpus(450, 42);
+        
+        int decided = 0;
+        int wrong = 0;
+        double error = 0;
+        for (final Object payload : corpus) {
+            final OptimizationResult measured = optimize(payload, MEASURED);
+            final OptimizationResult predicted = optimize(payload, PREDICTED);
+            if (!predicted.isPredicted()) {
+                continue;
+            }
+            decided++;
+            if (predicted.getOptimalFormat() != measured.getOptimalFormat()) {
+                wrong++;
+            }
+            final boolean toon = predicted.getOptimalFormat() == OptimizationResult.FormatType.TOON;
+            // Counted in full: the measured result may have stopped counting the losing format early
+            final int actual = TokenCounter.countTokens(toon ? measured.getJsonContent() : measured.getToonContent(),
+                    modelType);
+            final int estimate = toon ? predicted.getJsonTokenCount() : predicted.getToonTokenCount();
+            error += Math.abs(estimate - actual) / (double) Math.max(1, actual);
+        }
+        System.out.printf("%n%s: predicted %d/%d payloads, %d differ from the measured decision, "
+                + "mean token error of the format not rendered %.1f%%%n",
+                model, decided, corpus.size(), wrong, decided == 0 ? 0.0 : error / decided * 100);
+    }
+    
+    @Benchmark
+    public void measured(final Blackhole blackhole) {
+        for (final Object payload : corpus) {
+            blackhole.consume(optimize(payload, MEASURED));
+        }
+    }
+    
+    @Benchmark
+    public void predicted(final Blackhole blackhole) {
+        for (final Object payload : corpus) {
+            blackhole.consume(optimize(payload, PREDICTED));
+        }
+    }
+    
+    private OptimizationResult optimize(final Object payload, final OptimizationPolicy policy) {
+        return TokenOptimizer.optimize(payload, modelType, policy, OptimizationCriteria.TOKENS);
+    }
+}
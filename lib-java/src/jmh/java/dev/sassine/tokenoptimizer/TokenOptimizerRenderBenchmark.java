@@ -0,0 +1,56 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rendering the JSON and TOON candidates of {@code optimize} in one walk of the value against
+ * serializing it to JSON and converting it to TOON separately, for a Map tree and for beans.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenOptimizerRenderBenchmark {
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
+    @Param({"map", "beans"})
+    public String shape;
+    
+    @Param({"1000", "10000"})
+    public int rows;
+    
+    private Object value;
+    
+    @Setup
+    public void setUp() {
+        value = "map".equals(shape) ? BenchmarkData.tabular(rows) : BenchmarkData.products(rows);
+    }
+    
+    @Benchmark
+    public Object render() throws IOException {
+        return TokenOptimizer.render(value);
+    }
+    
+    @Benchmark
+    public void separate(final Blackhole blackhole) throws IOException {
+        blackhole.consume(MAPPER.writeValueAsString(value));
+        blackhole.consume(ToonConverter.toToon(value));
+    }
+}
@@ -0,0 +1,57 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding throughput on large TOON documents: a tabular array of uniform rows and a flat object.
+ * The JSON variant parses the same data with Jackson, as a reference point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonDecodeBenchmark {
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    @Param({"tabular", "flat"})
+    public String shape;
+    
+    @Param({"10000", "100000"})
+    public int rows;
+    
+    private String toon;
+    private String json;
+    
+    @Setup
+    public void setUp() throws Exception {
+        final Map<String, Object> document = "flat".equals(shape) ? BenchmarkData.flat(rows) : BenchmarkData.tabular(rows);
+        toon = ToonConverter.toToon(document);
+        json = OBJECT_MAPPER.writeValueAsString(document);
+    }
+    
+    @Benchmark
+    public Object fromToon() {
+        return ToonConverter.fromToon(toon);
+    }
+    
+    @Benchmark
+    public Object fromJson() throws Exception {
+        return OBJECT_MAPPER.readValue(json, Object.class);
+    }
+}
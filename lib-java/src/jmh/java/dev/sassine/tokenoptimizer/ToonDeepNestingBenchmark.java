@@ -0,0 +1,64 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding arrays nested to the given depth. Nested arrays stay on one line,
+ * so the text grows linearly with the depth and time per operation should too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonDeepNestingBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int depth;
+    
+    private List<Object> tree;
+    private String toon;
+    private ToonDecodeOptions options;
+    
+    @Setup
+    public void setUp() {
+        tree = new ArrayList<>();
+        List<Object> list = tree;
+        for (int i = 0; i < depth; i++) {
+            final List<Object> child = new ArrayList<>();
+            list.add(child);
+            list = child;
+        }
+        list.add(1);
+        final StringBuilder out = new StringBuilder();
+        ToonConverter.write(tree, out, depth + 1);
+        toon = out.toString();
+        options = ToonDecodeOptions.builder().maxDepth(depth + 1).build();
+    }
+    
+    @Benchmark
+    public int write() {
+        final StringBuilder out = new StringBuilder();
+        ToonConverter.write(tree, out, depth + 1);
+        return out.length();
+    }
+    
+    @Benchmark
+    public Object fromToon() {
+        return ToonConverter.fromToon(toon, options);
+    }
+}
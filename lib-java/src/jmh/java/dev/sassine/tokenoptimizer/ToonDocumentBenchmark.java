@@ -0,0 +1,57 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading two fields (meta.total and one row's price) from a large tabular document:
+ * lazy path access through {@link ToonDocument} against decoding the whole tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonDocumentBenchmark {
+    
+    @Param({"10000", "100000"})
+    public int rows;
+    
+    private String toon;
+    private String pricePath;
+    private int row;
+    
+    @Setup
+    public void setUp() {
+        toon = ToonConverter.toToon(BenchmarkData.tabular(rows));
+        row = rows / 2;
+        pricePath = "items[" + row + "].price";
+    }
+    
+    @Benchmark
+    public Object fromToon() {
+        final Map<?, ?> document = (Map<?, ?>) ToonConverter.fromToon(toon);
+        final Object total = ((Map<?, ?>) document.get("meta")).get("total");
+        final Object price = ((Map<?, ?>) ((List<?>) document.get("items")).get(row)).get("price");
+        return new Object[] {total, price};
+    }
+    
+    @Benchmark
+    public Object document() {
+        final ToonDocument document = ToonDocument.fromToon(toon);
+        return new Object[] {document.get("meta.total"), document.get(pricePath)};
+    }
+}
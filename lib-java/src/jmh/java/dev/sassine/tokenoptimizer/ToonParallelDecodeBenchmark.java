@@ -0,0 +1,78 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sequential versus parallel decoding of a large tabular array, with and without string interning.
+ * The parallel variant uses a pool with one thread per core (at least two, so the split
+ * and merge overhead is measured even on a single core).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonParallelDecodeBenchmark {
+    
+    // Holds the category column and the first product names; later names miss the full dictionary
+    private static final int INTERN_LIMIT = 10_000;
+    
+    @Param({"100000", "500000"})
+    public int rows;
+    
+    private String toon;
+    private ForkJoinPool pool;
+    private ToonDecodeOptions sequential;
+    private ToonDecodeOptions parallel;
+    private ToonDecodeOptions sequentialInterned;
+    private ToonDecodeOptions parallelInterned;
+    
+    @Setup
+    public void setUp() {
+        toon = ToonConverter.toToon(BenchmarkData.tabular(rows));
+        pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        sequential = ToonDecodeOptions.builder().sequential().build();
+        parallel = ToonDecodeOptions.builder().parallelThreshold(1).pool(pool).build();
+        sequentialInterned = ToonDecodeOptions.builder().sequential().internStrings(INTERN_LIMIT).build();
+        parallelInterned = ToonDecodeOptions.builder().parallelThreshold(1).pool(pool).internStrings(INTERN_LIMIT).build();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+    
+    @Benchmark
+    public Object sequential() {
+        return ToonConverter.fromToon(toon, sequential);
+    }
+    
+    @Benchmark
+    public Object parallel() {
+        return ToonConverter.fromToon(toon, parallel);
+    }
+    
+    @Benchmark
+    public Object sequentialInterned() {
+        return ToonConverter.fromToon(toon, sequentialInterned);
+    }
+    
+    @Benchmark
+    public Object parallelInterned() {
+        return ToonConverter.fromToon(toon, parallelInterned);
+    }
+}
@@ -0,0 +1,60 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding a wide tabular array (40 columns) in full against decoding a projection of a few columns.
+ * Run with -prof gc to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonProjectionBenchmark {
+    
+    private static final int COLUMNS = 40;
+    
+    @Param({"10000"})
+    public int rows;
+    
+    @Param({"1", "4", "20"})
+    public int selected;
+    
+    private String toon;
+    private ToonDecodeOptions full;
+    private ToonDecodeOptions projected;
+    
+    @Setup
+    public void setUp() {
+        toon = ToonConverter.toToon(BenchmarkData.wide(rows, COLUMNS));
+        final String[] paths = new String[selected];
+        for (int i = 0; i < selected; i++) {
+            paths[i] = "items.c" + (i * COLUMNS / selected);
+        }
+        full = ToonDecodeOptions.builder().sequential().build();
+        projected = ToonDecodeOptions.builder().sequential().project(paths).build();
+    }
+    
+    @Benchmark
+    public Object fullDecode() {
+        return ToonConverter.fromToon(toon, full);
+    }
+    
+    @Benchmark
+    public Object projectedDecode() {
+        return ToonConverter.fromToon(toon, projected);
+    }
+}
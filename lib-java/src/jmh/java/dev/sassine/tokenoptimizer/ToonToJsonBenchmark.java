@@ -0,0 +1,67 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TOON to JSON conversion: direct transcoding from parse events against decoding a Map tree
+ * and serializing it with Jackson.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonToJsonBenchmark {
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    @Param({"tabular", "flat"})
+    public String shape;
+    
+    @Param({"10000", "100000"})
+    public int rows;
+    
+    private String toon;
+    private byte[] toonBytes;
+    
+    @Setup
+    public void setUp() {
+        final Map<String, Object> document = "flat".equals(shape) ? BenchmarkData.flat(rows) : BenchmarkData.tabular(rows);
+        toon = ToonConverter.toToon(document);
+        toonBytes = toon.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public String viaTree() throws Exception {
+        return OBJECT_MAPPER.writeValueAsString(ToonConverter.fromToon(toon));
+    }
+    
+    @Benchmark
+    public String toJson() {
+        return ToonConverter.toJson(toon);
+    }
+    
+    @Benchmark
+    public byte[] toonToJsonStream() {
+        final ByteArrayOutputStream json = new ByteArrayOutputStream(toonBytes.length * 2);
+        ToonConverter.toonToJson(new ByteArrayInputStream(toonBytes), json);
+        return json.toByteArray();
+    }
+}
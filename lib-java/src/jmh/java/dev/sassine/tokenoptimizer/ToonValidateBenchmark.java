@@ -0,0 +1,47 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validating a TOON payload with {@code validate} against decoding it with {@code fromToon}
+ * and dropping the tree. Run with -prof gc to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToonValidateBenchmark {
+    
+    @Param({"1000", "100000"})
+    public int rows;
+    
+    private String toon;
+    
+    @Setup
+    public void setUp() {
+        toon = ToonConverter.toToon(BenchmarkData.tabular(rows));
+    }
+    
+    @Benchmark
+    public boolean validate() {
+        return ToonConverter.validate(toon).isValid();
+    }
+    
+    @Benchmark
+    public Object fromToon() {
+        return ToonConverter.fromToon(toon);
+    }
+}
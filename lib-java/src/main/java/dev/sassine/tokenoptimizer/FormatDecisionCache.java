@@ -0,0 +1,199 @@
+package dev.sassine.tokenoptimizer;
+
+import com.knuddels.jtokkit.api.ModelType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded cache of format decisions keyed by the shape of the payload.
+ * Services optimizing many payloads of the same DTO types rarely see the winner change within
+ * a shape, so once a shape has been measured, later payloads of that shape render only the
+ * cached winner. The counts of the other format are then estimated from the ratio measured
+ * for the shape, and {@link OptimizationResult#isPredicted()} is true. A sample of calls is
+ * still measured in full to refresh the decision. The least recently used shapes are evicted
+ * once the cache is full. Instances are thread-safe and meant to be shared through an
+ * {@link OptimizationPolicy}.
+ */
+public final class FormatDecisionCache {
+    
+    private final int maxEntries;
+    private final double sampleRate;
+    private final Map<Long, Decision> decisions;
+    
+    /**
+     * Creates a new FormatDecisionCache.
+     * 
+     * @param maxEntries Maximum number of shapes kept
+     * @param sampleRate Fraction of cache hits measured in full again (0.0 to 1.0)
+     */
+    private FormatDecisionCache(final int maxEntries, final double sampleRate) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        if (sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new IllegalArgumentException("sampleRate must be between 0.0 and 1.0");
+        }
+        this.maxEntries = maxEntries;
+        this.sampleRate = sampleRate;
+        this.decisions = new LinkedHashMap<Long, Decision>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Decision> eldest) {
+                return size() > FormatDecisionCache.this.maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Returns the maximum number of shapes kept.
+     * 
+     * @return The maximum number of entries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    /**
+     * Returns the fraction of cache hits measured in full again.
+     * 
+     * @return The sample rate (0.0 to 1.0)
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+    
+    /**
+     * Returns the number of shapes currently cached.
+     * 
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return decisions.size();
+    }
+    
+    /**
+     * Removes every cached decision.
+     */
+    public synchronized void clear() {
+        decisions.clear();
+    }
+    
+    /**
+     * Returns the cache key of a payload shape counted with a tokenizer.
+     */
+    static long key(final long fingerprint, final ModelType modelType) {
+        return fingerprint * 31 + (modelType == null ? 0 : modelType.ordinal() + 1);
+    }
+    
+    /**
+     * Returns the decision cached for a key, or null when the shape has not been measured.
+     */
+    synchronized Decision get(final long key) {
+        return decisions.get(key);
+    }
+    
+    /**
+     * Returns true when a cache hit should be measured in full again.
+     */
+    boolean sample() {
+        return sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+    
+    /**
+     * Caches the decision of a result, with the ratios of the other format's counts to the winner's.
+     * Results whose other token count is a lower bound are not cached, as their ratio would be too low.
+     */
+    void put(final long key, final OptimizationResult result) {
+        if (result.isTokenCountLowerBound()) {
+            return;
+        }
+        final boolean toon = result.getOptimalFormat() == OptimizationResult.FormatType.TOON;
+        final Decision decision = new Decision(result.getOptimalFormat(),
+                ratio(toon ? result.getJsonTokenCount() : result.getToonTokenCount(), result.getOptimalTokenCount()),
+                ratio(toon ? result.getJsonCharacterCount() : result.getToonCharacterCount(),
+                        result.getOptimalCharacterCount()),
+                ratio(toon ? result.getJsonByteCount() : result.getToonByteCount(), result.getOptimalByteCount()));
+        synchronized (this) {
+            decisions.put(key, decision);
+        }
+    }
+    
+    private static double ratio(final int other, final int optimal) {
+        return optimal == 0 ? 1.0 : (double) other / optimal;
+    }
+    
+    /**
+     * Creates a new builder for FormatDecisionCache.
+     * 
+     * @return A new builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Cached decision for a shape: the winning format and the counts of the other format
+     * relative to the winner's, as last measured (or predicted).
+     */
+    static final class Decision {
+        final OptimizationResult.FormatType format;
+        final double tokenRatio;
+        final double characterRatio;
+        final double byteRatio;
+        
+        Decision(final OptimizationResult.FormatType format, final double tokenRatio, final double characterRatio,
+                final double byteRatio) {
+            this.format = format;
+            this.tokenRatio = tokenRatio;
+            this.characterRatio = characterRatio;
+            this.byteRatio = byteRatio;
+        }
+    }
+    
+    /**
+     * Builder for creating FormatDecisionCache instances.
+     */
+    public static final class Builder {
+        private int maxEntries = 1024;
+        private double sampleRate = 0.01;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Sets the maximum number of shapes kept; the least recently used are evicted beyond it.
+         * Default: 1024.
+         * 
+         * @param maxEntries Maximum number of entries (at least 1)
+         * @return This builder instance
+         */
+        public Builder maxEntries(final int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+        
+        /**
+         * Sets the fraction of cache hits that still render and count both formats, refreshing
+         * the cached decision. 0.0 never re-checks, 1.0 always does. Default: 0.01.
+         * 
+         * @param sampleRate Fraction of hits measured in full (0.0 to 1.0)
+         * @return This builder instance
+         */
+        public Builder sampleRate(final double sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+        
+        /**
+         * Builds the FormatDecisionCache instance.
+         * 
+         * @return A new FormatDecisionCache instance
+         * @throws IllegalArgumentException if any parameter is invalid
+         */
+        public FormatDecisionCache build() {
+            return new FormatDecisionCache(maxEntries, sampleRate);
+        }
+    }
+}
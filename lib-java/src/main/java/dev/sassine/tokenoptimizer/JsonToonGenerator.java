@@ -0,0 +1,255 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Jackson generator that writes the same events as JSON and as TOON at once, used by
+ * {@link TokenOptimizer#optimize(Object)} so serializers walk the object graph a single time
+ * for both renderings. JSON goes to a regular generator; TOON goes to a {@link ToonEmitter},
+ * formatted exactly as {@link ToonGenerator} would.
+ */
+final class JsonToonGenerator extends GeneratorBase {
+    
+    private final JsonGenerator json;
+    private final ToonEmitter toon;
+    
+    /**
+     * Creates a generator feeding both sinks.
+     * 
+     * @param features Jackson generator feature flags
+     * @param codec The object codec
+     * @param json The generator receiving JSON
+     * @param toon The sink receiving TOON text
+     */
+    JsonToonGenerator(final int features, final ObjectCodec codec, final JsonGenerator json, final Appendable toon) {
+        super(features, codec);
+        this.json = json;
+        this.toon = new ToonEmitter(toon);
+    }
+    
+    @Override
+    public Object getOutputTarget() {
+        return json.getOutputTarget();
+    }
+    
+    @Override
+    public void writeStartArray() throws IOException {
+        _verifyValueWrite("start an array");
+        _writeContext = _writeContext.createChildArrayContext();
+        json.writeStartArray();
+        toon.startArray();
+    }
+    
+    @Override
+    public void writeEndArray() throws IOException {
+        if (!_writeContext.inArray()) {
+            _reportError("Current context not Array but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        json.writeEndArray();
+        toon.endArray();
+    }
+    
+    @Override
+    public void writeStartObject() throws IOException {
+        _verifyValueWrite("start an object");
+        _writeContext = _writeContext.createChildObjectContext();
+        json.writeStartObject();
+        toon.startObject();
+    }
+    
+    @Override
+    public void writeEndObject() throws IOException {
+        if (!_writeContext.inObject()) {
+            _reportError("Current context not Object but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        json.writeEndObject();
+        toon.endObject();
+    }
+    
+    @Override
+    public void writeFieldName(final String name) throws IOException {
+        if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+            _reportError("Can not write a field name, expecting a value");
+        }
+        json.writeFieldName(name);
+        toon.fieldName(name);
+    }
+    
+    @Override
+    public void writeFieldName(final SerializableString name) throws IOException {
+        writeFieldName(name.getValue());
+    }
+    
+    @Override
+    public void writeString(final String text) throws IOException {
+        if (text == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_STRING);
+        json.writeString(text);
+        toon.value(text);
+    }
+    
+    @Override
+    public void writeString(final char[] text, final int offset, final int len) throws IOException {
+        writeString(new String(text, offset, len));
+    }
+    
+    @Override
+    public void writeRawUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+        writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    public void writeUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+        writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    public void writeRaw(final String text) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeRaw(final String text, final int offset, final int len) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeRaw(final char[] text, final int offset, final int len) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeRaw(final char c) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeBinary(final Base64Variant variant, final byte[] data, final int offset, final int len)
+            throws IOException {
+        if (data == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_BINARY);
+        json.writeBinary(variant, data, offset, len);
+        final byte[] slice = (offset == 0 && len == data.length) ? data : Arrays.copyOfRange(data, offset, offset + len);
+        toon.value(variant.encode(slice));
+    }
+    
+    @Override
+    public void writeNumber(final int value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(value);
+        toon.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final long value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(value);
+        toon.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final BigInteger value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(value);
+        toon.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final double value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(value);
+        toon.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final float value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(value);
+        toon.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(value);
+        toon.value(isEnabled(Feature.WRITE_BIGDECIMAL_AS_PLAIN)
+                ? new ToonGenerator.NumberText(_asString(value)) : value);
+    }
+    
+    @Override
+    public void writeNumber(final String encodedValue) throws IOException {
+        if (encodedValue == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_NUMBER);
+        json.writeNumber(encodedValue);
+        toon.value(new ToonGenerator.NumberText(encodedValue));
+    }
+    
+    @Override
+    public void writeBoolean(final boolean state) throws IOException {
+        _verifyValueWrite(WRITE_BOOLEAN);
+        json.writeBoolean(state);
+        toon.value(state);
+    }
+    
+    @Override
+    public void writeNull() throws IOException {
+        _verifyValueWrite(WRITE_NULL);
+        json.writeNull();
+        toon.value(null);
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        json.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (isClosed()) {
+            return;
+        }
+        super.close();
+        json.close();
+    }
+    
+    @Override
+    protected void _releaseBuffers() {
+        // No recyclable buffers
+    }
+    
+    @Override
+    protected void _verifyValueWrite(final String typeMsg) throws IOException {
+        if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+            _reportError("Can not " + typeMsg + ", expecting field name");
+        }
+    }
+}
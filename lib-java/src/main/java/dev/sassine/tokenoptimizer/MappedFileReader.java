@@ -0,0 +1,133 @@
+package dev.sassine.tokenoptimizer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader decoding a UTF-8 file straight from memory-mapped windows of the file.
+ * The file is never copied to the heap: bytes are decoded into the caller's buffer as it reads.
+ * Windows are mapped one after another, which also covers files past the 2 GB limit of a
+ * single mapping; a character split across two windows is completed from the next one.
+ * A surrogate pair read into a buffer with room for one char is decoded aside and handed out
+ * one char at a time.
+ */
+final class MappedFileReader extends Reader {
+    
+    // Size of each mapped window
+    static final long DEFAULT_WINDOW = 1L << 30;
+    
+    private final FileChannel channel;
+    private final long size;
+    private final long windowSize;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    
+    // Current window and its offset in the file
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean done;
+    
+    // Chars of a surrogate pair not handed out yet
+    private final CharBuffer pending = CharBuffer.allocate(2).flip();
+    
+    /**
+     * Creates a reader over an open channel, mapping windows of the given size.
+     * 
+     * @param channel The file channel, closed with this reader
+     * @param windowSize The size of each mapped window, in bytes
+     * @throws IOException if the file size cannot be read
+     */
+    MappedFileReader(final FileChannel channel, final long windowSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+    
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pending.hasRemaining()) {
+            final int read = Math.min(len, pending.remaining());
+            pending.get(cbuf, off, read);
+            return read;
+        }
+        if (done) {
+            return -1;
+        }
+        final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off) {
+            if (window == null && !mapNext()) {
+                done = true;
+                return -1;
+            }
+            final boolean last = windowStart + window.limit() == size;
+            final CoderResult result = decoder.decode(window, out, last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow() && out.position() == off) {
+                decodePair(last);
+                if (pending.hasRemaining()) {
+                    out.put(pending.get());
+                }
+                continue;
+            }
+            if (result.isUnderflow() && out.position() == off) {
+                if (last) {
+                    decoder.flush(out);
+                    done = true;
+                    break;
+                }
+                // Bytes left in this window (if any) start a character completed by the next one
+                if (!mapNext()) {
+                    done = true;
+                    break;
+                }
+            }
+        }
+        final int read = out.position() - off;
+        return read == 0 ? -1 : read;
+    }
+    
+    /**
+     * Decodes the next character, a surrogate pair that does not fit the caller's buffer, into
+     * the pending buffer. Nothing is decoded if the pair continues in the next window.
+     */
+    private void decodePair(final boolean last) throws IOException {
+        pending.clear();
+        final CoderResult result = decoder.decode(window, pending, last);
+        if (result.isError()) {
+            result.throwException();
+        }
+        pending.flip();
+    }
+    
+    /**
+     * Maps the window starting at the first byte not decoded yet.
+     */
+    private boolean mapNext() throws IOException {
+        final long start = window == null ? 0 : windowStart + window.position();
+        if (start >= size) {
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+        windowStart = start;
+        return true;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
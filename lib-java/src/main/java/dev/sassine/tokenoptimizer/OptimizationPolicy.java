@@ -8,14 +8,24 @@ public final class OptimizationPolicy {
     
     private final PayloadFormat preferFormat;
     private final double minSavingsPercentForSwitch;
+    private final boolean predictFormat;
+    private final FormatDecisionCache decisionCache;
+    private final boolean retainOtherContent;
+    private final boolean boundTokenCounts;
     
     /**
      * Creates a new OptimizationPolicy.
      * 
      * @param preferFormat The preferred format strategy
      * @param minSavingsPercentForSwitch Minimum savings percentage required to switch formats (0.0 to 100.0)
+     * @param predictFormat Whether the format is predicted from the shape of the value
+     * @param decisionCache Cache of decisions per payload shape (null for none)
+     * @param retainOtherContent Whether results keep the content of the format not chosen
+     * @param boundTokenCounts Whether the format not chosen is counted only up to the decision
      */
-    private OptimizationPolicy(final PayloadFormat preferFormat, final double minSavingsPercentForSwitch) {
+    private OptimizationPolicy(final PayloadFormat preferFormat, final double minSavingsPercentForSwitch,
+            final boolean predictFormat, final FormatDecisionCache decisionCache, final boolean retainOtherContent,
+            final boolean boundTokenCounts) {
         if (preferFormat == null) {
             throw new IllegalArgumentException("preferFormat cannot be null");
         }
@@ -24,6 +34,10 @@ public final class OptimizationPolicy {
         }
         this.preferFormat = preferFormat;
         this.minSavingsPercentForSwitch = minSavingsPercentForSwitch;
+        this.predictFormat = predictFormat;
+        this.decisionCache = decisionCache;
+        this.retainOtherContent = retainOtherContent;
+        this.boundTokenCounts = boundTokenCounts;
     }
     
     /**
@@ -44,6 +58,42 @@ public final class OptimizationPolicy {
         return minSavingsPercentForSwitch;
     }
     
+    /**
+     * Returns whether the format is predicted from the shape of the value, rendering only the winner.
+     * 
+     * @return true if the format is predicted when the prediction is confident
+     */
+    public boolean isPredictFormat() {
+        return predictFormat;
+    }
+    
+    /**
+     * Returns the cache of decisions per payload shape.
+     * 
+     * @return The decision cache, or null if decisions are not cached
+     */
+    public FormatDecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+    
+    /**
+     * Returns whether results keep the content of the format that was not chosen.
+     * 
+     * @return true if both renderings are kept, false if the other one is rendered again on request
+     */
+    public boolean isRetainOtherContent() {
+        return retainOtherContent;
+    }
+    
+    /**
+     * Returns whether the format that is not chosen is counted only until it can no longer win.
+     * 
+     * @return true if its token count may be a lower bound, false if token counts are exact
+     */
+    public boolean isBoundTokenCounts() {
+        return boundTokenCounts;
+    }
+    
     /**
      * Creates a new builder for OptimizationPolicy.
      * 
@@ -59,6 +109,10 @@ public final class OptimizationPolicy {
     public static final class Builder {
         private PayloadFormat preferFormat = PayloadFormat.AUTO;
         private double minSavingsPercentForSwitch = 0.0;
+        private boolean predictFormat;
+        private FormatDecisionCache decisionCache;
+        private boolean retainOtherContent = true;
+        private boolean boundTokenCounts;
         
         private Builder() {
         }
@@ -86,6 +140,71 @@ public final class OptimizationPolicy {
             return this;
         }
         
+        /**
+         * Sets whether the format is predicted from the shape of the value (keys, array lengths and
+         * uniformity, value sizes) instead of rendering and counting both formats.
+         * When the predicted token counts are far enough apart to be trusted, only the winning
+         * format is rendered and counted; the other format's counts in the result are predictions
+         * and its content is not rendered. When they are too close to call, both formats are
+         * rendered and counted as usual. Disabled by default.
+         * 
+         * @param predictFormat true to predict the format when the prediction is confident
+         * @return This builder instance
+         */
+        public Builder predictFormat(final boolean predictFormat) {
+            this.predictFormat = predictFormat;
+            return this;
+        }
+        
+        /**
+         * Sets a cache of decisions per payload shape (keys, nesting, array uniformity and size).
+         * Once a shape has been measured, later payloads of that shape render only the cached
+         * winner, apart from the sample of calls the cache re-checks in full. The cache keeps
+         * the decisions of this policy, so it should not be shared with policies that decide
+         * differently. Default: none.
+         * 
+         * @param decisionCache The cache to use (null for none)
+         * @return This builder instance
+         */
+        public Builder decisionCache(final FormatDecisionCache decisionCache) {
+            this.decisionCache = decisionCache;
+            return this;
+        }
+        
+        /**
+         * Sets whether results keep the content of the format that was not chosen.
+         * When false, a result holds only the optimal content and the metrics of both formats;
+         * {@code getJsonContent()} or {@code getToonContent()} renders the other format again
+         * from the optimized value on each call. This halves the memory held by results of
+         * large payloads that wait in a queue. The result then keeps a reference to the
+         * optimized value, so it should not be modified while the result is in use. Results of
+         * {@code optimizeFromJson} where TOON wins keep the JSON string as given, which is
+         * larger than the minified JSON when it is pretty-printed.
+         * Default: true.
+         * 
+         * @param retainOtherContent false to render the other format only on request
+         * @return This builder instance
+         */
+        public Builder retainOtherContent(final boolean retainOtherContent) {
+            this.retainOtherContent = retainOtherContent;
+            return this;
+        }
+        
+        /**
+         * Sets whether, when tokens decide the format, the format that is not chosen is counted
+         * only until its count shows it cannot win. This saves part of the counting, but its
+         * token count in the result, and the token savings, are then lower bounds (see
+         * {@code OptimizationResult.isTokenCountLowerBound()}). Ignored with a decision cache,
+         * which needs exact counts to estimate the other format on later calls. Default: false.
+         * 
+         * @param boundTokenCounts true to count the other format only up to the decision
+         * @return This builder instance
+         */
+        public Builder boundTokenCounts(final boolean boundTokenCounts) {
+            this.boundTokenCounts = boundTokenCounts;
+            return this;
+        }
+        
         /**
          * Builds the OptimizationPolicy instance.
          * 
@@ -93,7 +212,8 @@ public final class OptimizationPolicy {
          * @throws IllegalArgumentException if any parameter is invalid
          */
         public OptimizationPolicy build() {
-            return new OptimizationPolicy(preferFormat, minSavingsPercentForSwitch);
+            return new OptimizationPolicy(preferFormat, minSavingsPercentForSwitch, predictFormat, decisionCache,
+                    retainOtherContent, boundTokenCounts);
         }
     }
 }
@@ -1,5 +1,7 @@
 package dev.sassine.tokenoptimizer;
 
+import java.util.function.Supplier;
+
 /**
  * Represents the result of token optimization.
  * Contains information about both JSON and TOON formats, and which one is optimal.
@@ -21,6 +23,10 @@ public final class OptimizationResult {
     private final int toonTokenCount;
     private final int toonCharacterCount;
     private final int toonByteCount;
+    private final boolean predicted;
+    private final boolean tokenCountLowerBound;
+    // Renders the content of the non-optimal format on request when it is not kept (null when it is)
+    private final Supplier<String> otherContent;
     
     /**
      * Creates a new OptimizationResult.
@@ -53,6 +59,31 @@ public final class OptimizationResult {
             final int toonTokenCount,
             final int toonCharacterCount,
             final int toonByteCount) {
+        this(optimalFormat, optimalContent, optimalTokenCount, optimalCharacterCount, optimalByteCount,
+                jsonContent, jsonTokenCount, jsonCharacterCount, jsonByteCount,
+                toonContent, toonTokenCount, toonCharacterCount, toonByteCount, false, false);
+    }
+    
+    /**
+     * Creates a result whose non-optimal format may have been predicted rather than rendered,
+     * or whose token count may have been counted only up to the decision.
+     */
+    OptimizationResult(
+            final FormatType optimalFormat,
+            final String optimalContent,
+            final int optimalTokenCount,
+            final int optimalCharacterCount,
+            final int optimalByteCount,
+            final String jsonContent,
+            final int jsonTokenCount,
+            final int jsonCharacterCount,
+            final int jsonByteCount,
+            final String toonContent,
+            final int toonTokenCount,
+            final int toonCharacterCount,
+            final int toonByteCount,
+            final boolean predicted,
+            final boolean tokenCountLowerBound) {
         this.optimalFormat = optimalFormat;
         this.optimalContent = optimalContent;
         this.optimalTokenCount = optimalTokenCount;
@@ -66,6 +97,33 @@ public final class OptimizationResult {
         this.toonTokenCount = toonTokenCount;
         this.toonCharacterCount = toonCharacterCount;
         this.toonByteCount = toonByteCount;
+        this.predicted = predicted;
+        this.tokenCountLowerBound = tokenCountLowerBound;
+        this.otherContent = null;
+    }
+    
+    /**
+     * Creates a copy of a result that drops the content of the non-optimal format and renders
+     * it with the given supplier when it is requested.
+     */
+    OptimizationResult(final OptimizationResult result, final Supplier<String> otherContent) {
+        final boolean toon = result.optimalFormat == FormatType.TOON;
+        this.optimalFormat = result.optimalFormat;
+        this.optimalContent = result.optimalContent;
+        this.optimalTokenCount = result.optimalTokenCount;
+        this.optimalCharacterCount = result.optimalCharacterCount;
+        this.optimalByteCount = result.optimalByteCount;
+        this.jsonContent = toon ? null : result.jsonContent;
+        this.jsonTokenCount = result.jsonTokenCount;
+        this.jsonCharacterCount = result.jsonCharacterCount;
+        this.jsonByteCount = result.jsonByteCount;
+        this.toonContent = toon ? result.toonContent : null;
+        this.toonTokenCount = result.toonTokenCount;
+        this.toonCharacterCount = result.toonCharacterCount;
+        this.toonByteCount = result.toonByteCount;
+        this.predicted = result.predicted;
+        this.tokenCountLowerBound = result.tokenCountLowerBound;
+        this.otherContent = otherContent;
     }
     
     /**
@@ -98,9 +156,16 @@ public final class OptimizationResult {
     /**
      * Returns the content in JSON format.
      * 
-     * @return The JSON content string
+     * When JSON is not optimal and the policy does not retain the other content, it is
+     * rendered again on each call.
+     * 
+     * @return The JSON content string, or null if the format was predicted and JSON is not optimal
+     * @see OptimizationPolicy.Builder#retainOtherContent(boolean)
      */
     public String getJsonContent() {
+        if (jsonContent == null && otherContent != null) {
+            return otherContent.get();
+        }
         return jsonContent;
     }
     
@@ -116,9 +181,16 @@ public final class OptimizationResult {
     /**
      * Returns the content in TOON format.
      * 
-     * @return The TOON content string
+     * When TOON is not optimal and the policy does not retain the other content, it is
+     * rendered again on each call.
+     * 
+     * @return The TOON content string, or null if the format was predicted and TOON is not optimal
+     * @see OptimizationPolicy.Builder#retainOtherContent(boolean)
      */
     public String getToonContent() {
+        if (toonContent == null && otherContent != null) {
+            return otherContent.get();
+        }
         return toonContent;
     }
     
@@ -131,6 +203,33 @@ public final class OptimizationResult {
         return toonTokenCount;
     }
     
+    /**
+     * Returns whether the format was predicted from the shape of the value, or taken from the
+     * decision cached for that shape.
+     * When true, only the optimal format was rendered: the counts of the other format are
+     * predictions and its content is null, unless the policy renders it on request.
+     * 
+     * @return true if the non-optimal counts are predicted
+     * @see OptimizationPolicy.Builder#predictFormat(boolean)
+     * @see OptimizationPolicy.Builder#decisionCache(FormatDecisionCache)
+     */
+    public boolean isPredicted() {
+        return predicted;
+    }
+    
+    /**
+     * Returns whether the token count of the non-optimal format is a lower bound.
+     * With bounded counting (see {@code OptimizationPolicy.Builder.boundTokenCounts}), the
+     * optimizer counts the other format only until its count is past the point where the
+     * decision could change; the token count it reports is then lower than the exact one,
+     * and so are the token savings. Character and byte counts are not bounded this way.
+     * 
+     * @return true if the non-optimal token count is a lower bound, false if it is exact (or predicted)
+     */
+    public boolean isTokenCountLowerBound() {
+        return tokenCountLowerBound;
+    }
+    
     /**
      * Returns the character count of the optimal format.
      * 
@@ -0,0 +1,846 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knuddels.jtokkit.api.ModelType;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Predicts the size of the JSON and TOON renderings of a value from its shape, without
+ * rendering either. Jackson's serializers drive an analyzer that adds up, for both formats,
+ * the cost of every key, value and container: array lengths, whether the rows of an array of
+ * objects share their keys (tabular TOON) or not (expanded TOON), key lengths, and the class
+ * and text of each value. Objects and arrays inside rows are costed inline, as written. Token counts use a coarse model of BPE tokenizers (words, digit
+ * groups and punctuation runs); characters and bytes are counted almost exactly.
+ * A prediction is only trusted when the predicted formats differ by more than the error
+ * bound of the model.
+ */
+final class ShapeCostModel {
+    
+    // Letters per token in a word, digits per token in a number (BPE tokenizers split digits in groups of 3)
+    private static final int LETTERS_PER_TOKEN = 12;
+    private static final int DIGITS_PER_TOKEN = 3;
+    
+    // Tokens per blank row of an empty-schema table: BPE merges their whitespace across lines
+    private static final double BLANK_ROW_TOKENS = 0.5;
+    
+    // Error bounds of the predicted TOON/JSON ratio, relative and in absolute units of each count,
+    // calibrated on the benchmark corpus and on random small payloads: characters and bytes are exact,
+    // generic estimates only differ by rounding, and BPE ratios stay within 10% plus a few tokens
+    // (merges the model cannot see, which dominate small payloads)
+    private static final double SIZE_ERROR = 0.01;
+    private static final double SIZE_SLACK = 1;
+    private static final double GENERIC_ERROR = 0.02;
+    private static final double GENERIC_SLACK = 1;
+    private static final double BPE_ERROR = 0.10;
+    private static final double BPE_SLACK = 6;
+    
+    // Prevent instantiation
+    private ShapeCostModel() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+    
+    /**
+     * Predicts the size of both renderings of a value, walking it once with the mapper's serializers.
+     * 
+     * @param mapper The mapper whose serializers walk the value
+     * @param value The value to analyze
+     * @return The predicted sizes
+     * @throws IOException if the value cannot be serialized, or holds raw values the model cannot size
+     */
+    static Prediction predict(final ObjectMapper mapper, final Object value) throws IOException {
+        final Analyzer analyzer = new Analyzer(mapper);
+        mapper.writeValue(analyzer, value);
+        return new Prediction(analyzer.json, analyzer.toon);
+    }
+    
+    /**
+     * Predicted sizes of the JSON and TOON renderings of a value.
+     */
+    static final class Prediction {
+        private final Size json;
+        private final Size toon;
+        
+        Prediction(final Size json, final Size toon) {
+            this.json = json;
+            this.toon = toon;
+        }
+        
+        /**
+         * Returns the predicted size of the JSON rendering.
+         * 
+         * @param criteria What is measured
+         * @param modelType The tokenizer for token counts (null for generic estimation)
+         * @return The predicted count
+         */
+        int json(final OptimizationCriteria criteria, final ModelType modelType) {
+            return (int) Math.round(json.measure(criteria, modelType));
+        }
+        
+        /**
+         * Returns the predicted size of the TOON rendering.
+         * 
+         * @param criteria What is measured
+         * @param modelType The tokenizer for token counts (null for generic estimation)
+         * @return The predicted count
+         */
+        int toon(final OptimizationCriteria criteria, final ModelType modelType) {
+            return (int) Math.round(toon.measure(criteria, modelType));
+        }
+        
+        /**
+         * Decides the format as {@link TokenOptimizer} would from exact counts, when the
+         * prediction is far enough from the decision boundary to be trusted: with a policy,
+         * TOON wins when its token savings reach the policy's minimum; without one, the
+         * smaller rendering by the criteria wins, TOON on ties.
+         * 
+         * @param criteria The optimization criteria (ignored when a policy is given)
+         * @param modelType The tokenizer for token counts (null for generic estimation)
+         * @param policy The optimization policy (null to compare by criteria)
+         * @return TRUE for TOON, FALSE for JSON, or null when the formats are too close to call
+         */
+        Boolean decide(final OptimizationCriteria criteria, final ModelType modelType,
+                final OptimizationPolicy policy) {
+            if (policy != null && policy.getPreferFormat() != PayloadFormat.AUTO) {
+                return policy.getPreferFormat() == PayloadFormat.TOON_ONLY;
+            }
+            final OptimizationCriteria measured = policy != null ? OptimizationCriteria.TOKENS : criteria;
+            final double threshold = policy != null ? policy.getMinSavingsPercentForSwitch() / 100.0 : 0.0;
+            final double error;
+            final double slack;
+            if (measured != OptimizationCriteria.TOKENS) {
+                error = SIZE_ERROR;
+                slack = SIZE_SLACK;
+            } else if (modelType != null) {
+                error = BPE_ERROR;
+                slack = BPE_SLACK;
+            } else {
+                error = GENERIC_ERROR;
+                slack = GENERIC_SLACK;
+            }
+            final double predictedJson = json.measure(measured, modelType);
+            final double predictedToon = toon.measure(measured, modelType);
+            // TOON wins when its count is at most (1 - threshold) times the JSON count
+            final double highest = (predictedToon + slack) / Math.max(1.0, predictedJson - slack) * (1 + error);
+            final double lowest = (predictedToon - slack) / (predictedJson + slack) * (1 - error);
+            if (highest < 1 - threshold) {
+                return Boolean.TRUE;
+            }
+            if (lowest > 1 - threshold) {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+        
+        @Override
+        public String toString() {
+            return "Prediction{json=" + json + ", toon=" + toon + "}";
+        }
+    }
+    
+    /**
+     * Predicted size of a rendering, or of part of one.
+     */
+    static final class Size {
+        double chars;
+        double bytes;
+        double words;
+        double tokens;
+        
+        void add(final Size size) {
+            chars += size.chars;
+            bytes += size.bytes;
+            words += size.words;
+            tokens += size.tokens;
+        }
+        
+        /**
+         * Adds ASCII punctuation or layout: its chars, the words it starts and its tokens.
+         */
+        void add(final int chars, final int words, final int tokens) {
+            this.chars += chars;
+            this.bytes += chars;
+            this.words += words;
+            this.tokens += tokens;
+        }
+        
+        void clear() {
+            chars = 0;
+            bytes = 0;
+            words = 0;
+            tokens = 0;
+        }
+        
+        /**
+         * Returns the measure used by the criteria; generic token counts follow
+         * {@link TokenCounter#countTokens(String)} from the characters and words.
+         */
+        double measure(final OptimizationCriteria criteria, final ModelType modelType) {
+            switch (criteria) {
+                case CHARACTERS:
+                    return chars;
+                case BYTES:
+                    return bytes;
+                default:
+                    if (modelType != null) {
+                        return tokens;
+                    }
+                    return (Math.ceil(chars / 4.0) + Math.ceil(words / 0.75)) / 2;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("{chars=%.0f, bytes=%.0f, words=%.0f, tokens=%.0f}", chars, bytes, words, tokens);
+        }
+    }
+    
+    /**
+     * Generator adding up the cost of each event in both formats, with the TOON layout of
+     * each container settled when it ends.
+     */
+    private static final class Analyzer extends GeneratorBase {
+        
+        // Char classes of the token model
+        private static final int NONE = 0;
+        private static final int LETTER = 1;
+        private static final int DIGIT = 2;
+        private static final int SPACE = 3;
+        private static final int OTHER = 4;
+        private static final int WIDE = 5;
+        
+        final Size json = new Size();
+        final Size toon = new Size();
+        
+        // Open containers, innermost last
+        private Frame[] frames = new Frame[16];
+        private int depth;
+        
+        // Scan of the current key or value
+        private int length;
+        private int extraBytes;
+        private int escapes;
+        private int breaks;
+        private int tokens;
+        private int lead;
+        
+        // Pending key of the innermost object
+        private int keyLength;
+        private int keyBytes;
+        private int keyTokens;
+        private int keyLead;
+        
+        Analyzer(final ObjectMapper mapper) {
+            super(JsonGenerator.Feature.collectDefaults(), mapper);
+            json.add(0, 1, 0);
+        }
+        
+        @Override
+        public void writeStartObject() throws IOException {
+            _verifyValueWrite("start an object");
+            _writeContext = _writeContext.createChildObjectContext();
+            final Frame parent = depth > 0 ? frames[depth - 1] : null;
+            // Brackets join the quotes and separators around them: {" ":{" },{" },"
+            beforeValue(parent, 1);
+            json.add(1, 0, 0);
+            final Frame frame = push(false);
+            if (parent == null) {
+                frame.level = 0;
+            } else {
+                frame.level = parent.level + 1;
+                frame.afterDash = parent.array;
+            }
+        }
+        
+        @Override
+        public void writeEndObject() throws IOException {
+            if (!_writeContext.inObject()) {
+                _reportError("Current context not Object but " + _writeContext.typeDesc());
+            }
+            _writeContext = _writeContext.clearAndGetParent();
+            json.add(1, 0, depth == 1 ? 1 : 0);
+            final Frame frame = frames[--depth];
+            final Frame parent = depth > 0 ? frames[depth - 1] : null;
+            if (parent == null) {
+                toon.add(frame.block);
+            } else if (!parent.array) {
+                // key:\n followed by the fields one level deeper (:\n is one token)
+                parent.block.add(1, 0, 0);
+                parent.block.add(frame.block);
+                nestedField(parent, frame.inlineObject());
+            } else {
+                item(parent, frame);
+            }
+        }
+        
+        @Override
+        public void writeStartArray() throws IOException {
+            _verifyValueWrite("start an array");
+            _writeContext = _writeContext.createChildArrayContext();
+            final Frame parent = depth > 0 ? frames[depth - 1] : null;
+            beforeValue(parent, 1);
+            json.add(1, 0, parent == null ? 1 : 0);
+            final Frame frame = push(true);
+            frame.level = parent == null ? 1 : parent.level + 1;
+        }
+        
+        @Override
+        public void writeEndArray() throws IOException {
+            if (!_writeContext.inArray()) {
+                _reportError("Current context not Array but " + _writeContext.typeDesc());
+            }
+            _writeContext = _writeContext.clearAndGetParent();
+            json.add(1, 0, depth == 1 ? 1 : 0);
+            final Frame frame = frames[--depth];
+            final Frame parent = depth > 0 ? frames[depth - 1] : null;
+            if (parent == null) {
+                toon.add(0, 1, 0);
+                toon.add(frame.layout());
+            } else if (!parent.array) {
+                // key[count]... right after the key, without its colon
+                parent.block.add(-1, 0, -1);
+                parent.block.add(frame.layout());
+                nestedField(parent, frame.inlineArray());
+            } else {
+                // Arrays inside arrays are written inline
+                parent.objects = false;
+                if (parent.count > 1) {
+                    parent.inline.add(1, 0, 1);
+                }
+                parent.inline.add(frame.inlineArray());
+            }
+        }
+        
+        @Override
+        public void writeFieldName(final String name) throws IOException {
+            if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+                _reportError("Can not write a field name, expecting a value");
+            }
+            final Frame frame = frames[depth - 1];
+            scan(name);
+            keyLength = length;
+            keyBytes = length + extraBytes;
+            keyTokens = tokens;
+            keyLead = lead;
+            
+            // JSON: ,"key": where the opening quote of a first nested key joins the parent's ":{
+            final int separator = frame.count > 0 ? 1 : 0;
+            json.chars += separator + 3 + length + escapes;
+            json.bytes += separator + 3 + length + escapes + extraBytes;
+            json.words += breaks;
+            json.tokens += tokens + (frame.count > 0 || depth == 1 ? 2 : 1);
+            
+            // TOON: a line of its own (the first field of a "- " item stays on the item line), then key
+            final boolean inline = frame.count == 0 && frame.afterDash;
+            frame.block.add((frame.count > 0 ? 1 : 0) + (inline ? 0 : 2 * frame.level), 1,
+                    (frame.count > 0 ? 1 : 0) + (!inline && frame.level > 0 ? 1 : 0));
+            key(frame.block);
+            // Inline object: ,key: then the value without a space; the comma joins a leading word,
+            // and the colon is counted with the value it may join
+            frame.fields.add(frame.count > 0 ? 1 : 0, 0, frame.count > 0 && keyLead != LETTER ? 1 : 0);
+            frame.fields.chars += keyLength + 1;
+            frame.fields.bytes += keyBytes + 1;
+            frame.fields.tokens += keyTokens;
+            // Header of a tabular array: the key and its comma (or closing brace), which joins a word
+            frame.keys.chars += keyLength + 1;
+            frame.keys.bytes += keyBytes + 1;
+            frame.keys.tokens += keyTokens + (keyLead == LETTER ? 0 : 1);
+            frame.keyHash += mix(name.hashCode());
+            frame.count++;
+        }
+        
+        @Override
+        public void writeFieldName(final SerializableString name) throws IOException {
+            writeFieldName(name.getValue());
+        }
+        
+        @Override
+        public void writeString(final String text) throws IOException {
+            if (text == null) {
+                writeNull();
+                return;
+            }
+            _verifyValueWrite(WRITE_STRING);
+            scan(text);
+            scalar(true, ToonEncoder.needsQuotesInArray(text));
+        }
+        
+        @Override
+        public void writeString(final char[] text, final int offset, final int len) throws IOException {
+            writeString(new String(text, offset, len));
+        }
+        
+        @Override
+        public void writeRawUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+            _reportUnsupportedOperation();
+        }
+        
+        @Override
+        public void writeUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+            _reportUnsupportedOperation();
+        }
+        
+        @Override
+        public void writeRaw(final String text) throws IOException {
+            _reportUnsupportedOperation();
+        }
+        
+        @Override
+        public void writeRaw(final String text, final int offset, final int len) throws IOException {
+            _reportUnsupportedOperation();
+        }
+        
+        @Override
+        public void writeRaw(final char[] text, final int offset, final int len) throws IOException {
+            _reportUnsupportedOperation();
+        }
+        
+        @Override
+        public void writeRaw(final char c) throws IOException {
+            _reportUnsupportedOperation();
+        }
+        
+        @Override
+        public void writeBinary(final Base64Variant variant, final byte[] data, final int offset, final int len)
+                throws IOException {
+            if (data == null) {
+                writeNull();
+                return;
+            }
+            _verifyValueWrite(WRITE_BINARY);
+            // Base64 text: 4 chars per 3 bytes, tokenized like a long word
+            length = (len + 2) / 3 * 4;
+            extraBytes = 0;
+            escapes = 0;
+            breaks = 0;
+            tokens = length / 2;
+            lead = LETTER;
+            scalar(true, false);
+        }
+        
+        @Override
+        public void writeNumber(final int value) throws IOException {
+            writeNumber((long) value);
+        }
+        
+        @Override
+        public void writeNumber(final long value) throws IOException {
+            _verifyValueWrite(WRITE_NUMBER);
+            int digits = value < 0 ? 2 : 1;
+            for (long rest = Math.abs(value / 10); rest > 0; rest /= 10) {
+                digits++;
+            }
+            length = digits;
+            extraBytes = 0;
+            escapes = 0;
+            breaks = 0;
+            tokens = (digits + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+            lead = value < 0 ? OTHER : DIGIT;
+            scalar(false, false);
+        }
+        
+        @Override
+        public void writeNumber(final BigInteger value) throws IOException {
+            if (value == null) {
+                writeNull();
+                return;
+            }
+            number(value.toString());
+        }
+        
+        @Override
+        public void writeNumber(final double value) throws IOException {
+            number(Double.toString(value));
+        }
+        
+        @Override
+        public void writeNumber(final float value) throws IOException {
+            number(Float.toString(value));
+        }
+        
+        @Override
+        public void writeNumber(final BigDecimal value) throws IOException {
+            if (value == null) {
+                writeNull();
+                return;
+            }
+            number(_asString(value));
+        }
+        
+        @Override
+        public void writeNumber(final String encodedValue) throws IOException {
+            if (encodedValue == null) {
+                writeNull();
+                return;
+            }
+            number(encodedValue);
+        }
+        
+        @Override
+        public void writeBoolean(final boolean state) throws IOException {
+            _verifyValueWrite(WRITE_BOOLEAN);
+            word(state ? 4 : 5);
+        }
+        
+        @Override
+        public void writeNull() throws IOException {
+            _verifyValueWrite(WRITE_NULL);
+            word(4);
+        }
+        
+        @Override
+        public void flush() {
+            // Nothing is written
+        }
+        
+        @Override
+        protected void _releaseBuffers() {
+            // No recyclable buffers
+        }
+        
+        @Override
+        protected void _verifyValueWrite(final String typeMsg) throws IOException {
+            if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+                _reportError("Can not " + typeMsg + ", expecting field name");
+            }
+        }
+        
+        private void number(final String text) throws IOException {
+            _verifyValueWrite(WRITE_NUMBER);
+            scan(text);
+            scalar(false, false);
+        }
+        
+        /**
+         * Adds true, false or null: a single token.
+         */
+        private void word(final int chars) {
+            length = chars;
+            extraBytes = 0;
+            escapes = 0;
+            breaks = 0;
+            tokens = 1;
+            lead = LETTER;
+            scalar(false, false);
+        }
+        
+        /**
+         * Adds the scanned value: quoted in JSON when a string, and in TOON after the key of a
+         * field, as a row cell or as an inline array item. JSON quotes join the surrounding
+         * punctuation (":" and ","), and TOON commas join a following word.
+         */
+        private void scalar(final boolean string, final boolean quoted) {
+            final Frame parent = depth > 0 ? frames[depth - 1] : null;
+            beforeValue(parent, 1);
+            final int jsonChars = string ? length + escapes + 2 : length;
+            json.chars += jsonChars;
+            json.bytes += jsonChars + extraBytes;
+            json.words += breaks;
+            json.tokens += tokens;
+            final int cell = quoted ? OTHER : lead;
+            
+            if (parent == null) {
+                toon.chars += length;
+                toon.bytes += length + extraBytes;
+                toon.words += 1 + breaks;
+                toon.tokens += tokens;
+            } else if (!parent.array) {
+                // key: value, where the space is a token of its own before digits
+                value(parent.block, 1, 1, lead == DIGIT ? 1 : 0);
+                if (parent.count > 1) {
+                    parent.row.add(1, 0, cell == LETTER ? 0 : 1);
+                } else {
+                    parent.rowLead = cell;
+                }
+                value(parent.row, quoted ? 2 : 0, 0, 0);
+                // The colon joins a word or an opening quote (:" is one token)
+                value(parent.fields, quoted ? 2 : 0, 0, quoted || cell == LETTER ? 0 : 1);
+            } else {
+                parent.objects = false;
+                if (parent.count > 1) {
+                    parent.inline.add(1, 0, cell == LETTER ? 0 : 1);
+                } else {
+                    parent.digitLead = cell == DIGIT;
+                }
+                value(parent.inline, quoted ? 2 : 0, 0, 0);
+            }
+        }
+        
+        /**
+         * Adds an object or array ending as a field of an object. Rows of a tabular array and
+         * inline objects hold it in its inline form, whatever the layout of its own block.
+         */
+        private void nestedField(final Frame parent, final Size inline) {
+            if (parent.count > 1) {
+                parent.row.add(1, 0, 1);
+            } else {
+                parent.rowLead = OTHER;
+            }
+            parent.row.add(inline);
+            parent.fields.add(0, 0, 1);
+            parent.fields.add(inline);
+            parent.nested = true;
+        }
+        
+        private void value(final Size size, final int chars, final int words, final int tokens) {
+            size.chars += length + chars;
+            size.bytes += length + chars + extraBytes;
+            size.words += breaks + words;
+            size.tokens += this.tokens + tokens;
+        }
+        
+        private void key(final Size size) {
+            size.chars += keyLength + 1;
+            size.bytes += keyBytes + 1;
+            size.tokens += keyTokens + 1;
+        }
+        
+        /**
+         * Counts a new value of an array, with its JSON separator.
+         */
+        private void beforeValue(final Frame parent, final int separatorTokens) {
+            if (parent != null && parent.array) {
+                if (parent.count > 0) {
+                    json.add(1, 0, separatorTokens);
+                }
+                parent.count++;
+            }
+        }
+        
+        /**
+         * Adds an object ending as an item of an array, both as an expanded "- " item and as a
+         * tabular row, and tracks whether the items share the keys of the first one.
+         */
+        private void item(final Frame array, final Frame object) {
+            final int level = array.level;
+            array.items.add(1 + (array.count > 1 ? 1 : 0) + 2 * level + 2, 1, 2 + (level > 0 ? 1 : 0));
+            array.items.add(object.block);
+            if (object.count == 0) {
+                // Rows of an empty schema are blank lines holding only their indentation
+                array.rows.add(1 + 2 * level, 0, 0);
+                array.rows.tokens += BLANK_ROW_TOKENS;
+            } else {
+                // The indentation joins a leading word, and is a token of its own before digits
+                array.rows.add(1 + 2 * level, 1, 1 + (level == 0 ? 0 : object.rowLead == LETTER ? 1 : 2));
+                array.rows.add(object.row);
+            }
+            if (array.count > 1) {
+                array.inline.add(1, 0, 1);
+            }
+            array.inline.add(object.inlineObject());
+            if (array.count == 1) {
+                array.firstHash = object.keyHash;
+                array.firstCount = object.count;
+                array.firstNested = object.nested;
+                array.header.clear();
+                array.header.add(object.keys);
+            } else if (object.keyHash != array.firstHash || object.count != array.firstCount) {
+                array.uniform = false;
+            }
+        }
+        
+        private Frame push(final boolean array) {
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+            Frame frame = frames[depth];
+            if (frame == null) {
+                frame = new Frame();
+                frames[depth] = frame;
+            }
+            depth++;
+            frame.reset(array);
+            return frame;
+        }
+        
+        /**
+         * Scans a key or value: its length, extra UTF-8 bytes, chars escaped by JSON, whitespace
+         * runs (each one ending a word) and estimated tokens.
+         */
+        private void scan(final String text) {
+            length = text.length();
+            extraBytes = 0;
+            escapes = 0;
+            breaks = 0;
+            tokens = 0;
+            lead = NONE;
+            int kind = NONE;
+            int run = 0;
+            for (int i = 0; i < length; i++) {
+                final char c = text.charAt(i);
+                final int next;
+                if (c < 0x80) {
+                    if (c == '"' || c == '\\') {
+                        escapes++;
+                    } else if (c < ' ') {
+                        escapes += c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f' ? 1 : 5;
+                    }
+                    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                        next = LETTER;
+                    } else if (c >= '0' && c <= '9') {
+                        next = DIGIT;
+                    } else {
+                        next = c <= ' ' ? SPACE : OTHER;
+                    }
+                } else {
+                    extraBytes += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+                    next = WIDE;
+                }
+                if (next != kind) {
+                    // A single punctuation char joins the word after it
+                    tokens += tokens(kind, kind == OTHER && next == LETTER ? run - 1 : run);
+                    if (next == SPACE) {
+                        breaks++;
+                    } else if (next == DIGIT && kind == SPACE) {
+                        // Spaces do not join digits
+                        tokens++;
+                    }
+                    if (kind == NONE) {
+                        lead = next;
+                    }
+                    kind = next;
+                    run = 0;
+                }
+                run++;
+            }
+            tokens += tokens(kind, run);
+        }
+        
+        private static int tokens(final int kind, final int run) {
+            switch (kind) {
+                case LETTER:
+                    return 1 + (run - 1) / LETTERS_PER_TOKEN;
+                case DIGIT:
+                    return (run + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+                case OTHER:
+                    return (run + 1) / 2;
+                case WIDE:
+                    // Letters outside ASCII rarely join a word: about a token each
+                    return run;
+                default:
+                    // Spaces join the next word
+                    return 0;
+            }
+        }
+        
+        private static int mix(final int hash) {
+            int h = hash * 0x9E3779B1;
+            return h ^ (h >>> 16);
+        }
+    }
+    
+    /**
+     * An open object or array and the cost of its content.
+     */
+    private static final class Frame {
+        boolean array;
+        // Indentation level of the fields (objects) or of the rows and "- " items (arrays)
+        int level;
+        // Fields or items so far
+        int count;
+        // Objects: fields as indented lines, as row cells and as key:value pairs, key names as a header
+        final Size block = new Size();
+        final Size row = new Size();
+        final Size fields = new Size();
+        final Size keys = new Size();
+        boolean afterDash;
+        boolean nested;
+        int keyHash;
+        int rowLead;
+        // Arrays: items as "- " items, as tabular rows and inline
+        final Size items = new Size();
+        final Size rows = new Size();
+        final Size inline = new Size();
+        final Size header = new Size();
+        boolean objects;
+        boolean uniform;
+        boolean firstNested;
+        boolean digitLead;
+        int firstHash;
+        int firstCount;
+        
+        void reset(final boolean isArray) {
+            array = isArray;
+            count = 0;
+            block.clear();
+            row.clear();
+            fields.clear();
+            keys.clear();
+            afterDash = false;
+            nested = false;
+            keyHash = 0;
+            rowLead = 0;
+            items.clear();
+            rows.clear();
+            inline.clear();
+            header.clear();
+            objects = true;
+            uniform = true;
+            firstNested = false;
+            digitLead = false;
+        }
+        
+        /**
+         * Returns the TOON cost of the array with the layout {@link ToonEncoder} picks:
+         * tabular for several objects sharing keys with scalar values, expanded "- " items
+         * for other objects, inline values otherwise.
+         */
+        Size layout() {
+            if (!objects || count == 0) {
+                return inlineArray();
+            }
+            final Size size = countHeader();
+            if (uniform && count > 1 && !firstNested) {
+                // {key1,key2}: then one row per item
+                size.add(2, 0, 1);
+                size.add(header);
+                size.add(rows);
+            } else {
+                size.add(1, 0, 1);
+                size.add(items);
+            }
+            return size;
+        }
+        
+        /**
+         * Returns the TOON cost of the array written inline, as in rows and other arrays:
+         * [count]: value1,value2 with objects as {key:value,...}.
+         */
+        Size inlineArray() {
+            final Size size = countHeader();
+            // ]: is one token, and the space after it is a token of its own before digits
+            size.add(count > 0 ? 2 : 1, count > 0 ? 1 : 0, count > 0 && digitLead ? 1 : 0);
+            size.add(inline);
+            return size;
+        }
+        
+        /**
+         * Returns the TOON cost of the object written inline: {key:value,...}.
+         */
+        Size inlineObject() {
+            final Size size = new Size();
+            // {} is a single token
+            size.add(2, 0, count > 0 ? 2 : 1);
+            size.add(fields);
+            return size;
+        }
+        
+        private Size countHeader() {
+            final Size size = new Size();
+            int digits = 1;
+            for (int rest = count / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            // [count]
+            size.add(2 + digits, 0, 2 + (digits + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN);
+            return size;
+        }
+    }
+}
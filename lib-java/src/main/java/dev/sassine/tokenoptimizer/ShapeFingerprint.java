@@ -0,0 +1,346 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Fingerprints the structure of a value: its keys, how containers nest, which arrays hold
+ * items of a single shape, the TOON layout of each array, the kind of each scalar, and a
+ * rough size bucket. Values of the same DTO type, holding arrays of any length above one and
+ * text of similar overall size, share a fingerprint; the lengths of individual values are
+ * not part of it.
+ */
+final class ShapeFingerprint {
+    
+    // Shapes of scalars and empty containers
+    private static final long STRING = 0x5bd1e995L;
+    private static final long NUMBER = 0x27d4eb2fL;
+    private static final long BOOLEAN = 0x165667b1L;
+    private static final long NULL = 0x61c88647L;
+    private static final long OBJECT = 0x9e3779b97f4a7c15L;
+    private static final long ARRAY = 0xc2b2ae3d27d4eb4fL;
+    private static final long MIXED_ARRAY = 0x85ebca77c2b2ae63L;
+    
+    // TOON layouts of arrays, as ToonEncoder picks them
+    private static final long TABULAR = 0xd6e8feb86659fd93L;
+    private static final long EXPANDED = 0xa0761d6478bd642fL;
+    private static final long INLINE = 0xe7037ed1a0b428dbL;
+    
+    // Prevent instantiation
+    private ShapeFingerprint() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+    
+    /**
+     * Returns the fingerprint of a value, walking it once with the mapper's serializers.
+     * 
+     * @param mapper The mapper whose serializers walk the value
+     * @param value The value to fingerprint
+     * @return The fingerprint
+     * @throws IOException if the value cannot be serialized
+     */
+    static long of(final ObjectMapper mapper, final Object value) throws IOException {
+        final Hasher hasher = new Hasher(mapper);
+        mapper.writeValue(hasher, value);
+        // Size bucket: the number of significant bits of the text length, doubling from one to the next
+        return mix(hasher.shape ^ mix(64 - Long.numberOfLeadingZeros(hasher.size)));
+    }
+    
+    private static long mix(final long value) {
+        long h = value * 0x9e3779b97f4a7c15L;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+    
+    /**
+     * Generator combining the shape of each container when it ends into the shape of its parent.
+     */
+    private static final class Hasher extends GeneratorBase {
+        
+        long shape;
+        long size;
+        
+        // Open containers, innermost last: keys and values so far (objects), first item shape (arrays)
+        private long[] hashes = new long[16];
+        private long[] keys = new long[16];
+        private boolean[] arrays = new boolean[16];
+        private boolean[] uniform = new boolean[16];
+        private int[] counts = new int[16];
+        // Objects: the set of their keys (arrays: of their first item) and whether a field holds an object or array
+        private long[] keySets = new long[16];
+        private boolean[] nested = new boolean[16];
+        // Arrays: whether every item is an object with the keys of the first, and whether the first is nested
+        private boolean[] objects = new boolean[16];
+        private boolean[] sameKeys = new boolean[16];
+        private boolean[] firstNested = new boolean[16];
+        private int depth;
+        
+        Hasher(final ObjectMapper mapper) {
+            super(JsonGenerator.Feature.collectDefaults(), mapper);
+        }
+        
+        @Override
+        public void writeStartObject() throws IOException {
+            _verifyValueWrite("start an object");
+            _writeContext = _writeContext.createChildObjectContext();
+            push(false);
+        }
+        
+        @Override
+        public void writeEndObject() throws IOException {
+            if (!_writeContext.inObject()) {
+                _reportError("Current context not Object but " + _writeContext.typeDesc());
+            }
+            _writeContext = _writeContext.clearAndGetParent();
+            depth--;
+            // Fields are combined in any order, as maps may not keep one
+            value(mix(OBJECT ^ hashes[depth]), true, true);
+        }
+        
+        @Override
+        public void writeStartArray() throws IOException {
+            _verifyValueWrite("start an array");
+            _writeContext = _writeContext.createChildArrayContext();
+            push(true);
+        }
+        
+        @Override
+        public void writeEndArray() throws IOException {
+            if (!_writeContext.inArray()) {
+                _reportError("Current context not Array but " + _writeContext.typeDesc());
+            }
+            _writeContext = _writeContext.clearAndGetParent();
+            depth--;
+            // Arrays of one shape match whatever their length; others by their first item and layout
+            value(mix((uniform[depth] ? ARRAY : MIXED_ARRAY) ^ hashes[depth] ^ layout(depth)), true, false);
+        }
+        
+        @Override
+        public void writeFieldName(final String name) throws IOException {
+            if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+                _reportError("Can not write a field name, expecting a value");
+            }
+            keys[depth - 1] = name.hashCode();
+            size += name.length();
+        }
+        
+        @Override
+        public void writeFieldName(final SerializableString name) throws IOException {
+            writeFieldName(name.getValue());
+        }
+        
+        @Override
+        public void writeString(final String text) throws IOException {
+            if (text == null) {
+                writeNull();
+                return;
+            }
+            scalar(STRING, text.length());
+        }
+        
+        @Override
+        public void writeString(final char[] text, final int offset, final int len) throws IOException {
+            scalar(STRING, len);
+        }
+        
+        @Override
+        public void writeRawUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+            scalar(STRING, length);
+        }
+        
+        @Override
+        public void writeUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+            scalar(STRING, length);
+        }
+        
+        @Override
+        public void writeRaw(final String text) {
+            size += text.length();
+        }
+        
+        @Override
+        public void writeRaw(final String text, final int offset, final int len) {
+            size += len;
+        }
+        
+        @Override
+        public void writeRaw(final char[] text, final int offset, final int len) {
+            size += len;
+        }
+        
+        @Override
+        public void writeRaw(final char c) {
+            size++;
+        }
+        
+        @Override
+        public void writeBinary(final Base64Variant variant, final byte[] data, final int offset, final int len)
+                throws IOException {
+            if (data == null) {
+                writeNull();
+                return;
+            }
+            scalar(STRING, (len + 2) / 3 * 4);
+        }
+        
+        @Override
+        public void writeNumber(final int value) throws IOException {
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeNumber(final long value) throws IOException {
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeNumber(final BigInteger value) throws IOException {
+            if (value == null) {
+                writeNull();
+                return;
+            }
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeNumber(final double value) throws IOException {
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeNumber(final float value) throws IOException {
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeNumber(final BigDecimal value) throws IOException {
+            if (value == null) {
+                writeNull();
+                return;
+            }
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeNumber(final String encodedValue) throws IOException {
+            if (encodedValue == null) {
+                writeNull();
+                return;
+            }
+            scalar(NUMBER, 1);
+        }
+        
+        @Override
+        public void writeBoolean(final boolean state) throws IOException {
+            scalar(BOOLEAN, 1);
+        }
+        
+        @Override
+        public void writeNull() throws IOException {
+            scalar(NULL, 1);
+        }
+        
+        @Override
+        public void flush() {
+            // Nothing is written
+        }
+        
+        @Override
+        protected void _releaseBuffers() {
+            // No recyclable buffers
+        }
+        
+        @Override
+        protected void _verifyValueWrite(final String typeMsg) throws IOException {
+            if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+                _reportError("Can not " + typeMsg + ", expecting field name");
+            }
+        }
+        
+        private void scalar(final long kind, final int length) throws IOException {
+            _verifyValueWrite("write a value");
+            size += length;
+            value(kind, false, false);
+        }
+        
+        /**
+         * Adds the shape of a complete value to its container, or sets the shape of the root.
+         * For an object or array just closed, its frame is still at the current depth.
+         */
+        private void value(final long valueShape, final boolean container, final boolean object) {
+            if (depth == 0) {
+                shape = valueShape;
+                return;
+            }
+            final int parent = depth - 1;
+            if (!arrays[parent]) {
+                hashes[parent] += mix(keys[parent] * 31 + valueShape);
+                keySets[parent] += mix(keys[parent]);
+                nested[parent] |= container;
+            } else if (counts[parent] == 0) {
+                hashes[parent] = valueShape;
+                objects[parent] = object;
+                if (object) {
+                    keySets[parent] = keySets[depth];
+                    firstNested[parent] = nested[depth];
+                }
+            } else {
+                if (hashes[parent] != valueShape) {
+                    uniform[parent] = false;
+                }
+                if (!object) {
+                    objects[parent] = false;
+                } else if (keySets[depth] != keySets[parent]) {
+                    sameKeys[parent] = false;
+                }
+            }
+            counts[parent]++;
+        }
+        
+        /**
+         * Returns the layout ToonEncoder writes an array in: tabular for several objects sharing
+         * the keys of the first, which holds no object or array; expanded for other objects;
+         * inline for anything else.
+         */
+        private long layout(final int array) {
+            if (!objects[array] || counts[array] == 0) {
+                return INLINE;
+            }
+            return sameKeys[array] && counts[array] > 1 && !firstNested[array] ? TABULAR : EXPANDED;
+        }
+        
+        private void push(final boolean array) {
+            if (depth == hashes.length) {
+                hashes = Arrays.copyOf(hashes, depth * 2);
+                keys = Arrays.copyOf(keys, depth * 2);
+                arrays = Arrays.copyOf(arrays, depth * 2);
+                uniform = Arrays.copyOf(uniform, depth * 2);
+                counts = Arrays.copyOf(counts, depth * 2);
+                keySets = Arrays.copyOf(keySets, depth * 2);
+                nested = Arrays.copyOf(nested, depth * 2);
+                objects = Arrays.copyOf(objects, depth * 2);
+                sameKeys = Arrays.copyOf(sameKeys, depth * 2);
+                firstNested = Arrays.copyOf(firstNested, depth * 2);
+            }
+            hashes[depth] = 0;
+            arrays[depth] = array;
+            uniform[depth] = true;
+            counts[depth] = 0;
+            keySets[depth] = 0;
+            nested[depth] = false;
+            objects[depth] = true;
+            sameKeys[depth] = true;
+            firstNested[depth] = false;
+            depth++;
+        }
+    }
+}
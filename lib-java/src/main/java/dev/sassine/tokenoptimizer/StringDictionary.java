@@ -0,0 +1,215 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary of distinct strings, looked up by char range.
+ * Each distinct value is stored once and gets a dense int code, and a value that is already
+ * known is found without creating a String for it. Open addressing over an int table keeps
+ * lookups free of boxing and entry objects.
+ * A dictionary can be bounded, in which case {@link #intern} stops adding values once full.
+ * A shared dictionary can be interned into from several threads; otherwise it is confined to one.
+ * Threads interning many repeated values go through a dictionary of their own in front of the
+ * shared one, so that values they have already seen are found without taking its lock.
+ */
+final class StringDictionary {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private final int maxSize;
+    private final boolean shared;
+    // Shared dictionary behind this one, asked for the values this one does not know yet
+    private final StringDictionary backing;
+    // Set once a shared dictionary is full: the table no longer changes and is read without the lock
+    private volatile boolean full;
+    
+    // Hash slots holding code + 1 (0 is empty), and the value and hash of each code
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+    
+    /**
+     * Creates an unbounded dictionary.
+     */
+    StringDictionary() {
+        this(Integer.MAX_VALUE, false);
+    }
+    
+    /**
+     * Creates a dictionary holding at most the given number of values through {@link #intern}.
+     * 
+     * @param maxSize The maximum number of distinct values
+     * @param shared Whether {@link #intern} may be called from several threads
+     */
+    StringDictionary(final int maxSize, final boolean shared) {
+        this.maxSize = maxSize;
+        this.shared = shared;
+        this.backing = null;
+    }
+    
+    /**
+     * Creates a dictionary confined to one thread in front of a shared one, with the same bound.
+     * It returns the shared instance of each value, and only interns into the shared dictionary
+     * the values it has not seen yet.
+     * 
+     * @param backing The shared dictionary
+     */
+    StringDictionary(final StringDictionary backing) {
+        this.maxSize = backing.maxSize;
+        this.shared = false;
+        this.backing = backing;
+    }
+    
+    /**
+     * Returns the code of a value, adding it if it is new.
+     * 
+     * @param buf The buffer holding the value
+     * @param offset Offset of the first char
+     * @param length Number of chars
+     * @return The code of the value
+     */
+    int code(final char[] buf, final int offset, final int length) {
+        final int hash = hash(buf, offset, length);
+        final int slot = find(hash, buf, offset, length);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+        return add(new String(buf, offset, length), hash, slot);
+    }
+    
+    /**
+     * Returns the shared instance of a value, adding it if it is new and the dictionary is not full.
+     * Once full, values not already known are returned as new strings.
+     * 
+     * @param buf The buffer holding the value
+     * @param offset Offset of the first char
+     * @param length Number of chars
+     * @return The value
+     */
+    String intern(final char[] buf, final int offset, final int length) {
+        return intern(buf, offset, length, true);
+    }
+    
+    /**
+     * Returns the shared instance of a value, adding it if it is new and the dictionary is not full;
+     * values not interned are returned as new strings if create is set, or else as null.
+     */
+    private String intern(final char[] buf, final int offset, final int length, final boolean create) {
+        if (shared && !full) {
+            synchronized (this) {
+                return lookup(buf, offset, length, create);
+            }
+        }
+        return lookup(buf, offset, length, create);
+    }
+    
+    private String lookup(final char[] buf, final int offset, final int length, final boolean create) {
+        final int hash = hash(buf, offset, length);
+        final int slot = find(hash, buf, offset, length);
+        if (slots[slot] != 0) {
+            return values[slots[slot] - 1];
+        }
+        final String value;
+        if (size >= maxSize) {
+            // A dictionary in front of a shared one only holds values of the shared one: once full, it holds them all
+            value = null;
+        } else if (backing != null) {
+            value = backing.intern(buf, offset, length, false);
+        } else {
+            value = new String(buf, offset, length);
+        }
+        if (value == null) {
+            return create ? new String(buf, offset, length) : null;
+        }
+        add(value, hash, slot);
+        if (shared && size == maxSize) {
+            // Publishes the final table to the readers that skip the lock
+            full = true;
+        }
+        return value;
+    }
+    
+    /**
+     * Returns the value of a code.
+     * 
+     * @param code A code returned by {@link #code}
+     * @return The value
+     */
+    String value(final int code) {
+        return values[code];
+    }
+    
+    /**
+     * Returns the number of distinct values.
+     * 
+     * @return The dictionary size
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the slot holding the value, or the empty slot where it belongs.
+     */
+    private int find(final int hash, final char[] buf, final int offset, final int length) {
+        final int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            final int slot = slots[i];
+            if (slot == 0) {
+                return i;
+            }
+            final int code = slot - 1;
+            if (hashes[code] == hash && matches(values[code], buf, offset, length)) {
+                return i;
+            }
+        }
+    }
+    
+    private int add(final String value, final int hash, final int slot) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        final int code = size++;
+        values[code] = value;
+        hashes[code] = hash;
+        slots[slot] = code + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return code;
+    }
+    
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        final int mask = slots.length - 1;
+        for (int code = 0; code < size; code++) {
+            int i = hashes[code] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = code + 1;
+        }
+    }
+    
+    private static int hash(final char[] buf, final int offset, final int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    private static boolean matches(final String value, final char[] buf, final int offset, final int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,7 +2,10 @@ package dev.sassine.tokenoptimizer;
 
 import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
 import com.knuddels.jtokkit.api.ModelType;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -17,8 +20,14 @@ public final class TokenCounter {
     private static final double WORDS_PER_TOKEN = 0.75;
     private static final int MIN_TOKEN_COUNT = 0;
     
-    // Cache for tiktoken encodings to avoid repeated initialization
-    private static final Map<ModelType, Encoding> ENCODING_CACHE = new ConcurrentHashMap<>();
+    // Characters counted at a time by bounded counting, before checking the limit
+    private static final int COUNT_CHUNK_LENGTH = 4096;
+    
+    // Calls made on each path by warmUp, here and in TokenOptimizer, enough for the JIT to compile them
+    static final int WARM_UP_ITERATIONS = 200;
+    
+    // Cache for tiktoken encodings, shared by the models of each encoding type
+    private static final Map<EncodingType, Encoding> ENCODING_CACHE = new ConcurrentHashMap<>();
     
     // Prevent instantiation
     private TokenCounter() {
@@ -66,6 +75,112 @@ public final class TokenCounter {
         return countTokensGeneric(text);
     }
     
+    /**
+     * Counts the approximate number of tokens in a string using generic estimation, stopping
+     * as soon as the count is known to exceed a limit.
+     * 
+     * @param text The text to count tokens in
+     * @param limit The highest count that has to be exact
+     * @return The number of tokens if it is at most the limit, otherwise a lower bound greater than the limit
+     * @throws IllegalArgumentException if text is null or limit is negative
+     */
+    public static int countTokensUpTo(final String text, final int limit) {
+        return countTokensUpTo(text, null, limit);
+    }
+    
+    /**
+     * Counts tokens in a string using the specified model's tokenizer, stopping as soon as the
+     * count is known to exceed a limit. Counting a long text only up to the count that matters,
+     * such as the count of a smaller alternative, skips tokenizing the rest of it.
+     * If modelType is null, uses generic estimation algorithm.
+     * 
+     * @param text The text to count tokens in
+     * @param modelType The tiktoken ModelType to use for counting (null for generic estimation)
+     * @param limit The highest count that has to be exact
+     * @return The number of tokens if it is at most the limit, otherwise a lower bound greater than the limit
+     * @throws IllegalArgumentException if text is null or limit is negative
+     */
+    public static int countTokensUpTo(final String text, final ModelType modelType, final int limit) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        
+        if (text.isEmpty()) {
+            return MIN_TOKEN_COUNT;
+        }
+        if (limit == Integer.MAX_VALUE) {
+            return countTokens(text, modelType);
+        }
+        
+        if (modelType != null) {
+            try {
+                return countTokensWithTiktokenUpTo(text, getEncoding(modelType), limit);
+            } catch (Exception e) {
+                // Fallback to generic estimation if tiktoken fails
+                return countTokensGenericUpTo(text, limit);
+            }
+        }
+        return countTokensGenericUpTo(text, limit);
+    }
+    
+    /**
+     * Loads the tiktoken vocabularies of the given models and runs the counting paths on a
+     * sample until the JIT has compiled them, so the first requests of a service do not pay
+     * for either. Models sharing an encoding load it once. Generic estimation is always
+     * warmed up; null models are ignored.
+     * 
+     * @param modelTypes The models whose encodings are loaded
+     * @throws IllegalArgumentException if modelTypes is null
+     * @throws RuntimeException if an encoding cannot be loaded
+     */
+    public static void warmUp(final ModelType... modelTypes) {
+        if (modelTypes == null) {
+            throw new IllegalArgumentException("Model types cannot be null");
+        }
+        
+        // One model per encoding type is enough, the others share its encoding
+        final Map<EncodingType, ModelType> models = new EnumMap<>(EncodingType.class);
+        for (final ModelType modelType : modelTypes) {
+            if (modelType != null && models.putIfAbsent(modelType.getEncodingType(), modelType) == null) {
+                getEncoding(modelType);
+            }
+        }
+        
+        final String sample = warmUpSample();
+        int sink = 0;
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            sink += countTokensGeneric(sample) + countTokensGenericUpTo(sample, i);
+            for (final ModelType modelType : models.values()) {
+                sink += countTokensWithTiktoken(sample, modelType)
+                        + countTokensWithTiktokenUpTo(sample, getEncoding(modelType), i);
+            }
+        }
+        if (sink < 0) {
+            // Keeps the counts observable so the warm-up loop is not removed
+            throw new AssertionError("Negative token count");
+        }
+    }
+    
+    /**
+     * Returns a few kilobytes of JSON and prose to warm up the counting paths with.
+     */
+    private static String warmUpSample() {
+        final StringBuilder sample = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 40; i++) {
+            sample.append(i == 0 ? "" : ",").append("{\"id\":").append(i * 7919)
+                    .append(",\"name\":\"Item ").append(i).append("\",\"price\":").append(i * 3.25)
+                    .append(",\"active\":").append(i % 2 == 0).append('}');
+        }
+        sample.append("],\"note\":\"");
+        for (int i = 0; i < 20; i++) {
+            sample.append("The quick brown fox jumps over the lazy dog, café déjà vu. ");
+        }
+        return sample.append("\"}\n").toString();
+    }
+    
     /**
      * Counts tokens using tiktoken encoding for accurate model-specific counting.
      * 
@@ -75,23 +190,93 @@ public final class TokenCounter {
      */
     private static int countTokensWithTiktoken(final String text, final ModelType modelType) {
         try {
-            // Get encoding from cache or create new one
-            final Encoding encoding = ENCODING_CACHE.computeIfAbsent(modelType, type -> {
-                try {
-                    return Encodings.newDefaultEncodingRegistry().getEncodingForModel(type);
-                } catch (Exception e) {
-                    throw new RuntimeException("Failed to load encoding for model: " + type, e);
-                }
-            });
-            
-            // Encode text and return token count
-            return encoding.encode(text).size();
+            // Count without building the list of token ids
+            return getEncoding(modelType).countTokens(text);
         } catch (Exception e) {
             // Fallback to generic estimation if tiktoken fails
             return countTokensGeneric(text);
         }
     }
     
+    /**
+     * Counts tokens with tiktoken one chunk at a time, stopping at the first chunk that takes
+     * the count past the limit. Chunks end where every BPE pre-tokenizer ends a piece (see
+     * {@link #isPieceBoundary(String, int)}), and BPE never merges across pieces, so the counts
+     * of the chunks add up to the count of the whole text.
+     * 
+     * @param text The text to count tokens in
+     * @param encoding The tiktoken encoding
+     * @param limit The highest count that has to be exact
+     * @return The number of tokens if it is at most the limit, otherwise a lower bound greater than the limit
+     */
+    private static int countTokensWithTiktokenUpTo(final String text, final Encoding encoding, final int limit) {
+        final int length = text.length();
+        int count = 0;
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(length, start + COUNT_CHUNK_LENGTH);
+            while (end < length && !isPieceBoundary(text, end)) {
+                end++;
+            }
+            count += encoding.countTokens(start == 0 && end == length ? text : text.substring(start, end));
+            if (count > limit) {
+                return count;
+            }
+            start = end;
+        }
+        return count;
+    }
+    
+    /**
+     * Returns true if the pre-tokenizers of the tiktoken encodings all start a new piece at
+     * the given index: at a digit after ASCII punctuation or letters (digits only join digits,
+     * or a space before them), or at ASCII punctuation other than an apostrophe after an ASCII
+     * letter (punctuation only joins punctuation, or the letters after it, and apostrophes
+     * may end a contraction).
+     * 
+     * @param text The text being counted
+     * @param index The index of the first character of the next chunk
+     * @return true if a chunk can end before the index
+     */
+    private static boolean isPieceBoundary(final String text, final int index) {
+        final char previous = text.charAt(index - 1);
+        final char current = text.charAt(index);
+        if (previous > ' ' && previous < 0x7F && (previous < '0' || previous > '9')) {
+            if (current >= '0' && current <= '9') {
+                return true;
+            }
+            final boolean letter = (previous >= 'a' && previous <= 'z') || (previous >= 'A' && previous <= 'Z');
+            return letter && current > ' ' && current < 0x7F && current != '\''
+                    && !Character.isLetterOrDigit(current);
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the tiktoken encoding of a model, from the cache or loaded on first use of its
+     * encoding type.
+     * 
+     * @param modelType The tiktoken ModelType
+     * @return The encoding
+     */
+    private static Encoding getEncoding(final ModelType modelType) {
+        return ENCODING_CACHE.computeIfAbsent(modelType.getEncodingType(), type -> {
+            try {
+                return Registry.INSTANCE.getEncoding(type);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load encoding: " + type.getName(), e);
+            }
+        });
+    }
+    
+    /**
+     * Holder of the tiktoken registry, created on first use. The lazy registry reads the
+     * vocabulary of an encoding only when it is first requested.
+     */
+    private static final class Registry {
+        static final EncodingRegistry INSTANCE = Encodings.newLazyEncodingRegistry();
+    }
+    
     /**
      * Counts tokens using generic estimation algorithm.
      * 
@@ -111,6 +296,35 @@ public final class TokenCounter {
         return (charBasedTokens + wordBasedTokens) / 2;
     }
     
+    /**
+     * Counts tokens using generic estimation, stopping once the estimate exceeds the limit.
+     * The estimate grows with each word, so the words after that point cannot lower it.
+     * 
+     * @param text The text to count tokens in
+     * @param limit The highest count that has to be exact
+     * @return The approximate number of tokens if it is at most the limit, otherwise a lower bound greater than the limit
+     */
+    private static int countTokensGenericUpTo(final String text, final int limit) {
+        final int charBasedTokens = (int) Math.ceil(text.length() / CHARS_PER_TOKEN);
+        
+        int wordCount = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                inWord = false;
+            } else if (!inWord) {
+                wordCount++;
+                inWord = true;
+                final int tokens = (charBasedTokens + (int) Math.ceil(wordCount / WORDS_PER_TOKEN)) / 2;
+                if (tokens > limit) {
+                    return tokens;
+                }
+            }
+        }
+        return (charBasedTokens + (int) Math.ceil(wordCount / WORDS_PER_TOKEN)) / 2;
+    }
+    
     /**
      * Counts words in a string efficiently without creating intermediate arrays.
      * 
@@ -1,9 +1,19 @@
 package dev.sassine.tokenoptimizer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.knuddels.jtokkit.api.ModelType;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Main class of the TokenOptimizer library.
@@ -109,78 +119,13 @@ public final class TokenOptimizer {
         }
         
         try {
-            // Convert to JSON using ObjectMapper
-            final String jsonContent = OBJECT_MAPPER.writeValueAsString(obj);
-            final int jsonTokenCount = TokenCounter.countTokens(jsonContent, modelType);
-            final int jsonCharacterCount = jsonContent.length();
-            final int jsonByteCount = jsonContent.getBytes(StandardCharsets.UTF_8).length;
-            
-            // Convert to TOON
-            final String toonContent = ToonConverter.toToon(obj);
-            final int toonTokenCount = TokenCounter.countTokens(toonContent, modelType);
-            final int toonCharacterCount = toonContent.length();
-            final int toonByteCount = toonContent.getBytes(StandardCharsets.UTF_8).length;
-            
-            // Determine optimal format based on criteria
-            final OptimizationResult.FormatType optimalFormat;
-            final String optimalContent;
-            final int optimalTokenCount;
-            final int optimalCharacterCount;
-            final int optimalByteCount;
-            
-            if (policy == null) {
-                // Default behavior: choose based on criteria
-                final boolean useToon = determineOptimalFormat(criteria, 
-                    jsonTokenCount, jsonCharacterCount, jsonByteCount,
-                    toonTokenCount, toonCharacterCount, toonByteCount);
-                
-                if (useToon) {
-                    optimalFormat = OptimizationResult.FormatType.TOON;
-                    optimalContent = toonContent;
-                    optimalTokenCount = toonTokenCount;
-                    optimalCharacterCount = toonCharacterCount;
-                    optimalByteCount = toonByteCount;
-                } else {
-                    optimalFormat = OptimizationResult.FormatType.JSON;
-                    optimalContent = jsonContent;
-                    optimalTokenCount = jsonTokenCount;
-                    optimalCharacterCount = jsonCharacterCount;
-                    optimalByteCount = jsonByteCount;
-                }
-            } else {
-                // Apply policy-based decision (policy uses tokens, but we still compare by criteria)
-                final Decision decision = applyPolicy(policy, jsonTokenCount, toonTokenCount);
-                if (decision.useToon) {
-                    optimalFormat = OptimizationResult.FormatType.TOON;
-                    optimalContent = toonContent;
-                    optimalTokenCount = toonTokenCount;
-                    optimalCharacterCount = toonCharacterCount;
-                    optimalByteCount = toonByteCount;
-                } else {
-                    optimalFormat = OptimizationResult.FormatType.JSON;
-                    optimalContent = jsonContent;
-                    optimalTokenCount = jsonTokenCount;
-                    optimalCharacterCount = jsonCharacterCount;
-                    optimalByteCount = jsonByteCount;
-                }
+            final OptimizationResult result = selectWithCache(obj, modelType, policy, criteria);
+            if (policy == null || policy.isRetainOtherContent()) {
+                return result;
             }
-            
-            return new OptimizationResult(
-                optimalFormat,
-                optimalContent,
-                optimalTokenCount,
-                optimalCharacterCount,
-                optimalByteCount,
-                jsonContent,
-                jsonTokenCount,
-                jsonCharacterCount,
-                jsonByteCount,
-                toonContent,
-                toonTokenCount,
-                toonCharacterCount,
-                toonByteCount
-            );
-            
+            final boolean toon = result.getOptimalFormat() != OptimizationResult.FormatType.TOON;
+            return new OptimizationResult(result, () -> renderOther(obj, toon));
+        
         } catch (IllegalArgumentException e) {
             throw e;
         } catch (Exception e) {
@@ -188,6 +133,348 @@ public final class TokenOptimizer {
         }
     }
     
+    /**
+     * Chooses the format of an object, from the decision cached for its shape when the policy
+     * has a decision cache.
+     * 
+     * @param obj The object to optimize
+     * @param modelType The tiktoken ModelType to use for counting (null for generic estimation)
+     * @param policy The optimization policy to apply (null for default: AUTO with 0% threshold)
+     * @param criteria The optimization criteria
+     * @return OptimizationResult containing the optimal format and comparison information
+     * @throws IOException if the object cannot be serialized
+     */
+    private static OptimizationResult selectWithCache(final Object obj, final ModelType modelType,
+            final OptimizationPolicy policy, final OptimizationCriteria criteria) throws IOException {
+        final FormatDecisionCache cache = policy != null ? policy.getDecisionCache() : null;
+        if (cache == null || obj instanceof String) {
+            return select(obj, modelType, policy, criteria);
+        }
+        
+        final long key = FormatDecisionCache.key(ShapeFingerprint.of(OBJECT_MAPPER, obj), modelType);
+        final FormatDecisionCache.Decision decision = cache.get(key);
+        if (decision != null && !cache.sample()) {
+            return selectCached(obj, modelType, decision);
+        }
+        // Shapes seen for the first time may be predicted, sampled hits are measured in full
+        final OptimizationResult result;
+        if (decision == null) {
+            result = select(obj, modelType, policy, criteria);
+        } else {
+            final Rendering rendering = render(obj);
+            result = selectOptimal(rendering.json, rendering.toon, modelType, policy, criteria);
+        }
+        cache.put(key, result);
+        return result;
+    }
+    
+    /**
+     * Renders an object as minified JSON and as TOON.
+     * Beans and other objects Jackson has to introspect are walked once, their serializers
+     * feeding both writers from the same events. Maps and iterables are already trees, so
+     * each writer reads them directly with no conversion: TOON from events would have to
+     * buffer every array until its header can be written, which costs more than a second
+     * read of the tree. Strings keep their own TOON conversion (parsed as JSON documents
+     * when possible), and values TOON cannot write from events, such as raw JSON, fall back
+     * to separate renderings.
+     * 
+     * @param obj The object to render
+     * @return Both renderings
+     * @throws IOException if the object cannot be serialized
+     */
+    static Rendering render(final Object obj) throws IOException {
+        if (obj instanceof String || obj instanceof Map || obj instanceof Iterable) {
+            return new Rendering(OBJECT_MAPPER.writeValueAsString(obj), ToonConverter.toToon(obj));
+        }
+        
+        final StringWriter json = new StringWriter();
+        final StringBuilder toon = new StringBuilder();
+        try (JsonGenerator generator = new JsonToonGenerator(JsonGenerator.Feature.collectDefaults(), OBJECT_MAPPER,
+                OBJECT_MAPPER.getFactory().createGenerator(json), toon)) {
+            OBJECT_MAPPER.writeValue(generator, obj);
+        } catch (IOException | RuntimeException e) {
+            return new Rendering(OBJECT_MAPPER.writeValueAsString(obj), ToonConverter.toToon(obj));
+        }
+        return new Rendering(json.toString(), toon.toString());
+    }
+    
+    /**
+     * Chooses the format of an object, predicting it when the policy asks for it and the
+     * prediction is confident, and measuring both renderings otherwise.
+     * 
+     * @param obj The object to optimize
+     * @param modelType The tiktoken ModelType to use for counting (null for generic estimation)
+     * @param policy The optimization policy to apply (null for default: AUTO with 0% threshold)
+     * @param criteria The optimization criteria
+     * @return OptimizationResult containing the optimal format and comparison information
+     * @throws IOException if the object cannot be serialized
+     */
+    private static OptimizationResult select(final Object obj, final ModelType modelType,
+            final OptimizationPolicy policy, final OptimizationCriteria criteria) throws IOException {
+        if (policy != null && policy.isPredictFormat() && !(obj instanceof String)) {
+            final OptimizationResult predicted = selectPredicted(obj, modelType, policy);
+            if (predicted != null) {
+                return predicted;
+            }
+        }
+        final Rendering rendering = render(obj);
+        return selectOptimal(rendering.json, rendering.toon, modelType, policy, criteria);
+    }
+    
+    /**
+     * Renders and counts only the format cached for the shape of the object. The counts of
+     * the other format are estimated from the ratios cached with the decision.
+     * 
+     * @param obj The object to optimize
+     * @param modelType The tiktoken ModelType to use for counting (null for generic estimation)
+     * @param decision The decision cached for the shape of the object
+     * @return OptimizationResult containing the cached format and estimated comparison information
+     * @throws IOException if the object cannot be serialized
+     */
+    private static OptimizationResult selectCached(final Object obj, final ModelType modelType,
+            final FormatDecisionCache.Decision decision) throws IOException {
+        final boolean useToon = decision.format == OptimizationResult.FormatType.TOON;
+        final String content = renderOne(obj, useToon);
+        final int tokenCount = TokenCounter.countTokens(content, modelType);
+        final int characterCount = content.length();
+        final int byteCount = content.getBytes(StandardCharsets.UTF_8).length;
+        return selectOne(useToon, content, tokenCount, characterCount, byteCount,
+                (int) Math.round(tokenCount * decision.tokenRatio),
+                (int) Math.round(characterCount * decision.characterRatio),
+                (int) Math.round(byteCount * decision.byteRatio));
+    }
+    
+    /**
+     * Predicts the format the policy would choose from the shape of the object and, when the
+     * prediction is confident, renders and counts only that format. The counts of the other
+     * format are the predicted ones.
+     * 
+     * @param obj The object to optimize (not a String)
+     * @param modelType The tiktoken ModelType to use for counting (null for generic estimation)
+     * @param policy The optimization policy to apply
+     * @return The result, or null when the formats are too close to call (or the shape cannot be analyzed)
+     * @throws IOException if the object cannot be serialized
+     */
+    private static OptimizationResult selectPredicted(final Object obj, final ModelType modelType,
+            final OptimizationPolicy policy) throws IOException {
+        final ShapeCostModel.Prediction prediction;
+        try {
+            prediction = ShapeCostModel.predict(OBJECT_MAPPER, obj);
+        } catch (IOException e) {
+            // Raw values and other content the model cannot size: render both formats
+            return null;
+        }
+        final Boolean useToon = prediction.decide(OptimizationCriteria.TOKENS, modelType, policy);
+        if (useToon == null) {
+            return null;
+        }
+        
+        final String content = renderOne(obj, useToon);
+        final int tokenCount = TokenCounter.countTokens(content, modelType);
+        final int characterCount = content.length();
+        final int byteCount = content.getBytes(StandardCharsets.UTF_8).length;
+        if (useToon) {
+            return selectOne(true, content, tokenCount, characterCount, byteCount,
+                    prediction.json(OptimizationCriteria.TOKENS, modelType),
+                    prediction.json(OptimizationCriteria.CHARACTERS, modelType),
+                    prediction.json(OptimizationCriteria.BYTES, modelType));
+        }
+        return selectOne(false, content, tokenCount, characterCount, byteCount,
+                prediction.toon(OptimizationCriteria.TOKENS, modelType),
+                prediction.toon(OptimizationCriteria.CHARACTERS, modelType),
+                prediction.toon(OptimizationCriteria.BYTES, modelType));
+    }
+    
+    /**
+     * Renders an object in a single format.
+     */
+    private static String renderOne(final Object obj, final boolean toon) throws IOException {
+        return toon ? ToonConverter.toToon(obj) : OBJECT_MAPPER.writeValueAsString(obj);
+    }
+    
+    /**
+     * Renders the format of an object that a result does not keep, when it is requested.
+     */
+    private static String renderOther(final Object obj, final boolean toon) {
+        try {
+            return renderOne(obj, toon);
+        } catch (IOException e) {
+            throw new RuntimeException("Error rendering " + (toon ? "TOON" : "JSON") + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Builds the result of an optimization that rendered only the chosen format, with the
+     * other format's counts predicted and its content left out.
+     */
+    private static OptimizationResult selectOne(final boolean useToon, final String content,
+            final int tokenCount, final int characterCount, final int byteCount,
+            final int otherTokenCount, final int otherCharacterCount, final int otherByteCount) {
+        if (useToon) {
+            return new OptimizationResult(OptimizationResult.FormatType.TOON, content, tokenCount, characterCount,
+                    byteCount, null, otherTokenCount, otherCharacterCount, otherByteCount,
+                    content, tokenCount, characterCount, byteCount, true, false);
+        }
+        return new OptimizationResult(OptimizationResult.FormatType.JSON, content, tokenCount, characterCount,
+                byteCount, content, tokenCount, characterCount, byteCount,
+                null, otherTokenCount, otherCharacterCount, otherByteCount, true, false);
+    }
+    
+    /**
+     * Measures both renderings and builds the result for the format chosen by the policy or criteria.
+     * 
+     * @param jsonContent The JSON rendering
+     * @param toonContent The TOON rendering
+     * @param modelType The tiktoken ModelType to use for counting (null for generic estimation)
+     * @param policy The optimization policy to apply (null for default: AUTO with 0% threshold)
+     * @param criteria The optimization criteria
+     * @return OptimizationResult containing the optimal format and comparison information
+     */
+    private static OptimizationResult selectOptimal(final String jsonContent, final String toonContent,
+            final ModelType modelType, final OptimizationPolicy policy, final OptimizationCriteria criteria) {
+        final int jsonCharacterCount = jsonContent.length();
+        final int jsonByteCount = jsonContent.getBytes(StandardCharsets.UTF_8).length;
+        final int toonCharacterCount = toonContent.length();
+        final int toonByteCount = toonContent.getBytes(StandardCharsets.UTF_8).length;
+        
+        // With bounded counting, the shorter rendering is counted in full and the other one only up
+        // to the count where the decision would change: past it, its exact count cannot matter
+        final int jsonTokenCount;
+        final int toonTokenCount;
+        final boolean tokenCountLowerBound;
+        final boolean bounded = policy != null && policy.isBoundTokenCounts() && policy.getDecisionCache() == null
+                && policy.getPreferFormat() == PayloadFormat.AUTO;
+        if (!bounded) {
+            jsonTokenCount = TokenCounter.countTokens(jsonContent, modelType);
+            toonTokenCount = TokenCounter.countTokens(toonContent, modelType);
+            tokenCountLowerBound = false;
+        } else if (toonCharacterCount <= jsonCharacterCount) {
+            toonTokenCount = TokenCounter.countTokens(toonContent, modelType);
+            final int limit = Math.max(0, minJsonTokensForToon(policy, toonTokenCount) - 1);
+            jsonTokenCount = TokenCounter.countTokensUpTo(jsonContent, modelType, limit);
+            tokenCountLowerBound = jsonTokenCount > limit;
+        } else {
+            jsonTokenCount = TokenCounter.countTokens(jsonContent, modelType);
+            final int limit = Math.max(0, maxToonTokensForToon(policy, jsonTokenCount));
+            toonTokenCount = TokenCounter.countTokensUpTo(toonContent, modelType, limit);
+            tokenCountLowerBound = toonTokenCount > limit;
+        }
+        
+        // Determine optimal format based on criteria
+        final OptimizationResult.FormatType optimalFormat;
+        final String optimalContent;
+        final int optimalTokenCount;
+        final int optimalCharacterCount;
+        final int optimalByteCount;
+        
+        final boolean useToon;
+        if (policy == null) {
+            // Default behavior: choose based on criteria
+            useToon = determineOptimalFormat(criteria, 
+                jsonTokenCount, jsonCharacterCount, jsonByteCount,
+                toonTokenCount, toonCharacterCount, toonByteCount);
+        } else {
+            // Apply policy-based decision (policy uses tokens, but we still compare by criteria)
+            useToon = applyPolicy(policy, jsonTokenCount, toonTokenCount).useToon;
+        }
+        
+        if (useToon) {
+            optimalFormat = OptimizationResult.FormatType.TOON;
+            optimalContent = toonContent;
+            optimalTokenCount = toonTokenCount;
+            optimalCharacterCount = toonCharacterCount;
+            optimalByteCount = toonByteCount;
+        } else {
+            optimalFormat = OptimizationResult.FormatType.JSON;
+            optimalContent = jsonContent;
+            optimalTokenCount = jsonTokenCount;
+            optimalCharacterCount = jsonCharacterCount;
+            optimalByteCount = jsonByteCount;
+        }
+        
+        return new OptimizationResult(
+            optimalFormat,
+            optimalContent,
+            optimalTokenCount,
+            optimalCharacterCount,
+            optimalByteCount,
+            jsonContent,
+            jsonTokenCount,
+            jsonCharacterCount,
+            jsonByteCount,
+            toonContent,
+            toonTokenCount,
+            toonCharacterCount,
+            toonByteCount,
+            false,
+            tokenCountLowerBound
+        );
+    }
+    
+    /**
+     * Returns whether TOON wins by tokens: with the policy's savings threshold, or on ties without one.
+     */
+    private static boolean useToonByTokens(final OptimizationPolicy policy, final int jsonTokenCount,
+            final int toonTokenCount) {
+        return policy == null ? toonTokenCount <= jsonTokenCount : applyPolicy(policy, jsonTokenCount, toonTokenCount).useToon;
+    }
+    
+    /**
+     * Returns the smallest JSON token count for which TOON wins, given the TOON count.
+     * The decision only turns towards TOON as the JSON count grows, so any JSON count
+     * at or above it decides the same way.
+     * 
+     * @return The smallest winning JSON count, or Integer.MAX_VALUE if TOON cannot win
+     */
+    private static int minJsonTokensForToon(final OptimizationPolicy policy, final int toonTokenCount) {
+        if (policy == null) {
+            return toonTokenCount;
+        }
+        final double keep = 1.0 - policy.getMinSavingsPercentForSwitch() / 100.0;
+        if (keep <= 0.0) {
+            return toonTokenCount == 0 ? 1 : Integer.MAX_VALUE;
+        }
+        final double estimate = Math.max(toonTokenCount + 1.0, Math.ceil(toonTokenCount / keep));
+        if (estimate >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        // Settle the rounding of the estimate against the decision itself
+        int json = (int) estimate;
+        while (json > toonTokenCount + 1 && useToonByTokens(policy, json - 1, toonTokenCount)) {
+            json--;
+        }
+        while (!useToonByTokens(policy, json, toonTokenCount)) {
+            if (json == Integer.MAX_VALUE) {
+                return Integer.MAX_VALUE;
+            }
+            json++;
+        }
+        return json;
+    }
+    
+    /**
+     * Returns the largest TOON token count for which TOON wins, given the JSON count.
+     * The decision only turns towards JSON as the TOON count grows, so any TOON count
+     * above it decides the same way.
+     * 
+     * @return The largest winning TOON count, or -1 if TOON cannot win
+     */
+    private static int maxToonTokensForToon(final OptimizationPolicy policy, final int jsonTokenCount) {
+        if (policy == null) {
+            return jsonTokenCount;
+        }
+        final double keep = 1.0 - policy.getMinSavingsPercentForSwitch() / 100.0;
+        int toon = (int) Math.min(jsonTokenCount - 1.0, Math.floor(jsonTokenCount * keep));
+        // Settle the rounding of the estimate against the decision itself
+        while (toon >= 0 && !useToonByTokens(policy, jsonTokenCount, toon)) {
+            toon--;
+        }
+        while (toon + 1 < jsonTokenCount && useToonByTokens(policy, jsonTokenCount, toon + 1)) {
+            toon++;
+        }
+        return toon;
+    }
+    
     /**
      * Determines the optimal format based on the specified criteria.
      * 
@@ -256,6 +543,19 @@ public final class TokenOptimizer {
         }
     }
     
+    /**
+     * JSON and TOON renderings of the same value.
+     */
+    static final class Rendering {
+        final String json;
+        final String toon;
+        
+        Rendering(final String json, final String toon) {
+            this.json = json;
+            this.toon = toon;
+        }
+    }
+    
     /**
      * Internal class to represent the decision result.
      */
@@ -355,6 +655,8 @@ public final class TokenOptimizer {
      * Optimizes a JSON string by comparing JSON vs TOON based on the specified criteria.
      * Uses the specified tiktoken ModelType for accurate token counting (only used when criteria is TOKENS).
      * If modelType is null, uses generic estimation algorithm.
+     * When the policy does not retain the other content and TOON wins, the result keeps the
+     * JSON string as given, to transcode JSON from on request, in place of the minified JSON.
      * 
      * @param jsonString The JSON string to be optimized
      * @param modelType The tiktoken ModelType to use for counting (null for generic estimation, only used for TOKENS criteria)
@@ -375,12 +677,22 @@ public final class TokenOptimizer {
         }
         
         try {
-            // Parse JSON to object
-            final Object obj = OBJECT_MAPPER.readValue(trimmed, Object.class);
-            
-            // Use the main optimization method with modelType, policy, and criteria
-            return optimize(obj, modelType, policy, criteria);
+            // Render minified JSON and TOON from the same token stream, without an object tree
+            final StringWriter jsonContent = new StringWriter(trimmed.length());
+            final StringBuilder toonContent = new StringBuilder(trimmed.length());
+            transcodeJson(trimmed, jsonContent, toonContent);
             
+            final OptimizationResult result = selectOptimal(jsonContent.toString(), toonContent.toString(), modelType,
+                    policy, criteria);
+            if (policy == null || policy.isRetainOtherContent()) {
+                return result;
+            }
+            // JSON won: TOON is transcoded from the minified JSON the result keeps; TOON won: JSON
+            // is transcoded from the input, which the result keeps instead
+            final boolean toon = result.getOptimalFormat() != OptimizationResult.FormatType.TOON;
+            final String source = toon ? result.getOptimalContent() : trimmed;
+            return new OptimizationResult(result, () -> transcodeOther(source, toon));
+        
         } catch (IllegalArgumentException e) {
             throw e;
         } catch (Exception e) {
@@ -388,6 +700,53 @@ public final class TokenOptimizer {
         }
     }
     
+    /**
+     * Transcodes a JSON document to minified JSON, TOON, or both from one token stream.
+     * 
+     * @param json The JSON document
+     * @param jsonContent Receives the minified JSON (null to skip it)
+     * @param toonContent Receives the TOON (null to skip it)
+     * @throws IOException if the document cannot be parsed
+     */
+    private static void transcodeJson(final String json, final StringWriter jsonContent,
+            final StringBuilder toonContent) throws IOException {
+        final ToonEmitter toon = toonContent != null ? new ToonEmitter(toonContent) : null;
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json);
+                JsonGenerator generator = jsonContent != null
+                        ? OBJECT_MAPPER.getFactory().createGenerator(jsonContent) : null) {
+            // Only the first value is transcoded, as the TOON rendering holds a single document
+            while (parser.nextToken() != null) {
+                if (generator != null) {
+                    generator.copyCurrentEvent(parser);
+                }
+                if (toon != null) {
+                    toon.copyCurrentEvent(parser);
+                }
+                if (parser.getParsingContext().inRoot()) {
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Renders the format of a JSON document that a result does not keep, when it is requested.
+     */
+    private static String transcodeOther(final String json, final boolean toon) {
+        try {
+            if (toon) {
+                final StringBuilder toonContent = new StringBuilder(json.length());
+                transcodeJson(json, null, toonContent);
+                return toonContent.toString();
+            }
+            final StringWriter jsonContent = new StringWriter(json.length());
+            transcodeJson(json, jsonContent, null);
+            return jsonContent.toString();
+        } catch (IOException e) {
+            throw new RuntimeException("Error rendering " + (toon ? "TOON" : "JSON") + ": " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Returns only the optimized content (without comparison information).
      * Uses generic token estimation algorithm.
@@ -536,6 +895,7 @@ public final class TokenOptimizer {
     
     /**
      * Converts a TOON string to a specific class type.
+     * The TOON text is bound directly by Jackson, without an intermediate Map tree.
      * 
      * @param <T> The target type
      * @param toonString The TOON string to be converted
@@ -545,18 +905,75 @@ public final class TokenOptimizer {
      * @throws RuntimeException if conversion fails
      */
     public static <T> T fromToon(final String toonString, final Class<T> clazz) {
-        if (clazz == null) {
-            throw new IllegalArgumentException("Class cannot be null");
+        return ToonConverter.fromToon(toonString, clazz);
+    }
+    
+    /**
+     * Prepares the optimizer for the first requests of a service: loads the tiktoken
+     * vocabularies of the given models and runs optimization, JSON and TOON conversions and
+     * token counting on sample payloads until the JIT has compiled them. Call it once at
+     * startup; without models, only generic estimation is warmed up.
+     * 
+     * @param modelTypes The models that will be used for counting
+     * @throws IllegalArgumentException if modelTypes is null
+     * @throws RuntimeException if an encoding cannot be loaded or a conversion fails
+     * @see TokenCounter#warmUp(ModelType...)
+     */
+    public static void warmUp(final ModelType... modelTypes) {
+        TokenCounter.warmUp(modelTypes);
+        
+        // Counting with each model is warmed up above, the conversions with the first one
+        final List<Object> payloads = warmUpPayloads();
+        final ModelType modelType = modelTypes.length > 0 ? modelTypes[0] : null;
+        for (int i = 0; i < TokenCounter.WARM_UP_ITERATIONS; i++) {
+            for (final Object payload : payloads) {
+                final OptimizationResult result = optimize(payload, modelType);
+                optimizeFromJson(result.getJsonContent(), modelType);
+                fromToon(result.getToonContent());
+                fromToonToJson(result.getToonContent());
+            }
+            fromToon(ToonConverter.toToon(payloads.get(0)), WarmUpItem[].class);
+        }
+    }
+    
+    /**
+     * Returns sample payloads for warmUp: beans, a table of maps, and nested maps and lists.
+     */
+    private static List<Object> warmUpPayloads() {
+        final List<WarmUpItem> items = new ArrayList<>();
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(new WarmUpItem(i, "Item " + i, i * 3.25, i % 2 == 0));
+            final Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("name", "Row " + i);
+            row.put("tags", Arrays.asList("a", "b"));
+            rows.add(row);
+        }
+        final Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("title", "Sample document, with text: café");
+        nested.put("meta", Collections.singletonMap("count", rows.size()));
+        nested.put("rows", rows);
+        return Arrays.asList(items, rows, nested);
+    }
+    
+    /**
+     * Bean rendered and bound by warmUp.
+     */
+    static final class WarmUpItem {
+        public int id;
+        public String name;
+        public double price;
+        public boolean active;
+        
+        WarmUpItem() {
         }
         
-        try {
-            final Object obj = ToonConverter.fromToon(toonString);
-            return OBJECT_MAPPER.convertValue(obj, clazz);
-        } catch (IllegalArgumentException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new RuntimeException("Error converting TOON to " + clazz.getSimpleName() + ": " + e.getMessage(), e);
+        WarmUpItem(final int id, final String name, final double price, final boolean active) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+            this.active = active;
         }
     }
 }
-
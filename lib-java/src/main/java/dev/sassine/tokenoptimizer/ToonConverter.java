@@ -1,7 +1,30 @@
 package dev.sassine.tokenoptimizer;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.json.DupDetector;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.util.ArrayList;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -12,27 +35,12 @@ import java.util.Map;
 public final class ToonConverter {
     
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ToonMapper TOON_MAPPER = new ToonMapper();
     
-    // TOON format constants
-    private static final String NEWLINE = "\n";
-    private static final String INDENT = "  ";
-    private static final String TOON_SEPARATOR = ",";
-    private static final String TOON_KEY_VALUE_SEPARATOR = ":";
-    private static final String TOON_ARRAY_START = "[";
-    private static final String TOON_ARRAY_END = "]";
-    private static final String TOON_OBJECT_START = "{";
-    private static final String TOON_OBJECT_END = "}";
-    private static final String TOON_NULL = "null";
-    private static final String QUOTE = "\"";
-    
-    // Character constants for quote checking
-    private static final char SPACE = ' ';
-    private static final char COMMA = ',';
-    private static final char COLON = ':';
-    private static final char ARRAY_START = '[';
-    private static final char ARRAY_END = ']';
-    private static final char OBJECT_START = '{';
-    private static final char OBJECT_END = '}';
+    /**
+     * Default maximum number of nested objects and arrays when encoding and decoding.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 1000;
     
     // Prevent instantiation
     private ToonConverter() {
@@ -41,31 +49,38 @@ public final class ToonConverter {
     
     /**
      * Converts an object to TOON format.
+     * Root lists and arrays are written as TOON arrays (tabular when their items share one set of
+     * keys), and scalars as their TOON value. Strings holding a JSON document are converted from JSON.
      * 
      * @param obj The object to be converted
      * @return String in TOON format
-     * @throws IllegalArgumentException if obj is null
+     * @throws IllegalArgumentException if obj is null, or a Map/Iterable nested deeper than {@link #DEFAULT_MAX_DEPTH}
      */
     public static String toToon(final Object obj) {
         if (obj == null) {
             throw new IllegalArgumentException("Object cannot be null");
         }
         
+        // Strings are treated as JSON documents when possible
+        if (obj instanceof String) {
+            try {
+                return jsonToToon((String) obj);
+            } catch (Exception e) {
+                return obj.toString();
+            }
+        }
+        
+        // Map/List trees are written without recursion, so their depth is bounded by DEFAULT_MAX_DEPTH
+        if (obj instanceof Map || obj instanceof Iterable) {
+            final StringBuilder out = new StringBuilder(ToonEncoder.estimateSize(obj));
+            write(obj, out);
+            return out.toString();
+        }
+        
         try {
-            // First, convert to Map for manipulation
-            @SuppressWarnings("unchecked")
-            final Map<String, Object> map = (Map<String, Object>) OBJECT_MAPPER.convertValue(obj, Map.class);
-            return convertMapToToon(map, "");
+            // Serialize straight to TOON with Jackson's serializers, no intermediate Map
+            return TOON_MAPPER.writeValueAsString(obj);
         } catch (Exception e) {
-            // If it fails, try to convert string directly using pattern matching
-            if (obj instanceof String) {
-                final String jsonString = (String) obj;
-                try {
-                    return jsonToToon(jsonString);
-                } catch (Exception ex) {
-                    return obj.toString();
-                }
-            }
             return obj.toString();
         }
     }
@@ -88,432 +103,159 @@ public final class ToonConverter {
             throw new IllegalArgumentException("JSON string cannot be empty");
         }
         
-        try {
-            @SuppressWarnings("unchecked")
-            final Map<String, Object> map = (Map<String, Object>) OBJECT_MAPPER.readValue(trimmed, Map.class);
-            return convertMapToToon(map, "");
+        final StringBuilder toon = new StringBuilder(trimmed.length());
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(trimmed)) {
+            transcodeJson(parser, toon);
+            return toon.toString();
         } catch (Exception e) {
             throw new RuntimeException("Error converting JSON to TOON: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Converts a Map to TOON format with proper hierarchy and indentation.
+     * Converts JSON read from a Reader to TOON written to a Writer.
+     * The JSON is transcoded token by token without building an object tree, so memory is
+     * bounded by the nesting depth and by the array currently being buffered (TOON array
+     * headers need the item count and schema before the first item).
+     * Neither the reader nor the writer is closed; the writer is flushed.
      * 
-     * @param map The map to be converted
-     * @param indent Current indentation level
-     * @return String in TOON format
+     * @param json The reader providing JSON
+     * @param toon The writer receiving TOON
+     * @throws IllegalArgumentException if json or toon is null, or the input is empty
+     * @throws RuntimeException if conversion fails
      */
-    private static String convertMapToToon(final Map<String, Object> map, final String indent) {
-        if (map == null || map.isEmpty()) {
-            return "";
+    public static void jsonToToon(final Reader json, final Writer toon) {
+        if (json == null) {
+            throw new IllegalArgumentException("JSON reader cannot be null");
         }
-        
-        final StringBuilder toon = new StringBuilder();
-        boolean first = true;
-        
-        for (final Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                toon.append(NEWLINE);
-            }
-            first = false;
-            
-            final String key = entry.getKey();
-            final Object value = entry.getValue();
-            
-            // Add the key with indentation
-            toon.append(indent).append(key);
-            
-            // Check if value is an array
-            if (value instanceof Iterable) {
-                final Iterable<?> iterable = (Iterable<?>) value;
-                final List<?> list = iterableToList(iterable);
-                if (isArrayOfObjects(list)) {
-                    // Array of objects: key[count]{...}: or key[count]:
-                    // No : before array, it's added inside convertArrayOfObjectsToToon
-                    convertArrayOfObjectsToToon(toon, list, indent);
-                } else {
-                    // Simple array: key[count]: value1,value2,value3
-                    // No : before array, it's added inside convertSimpleArrayToToon
-                    convertSimpleArrayToToon(toon, list);
-                }
-            } else {
-                // Non-array values need : separator
-                toon.append(TOON_KEY_VALUE_SEPARATOR);
-                appendValueToToon(toon, value, indent);
-            }
+        if (toon == null) {
+            throw new IllegalArgumentException("TOON writer cannot be null");
         }
         
-        return toon.toString();
-    }
-    
-    /**
-     * Appends a value to the TOON string builder with proper formatting.
-     * 
-     * @param toon The string builder to append to
-     * @param value The value to append
-     * @param indent Current indentation level
-     */
-    @SuppressWarnings("unchecked")
-    private static void appendValueToToon(final StringBuilder toon, final Object value, final String indent) {
-        if (value == null) {
-            toon.append(" ").append(TOON_NULL);
-        } else if (value instanceof Map) {
-            // Nested object - add newline and indent
-            toon.append(NEWLINE);
-            toon.append(convertMapToToon((Map<String, Object>) value, indent + INDENT));
-        } else if (value instanceof Iterable) {
-            final Iterable<?> iterable = (Iterable<?>) value;
-            // Array - check if it's an array of objects
-            final List<?> list = iterableToList(iterable);
-            if (isArrayOfObjects(list)) {
-                // Arrays of objects inside objects use expanded format
-                convertArrayOfObjectsToToon(toon, list, indent);
-            } else {
-                // Simple array - no space before, convertSimpleArrayToToon adds the format
-                convertSimpleArrayToToon(toon, list);
-            }
-        } else if (value instanceof String) {
-            toon.append(" ").append((String) value);
-        } else if (value instanceof Boolean) {
-            toon.append(" ").append(value);
-        } else if (value instanceof Number) {
-            toon.append(" ").append(value.toString());
-        } else {
-            toon.append(" ").append(value.toString());
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            transcodeJson(parser, toon);
+            toon.flush();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting JSON to TOON: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Converts an array of objects to TOON format.
-     * Format according to official library:
-     * For arrays with same structure: key[count]{prop1,prop2,prop3}:
-     *                                   val1,val2,val3
-     *                                   val4,val5,val6
-     * For arrays with different structures: key[count]:
-     *                                        - prop1: val1
-     *                                          prop2: val2
+     * Converts JSON read from an InputStream to UTF-8 TOON written to an OutputStream.
+     * See {@link #jsonToToon(Reader, Writer)} for the memory behaviour.
+     * Neither stream is closed; the output stream is flushed.
      * 
-     * @param toon The string builder to append to
-     * @param list The list of objects
-     * @param indent Current indentation level
+     * @param json The stream providing JSON (encoding is auto-detected)
+     * @param toon The stream receiving UTF-8 TOON
+     * @throws IllegalArgumentException if json or toon is null, or the input is empty
+     * @throws RuntimeException if conversion fails
      */
-    @SuppressWarnings("unchecked")
-    private static void convertArrayOfObjectsToToon(final StringBuilder toon, final List<?> list, final String indent) {
-        if (list.isEmpty()) {
-            toon.append(TOON_ARRAY_START).append(0).append(TOON_ARRAY_END).append(TOON_KEY_VALUE_SEPARATOR);
-            return;
+    public static void jsonToToon(final InputStream json, final OutputStream toon) {
+        if (json == null) {
+            throw new IllegalArgumentException("JSON stream cannot be null");
         }
-        
-        // Get first object to determine schema
-        final Object firstItem = list.get(0);
-        if (!(firstItem instanceof Map)) {
-            convertSimpleArrayToToon(toon, list);
-            return;
+        if (toon == null) {
+            throw new IllegalArgumentException("TOON stream cannot be null");
         }
         
-        final int count = list.size();
-        final String itemIndent = indent + INDENT;
-        final String propIndent = itemIndent + INDENT;
-        
-        // Check if all objects have the same structure (same keys in same order)
-        final Map<String, Object> firstMap = (Map<String, Object>) firstItem;
-        final List<String> schemaKeys = new ArrayList<>(firstMap.keySet());
-        final boolean hasUniformStructure = list.stream()
-            .allMatch(item -> item instanceof Map && 
-                    hasSameKeys((Map<String, Object>) item, schemaKeys));
-        
-        // Check if any object has nested arrays or objects (use expanded format in that case)
-        final boolean hasNestedStructures = schemaKeys.stream()
-            .anyMatch(key -> {
-                final Object value = firstMap.get(key);
-                return value instanceof Iterable || value instanceof Map;
-            });
-        
-        // Use compact format only if: uniform structure, more than 1 item, and no nested structures
-        if (hasUniformStructure && count > 1 && !hasNestedStructures) {
-            // Use compact format: key[count]{prop1,prop2,prop3}:
-            //                      val1,val2,val3
-            //                      val4,val5,val6
-            toon.append(TOON_ARRAY_START).append(count).append(TOON_ARRAY_END).append(TOON_OBJECT_START);
-            boolean firstKey = true;
-            for (final String key : schemaKeys) {
-                if (!firstKey) {
-                    toon.append(TOON_SEPARATOR);
-                }
-                firstKey = false;
-                toon.append(key);
-            }
-            toon.append(TOON_OBJECT_END).append(TOON_KEY_VALUE_SEPARATOR);
-            toon.append(NEWLINE).append(itemIndent);
-            
-            // Add values for each object
-            boolean isFirstItem = true;
-            for (final Object item : list) {
-                if (item instanceof Map) {
-                    if (!isFirstItem) {
-                        toon.append(NEWLINE).append(itemIndent);
-                    }
-                    isFirstItem = false;
-                    
-                    final Map<String, Object> itemMap = (Map<String, Object>) item;
-                    boolean firstVal = true;
-                    for (final String key : schemaKeys) {
-                        if (!firstVal) {
-                            toon.append(TOON_SEPARATOR);
-                        }
-                        firstVal = false;
-                        final Object value = itemMap.get(key);
-                        appendValueInline(toon, value);
-                    }
-                }
-            }
-        } else {
-            // Use expanded format: key[count]:
-            //                       - prop1: val1
-            //                         prop2: val2
-            toon.append(TOON_ARRAY_START).append(count).append(TOON_ARRAY_END).append(TOON_KEY_VALUE_SEPARATOR);
-            
-            // Add each object with - prefix and properties indented
-            boolean isFirstItem = true;
-            for (final Object item : list) {
-                if (item instanceof Map) {
-                    if (!isFirstItem) {
-                        toon.append(NEWLINE);
-                    }
-                    isFirstItem = false;
-                    
-                    final Map<String, Object> itemMap = (Map<String, Object>) item;
-                    
-                    // Start item with - prefix
-                    toon.append(NEWLINE).append(itemIndent).append("- ");
-                    
-                    // Add properties: first on same line as -, others on new lines
-                    boolean firstProp = true;
-                    for (final Map.Entry<String, Object> entry : itemMap.entrySet()) {
-                        if (!firstProp) {
-                            toon.append(NEWLINE).append(propIndent);
-                        }
-                        
-                        final String propKey = entry.getKey();
-                        final Object propValue = entry.getValue();
-                        
-                        toon.append(propKey);
-                        // For arrays, don't add : before, the array format includes it
-                        if (propValue instanceof Iterable<?>) {
-                            final List<?> propList = iterableToList((Iterable<?>) propValue);
-                            if (isArrayOfObjects(propList)) {
-                                // Arrays of objects inside array items use expanded format
-                                convertArrayOfObjectsToToon(toon, propList, propIndent);
-                            } else {
-                                // Simple array - no : before, convertSimpleArrayToToon adds [count]:
-                                convertSimpleArrayToToon(toon, propList);
-                            }
-                        } else {
-                            // Non-array values need : separator
-                            toon.append(TOON_KEY_VALUE_SEPARATOR);
-                            appendValueToToon(toon, propValue, propIndent);
-                        }
-                        
-                        firstProp = false;
-                    }
-                }
-            }
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(toon, StandardCharsets.UTF_8));
+            transcodeJson(parser, writer);
+            writer.flush();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting JSON to TOON: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Checks if a map has the same keys as the provided list (in any order).
+     * Reads the first JSON value from the parser and writes it as TOON.
      * 
-     * @param map The map to check
-     * @param keys The list of expected keys
-     * @return true if map has exactly the same keys
+     * @param parser The JSON parser
+     * @param toon The sink receiving TOON
+     * @throws IOException if reading or writing fails
      */
-    private static boolean hasSameKeys(final Map<String, Object> map, final List<String> keys) {
-        if (map.size() != keys.size()) {
-            return false;
+    private static void transcodeJson(final JsonParser parser, final Appendable toon) throws IOException {
+        final ToonEmitter emitter = new ToonEmitter(toon);
+        while (parser.nextToken() != null) {
+            emitter.copyCurrentEvent(parser);
+            if (emitter.isComplete()) {
+                return;
+            }
         }
-        return keys.stream().allMatch(map::containsKey);
+        throw new IllegalArgumentException("JSON input cannot be empty");
     }
     
     /**
-     * Appends a value inline (for array values, without property names).
-     * Handles nested arrays, objects, and primitives according to TOON spec.
+     * Writes an object to the given sink in TOON format.
+     * Maps become the document body, iterables become a root array ([count]...) and scalars
+     * are written as-is; other objects are first converted to a Map by Jackson, as are values
+     * inside maps and iterables that are not maps, iterables, strings, numbers or booleans.
+     * The whole document is produced in a single pass straight into the sink, with open
+     * containers kept on an explicit stack, so deep documents cannot overflow the thread stack.
      * 
-     * @param toon The string builder to append to
-     * @param value The value to append
+     * @param obj The object to be written
+     * @param out The sink receiving TOON text (StringBuilder, Writer, ...)
+     * @throws IllegalArgumentException if obj or out is null, or obj is nested deeper than {@link #DEFAULT_MAX_DEPTH}
+     * @throws RuntimeException if writing fails
      */
-    private static void appendValueInline(final StringBuilder toon, final Object value) {
-        if (value == null) {
-            toon.append(TOON_NULL);
-        } else if (value instanceof Iterable) {
-            // Nested array - convert to TOON format inline
-            final Iterable<?> iterable = (Iterable<?>) value;
-            final List<?> list = iterableToList(iterable);
-            // Arrays inside array values are always treated as simple arrays
-            convertSimpleArrayToToon(toon, list);
-        } else if (value instanceof Map) {
-            // Nested object - this shouldn't happen in array values according to TOON spec
-            // But handle it gracefully by converting to compact representation
-            @SuppressWarnings("unchecked")
-            final Map<String, Object> map = (Map<String, Object>) value;
-            toon.append(TOON_OBJECT_START);
-            boolean first = true;
-            for (final Map.Entry<String, Object> entry : map.entrySet()) {
-                if (!first) {
-                    toon.append(TOON_SEPARATOR);
-                }
-                first = false;
-                toon.append(entry.getKey()).append(TOON_KEY_VALUE_SEPARATOR);
-                appendValueInline(toon, entry.getValue());
-            }
-            toon.append(TOON_OBJECT_END);
-        } else if (value instanceof String) {
-            final String str = (String) value;
-            // Strings need quotes if they contain special characters or are pure numbers
-            if (needsQuotesInArray(str)) {
-                toon.append(QUOTE).append(str).append(QUOTE);
-            } else {
-                toon.append(str);
-            }
-        } else if (value instanceof Number || value instanceof Boolean) {
-            toon.append(value.toString());
-        } else {
-            toon.append(value.toString());
-        }
+    public static void write(final Object obj, final Appendable out) {
+        write(obj, out, DEFAULT_MAX_DEPTH);
     }
     
     /**
-     * Checks if a string needs quotes when used in an array value.
-     * According to TOON spec: strings that are pure numbers need quotes to differentiate from numbers.
+     * Writes an object to the given sink in TOON format, allowing at most the given number of
+     * nested objects and arrays.
      * 
-     * @param str The string to check
-     * @return true if quotes are needed
+     * @param obj The object to be written
+     * @param out The sink receiving TOON text (StringBuilder, Writer, ...)
+     * @param maxDepth Maximum nesting depth (at least 1)
+     * @throws IllegalArgumentException if obj or out is null, maxDepth is below 1 or obj is nested deeper
+     * @throws RuntimeException if writing fails
      */
-    private static boolean needsQuotesInArray(final String str) {
-        if (str.isEmpty()) {
-            return true;
-        }
-        
-        // Check if string is a pure number (needs quotes to differentiate from number type)
-        boolean isNumeric = true;
-        for (int i = 0; i < str.length(); i++) {
-            final char c = str.charAt(i);
-            if (!Character.isDigit(c) && c != '.' && c != '-' && c != '+') {
-                isNumeric = false;
-                break;
-            }
+    public static void write(final Object obj, final Appendable out, final int maxDepth) {
+        if (obj == null) {
+            throw new IllegalArgumentException("Object cannot be null");
         }
-        if (isNumeric && str.length() > 0) {
-            return true; // Pure numeric strings need quotes
+        if (out == null) {
+            throw new IllegalArgumentException("Output cannot be null");
         }
-        
-        // Check for special characters that require quotes in array values
-        for (int i = 0; i < str.length(); i++) {
-            final char c = str.charAt(i);
-            if (c == SPACE || c == COMMA || c == COLON || c == ARRAY_START || c == ARRAY_END 
-                || c == OBJECT_START || c == OBJECT_END || c == '\n' || c == '\r') {
-                return true;
-            }
-        }
-        return false;
-    }
-    
-    /**
-     * Appends a property value to TOON format (for properties inside array items).
-     * 
-     * @param toon The string builder to append to
-     * @param value The value to append
-     * @param indent Current indentation level
-     */
-    @SuppressWarnings("unchecked")
-    private static void appendPropertyValueToToon(final StringBuilder toon, final Object value, final String indent) {
-        if (value == null) {
-            toon.append(" ").append(TOON_NULL);
-        } else if (value instanceof Map) {
-            // Nested object - add newline and indent
-            toon.append(NEWLINE);
-            toon.append(convertMapToToon((Map<String, Object>) value, indent + INDENT));
-        } else if (value instanceof Iterable) {
-            final Iterable<?> iterable = (Iterable<?>) value;
-            // Array - check if it's an array of objects
-            final List<?> list = iterableToList(iterable);
-            if (isArrayOfObjects(list)) {
-                // For arrays of objects inside array items, use nested format
-                convertArrayOfObjectsToToon(toon, list, indent);
-            } else {
-                // Simple array
-                convertSimpleArrayToToon(toon, list);
-            }
-        } else if (value instanceof String) {
-            toon.append(" ").append((String) value);
-        } else if (value instanceof Boolean) {
-            toon.append(" ").append(value);
-        } else if (value instanceof Number) {
-            toon.append(" ").append(value.toString());
-        } else {
-            toon.append(" ").append(value.toString());
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
         }
-    }
-    
-    /**
-     * Converts a simple array (primitives) to TOON format.
-     * Format: [count]: value1,value2,value3
-     * 
-     * @param toon The string builder to append to
-     * @param list The list of values
-     */
-    private static void convertSimpleArrayToToon(final StringBuilder toon, final List<?> list) {
-        final int count = list.size();
-        toon.append(TOON_ARRAY_START).append(count).append(TOON_ARRAY_END).append(TOON_KEY_VALUE_SEPARATOR);
         
-        if (!list.isEmpty()) {
-            toon.append(" ");
-            boolean first = true;
-            for (final Object item : list) {
-                if (!first) {
-                    toon.append(TOON_SEPARATOR);
-                }
-                first = false;
-                appendValueInline(toon, item);
-            }
+        try {
+            ToonEncoder.write(obj, out, maxDepth);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing TOON: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Checks if a list contains only Map objects (array of objects).
-     * 
-     * @param list The list to check
-     * @return true if all items are Maps
+     * Returns the value itself when it is already a Map, Iterable or scalar,
+     * otherwise converts it to a Map/List tree with Jackson.
      */
-    private static boolean isArrayOfObjects(final List<?> list) {
-        if (list.isEmpty()) {
-            return false;
+    static Object toTree(final Object obj) {
+        if (obj instanceof Map || obj instanceof Iterable || obj instanceof String
+                || obj instanceof Number || obj instanceof Boolean) {
+            return obj;
         }
-        return list.stream().allMatch(item -> item instanceof Map);
-    }
-    
-    /**
-     * Converts an Iterable to a List for easier manipulation.
-     * 
-     * @param iterable The iterable to convert
-     * @return List containing all items
-     */
-    private static List<?> iterableToList(final Iterable<?> iterable) {
-        final List<Object> list = new ArrayList<>();
-        for (final Object item : iterable) {
-            list.add(item);
-        }
-        return list;
+        return OBJECT_MAPPER.convertValue(obj, Object.class);
     }
     
     /**
      * Converts a TOON string to a JSON string.
+     * Parse events are written straight to a JSON generator, without building an object tree.
      * 
      * @param toonString The TOON string to be converted
      * @return String in JSON format
      * @throws IllegalArgumentException if toonString is null or empty
-     * @throws RuntimeException if conversion fails
+     * @throws RuntimeException if conversion fails or an object repeats a key
      */
     public static String toJson(final String toonString) {
         if (toonString == null) {
@@ -525,564 +267,336 @@ public final class ToonConverter {
             throw new IllegalArgumentException("TOON string cannot be empty");
         }
         
-        try {
-            final Object obj = fromToon(trimmed);
-            return OBJECT_MAPPER.writeValueAsString(obj);
+        final char[] chars = trimmed.toCharArray();
+        final StringWriter json = new StringWriter(chars.length + (chars.length >> 1));
+        try (ToonParser parser = new ToonParser(null, JsonParser.Feature.collectDefaults(), null, null,
+                chars, 0, chars.length, false);
+                JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(json)) {
+            transcodeToon(parser, generator);
         } catch (Exception e) {
             throw new RuntimeException("Error converting TOON to JSON: " + e.getMessage(), e);
         }
+        return json.toString();
     }
     
     /**
-     * Converts a TOON string to an Object (Map/List structure).
+     * Converts TOON read from a Reader to JSON written to a Writer.
+     * Parse events drive a JSON generator directly, without building an object tree, so memory
+     * is bounded by the nesting depth, the longest line and the keys of the open objects.
+     * Neither the reader nor the writer is closed; the writer is flushed.
      * 
-     * @param toonString The TOON string to be converted
-     * @return Object (typically Map or List) representing the TOON data
-     * @throws IllegalArgumentException if toonString is null or empty
-     * @throws RuntimeException if conversion fails
+     * @param toon The reader providing TOON
+     * @param json The writer receiving JSON
+     * @throws IllegalArgumentException if toon or json is null, or the input is empty
+     * @throws RuntimeException if conversion fails or an object repeats a key
      */
-    public static Object fromToon(final String toonString) {
-        if (toonString == null) {
-            throw new IllegalArgumentException("TOON string cannot be null");
+    public static void toonToJson(final Reader toon, final Writer json) {
+        if (toon == null) {
+            throw new IllegalArgumentException("TOON reader cannot be null");
         }
-        
-        final String trimmed = toonString.trim();
-        if (trimmed.isEmpty()) {
-            throw new IllegalArgumentException("TOON string cannot be empty");
+        if (json == null) {
+            throw new IllegalArgumentException("JSON writer cannot be null");
         }
         
-        try {
-            final ToonParser parser = new ToonParser(trimmed);
-            return parser.parse();
+        try (ToonParser parser = new ToonParser(null, JsonParser.Feature.collectDefaults(), null, toon);
+                JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(json)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            transcodeToon(parser, generator);
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
-            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
+            throw new RuntimeException("Error converting TOON to JSON: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Internal parser class for converting TOON strings to objects.
+     * Converts UTF-8 TOON read from an InputStream to UTF-8 JSON written to an OutputStream.
+     * See {@link #toonToJson(Reader, Writer)} for the memory behaviour.
+     * Neither stream is closed; the output stream is flushed.
+     * 
+     * @param toon The stream providing UTF-8 TOON
+     * @param json The stream receiving UTF-8 JSON
+     * @throws IllegalArgumentException if toon or json is null, or the input is empty
+     * @throws RuntimeException if conversion fails or an object repeats a key
      */
-    private static final class ToonParser {
-        private final String toon;
-        private int pos;
-        private final int length;
-        
-        ToonParser(final String toon) {
-            this.toon = toon;
-            this.pos = 0;
-            this.length = toon.length();
-        }
-        
-        /**
-         * Main parse method that returns the root object.
-         */
-        Object parse() {
-            skipWhitespace();
-            if (pos >= length) {
-                return new java.util.HashMap<String, Object>();
-            }
-            
-            // Check if it starts with an array indicator
-            if (peek() == ARRAY_START) {
-                return parseArray();
-            }
-            
-            // Otherwise parse as object
-            return parseObject("");
+    public static void toonToJson(final InputStream toon, final OutputStream json) {
+        if (toon == null) {
+            throw new IllegalArgumentException("TOON stream cannot be null");
+        }
+        if (json == null) {
+            throw new IllegalArgumentException("JSON stream cannot be null");
+        }
+        
+        final Reader reader = new InputStreamReader(toon, StandardCharsets.UTF_8);
+        try (ToonParser parser = new ToonParser(null, JsonParser.Feature.collectDefaults(), null, reader);
+                JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(json, JsonEncoding.UTF8)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            transcodeToon(parser, generator);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting TOON to JSON: " + e.getMessage(), e);
         }
-        
-        /**
-         * Parses a TOON object (key-value pairs with indentation).
-         */
-        @SuppressWarnings("unchecked")
-        private Map<String, Object> parseObject(final String baseIndent) {
-            final Map<String, Object> map = new java.util.HashMap<>();
-            
-            while (pos < length) {
-                skipWhitespace();
-                if (pos >= length) {
-                    break;
+    }
+    
+    /**
+     * Copies the first TOON value from the parser to the JSON generator, event by event.
+     * Numbers already in the form Jackson would print are copied as text.
+     * A repeated key fails the conversion: fromToon keeps its last value, but a streamed
+     * object cannot take back the value already written for it.
+     * 
+     * @param parser The TOON parser
+     * @param json The generator receiving JSON
+     * @throws IOException if reading or writing fails
+     */
+    private static void transcodeToon(final ToonParser parser, final JsonGenerator json) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new IllegalArgumentException("TOON input cannot be empty");
+        }
+        // Quoted names of the current tabular schema, written once per column instead of per cell
+        String[] schema = null;
+        SerializableString[] names = null;
+        // Keys of the open objects by depth, reused from one object to the next; rows are checked by their schema
+        DupDetector[] keys = new DupDetector[8];
+        int depth = 0;
+        do {
+            final int field = parser.rowField();
+            if (field >= 0) {
+                if (parser.declaredSchema() != schema) {
+                    schema = parser.declaredSchema();
+                    names = new SerializableString[schema.length];
+                    checkSchemaKeys(parser, schema);
                 }
-                
-                // Check if we've moved to a different indentation level (end of this object)
-                final String currentIndent = getCurrentIndent();
-                if (!currentIndent.startsWith(baseIndent) || currentIndent.length() < baseIndent.length()) {
-                    break;
+                if (names[field] == null) {
+                    names[field] = new SerializedString(schema[field]);
                 }
-                
-                // Check for array item marker (-)
-                if (peek() == '-') {
-                    // This is an array item, not a property - should not happen at object level
-                    break;
+                json.writeFieldName(names[field]);
+            } else if (token == JsonToken.FIELD_NAME) {
+                if (depth >= keys.length) {
+                    keys = Arrays.copyOf(keys, depth * 2);
                 }
-                
-                // Parse key
-                final String key = parseKey();
-                if (key == null || key.isEmpty()) {
-                    break;
+                if (keys[depth] == null) {
+                    keys[depth] = DupDetector.rootDetector(parser);
                 }
-                
-                skipWhitespace();
-                
-                // Check for array notation: key[count] or key[count]{...}
-                if (peek() == ARRAY_START) {
-                    final Object arrayValue = parseArrayValue(key, currentIndent);
-                    map.put(key, arrayValue);
-                } else if (peek() == COLON) {
-                    // Regular key: value
-                    pos++; // consume ':'
-                    skipWhitespace();
-                    final Object value = parseValue(currentIndent);
-                    map.put(key, value);
-                } else {
-                    // No separator, might be end of line
-                    break;
+                final String name = parser.getCurrentName();
+                if (keys[depth].isDup(name)) {
+                    throw new JsonParseException(parser, "Duplicate key '" + name + "'");
                 }
-                
-                // Skip to next line
-                skipToNextLine();
-            }
-            
-            return map;
-        }
-        
-        /**
-         * Parses an array value (handles both simple arrays and arrays of objects).
-         */
-        private Object parseArrayValue(final String key, final String indent) {
-            // Parse [count] or [count]{prop1,prop2,prop3}
-            pos++; // consume '['
-            final int count = parseInt();
-            if (peek() != ARRAY_END) {
-                throw new RuntimeException("Expected ']' after array count at position " + pos);
+                json.writeFieldName(name);
+            } else if (token.isNumeric() && isCanonicalNumber(parser)) {
+                // Copy the digits instead of parsing and printing them again
+                json.writeNumber(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } else {
+                json.copyCurrentEvent(parser);
             }
-            pos++; // consume ']'
-            
-            // Check for compact format: {prop1,prop2,prop3}
-            List<String> schemaKeys = null;
-            if (peek() == OBJECT_START) {
-                pos++; // consume '{'
-                schemaKeys = parseSchemaKeys();
-                if (peek() != OBJECT_END) {
-                    throw new RuntimeException("Expected '}' after schema keys at position " + pos);
+            if (token.isStructStart()) {
+                depth++;
+                if (depth < keys.length && keys[depth] != null) {
+                    keys[depth].reset();
                 }
-                pos++; // consume '}'
-            }
-            
-            skipWhitespace();
-            
-            // Check for ':'
-            if (peek() == COLON) {
-                pos++; // consume ':'
-                skipWhitespace();
-            }
-            
-            // Skip to next line
-            skipToNextLine();
-            
-            if (count == 0) {
-                return new ArrayList<>();
+            } else if (token.isStructEnd()) {
+                depth--;
             }
-            
-            // Determine array type
-            if (schemaKeys != null) {
-                // Compact format: array of objects with uniform structure
-                return parseCompactArrayOfObjects(count, schemaKeys, indent);
-            } else {
-                // Check if it's a simple array or expanded array of objects
-                final String nextLineIndent = getCurrentIndent();
-                if (nextLineIndent.length() > indent.length() && peek() == '-') {
-                    // Expanded format: array of objects
-                    return parseExpandedArrayOfObjects(count, nextLineIndent);
-                } else {
-                    // Simple array: [count]: value1,value2,value3
-                    return parseSimpleArray();
+        } while (depth > 0 && (token = parser.nextToken()) != null);
+        json.flush();
+    }
+    
+    private static void checkSchemaKeys(final ToonParser parser, final String[] schema) throws IOException {
+        for (int i = 1; i < schema.length; i++) {
+            for (int j = 0; j < i; j++) {
+                if (schema[i].equals(schema[j])) {
+                    throw new JsonParseException(parser, "Duplicate key '" + schema[i] + "' in tabular header");
                 }
             }
         }
-        
-        /**
-         * Parses a compact array of objects (uniform structure).
-         */
-        private List<Map<String, Object>> parseCompactArrayOfObjects(
-                final int count, final List<String> schemaKeys, final String baseIndent) {
-            final List<Map<String, Object>> list = new ArrayList<>();
-            
-            for (int i = 0; i < count; i++) {
-                skipWhitespace();
-                final String lineIndent = getCurrentIndent();
-                if (lineIndent.length() <= baseIndent.length()) {
-                    break; // Moved back to parent level
-                }
-                
-                final Map<String, Object> item = new java.util.HashMap<>();
-                final String[] values = parseCommaSeparatedValues();
-                
-                if (values.length != schemaKeys.size()) {
-                    throw new RuntimeException(
-                        String.format("Expected %d values but got %d at line %d", 
-                            schemaKeys.size(), values.length, i + 1));
-                }
-                
-                for (int j = 0; j < schemaKeys.size(); j++) {
-                    item.put(schemaKeys.get(j), parseValueFromString(values[j]));
-                }
-                
-                list.add(item);
-                skipToNextLine();
-            }
-            
-            return list;
+    }
+    
+    private static boolean isCanonicalNumber(final ToonParser parser) throws IOException {
+        final int offset = parser.getTextOffset();
+        return ToonScalars.isCanonical(parser.getTextCharacters(), offset, offset + parser.getTextLength());
+    }
+    
+    /**
+     * Converts a TOON string to an Object (Map/List structure).
+     * 
+     * @param toonString The TOON string to be converted
+     * @return Object (typically Map or List) representing the TOON data
+     * @throws IllegalArgumentException if toonString is null or empty
+     * @throws RuntimeException if conversion fails
+     */
+    public static Object fromToon(final String toonString) {
+        return fromToon(toonString, ToonDecodeOptions.defaults());
+    }
+    
+    /**
+     * Converts a TOON string to an Object (Map/List structure) with the given decoding options.
+     * If the options enable it, rows of tabular arrays at or above their threshold are decoded in parallel.
+     * 
+     * @param toonString The TOON string to be converted
+     * @param options The decoding options
+     * @return Object (typically Map or List) representing the TOON data
+     * @throws IllegalArgumentException if toonString is null or empty, or options is null
+     * @throws RuntimeException if conversion fails
+     */
+    public static Object fromToon(final String toonString, final ToonDecodeOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("Options cannot be null");
         }
-        
-        /**
-         * Parses an expanded array of objects (non-uniform structure).
-         */
-        private List<Map<String, Object>> parseExpandedArrayOfObjects(
-                final int count, final String itemIndent) {
-            final List<Map<String, Object>> list = new ArrayList<>();
-            
-            for (int i = 0; i < count; i++) {
-                skipWhitespace();
-                final String currentIndent = getCurrentIndent();
-                if (currentIndent.length() < itemIndent.length()) {
-                    break; // Moved back to parent level
-                }
-                
-                // Expect '-' marker
-                if (peek() != '-') {
-                    break;
-                }
-                pos++; // consume '-'
-                skipWhitespace();
-                
-                // Parse object properties
-                final Map<String, Object> item = parseObject(itemIndent);
-                list.add(item);
-                
-                skipToNextLine();
-            }
-            
-            return list;
+        if (toonString == null) {
+            throw new IllegalArgumentException("TOON string cannot be null");
         }
         
-        /**
-         * Parses a simple array: value1,value2,value3.
-         */
-        private List<Object> parseSimpleArray() {
-            final List<Object> list = new ArrayList<>();
-            
-            skipWhitespace();
-            if (pos >= length || peek() == '\n' || peek() == '\r') {
-                return list; // Empty array
-            }
-            
-            final String[] values = parseCommaSeparatedValues();
-            for (final String value : values) {
-                list.add(parseValueFromString(value));
-            }
-            
-            return list;
+        // Decode the trimmed range in place instead of copying a trimmed string
+        final char[] chars = toonString.toCharArray();
+        int start = 0;
+        int end = chars.length;
+        while (start < end && chars[start] <= ' ') {
+            start++;
         }
-        
-        /**
-         * Parses comma-separated values from current position.
-         */
-        private String[] parseCommaSeparatedValues() {
-            final List<String> values = new ArrayList<>();
-            final StringBuilder current = new StringBuilder();
-            boolean inQuotes = false;
-            
-            while (pos < length) {
-                final char c = peek();
-                
-                if (c == '"' && (pos == 0 || toon.charAt(pos - 1) != '\\')) {
-                    inQuotes = !inQuotes;
-                    current.append(c);
-                    pos++;
-                } else if (c == COMMA && !inQuotes) {
-                    if (current.length() > 0) {
-                        values.add(current.toString().trim());
-                        current.setLength(0);
-                    }
-                    pos++;
-                    skipWhitespace();
-                } else if ((c == '\n' || c == '\r') && !inQuotes) {
-                    break;
-                } else {
-                    current.append(c);
-                    pos++;
-                }
-            }
-            
-            if (current.length() > 0) {
-                values.add(current.toString().trim());
-            }
-            
-            return values.toArray(new String[0]);
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
         }
-        
-        /**
-         * Parses schema keys from {prop1,prop2,prop3}.
-         */
-        private List<String> parseSchemaKeys() {
-            final List<String> keys = new ArrayList<>();
-            final StringBuilder current = new StringBuilder();
-            
-            while (pos < length) {
-                final char c = peek();
-                if (c == OBJECT_END) {
-                    if (current.length() > 0) {
-                        keys.add(current.toString().trim());
-                    }
-                    break;
-                } else if (c == COMMA) {
-                    if (current.length() > 0) {
-                        keys.add(current.toString().trim());
-                        current.setLength(0);
-                    }
-                    pos++;
-                } else {
-                    current.append(c);
-                    pos++;
-                }
-            }
-            
-            return keys;
+        if (start == end) {
+            throw new IllegalArgumentException("TOON string cannot be empty");
         }
         
-        /**
-         * Parses a value (can be primitive, object, or array).
-         */
-        private Object parseValue(final String currentIndent) {
-            skipWhitespace();
-            
-            if (pos >= length) {
-                return null;
-            }
-            
-            final char c = peek();
-            
-            if (c == ARRAY_START) {
-                return parseArray();
-            } else if (c == '\n' || c == '\r') {
-                // Value on next line - might be nested object
-                skipToNextLine();
-                final String nextIndent = getCurrentIndent();
-                if (nextIndent.length() > currentIndent.length()) {
-                    return parseObject(currentIndent);
-                }
-                return null;
-            } else {
-                // Primitive value on same line
-                return parsePrimitiveValue();
-            }
+        try {
+            return ToonDecoder.decode(chars, start, end, options);
+        } catch (Exception e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
         }
-        
-        /**
-         * Parses an array (simple or of objects).
-         */
-        private Object parseArray() {
-            pos++; // consume '['
-            final int count = parseInt();
-            if (peek() != ARRAY_END) {
-                throw new RuntimeException("Expected ']' after array count");
-            }
-            pos++; // consume ']'
-            
-            skipWhitespace();
-            if (peek() == COLON) {
-                pos++; // consume ':'
-                skipWhitespace();
-            }
-            
-            skipToNextLine();
-            
-            if (count == 0) {
-                return new ArrayList<>();
-            }
-            
-            // Check if it's an array of objects by looking at next line
-            final String nextIndent = getCurrentIndent();
-            if (nextIndent.length() > 0 && peek() == '-') {
-                // Expanded array of objects
-                return parseExpandedArrayOfObjects(count, nextIndent);
-            } else {
-                // Simple array
-                return parseSimpleArray();
-            }
+    }
+    
+    /**
+     * Converts a TOON string to an Object (Map/List structure), decoding only the fields at the
+     * given dotted paths (see {@link ToonDecodeOptions.Builder#project(String...)}). Columns of
+     * tabular rows and indented subtrees outside the paths are skipped without being decoded.
+     * 
+     * @param toonString The TOON string to be converted
+     * @param paths The paths to decode, such as "items.price" (empty to decode everything)
+     * @return Object (typically Map or List) holding the selected fields
+     * @throws IllegalArgumentException if toonString is null or empty, or a path is null or malformed
+     * @throws RuntimeException if conversion fails
+     */
+    public static Object fromToon(final String toonString, final Collection<String> paths) {
+        if (paths == null) {
+            throw new IllegalArgumentException("Paths cannot be null");
         }
-        
-        /**
-         * Parses a primitive value from string.
-         */
-        private Object parseValueFromString(final String str) {
-            if (str == null || str.isEmpty()) {
-                return null;
-            }
-            
-            final String trimmed = str.trim();
-            
-            if (trimmed.equals(TOON_NULL)) {
-                return null;
-            }
-            
-            // Remove quotes if present
-            String unquoted = trimmed;
-            if (trimmed.startsWith(QUOTE) && trimmed.endsWith(QUOTE) && trimmed.length() >= 2) {
-                unquoted = trimmed.substring(1, trimmed.length() - 1);
-            }
-            
-            // Try to parse as number
-            try {
-                if (unquoted.contains(".")) {
-                    return Double.parseDouble(unquoted);
-                } else {
-                    return Long.parseLong(unquoted);
-                }
-            } catch (NumberFormatException e) {
-                // Not a number
-            }
-            
-            // Try boolean
-            if (unquoted.equalsIgnoreCase("true")) {
-                return true;
-            }
-            if (unquoted.equalsIgnoreCase("false")) {
-                return false;
-            }
-            
-            // String
-            return unquoted;
+        return fromToon(toonString, ToonDecodeOptions.builder().project(paths.toArray(new String[0])).build());
+    }
+    
+    /**
+     * Checks that text is valid TOON without decoding it: declared [N] counts of arrays and rows
+     * must match, each row must have as many values as its header, and indentation must be
+     * consistent. The text is scanned once and no value is created, so rejecting a payload
+     * costs far less than {@link #fromToon(String)}. Text passing validation decodes without error.
+     * 
+     * @param toon The TOON text
+     * @return The result, with the offset, line and column of the first error if any
+     * @throws IllegalArgumentException if toon is null
+     */
+    public static ToonValidationResult validate(final CharSequence toon) {
+        return validate(toon, Collections.emptyMap());
+    }
+    
+    /**
+     * Checks that text is valid TOON, as {@link #validate(CharSequence)} does, and that it has
+     * tabular arrays with the expected headers. Each dotted path (such as "items" or "order.lines",
+     * arrays not counting as steps) must hold a tabular array whose header lists exactly the given
+     * fields in order; empty arrays match any header. Other arrays are not checked.
+     * 
+     * @param toon The TOON text
+     * @param expectedHeaders Expected header fields by path of the array
+     * @return The result, with the offset, line and column of the first error if any
+     * @throws IllegalArgumentException if toon or expectedHeaders is null
+     */
+    public static ToonValidationResult validate(final CharSequence toon,
+            final Map<String, List<String>> expectedHeaders) {
+        if (toon == null) {
+            throw new IllegalArgumentException("TOON input cannot be null");
         }
-        
-        /**
-         * Parses a primitive value from current position.
-         */
-        private Object parsePrimitiveValue() {
-            final StringBuilder sb = new StringBuilder();
-            
-            while (pos < length) {
-                final char c = peek();
-                if (c == '\n' || c == '\r' || c == COMMA) {
-                    break;
-                }
-                sb.append(c);
-                pos++;
-            }
-            
-            return parseValueFromString(sb.toString());
+        if (expectedHeaders == null) {
+            throw new IllegalArgumentException("Expected headers cannot be null");
         }
-        
-        /**
-         * Parses a key (property name).
-         */
-        private String parseKey() {
-            final StringBuilder sb = new StringBuilder();
-            
-            while (pos < length) {
-                final char c = peek();
-                if (c == COLON || c == ARRAY_START || c == '\n' || c == '\r') {
-                    break;
-                }
-                sb.append(c);
-                pos++;
-            }
-            
-            return sb.toString().trim();
+        return ToonValidator.validate(toon, expectedHeaders);
+    }
+    
+    /**
+     * Converts a UTF-8 TOON file to an Object (Map/List structure).
+     * The file is memory-mapped and decoded as it is parsed, in windows of up to 1 GB, so neither
+     * its bytes nor its text are copied to the heap and files past 2 GB are supported. Only the
+     * decoded tree takes heap space.
+     * 
+     * @param path The TOON file
+     * @return Object (typically Map or List) representing the TOON data
+     * @throws IllegalArgumentException if path is null or the file is empty
+     * @throws RuntimeException if the file cannot be read or conversion fails
+     */
+    public static Object fromToon(final Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
         }
         
-        /**
-         * Parses an integer from current position.
-         */
-        private int parseInt() {
-            final StringBuilder sb = new StringBuilder();
-            
-            while (pos < length) {
-                final char c = peek();
-                if (Character.isDigit(c)) {
-                    sb.append(c);
-                    pos++;
-                } else {
-                    break;
-                }
-            }
-            
-            if (sb.length() == 0) {
-                throw new RuntimeException("Expected integer at position " + pos);
+        try (ToonParser parser = new ToonParser(null, JsonParser.Feature.collectDefaults(), null,
+                openMapped(path))) {
+            final JsonToken first = parser.nextToken();
+            if (first == null) {
+                throw new IllegalArgumentException("TOON file cannot be empty");
             }
-            
-            return Integer.parseInt(sb.toString());
+            final Object root = ToonDecoder.read(parser, first);
+            parser.nextToken();
+            return root;
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
         }
-        
-        /**
-         * Gets the current indentation level.
-         */
-        private String getCurrentIndent() {
-            final int startPos = pos;
-            final StringBuilder indent = new StringBuilder();
-            
-            while (pos < length) {
-                final char c = peek();
-                if (c == ' ') {
-                    indent.append(c);
-                    pos++;
-                } else if (c == '\t') {
-                    indent.append("  "); // Convert tab to 2 spaces
-                    pos++;
-                } else {
-                    break;
-                }
-            }
-            
-            final String result = indent.toString();
-            pos = startPos; // Reset position
-            return result;
+    }
+    
+    /**
+     * Opens a reader decoding a UTF-8 file from memory-mapped windows.
+     * 
+     * @param path The file
+     * @return A reader over the file, closing it when closed
+     * @throws IOException if the file cannot be opened
+     */
+    static Reader openMapped(final Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedFileReader(channel, MappedFileReader.DEFAULT_WINDOW);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
         }
-        
-        /**
-         * Skips whitespace (spaces and tabs, but not newlines).
-         */
-        private void skipWhitespace() {
-            while (pos < length) {
-                final char c = peek();
-                if (c == ' ' || c == '\t') {
-                    pos++;
-                } else {
-                    break;
-                }
-            }
+    }
+    
+    /**
+     * Converts a TOON string straight to the given type.
+     * Jackson deserializers read the TOON token stream directly, so no intermediate Map tree is built.
+     * 
+     * @param <T> The target type
+     * @param toonString The TOON string to be converted
+     * @param type The target class
+     * @return Object of the specified type
+     * @throws IllegalArgumentException if toonString is null or empty, or type is null
+     * @throws RuntimeException if conversion fails
+     */
+    public static <T> T fromToon(final String toonString, final Class<T> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Class cannot be null");
         }
-        
-        /**
-         * Skips to the next line.
-         */
-        private void skipToNextLine() {
-            while (pos < length) {
-                final char c = peek();
-                if (c == '\n') {
-                    pos++;
-                    break;
-                } else if (c == '\r') {
-                    pos++;
-                    if (pos < length && peek() == '\n') {
-                        pos++;
-                    }
-                    break;
-                } else {
-                    pos++;
-                }
-            }
+        if (toonString == null) {
+            throw new IllegalArgumentException("TOON string cannot be null");
+        }
+        if (toonString.trim().isEmpty()) {
+            throw new IllegalArgumentException("TOON string cannot be empty");
         }
         
-        /**
-         * Peeks at the current character without advancing.
-         */
-        private char peek() {
-            if (pos >= length) {
-                return '\0';
-            }
-            return toon.charAt(pos);
+        try {
+            return TOON_MAPPER.readValue(toonString, type);
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting TOON to " + type.getSimpleName() + ": " + e.getMessage(), e);
         }
     }
 }
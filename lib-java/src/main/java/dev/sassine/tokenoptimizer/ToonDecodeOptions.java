@@ -0,0 +1,252 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Options for decoding TOON into Map/List trees with {@link ToonConverter#fromToon(String, ToonDecodeOptions)}.
+ * Controls whether and when the rows of large tabular arrays are decoded in parallel (off
+ * unless a threshold or pool is set), whether repeated
+ * keys and string values share one String instance, which fields are decoded at all and how
+ * deeply objects and arrays may nest.
+ */
+public final class ToonDecodeOptions {
+    
+    /**
+     * Number of rows from which a tabular array is decoded in parallel when a pool is set
+     * without a threshold.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 20_000;
+    
+    // Threshold of options that decode sequentially
+    private static final int SEQUENTIAL = Integer.MAX_VALUE;
+    
+    private static final ToonDecodeOptions DEFAULTS = builder().build();
+    
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+    private final int internLimit;
+    private final Set<String> projectedPaths;
+    private final ToonProjection projection;
+    private final int maxDepth;
+    
+    /**
+     * Creates a new ToonDecodeOptions.
+     * 
+     * @param parallelThreshold Minimum row count of a tabular array for parallel decoding (Integer.MAX_VALUE for none)
+     * @param pool The pool running parallel decoding (null for the common pool)
+     * @param internLimit Maximum number of distinct interned strings per document (0 to disable)
+     * @param projectedPaths The paths to decode (empty to decode everything)
+     * @param maxDepth Maximum nesting depth of objects and arrays
+     */
+    private ToonDecodeOptions(final int parallelThreshold, final ForkJoinPool pool, final int internLimit,
+            final Set<String> projectedPaths, final int maxDepth) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("parallelThreshold must be at least 1");
+        }
+        if (internLimit < 0) {
+            throw new IllegalArgumentException("internLimit cannot be negative");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        this.parallelThreshold = parallelThreshold;
+        this.pool = pool;
+        this.internLimit = internLimit;
+        this.projection = ToonProjection.of(projectedPaths);
+        this.projectedPaths = Collections.unmodifiableSet(projectedPaths);
+        this.maxDepth = maxDepth;
+    }
+    
+    /**
+     * Returns the options used by {@link ToonConverter#fromToon(String)}.
+     * 
+     * @return The default options
+     */
+    public static ToonDecodeOptions defaults() {
+        return DEFAULTS;
+    }
+    
+    /**
+     * Returns the minimum row count of a tabular array for its rows to be decoded in parallel.
+     * 
+     * @return The row threshold, or Integer.MAX_VALUE when decoding is sequential
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+    
+    /**
+     * Returns true if the rows of large tabular arrays are decoded in parallel, that is if a
+     * threshold or pool was set.
+     * 
+     * @return Whether parallel decoding is enabled
+     */
+    public boolean isParallel() {
+        return parallelThreshold != SEQUENTIAL;
+    }
+    
+    /**
+     * Returns the pool running parallel decoding. Parallel decoding is skipped when the pool
+     * has a parallelism of 1.
+     * 
+     * @return The pool
+     */
+    public ForkJoinPool getPool() {
+        return pool != null ? pool : ForkJoinPool.commonPool();
+    }
+    
+    /**
+     * Returns the maximum number of distinct keys and string values interned per document.
+     * 0 means interning is disabled.
+     * 
+     * @return The interning limit
+     */
+    public int getInternLimit() {
+        return internLimit;
+    }
+    
+    /**
+     * Returns the dotted paths of the fields decoded; the others are skipped.
+     * An empty set means every field is decoded.
+     * 
+     * @return The projected paths
+     */
+    public Set<String> getProjectedPaths() {
+        return projectedPaths;
+    }
+    
+    /**
+     * Returns the maximum number of nested objects and arrays; deeper text fails to decode.
+     * 
+     * @return The maximum nesting depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    ToonProjection projection() {
+        return projection;
+    }
+    
+    /**
+     * Creates a new builder for ToonDecodeOptions.
+     * 
+     * @return A new builder instance
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Builder for creating ToonDecodeOptions instances.
+     */
+    public static final class Builder {
+        private Integer parallelThreshold;
+        private ForkJoinPool pool;
+        private int internLimit;
+        private Set<String> projectedPaths = new LinkedHashSet<>();
+        private int maxDepth = ToonConverter.DEFAULT_MAX_DEPTH;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Decodes the rows of tabular arrays with at least this many rows in parallel, on the
+         * pool if one is set and on the common pool otherwise.
+         * 
+         * @param parallelThreshold The row threshold (at least 1)
+         * @return This builder instance
+         */
+        public Builder parallelThreshold(final int parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+        
+        /**
+         * Decodes sequentially, clearing any threshold or pool set before. This is the default.
+         * 
+         * @return This builder instance
+         */
+        public Builder sequential() {
+            this.parallelThreshold = null;
+            this.pool = null;
+            return this;
+        }
+        
+        /**
+         * Decodes the rows of large tabular arrays in parallel on this pool, from
+         * {@link #DEFAULT_PARALLEL_THRESHOLD} rows unless a threshold is set.
+         * 
+         * @param pool The pool (null to decode sequentially unless a threshold is set)
+         * @return This builder instance
+         */
+        public Builder pool(final ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+        
+        /**
+         * Interns keys and string values: equal keys (including schema keys of repeated headers)
+         * and equal short values, such as a status or country column, share one String instance.
+         * The dictionary is per document, shared by the threads decoding its rows in parallel, and
+         * holds at most the given number of distinct strings; once full, new values are decoded
+         * as separate strings.
+         * 
+         * @param internLimit Maximum number of distinct interned strings (0 to disable)
+         * @return This builder instance
+         */
+        public Builder internStrings(final int internLimit) {
+            this.internLimit = internLimit;
+            return this;
+        }
+        
+        /**
+         * Decodes only the fields at the given dotted paths, such as "meta.total" or "items.price".
+         * A path reaching an array continues into each of its items, so "items.price" keeps the
+         * price column of a tabular array; a selected field is decoded with everything below it.
+         * Other fields are skipped while parsing: columns of tabular rows are scanned without
+         * creating strings or parsing numbers, and indented values are skipped line by line by
+         * their indentation. Skipped text is not validated.
+         * 
+         * @param paths The paths to decode (none to decode everything)
+         * @return This builder instance
+         * @throws IllegalArgumentException if paths is null
+         */
+        public Builder project(final String... paths) {
+            if (paths == null) {
+                throw new IllegalArgumentException("Paths cannot be null");
+            }
+            this.projectedPaths = new LinkedHashSet<>(Arrays.asList(paths));
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of nested objects and arrays. Decoding keeps open containers
+         * on an explicit stack, so the limit only guards against hostile input and can be
+         * raised well beyond the thread stack depth.
+         * 
+         * @param maxDepth The maximum nesting depth (at least 1)
+         * @return This builder instance
+         */
+        public Builder maxDepth(final int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+        
+        /**
+         * Builds the ToonDecodeOptions instance.
+         * 
+         * @return A new ToonDecodeOptions instance
+         * @throws IllegalArgumentException if any parameter is invalid
+         */
+        public ToonDecodeOptions build() {
+            final int threshold = parallelThreshold != null ? parallelThreshold
+                    : pool != null ? DEFAULT_PARALLEL_THRESHOLD : SEQUENTIAL;
+            return new ToonDecodeOptions(threshold, pool, internLimit, new LinkedHashSet<>(projectedPaths), maxDepth);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Builds Map/List trees from TOON text for {@link ToonConverter#fromToon(String)}.
+ * Reads the {@link ToonParser} token stream, so decoding is a single pass over a char array:
+ * indentation is tracked as an int column, values are sliced by offset and no per-line strings
+ * are created. Containers are kept on an explicit stack instead of recursing.
+ * Rows of large tabular arrays can be decoded in parallel, and repeated keys and values can
+ * share one String instance per document, and fields outside a projection are skipped without
+ * being decoded (see {@link ToonDecodeOptions}).
+ * Objects decode to LinkedHashMap (rows of tabular arrays to an immutable {@link ToonRow} sharing
+ * the schema of their header), arrays to ArrayList, integers to Long (BigInteger when
+ * out of range) and decimals to Double.
+ */
+final class ToonDecoder {
+    
+    // Parallel rows: chunks per pool thread (for balance) and the smallest chunk worth a task
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int MIN_CHUNK_ROWS = 2_000;
+    
+    // Prevent instantiation
+    private ToonDecoder() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+    
+    /**
+     * Decodes a range of a char array.
+     * 
+     * @param toon The buffer holding TOON text
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @return The decoded value (Map, List or scalar)
+     * @throws IOException if the text is not valid TOON
+     */
+    static Object decode(final char[] toon, final int start, final int end) throws IOException {
+        return decode(toon, start, end, ToonDecodeOptions.defaults());
+    }
+    
+    /**
+     * Decodes a range of a char array, decoding the rows of large tabular arrays in parallel
+     * as the options allow.
+     * 
+     * @param toon The buffer holding TOON text
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @param options The decoding options
+     * @return The decoded value (Map, List or scalar)
+     * @throws IOException if the text is not valid TOON
+     */
+    static Object decode(final char[] toon, final int start, final int end, final ToonDecodeOptions options)
+            throws IOException {
+        try (ToonParser parser = new ToonParser(null, JsonParser.Feature.collectDefaults(), null, null,
+                toon, start, end, false)) {
+            parser.maxDepth(options.getMaxDepth());
+            intern(parser, options);
+            final Object root = read(parser, parser.nextToken(), options, options.projection());
+            // Reading on reports content past the root value, such as rows past the count of a root table
+            parser.nextToken();
+            return root;
+        }
+    }
+    
+    /**
+     * Reads the next value of a parser into a Map/List tree.
+     * 
+     * @param parser The parser, positioned before the value
+     * @return The decoded value, or null if the parser has no more tokens
+     * @throws IOException if reading fails
+     */
+    static Object read(final JsonParser parser) throws IOException {
+        return read(parser, parser.nextToken());
+    }
+    
+    /**
+     * Reads the value starting at the current token of a parser into a Map/List tree.
+     * 
+     * @param parser The parser
+     * @param first The current token, where the value starts
+     * @return The decoded value, or null if first is null
+     * @throws IOException if reading fails
+     */
+    static Object read(final JsonParser parser, final JsonToken first) throws IOException {
+        return read(parser, first, null, ToonProjection.ALL);
+    }
+    
+    /**
+     * Reads a value, decoding only the fields selected by a projection: the parser skips the
+     * others without decoding them (see {@link ToonParser#skipValue()}). Each container gets
+     * the projection below it, and the items of an array share the projection of the array.
+     * 
+     * @param options The decoding options, or null to decode rows on the calling thread
+     * @param projection The projection below the value
+     */
+    @SuppressWarnings("unchecked")
+    private static Object read(final JsonParser parser, final JsonToken first, final ToonDecodeOptions options,
+            final ToonProjection projection) throws IOException {
+        final Deque<Object> containers = new ArrayDeque<>();
+        // Projection below each open container, only kept while projecting
+        final boolean projected = !projection.isAll();
+        final Deque<ToonProjection> scopes = new ArrayDeque<>();
+        ToonProjection next = projection;
+        Object root = null;
+        for (JsonToken token = first; token != null; token = parser.nextToken()) {
+            final Object value;
+            switch (token) {
+                case FIELD_NAME:
+                    if (projected) {
+                        next = selectField((ToonParser) parser, scopes.peek());
+                    }
+                    continue;
+                case END_OBJECT:
+                case END_ARRAY:
+                    containers.pop();
+                    if (projected) {
+                        scopes.pop();
+                    }
+                    if (containers.isEmpty()) {
+                        return root;
+                    }
+                    continue;
+                case START_OBJECT:
+                    if (projected && containers.peek() instanceof List) {
+                        next = scopes.peek();
+                    }
+                    value = isRowStart(parser) ? new ToonRow(((ToonParser) parser).rowSchema(next))
+                            : new LinkedHashMap<String, Object>();
+                    break;
+                case START_ARRAY:
+                    if (projected && containers.peek() instanceof List) {
+                        next = scopes.peek();
+                    }
+                    value = new ArrayList<Object>();
+                    if (options != null) {
+                        readRowsInParallel((ToonParser) parser, (List<Object>) value, options, next);
+                    }
+                    break;
+                default:
+                    value = scalar(parser, token);
+                    break;
+            }
+            
+            final Object parent = containers.peek();
+            if (parent == null) {
+                root = value;
+            } else if (parent instanceof List) {
+                ((List<Object>) parent).add(value);
+            } else if (parent instanceof ToonRow) {
+                ((ToonRow) parent).add(value);
+            } else {
+                ((Map<String, Object>) parent).put(parser.currentName(), value);
+            }
+            
+            if (token.isStructStart()) {
+                containers.push(value);
+                if (projected) {
+                    scopes.push(next);
+                }
+            } else if (parent == null) {
+                return root;
+            }
+        }
+        return root;
+    }
+    
+    /**
+     * Looks up the projection of the field at the current FIELD_NAME token and, if the field
+     * is not selected, has the parser skip its value (or the rest of the row).
+     * 
+     * @return The projection below the field, or null if it was skipped
+     */
+    private static ToonProjection selectField(final ToonParser parser, final ToonProjection scope)
+            throws IOException {
+        final int cell = parser.rowField();
+        if (cell < 0) {
+            final ToonProjection field = scope.field(parser.currentName());
+            if (field == null) {
+                parser.skipValue();
+            }
+            return field;
+        }
+        final ToonRow.Schema schema = parser.rowSchema(scope);
+        if (schema.isPastSelection(cell)) {
+            parser.skipRow();
+            return null;
+        }
+        final ToonProjection field = schema.projection(cell);
+        if (field == null) {
+            parser.skipValue();
+        }
+        return field;
+    }
+    
+    private static boolean isRowStart(final JsonParser parser) {
+        return parser instanceof ToonParser && ((ToonParser) parser).isRowStart();
+    }
+    
+    /**
+     * Decodes the rows of the tabular array just opened on the options' pool, if they enable
+     * parallel decoding and it has enough rows: the rows are split into chunks of lines, each
+     * chunk is decoded by its own parser and the results are appended in order. The parser is
+     * then positioned before the END_ARRAY.
+     */
+    private static void readRowsInParallel(final ToonParser parser, final List<Object> rows,
+            final ToonDecodeOptions options, final ToonProjection projection) throws IOException {
+        final int count = parser.declaredCount();
+        final ForkJoinPool pool = options.getPool();
+        final String[] schema = parser.declaredSchema();
+        if (!options.isParallel() || schema == null || schema.length == 0 || count < options.getParallelThreshold()
+                || pool.getParallelism() < 2) {
+            return;
+        }
+        parser.rowSchema(projection);
+        final int chunks = Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, count / MIN_CHUNK_ROWS));
+        final List<Callable<List<Object>>> tasks = new ArrayList<>(chunks);
+        for (final ToonParser chunk : parser.splitRows(chunks)) {
+            tasks.add(() -> readChunk(chunk, options, projection));
+        }
+        try {
+            for (final Future<List<Object>> result : pool.invokeAll(tasks)) {
+                rows.addAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding rows");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    private static List<Object> readChunk(final ToonParser parser, final ToonDecodeOptions options,
+            final ToonProjection projection) throws IOException {
+        try (ToonParser chunk = parser) {
+            final List<Object> rows = new ArrayList<>();
+            JsonToken token;
+            while ((token = chunk.nextToken()) == JsonToken.START_OBJECT) {
+                rows.add(read(chunk, token, null, projection));
+            }
+            return rows;
+        }
+    }
+    
+    /**
+     * Gives a parser the interning dictionary of its document if the options enable interning.
+     * Parsers of row chunks decoded in parallel intern into the same dictionary.
+     */
+    private static void intern(final ToonParser parser, final ToonDecodeOptions options) {
+        if (options.getInternLimit() > 0) {
+            parser.intern(new StringDictionary(options.getInternLimit(), options.isParallel()));
+        }
+    }
+    
+    /**
+     * Converts the current scalar token of a parser.
+     * 
+     * @param parser The parser, positioned on a scalar
+     * @param token The current token
+     * @return String, Long (BigInteger when out of range), Double, Boolean or null
+     * @throws IOException if reading fails
+     */
+    static Object scalar(final JsonParser parser, final JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                        ? parser.getBigIntegerValue() : (Object) parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy view of a TOON document that decodes only the lines a path touches.
+ * Creating the document runs a single structural pass (line offsets, indentation and array
+ * headers, see {@link ToonIndex}); values are decoded when {@link #get(String)} asks for them.
+ * Object fields are found by scanning the keys of their siblings only, rows of tabular arrays
+ * are reached directly by their row number, and list items by skipping whole items.
+ * 
+ * <pre>{@code
+ * ToonDocument doc = ToonDocument.fromToon(toon);
+ * Object total = doc.get("meta.total");
+ * Object price = doc.get("items[1234].price");
+ * }</pre>
+ * 
+ * Paths are field names separated by '.', with [index] for array items ("[0].id" for a root
+ * array). The empty path is the whole document. Values decode as in {@link ToonConverter#fromToon(String)}.
+ */
+public final class ToonDocument {
+    
+    // Result of resolving a path that does not exist
+    private static final Object MISSING = new Object();
+    
+    // Kinds of the node a path resolves to
+    private static final int BODY = 0;
+    private static final int ARRAY = 1;
+    private static final int VALUE = 2;
+    
+    private final ToonIndex index;
+    
+    private ToonDocument(final ToonIndex index) {
+        this.index = index;
+    }
+    
+    /**
+     * Indexes a TOON document for path access.
+     * 
+     * @param toonString The TOON text
+     * @return The document
+     * @throws IllegalArgumentException if toonString is null or empty
+     */
+    public static ToonDocument fromToon(final String toonString) {
+        if (toonString == null) {
+            throw new IllegalArgumentException("TOON string cannot be null");
+        }
+        final char[] chars = toonString.toCharArray();
+        final ToonIndex index = new ToonIndex(chars, 0, chars.length);
+        if (index.size() == 0) {
+            throw new IllegalArgumentException("TOON string cannot be empty");
+        }
+        return new ToonDocument(index);
+    }
+    
+    /**
+     * Decodes the value at a path.
+     * 
+     * @param path The path, e.g. "items[1234].price"
+     * @return The value (Map, List or scalar), or null if the path does not exist
+     * @throws IllegalArgumentException if path is null or malformed
+     * @throws RuntimeException if the lines holding the value are not valid TOON
+     */
+    public Object get(final String path) {
+        final Object value = resolve(path);
+        return value == MISSING ? null : value;
+    }
+    
+    /**
+     * Returns true if the path exists, even if its value is null.
+     * 
+     * @param path The path
+     * @return Whether the path exists
+     * @throws IllegalArgumentException if path is null or malformed
+     * @throws RuntimeException if the lines holding the value are not valid TOON
+     */
+    public boolean contains(final String path) {
+        return resolve(path) != MISSING;
+    }
+    
+    /**
+     * Returns the number of items of the array at a path, read from its [N] header without
+     * decoding the items, or the number of fields of an object.
+     * 
+     * @param path The path
+     * @return The size, or -1 if the path does not exist or holds a scalar
+     * @throws IllegalArgumentException if path is null or malformed
+     * @throws RuntimeException if the lines holding the value are not valid TOON
+     */
+    public int size(final String path) {
+        final Node node = walk(parsePath(path));
+        if (node == null) {
+            return -1;
+        }
+        try {
+            switch (node.kind) {
+                case ARRAY:
+                    try (ToonParser header = openHeader(node.line)) {
+                        return header.declaredCount();
+                    }
+                case BODY:
+                    int fields = 0;
+                    for (int line = node.from; line < node.to; line = index.subtreeEnd(line)) {
+                        fields++;
+                    }
+                    return fields;
+                default:
+                    if (node.value instanceof Map) {
+                        return ((Map<?, ?>) node.value).size();
+                    }
+                    return node.value instanceof List ? ((List<?>) node.value).size() : -1;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
+        }
+    }
+    
+    private Object resolve(final String path) {
+        final Node node = walk(parsePath(path));
+        if (node == null) {
+            return MISSING;
+        }
+        try {
+            return materialize(node);
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Follows the path segments from the root, staying on indexed lines as long as possible.
+     * Returns null if the path does not exist.
+     */
+    private Node walk(final List<Object> segments) {
+        try {
+            Node node = root();
+            for (final Object segment : segments) {
+                node = segment instanceof String ? field(node, (String) segment) : item(node, (Integer) segment);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return node;
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
+        }
+    }
+    
+    private Node root() throws IOException {
+        if (index.isHeader(0) && index.keyEnd(0) == index.content(0)) {
+            return Node.array(0);
+        }
+        if (index.keyEnd(0) < 0 && index.size() == 1) {
+            return Node.value(decode(0, 1));
+        }
+        return Node.body(0, index.size());
+    }
+    
+    private Node field(final Node node, final String name) throws IOException {
+        if (node.kind == VALUE) {
+            if (!(node.value instanceof Map) || !((Map<?, ?>) node.value).containsKey(name)) {
+                return null;
+            }
+            return Node.value(((Map<?, ?>) node.value).get(name));
+        }
+        if (node.kind != BODY) {
+            return null;
+        }
+        // Only the keys of the fields are compared, nested lines are skipped
+        for (int line = node.from; line < node.to; line = index.subtreeEnd(line)) {
+            if (keyMatches(line, name)) {
+                return entry(line);
+            }
+        }
+        return null;
+    }
+    
+    private Node item(final Node node, final int position) throws IOException {
+        if (node.kind == VALUE) {
+            if (!(node.value instanceof List) || position >= ((List<?>) node.value).size()) {
+                return null;
+            }
+            return Node.value(((List<?>) node.value).get(position));
+        }
+        if (node.kind != ARRAY) {
+            return null;
+        }
+        final int header = node.line;
+        try (ToonParser parser = openHeader(header)) {
+            final int count = parser.declaredCount();
+            if (position >= count) {
+                return null;
+            }
+            if (parser.hasInlineItems()) {
+                return Node.value(((List<?>) ToonDecoder.read(parser, JsonToken.START_ARRAY)).get(position));
+            }
+            final int end = index.subtreeEnd(header);
+            if (parser.declaredSchema() != null) {
+                // One row per line: seek straight to it
+                final int row = header + 1 + position;
+                if (end - header - 1 == count) {
+                    return Node.value(readItem(parser, row, row + 1));
+                }
+            } else if (header + 1 < end && index.isListItem(header + 1)) {
+                // Skip whole items, each spanning its "- " line and the lines below it
+                int seen = 0;
+                for (int line = header + 1; line < end; line = index.subtreeEnd(line)) {
+                    if (seen++ == position) {
+                        return Node.value(readItem(parser, line, index.subtreeEnd(line)));
+                    }
+                }
+            }
+        }
+        // Items on the next line, or malformed rows: decode the array to get the values or the error
+        return Node.value(((List<?>) materialize(node)).get(position));
+    }
+    
+    /**
+     * Returns the node for the value of a key line.
+     */
+    private Node entry(final int line) throws IOException {
+        if (index.isHeader(line)) {
+            return Node.array(line);
+        }
+        final int end = index.subtreeEnd(line);
+        final int afterKey = index.keyEnd(line) + 1;
+        if (afterKey < index.end(line)) {
+            return Node.value(fieldValue(line, end));
+        }
+        return Node.body(line + 1, end);
+    }
+    
+    private Object materialize(final Node node) throws IOException {
+        switch (node.kind) {
+            case BODY:
+                return node.from == node.to ? new LinkedHashMap<String, Object>() : decode(node.from, node.to);
+            case ARRAY:
+                final int end = index.subtreeEnd(node.line);
+                return index.keyEnd(node.line) == index.content(node.line) ? decode(node.line, end) : fieldValue(node.line, end);
+            default:
+                return node.value;
+        }
+    }
+    
+    private boolean keyMatches(final int line, final String name) throws IOException {
+        final int keyEnd = index.keyEnd(line);
+        if (keyEnd < 0) {
+            return false;
+        }
+        final char[] buf = index.buffer();
+        int start = index.content(line);
+        int stop = keyEnd;
+        while (stop > start && buf[stop - 1] == ' ') {
+            stop--;
+        }
+        if (buf[start] == '"') {
+            start++;
+            stop--;
+            for (int p = start; p < stop; p++) {
+                if (buf[p] == '\\') {
+                    // Escaped key: let the parser unescape it
+                    try (ToonParser parser = parser(line, line + 1)) {
+                        parser.nextToken();
+                        parser.nextToken();
+                        return name.equals(parser.getCurrentName());
+                    }
+                }
+            }
+        }
+        if (stop - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (buf[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Decodes the lines from one line (included) to another (excluded) as a document.
+     */
+    private Object decode(final int from, final int to) throws IOException {
+        try (ToonParser parser = parser(from, to)) {
+            return ToonDecoder.read(parser);
+        }
+    }
+    
+    /**
+     * Decodes the value of the key line at the given line, whose nested lines end before the other.
+     */
+    private Object fieldValue(final int line, final int to) throws IOException {
+        return ((Map<?, ?>) decode(line, to)).values().iterator().next();
+    }
+    
+    /**
+     * Decodes the item of an array held by the lines from one line (included) to another (excluded).
+     */
+    private Object readItem(final ToonParser header, final int from, final int to) throws IOException {
+        try (ToonParser parser = header.itemParser(index.begin(from), index.end(to - 1), index.lineNumber(from), 1)) {
+            return ToonDecoder.read(parser);
+        }
+    }
+    
+    /**
+     * Opens a parser over an array header line, positioned on its START_ARRAY.
+     */
+    private ToonParser openHeader(final int line) throws IOException {
+        final ToonParser parser = parser(line, line + 1);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.START_ARRAY) {
+            if (token == null) {
+                parser.close();
+                throw new IOException("Expected array header at line " + index.lineNumber(line));
+            }
+        }
+        return parser;
+    }
+    
+    private ToonParser parser(final int from, final int to) {
+        return new ToonParser(null, JsonParser.Feature.collectDefaults(), null, null, index.buffer(),
+                index.begin(from), index.end(to - 1), false);
+    }
+    
+    /**
+     * Splits a path into field names (String) and item positions (Integer).
+     */
+    private static List<Object> parsePath(final String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        final List<Object> segments = new ArrayList<>();
+        int p = 0;
+        while (p < path.length()) {
+            final char c = path.charAt(p);
+            if (c == '[') {
+                final int close = path.indexOf(']', p);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Invalid path: " + path);
+                }
+                segments.add(position(path, p + 1, close));
+                p = close + 1;
+                if (p < path.length() && path.charAt(p) == '.') {
+                    p++;
+                    if (p == path.length()) {
+                        throw new IllegalArgumentException("Invalid path: " + path);
+                    }
+                }
+                continue;
+            }
+            int stop = p;
+            while (stop < path.length() && path.charAt(stop) != '.' && path.charAt(stop) != '[') {
+                stop++;
+            }
+            if (stop == p) {
+                throw new IllegalArgumentException("Invalid path: " + path);
+            }
+            segments.add(path.substring(p, stop));
+            p = stop;
+            if (p < path.length() && path.charAt(p) == '.') {
+                p++;
+                if (p == path.length()) {
+                    throw new IllegalArgumentException("Invalid path: " + path);
+                }
+            }
+        }
+        return segments;
+    }
+    
+    private static Integer position(final String path, final int start, final int stop) {
+        if (start == stop) {
+            throw new IllegalArgumentException("Invalid path: " + path);
+        }
+        int value = 0;
+        for (int i = start; i < stop; i++) {
+            final char c = path.charAt(i);
+            if (c < '0' || c > '9' || value > (Integer.MAX_VALUE - 9) / 10) {
+                throw new IllegalArgumentException("Invalid path: " + path);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    /**
+     * Where a path leads: an object body (a line range), an array (its header line) or a decoded value.
+     */
+    private static final class Node {
+        final int kind;
+        final int from;
+        final int to;
+        final int line;
+        final Object value;
+        
+        private Node(final int kind, final int from, final int to, final int line, final Object value) {
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+            this.line = line;
+            this.value = value;
+        }
+        
+        static Node body(final int from, final int to) {
+            return new Node(BODY, from, to, -1, null);
+        }
+        
+        static Node array(final int line) {
+            return new Node(ARRAY, -1, -1, line, null);
+        }
+        
+        static Node value(final Object value) {
+            return new Node(VALUE, -1, -1, -1, value);
+        }
+    }
+}
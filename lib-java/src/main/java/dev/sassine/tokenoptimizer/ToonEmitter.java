@@ -0,0 +1,247 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event-driven TOON writer used by the streaming conversions.
+ * Object fields are written as soon as their value arrives. Arrays are buffered until
+ * their end event, because the TOON header needs the item count and the row schema
+ * before the first item. Memory is bounded by the nesting depth plus the array currently
+ * being buffered, never by the size of the whole document.
+ */
+final class ToonEmitter {
+    
+    private static final String NEWLINE = "\n";
+    private static final String TOON_KEY_VALUE_SEPARATOR = ":";
+    private static final String TOON_NULL = "null";
+    
+    private final Appendable out;
+    
+    // Objects currently being streamed, innermost first
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    
+    // Containers of the array currently being buffered, innermost first
+    private final Deque<Object> buffer = new ArrayDeque<>();
+    private String bufferKey;
+    
+    private int depth;
+    private boolean started;
+    
+    /**
+     * Creates an emitter writing to the given sink.
+     * 
+     * @param out The sink receiving TOON text
+     */
+    ToonEmitter(final Appendable out) {
+        this.out = out;
+    }
+    
+    /**
+     * Returns true once the root value has been completely written.
+     * 
+     * @return true if the document is complete
+     */
+    boolean isComplete() {
+        return started && depth == 0;
+    }
+    
+    /**
+     * Forwards the current token of a Jackson parser.
+     * 
+     * @param parser The parser positioned on the token to copy
+     * @throws IOException if reading the token or writing fails
+     */
+    void copyCurrentEvent(final JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                startObject();
+                break;
+            case END_OBJECT:
+                endObject();
+                break;
+            case START_ARRAY:
+                startArray();
+                break;
+            case END_ARRAY:
+                endArray();
+                break;
+            case FIELD_NAME:
+                fieldName(parser.getCurrentName());
+                break;
+            case VALUE_STRING:
+                value(parser.getText());
+                break;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                value(parser.getNumberValue());
+                break;
+            case VALUE_TRUE:
+                value(Boolean.TRUE);
+                break;
+            case VALUE_FALSE:
+                value(Boolean.FALSE);
+                break;
+            case VALUE_NULL:
+                value(null);
+                break;
+            case VALUE_EMBEDDED_OBJECT:
+                value(parser.getEmbeddedObject());
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * Starts an object (the root object, a field value or an array item).
+     * 
+     * @throws IOException if writing fails
+     */
+    void startObject() throws IOException {
+        started = true;
+        depth++;
+        if (!buffer.isEmpty()) {
+            pushBuffered(new LinkedHashMap<String, Object>());
+            return;
+        }
+        if (frames.isEmpty()) {
+            frames.push(new Frame(0));
+            return;
+        }
+        // Nested object: key: followed by its fields one level deeper
+        final Frame parent = frames.peek();
+        writeKey(parent);
+        out.append(TOON_KEY_VALUE_SEPARATOR).append(NEWLINE);
+        frames.push(new Frame(parent.level + 1));
+    }
+    
+    /**
+     * Ends the current object.
+     * 
+     * @throws IOException if writing fails
+     */
+    void endObject() throws IOException {
+        depth--;
+        if (!buffer.isEmpty()) {
+            buffer.pop();
+            return;
+        }
+        frames.pop();
+    }
+    
+    /**
+     * Sets the name of the next field of the current object.
+     * 
+     * @param name The field name
+     */
+    void fieldName(final String name) {
+        if (!buffer.isEmpty()) {
+            bufferKey = name;
+            return;
+        }
+        frames.peek().key = name;
+    }
+    
+    /**
+     * Starts an array. Items are buffered until {@link #endArray()}.
+     * 
+     * @throws IOException if writing fails
+     */
+    void startArray() throws IOException {
+        started = true;
+        depth++;
+        pushBuffered(new ArrayList<Object>());
+    }
+    
+    /**
+     * Ends the current array, writing it once the outermost buffered array is complete.
+     * 
+     * @throws IOException if writing fails
+     */
+    void endArray() throws IOException {
+        depth--;
+        final Object array = buffer.pop();
+        if (!buffer.isEmpty()) {
+            return;
+        }
+        
+        if (frames.isEmpty()) {
+            // Root array: [count]... without key
+            ToonEncoder.writeArray((List<?>) array, 0, out, ToonConverter.DEFAULT_MAX_DEPTH);
+        } else {
+            final Frame frame = frames.peek();
+            writeKey(frame);
+            ToonEncoder.writeArray((List<?>) array, frame.level, out, ToonConverter.DEFAULT_MAX_DEPTH);
+        }
+    }
+    
+    /**
+     * Writes a scalar value (String, Number, Boolean or null).
+     * 
+     * @param value The value to write
+     * @throws IOException if writing fails
+     */
+    void value(final Object value) throws IOException {
+        if (!buffer.isEmpty()) {
+            addBuffered(value);
+            return;
+        }
+        if (frames.isEmpty()) {
+            // Root scalar
+            started = true;
+            out.append(value == null ? TOON_NULL : value.toString());
+            return;
+        }
+        writeKey(frames.peek());
+        out.append(TOON_KEY_VALUE_SEPARATOR).append(" ").append(value == null ? TOON_NULL : value.toString());
+    }
+    
+    /**
+     * Writes the line break (except for the first field) and the indented key of the next field.
+     */
+    private void writeKey(final Frame frame) throws IOException {
+        if (!frame.first) {
+            out.append(NEWLINE);
+        }
+        frame.first = false;
+        ToonEncoder.appendIndent(out, frame.level);
+        out.append(frame.key);
+    }
+    
+    private void pushBuffered(final Object container) {
+        if (!buffer.isEmpty()) {
+            addBuffered(container);
+        }
+        buffer.push(container);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void addBuffered(final Object value) {
+        final Object container = buffer.peek();
+        if (container instanceof List) {
+            ((List<Object>) container).add(value);
+        } else {
+            ((Map<String, Object>) container).put(bufferKey, value);
+        }
+    }
+    
+    /**
+     * An object being streamed.
+     */
+    private static final class Frame {
+        final int level;
+        boolean first = true;
+        String key;
+        
+        Frame(final int level) {
+            this.level = level;
+        }
+    }
+}
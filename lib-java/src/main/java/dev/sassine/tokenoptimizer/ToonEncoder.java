@@ -0,0 +1,542 @@
+package dev.sassine.tokenoptimizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes Map/List trees as TOON for {@link ToonConverter#write(Object, Appendable)} and
+ * {@link ToonConverter#toToon(Object)}, in a single pass straight into the sink.
+ * Open containers are kept on an explicit stack of frames instead of recursing, so the
+ * nesting depth of a document is bounded by a configurable maximum rather than by the thread
+ * stack, and the work stays linear in the output size however deep the document is.
+ * Values other than maps, iterables, strings, numbers and booleans are first converted to a
+ * tree with Jackson, as its serializers would write them.
+ */
+final class ToonEncoder {
+    
+    private static final String NEWLINE = "\n";
+    private static final String INDENT = "  ";
+    private static final String TOON_SEPARATOR = ",";
+    private static final String TOON_KEY_VALUE_SEPARATOR = ":";
+    private static final String TOON_ARRAY_START = "[";
+    private static final String TOON_ARRAY_END = "]";
+    private static final String TOON_OBJECT_START = "{";
+    private static final String TOON_OBJECT_END = "}";
+    private static final String TOON_NULL = "null";
+    private static final String QUOTE = "\"";
+    
+    // Precomputed indentation strings, indexed by nesting level
+    private static final String[] INDENTS = new String[32];
+    static {
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = INDENT.repeat(i);
+        }
+    }
+    
+    // Character constants for quote checking
+    private static final char SPACE = ' ';
+    private static final char COMMA = ',';
+    private static final char COLON = ':';
+    private static final char ARRAY_START = '[';
+    private static final char ARRAY_END = ']';
+    private static final char OBJECT_START = '{';
+    private static final char OBJECT_END = '}';
+    
+    // Frame types: fields of an object, "- " items of an expanded array, rows of a tabular
+    // array, cells of a row, values of an inline array and fields of an inline object
+    private static final int FIELDS = 0;
+    private static final int LIST_ITEMS = 1;
+    private static final int ROWS = 2;
+    private static final int CELLS = 3;
+    private static final int INLINE_ITEMS = 4;
+    private static final int INLINE_FIELDS = 5;
+    
+    // Presizing: largest initial buffer, and levels of the tree looked at (deeper values count as short scalars)
+    private static final int MAX_PRESIZE = 1 << 24;
+    private static final int ESTIMATE_DEPTH = 8;
+    
+    private final Appendable out;
+    private final int maxDepth;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    
+    private ToonEncoder(final Appendable out, final int maxDepth) {
+        this.out = out;
+        this.maxDepth = maxDepth;
+    }
+    
+    /**
+     * Writes a root value: object body, root array ([count]...) or scalar.
+     * 
+     * @param value The value to write
+     * @param out The sink receiving TOON text
+     * @param maxDepth Maximum number of nested objects and arrays
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the value is nested deeper than maxDepth
+     */
+    static void write(final Object value, final Appendable out, final int maxDepth) throws IOException {
+        final ToonEncoder encoder = new ToonEncoder(out, maxDepth);
+        final Object root = ToonConverter.toTree(value);
+        if (root instanceof Map) {
+            encoder.push(FIELDS, 0, ((Map<?, ?>) root).entrySet().iterator());
+        } else if (root instanceof Iterable) {
+            encoder.array(normalizeItems((Iterable<?>) root), 0);
+        } else {
+            out.append(root == null ? TOON_NULL : root.toString());
+        }
+        encoder.run();
+    }
+    
+    /**
+     * Writes an array right after its key (or at the document root when there is no key).
+     * Arrays of objects use the tabular or expanded format, anything else the inline format:
+     * key[count]{prop1,prop2}: / key[count]: / key[count]: value1,value2
+     * 
+     * @param list The array items
+     * @param level Indentation level of the line holding the key
+     * @param out The sink receiving TOON text
+     * @param maxDepth Maximum number of nested objects and arrays
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the array is nested deeper than maxDepth
+     */
+    static void writeArray(final List<?> list, final int level, final Appendable out, final int maxDepth)
+            throws IOException {
+        final ToonEncoder encoder = new ToonEncoder(out, maxDepth);
+        encoder.array(normalizeItems(list), level);
+        encoder.run();
+    }
+    
+    /**
+     * Estimates the TOON length of a value, to presize the buffer it is written to.
+     * Arrays are estimated from their first item, and only the first levels of the tree are
+     * looked at, so the estimate stays cheap and never recurses deeply.
+     * 
+     * @param value The value to be written
+     * @return The estimated number of chars, at most 16M
+     */
+    static int estimateSize(final Object value) {
+        final long size = estimateSize(value, 0);
+        // A quarter more, as growing a buffer that is slightly too small copies all of it
+        return (int) Math.min(size + (size >> 2), MAX_PRESIZE);
+    }
+    
+    private static long estimateSize(final Object value, final int level) {
+        if (value == null) {
+            return TOON_NULL.length() + 1;
+        }
+        if (level == ESTIMATE_DEPTH) {
+            return 8;
+        }
+        if (value instanceof Map) {
+            long size = 0;
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += INDENT.length() * level + String.valueOf(entry.getKey()).length() + 3
+                        + estimateSize(entry.getValue(), level + 1);
+                if (size >= MAX_PRESIZE) {
+                    return size;
+                }
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            final Collection<?> collection = (Collection<?>) value;
+            if (collection.isEmpty()) {
+                return 4;
+            }
+            final Object first = collection.iterator().next();
+            // Objects are estimated as rows: their keys are written once, in the header
+            final long item = first instanceof Map ? rowSize((Map<?, ?>) first, level + 1)
+                    : estimateSize(first, level + 1);
+            return Math.min(8 + (long) collection.size() * (INDENT.length() * (level + 1) + item), MAX_PRESIZE);
+        }
+        if (value instanceof String) {
+            return ((String) value).length() + 1;
+        }
+        return 6;
+    }
+    
+    private static long rowSize(final Map<?, ?> row, final int level) {
+        long size = 0;
+        for (final Object cell : row.values()) {
+            size += estimateSize(cell, level + 1);
+        }
+        return size;
+    }
+    
+    /**
+     * Appends the indentation for the given level.
+     * 
+     * @param out The sink to append to
+     * @param level Indentation level (0 = no indentation)
+     */
+    static void appendIndent(final Appendable out, final int level) throws IOException {
+        int remaining = level;
+        while (remaining >= INDENTS.length) {
+            out.append(INDENTS[INDENTS.length - 1]);
+            remaining -= INDENTS.length - 1;
+        }
+        out.append(INDENTS[remaining]);
+    }
+    
+    /**
+     * Writes the next entry of the innermost open container until every container is closed.
+     */
+    private void run() throws IOException {
+        while (depth > 0) {
+            final Frame frame = frames[depth - 1];
+            if (!frame.items.hasNext()) {
+                if (frame.type == INLINE_FIELDS) {
+                    out.append(TOON_OBJECT_END);
+                }
+                pop();
+                continue;
+            }
+            final Object item = frame.items.next();
+            switch (frame.type) {
+                case FIELDS:
+                    field(frame, (Map.Entry<?, ?>) item);
+                    break;
+                case LIST_ITEMS:
+                    listItem(frame, (Map<?, ?>) item);
+                    break;
+                case ROWS:
+                    // Row values follow the schema of the first row
+                    out.append(NEWLINE);
+                    appendIndent(out, frame.level);
+                    push(CELLS, frame.level, frame.keys.iterator()).row = (Map<?, ?>) item;
+                    break;
+                case CELLS:
+                    if (!frame.first) {
+                        out.append(TOON_SEPARATOR);
+                    }
+                    frame.first = false;
+                    inline(frame.row.get(item));
+                    break;
+                case INLINE_ITEMS:
+                    if (!frame.first) {
+                        out.append(TOON_SEPARATOR);
+                    }
+                    frame.first = false;
+                    inline(item);
+                    break;
+                default:
+                    if (!frame.first) {
+                        out.append(TOON_SEPARATOR);
+                    }
+                    frame.first = false;
+                    final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
+                    out.append(String.valueOf(entry.getKey())).append(TOON_KEY_VALUE_SEPARATOR);
+                    inline(entry.getValue());
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Writes a "key: value" field of an object: the first field of a "- " item stays on the
+     * item line, every other field starts an indented line of its own.
+     */
+    private void field(final Frame frame, final Map.Entry<?, ?> entry) throws IOException {
+        if (!frame.first) {
+            out.append(NEWLINE);
+        }
+        if (!frame.first || !frame.afterDash) {
+            appendIndent(out, frame.level);
+        }
+        frame.first = false;
+        out.append(String.valueOf(entry.getKey()));
+        
+        final Object value = normalize(entry.getValue());
+        if (value instanceof Iterable) {
+            // No : before array, it's added by the array format
+            array(normalizeItems((Iterable<?>) value), frame.level);
+            return;
+        }
+        out.append(TOON_KEY_VALUE_SEPARATOR);
+        if (value instanceof Map) {
+            // Nested object: its fields one level deeper
+            out.append(NEWLINE);
+            push(FIELDS, frame.level + 1, ((Map<?, ?>) value).entrySet().iterator());
+        } else {
+            out.append(" ").append(value == null ? TOON_NULL : value.toString());
+        }
+    }
+    
+    /**
+     * Writes an item of an expanded array: "- " followed by the fields of the object, the
+     * first one on the same line.
+     */
+    private void listItem(final Frame frame, final Map<?, ?> item) throws IOException {
+        if (!frame.first) {
+            out.append(NEWLINE);
+        }
+        frame.first = false;
+        out.append(NEWLINE);
+        appendIndent(out, frame.level);
+        out.append("- ");
+        push(FIELDS, frame.level + 1, item.entrySet().iterator()).afterDash = true;
+    }
+    
+    /**
+     * Writes the header of an array and opens its items.
+     * Format according to official library:
+     * For arrays with same structure: key[count]{prop1,prop2,prop3}:
+     *                                   val1,val2,val3
+     *                                   val4,val5,val6
+     * For arrays with different structures: key[count]:
+     *                                        - prop1: val1
+     *                                          prop2: val2
+     * Anything but a non-empty array of objects: key[count]: value1,value2
+     * 
+     * @param list The array items, already normalized
+     * @param level Indentation level of the line holding the key
+     */
+    private void array(final List<?> list, final int level) throws IOException {
+        if (!isArrayOfObjects(list)) {
+            simpleArray(list);
+            return;
+        }
+        final int count = list.size();
+        
+        // Check if all objects have the same structure (same keys in any order)
+        final Map<?, ?> firstMap = (Map<?, ?>) list.get(0);
+        final Set<?> schemaKeys = firstMap.keySet();
+        boolean hasUniformStructure = true;
+        for (int i = 1; i < count && hasUniformStructure; i++) {
+            hasUniformStructure = hasSameKeys((Map<?, ?>) list.get(i), schemaKeys);
+        }
+        
+        // Check if the first object has nested arrays or objects (use expanded format in that case)
+        boolean hasNestedStructures = false;
+        for (final Object value : firstMap.values()) {
+            final Object tree = normalize(value);
+            if (tree instanceof Iterable || tree instanceof Map) {
+                hasNestedStructures = true;
+                break;
+            }
+        }
+        
+        out.append(TOON_ARRAY_START).append(Integer.toString(count)).append(TOON_ARRAY_END);
+        // Use compact format only if: uniform structure, more than 1 item, and no nested structures
+        if (hasUniformStructure && count > 1 && !hasNestedStructures) {
+            out.append(TOON_OBJECT_START);
+            boolean firstKey = true;
+            for (final Object key : schemaKeys) {
+                if (!firstKey) {
+                    out.append(TOON_SEPARATOR);
+                }
+                firstKey = false;
+                out.append(String.valueOf(key));
+            }
+            out.append(TOON_OBJECT_END).append(TOON_KEY_VALUE_SEPARATOR);
+            push(ROWS, level + 1, list.iterator()).keys = schemaKeys;
+        } else {
+            out.append(TOON_KEY_VALUE_SEPARATOR);
+            push(LIST_ITEMS, level + 1, list.iterator());
+        }
+    }
+    
+    /**
+     * Writes the header of an inline array and opens its values: [count]: value1,value2,value3
+     */
+    private void simpleArray(final List<?> list) throws IOException {
+        out.append(TOON_ARRAY_START).append(Integer.toString(list.size())).append(TOON_ARRAY_END)
+                .append(TOON_KEY_VALUE_SEPARATOR);
+        if (!list.isEmpty()) {
+            out.append(" ");
+            push(INLINE_ITEMS, 0, list.iterator());
+        }
+    }
+    
+    /**
+     * Writes a value inline (array values, row cells and inline object fields), opening
+     * nested arrays and objects in their inline form.
+     */
+    private void inline(final Object item) throws IOException {
+        final Object value = normalize(item);
+        if (value == null) {
+            out.append(TOON_NULL);
+        } else if (value instanceof Iterable) {
+            // Arrays inside array values are always treated as simple arrays
+            simpleArray(normalizeItems((Iterable<?>) value));
+        } else if (value instanceof Map) {
+            // Nested object - this shouldn't happen in array values according to TOON spec
+            // But handle it gracefully by converting to compact representation
+            out.append(TOON_OBJECT_START);
+            push(INLINE_FIELDS, 0, ((Map<?, ?>) value).entrySet().iterator());
+        } else if (value instanceof String) {
+            final String str = (String) value;
+            // Strings need quotes if they contain special characters or are pure numbers
+            if (needsQuotesInArray(str)) {
+                out.append(QUOTE).append(str).append(QUOTE);
+            } else {
+                out.append(str);
+            }
+        } else {
+            out.append(value.toString());
+        }
+    }
+    
+    private Frame push(final int type, final int level, final Iterator<?> items) {
+        if (depth >= maxDepth) {
+            throw new IllegalArgumentException("TOON nesting depth exceeds the maximum of " + maxDepth);
+        }
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            frames[depth] = frame;
+        }
+        depth++;
+        frame.type = type;
+        frame.level = level;
+        frame.items = items;
+        frame.first = true;
+        frame.afterDash = false;
+        return frame;
+    }
+    
+    private void pop() {
+        final Frame frame = frames[--depth];
+        frame.items = null;
+        frame.keys = null;
+        frame.row = null;
+    }
+    
+    /**
+     * Returns values that Jackson would not write as a map, array, string, number or boolean
+     * converted to a tree, so they are written as its serializers would write them.
+     */
+    private static Object normalize(final Object value) {
+        return isTreeValue(value) ? value : ToonConverter.toTree(value);
+    }
+    
+    private static boolean isTreeValue(final Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Map || value instanceof Iterable;
+    }
+    
+    /**
+     * Returns the items of an Iterable as a List of tree values, copying it only when it is
+     * not a List already or holds values to convert.
+     */
+    private static List<?> normalizeItems(final Iterable<?> iterable) {
+        if (iterable instanceof List) {
+            final List<?> list = (List<?>) iterable;
+            boolean plain = true;
+            for (final Object item : list) {
+                if (!isTreeValue(item)) {
+                    plain = false;
+                    break;
+                }
+            }
+            if (plain) {
+                return list;
+            }
+        }
+        final List<Object> list = iterable instanceof Collection
+                ? new ArrayList<>(((Collection<?>) iterable).size()) : new ArrayList<>();
+        for (final Object item : iterable) {
+            list.add(normalize(item));
+        }
+        return list;
+    }
+    
+    /**
+     * Checks if a list contains only Map objects (array of objects).
+     * 
+     * @param list The list to check
+     * @return true if all items are Maps
+     */
+    private static boolean isArrayOfObjects(final List<?> list) {
+        if (list.isEmpty()) {
+            return false;
+        }
+        for (final Object item : list) {
+            if (!(item instanceof Map)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if a map has the same keys as the provided set (in any order).
+     * 
+     * @param map The map to check
+     * @param keys The expected keys
+     * @return true if map has exactly the same keys
+     */
+    private static boolean hasSameKeys(final Map<?, ?> map, final Set<?> keys) {
+        if (map.size() != keys.size()) {
+            return false;
+        }
+        for (final Object key : keys) {
+            if (!map.containsKey(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if a string needs quotes when used in an array value.
+     * According to TOON spec: strings that are pure numbers need quotes to differentiate from numbers.
+     * 
+     * @param str The string to check
+     * @return true if quotes are needed
+     */
+    static boolean needsQuotesInArray(final String str) {
+        if (str.isEmpty()) {
+            return true;
+        }
+        
+        // Check if string is a pure number (needs quotes to differentiate from number type)
+        boolean isNumeric = true;
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (!Character.isDigit(c) && c != '.' && c != '-' && c != '+') {
+                isNumeric = false;
+                break;
+            }
+        }
+        if (isNumeric && str.length() > 0) {
+            return true; // Pure numeric strings need quotes
+        }
+        
+        // Check for special characters that require quotes in array values
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c == SPACE || c == COMMA || c == COLON || c == ARRAY_START || c == ARRAY_END
+                || c == OBJECT_START || c == OBJECT_END || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * An open container: the iterator over its entries, items, rows or cells.
+     */
+    private static final class Frame {
+        int type;
+        // Indentation level of the fields, items or rows
+        int level;
+        Iterator<?> items;
+        // Nothing written yet (no separator or line break before the next entry)
+        boolean first;
+        // Fields of a "- " item: the first one goes on the item line
+        boolean afterDash;
+        // Tabular arrays: the schema keys, and the row whose cells are written
+        Set<?> keys;
+        Map<?, ?> row;
+    }
+}
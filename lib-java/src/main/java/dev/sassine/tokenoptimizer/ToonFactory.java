@@ -0,0 +1,121 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.io.IOContext;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Jackson factory for the TOON data format.
+ * Creates {@link ToonGenerator} and {@link ToonParser} instances, so any ObjectMapper built on
+ * this factory (see {@link ToonMapper}) serializes to and binds from TOON directly.
+ */
+public class ToonFactory extends JsonFactory {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Name of the TOON format, as reported by {@link #getFormatName()}.
+     */
+    public static final String FORMAT_NAME_TOON = "TOON";
+    
+    /**
+     * Creates a factory without an object codec.
+     */
+    public ToonFactory() {
+        this(null);
+    }
+    
+    /**
+     * Creates a factory bound to the given object codec.
+     * 
+     * @param codec The codec used for POJO serialization (usually the owning ToonMapper)
+     */
+    public ToonFactory(final ObjectCodec codec) {
+        super(codec);
+    }
+    
+    /**
+     * Copy constructor used by {@link #copy()}.
+     * 
+     * @param src The factory to copy settings from
+     * @param codec The codec for the new factory
+     */
+    protected ToonFactory(final ToonFactory src, final ObjectCodec codec) {
+        super(src, codec);
+    }
+    
+    @Override
+    public ToonFactory copy() {
+        _checkInvalidCopy(ToonFactory.class);
+        return new ToonFactory(this, null);
+    }
+    
+    @Override
+    public String getFormatName() {
+        return FORMAT_NAME_TOON;
+    }
+    
+    @Override
+    public boolean requiresPropertyOrdering() {
+        return false;
+    }
+    
+    @Override
+    public boolean canHandleBinaryNatively() {
+        return false;
+    }
+    
+    @Override
+    public boolean canUseCharArrays() {
+        return true;
+    }
+    
+    @Override
+    protected JsonGenerator _createGenerator(final Writer out, final IOContext ctxt) throws IOException {
+        return new ToonGenerator(_generatorFeatures, _objectCodec, out);
+    }
+    
+    @Override
+    protected JsonGenerator _createUTF8Generator(final OutputStream out, final IOContext ctxt) throws IOException {
+        return new ToonGenerator(_generatorFeatures, _objectCodec, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    protected JsonParser _createParser(final InputStream in, final IOContext ctxt) throws IOException {
+        return _createParser(new InputStreamReader(in, StandardCharsets.UTF_8), ctxt);
+    }
+    
+    @Override
+    protected JsonParser _createParser(final Reader r, final IOContext ctxt) throws IOException {
+        return new ToonParser(ctxt, _parserFeatures, _objectCodec, r);
+    }
+    
+    @Override
+    protected JsonParser _createParser(final char[] data, final int offset, final int len, final IOContext ctxt,
+            final boolean recyclable) throws IOException {
+        return new ToonParser(ctxt, _parserFeatures, _objectCodec, null, data, offset, offset + len, recyclable);
+    }
+    
+    @Override
+    protected JsonParser _createParser(final byte[] data, final int offset, final int len, final IOContext ctxt)
+            throws IOException {
+        return _createParser(new ByteArrayInputStream(data, offset, len), ctxt);
+    }
+    
+    @Override
+    protected JsonParser _createParser(final DataInput input, final IOContext ctxt) throws IOException {
+        throw new UnsupportedOperationException("TOON parsing from DataInput is not supported");
+    }
+}
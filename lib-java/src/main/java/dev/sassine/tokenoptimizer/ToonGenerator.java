@@ -0,0 +1,294 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Jackson generator that writes TOON instead of JSON.
+ * Bean, map and collection serializers drive it directly, so objects are converted to TOON
+ * without building an intermediate Map tree. Arrays are buffered until they end, because the
+ * TOON header needs the item count and the row schema up front.
+ * Instances are created by {@link ToonFactory}.
+ */
+public final class ToonGenerator extends GeneratorBase {
+    
+    private final Writer writer;
+    private final ToonEmitter emitter;
+    
+    /**
+     * Creates a generator writing to the given writer.
+     * 
+     * @param features Jackson generator feature flags
+     * @param codec The object codec (usually the owning ToonMapper)
+     * @param writer The writer receiving TOON text
+     */
+    ToonGenerator(final int features, final ObjectCodec codec, final Writer writer) {
+        super(features, codec);
+        this.writer = writer;
+        this.emitter = new ToonEmitter(writer);
+    }
+    
+    @Override
+    public Object getOutputTarget() {
+        return writer;
+    }
+    
+    @Override
+    public void writeStartArray() throws IOException {
+        _verifyValueWrite("start an array");
+        _writeContext = _writeContext.createChildArrayContext();
+        emitter.startArray();
+    }
+    
+    @Override
+    public void writeEndArray() throws IOException {
+        if (!_writeContext.inArray()) {
+            _reportError("Current context not Array but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        emitter.endArray();
+    }
+    
+    @Override
+    public void writeStartObject() throws IOException {
+        _verifyValueWrite("start an object");
+        _writeContext = _writeContext.createChildObjectContext();
+        emitter.startObject();
+    }
+    
+    @Override
+    public void writeEndObject() throws IOException {
+        if (!_writeContext.inObject()) {
+            _reportError("Current context not Object but " + _writeContext.typeDesc());
+        }
+        _writeContext = _writeContext.clearAndGetParent();
+        emitter.endObject();
+    }
+    
+    @Override
+    public void writeFieldName(final String name) throws IOException {
+        if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+            _reportError("Can not write a field name, expecting a value");
+        }
+        emitter.fieldName(name);
+    }
+    
+    @Override
+    public void writeFieldName(final SerializableString name) throws IOException {
+        writeFieldName(name.getValue());
+    }
+    
+    @Override
+    public void writeString(final String text) throws IOException {
+        if (text == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_STRING);
+        emitter.value(text);
+    }
+    
+    @Override
+    public void writeString(final char[] text, final int offset, final int len) throws IOException {
+        writeString(new String(text, offset, len));
+    }
+    
+    @Override
+    public void writeRawUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+        writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    public void writeUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+        writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    public void writeRaw(final String text) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeRaw(final String text, final int offset, final int len) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeRaw(final char[] text, final int offset, final int len) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeRaw(final char c) throws IOException {
+        _reportUnsupportedOperation();
+    }
+    
+    @Override
+    public void writeBinary(final Base64Variant variant, final byte[] data, final int offset, final int len)
+            throws IOException {
+        if (data == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_BINARY);
+        final byte[] slice = (offset == 0 && len == data.length) ? data : Arrays.copyOfRange(data, offset, offset + len);
+        emitter.value(variant.encode(slice));
+    }
+    
+    @Override
+    public void writeNumber(final int value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final long value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final BigInteger value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final double value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final float value) throws IOException {
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(value);
+    }
+    
+    @Override
+    public void writeNumber(final BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(isEnabled(Feature.WRITE_BIGDECIMAL_AS_PLAIN) ? new NumberText(_asString(value)) : value);
+    }
+    
+    @Override
+    public void writeNumber(final String encodedValue) throws IOException {
+        if (encodedValue == null) {
+            writeNull();
+            return;
+        }
+        _verifyValueWrite(WRITE_NUMBER);
+        emitter.value(new NumberText(encodedValue));
+    }
+    
+    @Override
+    public void writeBoolean(final boolean state) throws IOException {
+        _verifyValueWrite(WRITE_BOOLEAN);
+        emitter.value(state);
+    }
+    
+    @Override
+    public void writeNull() throws IOException {
+        _verifyValueWrite(WRITE_NULL);
+        emitter.value(null);
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        if (isEnabled(Feature.FLUSH_PASSED_TO_STREAM)) {
+            writer.flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (isClosed()) {
+            return;
+        }
+        // Close any open arrays/objects first, so buffered arrays still get written
+        if (isEnabled(Feature.AUTO_CLOSE_JSON_CONTENT)) {
+            while (true) {
+                if (_writeContext.inArray()) {
+                    writeEndArray();
+                } else if (_writeContext.inObject()) {
+                    writeEndObject();
+                } else {
+                    break;
+                }
+            }
+        }
+        super.close();
+        if (isEnabled(Feature.AUTO_CLOSE_TARGET)) {
+            writer.close();
+        } else if (isEnabled(Feature.FLUSH_PASSED_TO_STREAM)) {
+            writer.flush();
+        }
+    }
+    
+    @Override
+    protected void _releaseBuffers() {
+        // No recyclable buffers
+    }
+    
+    @Override
+    protected void _verifyValueWrite(final String typeMsg) throws IOException {
+        if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+            _reportError("Can not " + typeMsg + ", expecting field name");
+        }
+    }
+    
+    /**
+     * Pre-encoded numeric text, written verbatim (never quoted like a String would be).
+     */
+    static final class NumberText extends Number {
+        private static final long serialVersionUID = 1L;
+        
+        private final String text;
+        
+        NumberText(final String text) {
+            this.text = text;
+        }
+        
+        @Override
+        public int intValue() {
+            return (int) doubleValue();
+        }
+        
+        @Override
+        public long longValue() {
+            return (long) doubleValue();
+        }
+        
+        @Override
+        public float floatValue() {
+            return (float) doubleValue();
+        }
+        
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(text);
+        }
+        
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
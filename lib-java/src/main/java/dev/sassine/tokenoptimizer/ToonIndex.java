@@ -0,0 +1,209 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.Arrays;
+
+/**
+ * Structural index of a TOON document, built in one pass over its chars.
+ * Records, for each non-blank line, where it starts and ends, its indentation and where its
+ * key ends, which also tells array headers apart. No value is decoded and no string is created:
+ * {@link ToonDocument} uses the index to find the lines a path touches and decodes only those.
+ */
+final class ToonIndex {
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private final char[] buf;
+    private int size;
+    
+    // Per line: offset of the line, offset after its last non-space char, indentation,
+    // offset of the ':' or '[' ending its key (-1 if it has none) and 1-based line number
+    private int[] begins = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] indents = new int[INITIAL_CAPACITY];
+    private int[] keyEnds = new int[INITIAL_CAPACITY];
+    private int[] lineNumbers = new int[INITIAL_CAPACITY];
+    // First line after the lines nested under each line
+    private int[] subtreeEnds;
+    
+    /**
+     * Indexes a range of a char array.
+     * 
+     * @param buf The buffer holding TOON text
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     */
+    ToonIndex(final char[] buf, final int start, final int end) {
+        this.buf = buf;
+        int lineNumber = 0;
+        int p = start;
+        while (p < end) {
+            final int begin = p;
+            lineNumber++;
+            while (p < end && buf[p] != '\n') {
+                p++;
+            }
+            int last = p;
+            while (last > begin && buf[last - 1] <= ' ') {
+                last--;
+            }
+            int content = begin;
+            while (content < last && buf[content] == ' ') {
+                content++;
+            }
+            if (content < last) {
+                add(begin, last, content - begin, keyEnd(content, last), lineNumber);
+            }
+            p++;
+        }
+        subtreeEnds = subtreeEnds();
+    }
+    
+    /**
+     * Returns the number of non-blank lines.
+     * 
+     * @return The line count
+     */
+    int size() {
+        return size;
+    }
+    
+    char[] buffer() {
+        return buf;
+    }
+    
+    /**
+     * Returns the offset where a line starts, before its indentation.
+     */
+    int begin(final int line) {
+        return begins[line];
+    }
+    
+    /**
+     * Returns the offset after the last non-space char of a line.
+     */
+    int end(final int line) {
+        return ends[line];
+    }
+    
+    int indent(final int line) {
+        return indents[line];
+    }
+    
+    /**
+     * Returns the offset of the first char after the indentation of a line.
+     */
+    int content(final int line) {
+        return begins[line] + indents[line];
+    }
+    
+    /**
+     * Returns the offset of the ':' or '[' ending the key of a line, or -1 for rows, list items
+     * and bare values. Keyless array headers ("[N]: ...") end their key at their first char.
+     */
+    int keyEnd(final int line) {
+        return keyEnds[line];
+    }
+    
+    int lineNumber(final int line) {
+        return lineNumbers[line];
+    }
+    
+    /**
+     * Returns true if a line is an array header ("key[N]..." or "[N]...").
+     */
+    boolean isHeader(final int line) {
+        return keyEnds[line] >= 0 && buf[keyEnds[line]] == '[';
+    }
+    
+    /**
+     * Returns true if a line is a "- " list item.
+     */
+    boolean isListItem(final int line) {
+        final int content = content(line);
+        return buf[content] == '-' && (content + 1 == ends[line] || buf[content + 1] == ' ');
+    }
+    
+    /**
+     * Returns the first line after the lines nested under the given one.
+     */
+    int subtreeEnd(final int line) {
+        return subtreeEnds[line];
+    }
+    
+    private void add(final int begin, final int end, final int indent, final int keyEnd, final int lineNumber) {
+        if (size == begins.length) {
+            final int capacity = size * 2;
+            begins = Arrays.copyOf(begins, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            indents = Arrays.copyOf(indents, capacity);
+            keyEnds = Arrays.copyOf(keyEnds, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        }
+        begins[size] = begin;
+        ends[size] = end;
+        indents[size] = indent;
+        keyEnds[size] = keyEnd;
+        lineNumbers[size] = lineNumber;
+        size++;
+    }
+    
+    /**
+     * Computes where the nested lines of every line end, with a stack of the open lines.
+     */
+    private int[] subtreeEnds() {
+        final int[] result = new int[size];
+        final int[] open = new int[size];
+        int depth = 0;
+        for (int line = 0; line < size; line++) {
+            while (depth > 0 && indents[open[depth - 1]] >= indents[line]) {
+                result[open[--depth]] = line;
+            }
+            open[depth++] = line;
+        }
+        while (depth > 0) {
+            result[open[--depth]] = size;
+        }
+        return result;
+    }
+    
+    /**
+     * Finds the end of the key starting at the given offset, as the parser does.
+     */
+    private int keyEnd(final int start, final int end) {
+        if (isArrayHeader(start, end)) {
+            return start;
+        }
+        int p = start;
+        if (buf[p] == '"') {
+            p = p + 1;
+            while (p < end && buf[p] != '"') {
+                p++;
+            }
+            if (p == end) {
+                return -1;
+            }
+            p++;
+            while (p < end && buf[p] == ' ') {
+                p++;
+            }
+            return p < end && (buf[p] == ':' || isArrayHeader(p, end)) ? p : -1;
+        }
+        if (buf[p] == '-' && (p + 1 == end || buf[p + 1] == ' ')) {
+            return -1;
+        }
+        for (; p < end; p++) {
+            final char c = buf[p];
+            if (c == ':' || (c == '[' && isArrayHeader(p, end))) {
+                return p;
+            }
+            if (c == '"' || c == ',') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
+    private boolean isArrayHeader(final int at, final int end) {
+        return buf[at] == '[' && at + 1 < end && buf[at + 1] >= '0' && buf[at + 1] <= '9';
+    }
+}
@@ -0,0 +1,56 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ObjectMapper that reads and writes TOON instead of JSON.
+ * Uses Jackson's regular (cached) serializers and deserializers, so annotations, views and modules
+ * apply exactly as they do for JSON:
+ * <pre>
+ * ToonMapper mapper = new ToonMapper();
+ * String toon = mapper.writeValueAsString(pojo);
+ * mapper.writeValue(outputStream, pojo);
+ * Pojo back = mapper.readValue(toon, Pojo.class);
+ * </pre>
+ * Instances are thread-safe once configured and should be reused.
+ */
+public class ToonMapper extends ObjectMapper {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Creates a mapper with a default {@link ToonFactory}.
+     */
+    public ToonMapper() {
+        this(new ToonFactory());
+    }
+    
+    /**
+     * Creates a mapper using the given factory.
+     * 
+     * @param factory The TOON factory to use
+     */
+    public ToonMapper(final ToonFactory factory) {
+        super(factory);
+    }
+    
+    /**
+     * Copy constructor used by {@link #copy()}.
+     * 
+     * @param src The mapper to copy configuration from
+     */
+    protected ToonMapper(final ToonMapper src) {
+        super(src);
+    }
+    
+    @Override
+    public ToonMapper copy() {
+        _checkInvalidCopy(ToonMapper.class);
+        return new ToonMapper(this);
+    }
+    
+    @Override
+    public ToonFactory getFactory() {
+        return (ToonFactory) _jsonFactory;
+    }
+}
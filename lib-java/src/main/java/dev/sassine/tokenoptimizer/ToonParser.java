@@ -0,0 +1,1477 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.io.ContentReference;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.DupDetector;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Jackson parser that reads TOON as a JSON token stream.
+ * Handles nested objects, tabular arrays (key[N]{a,b}: followed by rows), expanded arrays
+ * ("- " items) and inline arrays (key[N]: a,b), so deserializers bind TOON straight to POJOs
+ * without an intermediate Map tree. Item counts and row widths are checked against their headers.
+ * Instances are created by {@link ToonFactory}.
+ */
+public final class ToonParser extends ParserMinimalBase {
+    
+    // Frame types
+    private static final int OBJECT = 0;
+    private static final int INLINE_ARRAY = 1;
+    private static final int INLINE_OBJECT = 2;
+    private static final int TABULAR_ARRAY = 3;
+    private static final int LIST_ARRAY = 4;
+    private static final int BLOCK_ARRAY = 5;
+    
+    // Kinds of the current scalar token
+    private static final int NUMBER_NONE = 0;
+    private static final int NUMBER_INT = 1;
+    private static final int NUMBER_FLOAT = 2;
+    
+    private static final int READ_CHUNK = 8192;
+    
+    // Longest string value looked up in the interning dictionary
+    private static final int MAX_INTERNED_LENGTH = 64;
+    
+    // Schema of a "{}" header, whose rows have no fields
+    private static final String[] NO_KEYS = {};
+    
+    private final IOContext ioContext;
+    private final Reader reader;
+    private final boolean bufferRecyclable;
+    private ObjectCodec codec;
+    private JsonReadContext parsingContext;
+    private boolean closed;
+    private boolean started;
+    
+    // Input and the offset of the next unread line; eof is set once the reader is exhausted
+    private char[] buf;
+    private int end;
+    private int pos;
+    private boolean eof = true;
+    // Input comes from feed() rather than a reader
+    private boolean fed;
+    private int nextLineNumber = 1;
+    
+    // Current line, valid while lineLoaded is set
+    private boolean lineLoaded;
+    private int lineNumber;
+    private int lineBegin;
+    private int lineStart;
+    private int lineEnd;
+    private int lineIndent;
+    
+    // Cursor for values on the current line (inline arrays, rows, inline objects)
+    private int cell;
+    private int braceDepth;
+    
+    // Open containers, innermost last
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    private int maxDepth = ToonConverter.DEFAULT_MAX_DEPTH;
+    
+    // Current token
+    private int textStart;
+    private int textEnd;
+    private String text;
+    private boolean escaped;
+    private int numberKind;
+    private NumberType numberType;
+    private long longValue;
+    private int tokenLine;
+    private int tokenColumn;
+    
+    // Header of the array being opened
+    private int headerCount;
+    private String[] headerSchema;
+    
+    // Shares repeated keys and string values when set
+    private StringDictionary dictionary;
+    // Whether FIELD_NAME tokens of objects carry their name
+    private boolean names = true;
+    
+    /**
+     * Creates a parser that reads the given reader incrementally.
+     * Only the current line is kept in the buffer, so memory is bounded by the longest line
+     * rather than by the document, and tokens are available before the input is complete.
+     * 
+     * @param ctxt Jackson I/O context
+     * @param features Jackson parser feature flags
+     * @param codec The object codec (usually the owning ToonMapper)
+     * @param reader The reader supplying TOON text
+     */
+    ToonParser(final IOContext ctxt, final int features, final ObjectCodec codec, final Reader reader) {
+        this(ctxt, features, codec, reader, new char[READ_CHUNK], 0, 0, false);
+        this.eof = false;
+    }
+    
+    /**
+     * Creates a non-blocking parser that is given its input with {@link #feed} and
+     * {@link #endOfInput}. Until the input ends, {@link #nextToken} returns
+     * {@link JsonToken#NOT_AVAILABLE} when the next token needs a line that is not complete yet.
+     * 
+     * @param features Jackson parser feature flags
+     */
+    ToonParser(final int features) {
+        this(null, features, null, null, new char[READ_CHUNK], 0, 0, false);
+        this.eof = false;
+        this.fed = true;
+    }
+    
+    /**
+     * Creates a parser over a range of a char array.
+     * 
+     * @param ctxt Jackson I/O context
+     * @param features Jackson parser feature flags
+     * @param codec The object codec (usually the owning ToonMapper)
+     * @param reader The reader the content came from, closed with the parser (may be null)
+     * @param buf The buffer holding TOON text
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @param bufferRecyclable Whether the buffer belongs to the I/O context and must be released on close
+     */
+    ToonParser(final IOContext ctxt, final int features, final ObjectCodec codec, final Reader reader,
+            final char[] buf, final int start, final int end, final boolean bufferRecyclable) {
+        super(features);
+        this.ioContext = ctxt;
+        this.codec = codec;
+        this.reader = reader;
+        this.buf = buf;
+        this.pos = start;
+        this.end = end;
+        this.bufferRecyclable = bufferRecyclable;
+        final DupDetector dups = Feature.STRICT_DUPLICATE_DETECTION.enabledIn(features)
+                ? DupDetector.rootDetector(this) : null;
+        this.parsingContext = JsonReadContext.createRootContext(dups);
+    }
+    
+    @Override
+    public ObjectCodec getCodec() {
+        return codec;
+    }
+    
+    @Override
+    public void setCodec(final ObjectCodec codec) {
+        this.codec = codec;
+    }
+    
+    @Override
+    public Version version() {
+        return Version.unknownVersion();
+    }
+    
+    @Override
+    public Object getInputSource() {
+        return reader;
+    }
+    
+    @Override
+    public JsonToken nextToken() throws IOException {
+        text = null;
+        escaped = false;
+        numberKind = NUMBER_NONE;
+        numberType = null;
+        if (closed) {
+            return null;
+        }
+        if (fed && !eof && needsLine() && !hasCompleteLine()) {
+            // Every call loads at most one line, so nothing has changed yet
+            return _currToken = JsonToken.NOT_AVAILABLE;
+        }
+        if (depth == 0) {
+            return _currToken = started ? endDocument() : startDocument();
+        }
+        final Frame frame = frames[depth - 1];
+        switch (frame.type) {
+            case OBJECT:
+                return _currToken = nextInObject(frame);
+            case INLINE_ARRAY:
+                return _currToken = nextInInlineArray(frame);
+            case INLINE_OBJECT:
+                return _currToken = nextInInlineObject(frame);
+            case TABULAR_ARRAY:
+                return _currToken = nextInTabularArray(frame);
+            case BLOCK_ARRAY:
+                return _currToken = nextInBlockArray(frame);
+            default:
+                return _currToken = nextInListArray(frame);
+        }
+    }
+    
+    /**
+     * Reads the first token: a root object, a root array ([N]...) or a root scalar.
+     */
+    private JsonToken startDocument() throws IOException {
+        started = true;
+        if (!loadLine()) {
+            return null;
+        }
+        markToken(lineStart);
+        if (isArrayHeader(lineStart)) {
+            return startArray(lineStart, lineIndent);
+        }
+        if (findKeyEnd(lineStart) >= 0) {
+            push(OBJECT, lineIndent, lineIndent - 1);
+            return startObject();
+        }
+        final JsonToken token = scalar(lineStart, lineEnd, false);
+        consumeLine();
+        return value(token);
+    }
+    
+    /**
+     * Called once the root value is complete: only blank lines may follow.
+     */
+    private JsonToken endDocument() throws IOException {
+        if (loadLine()) {
+            markToken(lineStart);
+            _reportError("Unexpected content after the root value");
+        }
+        return null;
+    }
+    
+    /**
+     * Object written as indented "key: value" lines (the root, a nested object or a "- " item).
+     */
+    private JsonToken nextInObject(final Frame frame) throws IOException {
+        if (frame.pending) {
+            frame.pending = false;
+            return fieldValue(frame);
+        }
+        if (!loadLine()) {
+            return endObject();
+        }
+        if (frame.indent < 0) {
+            // First field decides the indentation of a nested object
+            if (lineIndent <= frame.owner) {
+                return endObject();
+            }
+            frame.indent = lineIndent;
+        }
+        if (lineIndent < frame.indent) {
+            return endObject();
+        }
+        markToken(lineStart);
+        if (lineIndent > frame.indent) {
+            _reportError("Unexpected indentation");
+        }
+        final int keyEnd = isListItem() ? -1 : findKeyEnd(lineStart);
+        if (keyEnd < 0) {
+            _reportError("Expected 'key: value' or 'key[N]:' but found '" + lineText() + "'");
+        }
+        parsingContext.setCurrentName(names ? key(lineStart, keyEnd) : null);
+        frame.pending = true;
+        frame.valueAt = keyEnd;
+        return JsonToken.FIELD_NAME;
+    }
+    
+    /**
+     * Reads the value of the field whose key ended at frame.valueAt: an array header,
+     * a scalar on the same line or a nested object on the following lines.
+     */
+    private JsonToken fieldValue(final Frame frame) throws IOException {
+        final int separator = frame.valueAt;
+        markToken(separator);
+        if (buf[separator] == '[') {
+            return startArray(separator, frame.indent);
+        }
+        final int valueStart = skipSpaces(separator + 1);
+        if (valueStart < lineEnd) {
+            markToken(valueStart);
+            final JsonToken token = scalar(valueStart, lineEnd, false);
+            consumeLine();
+            return value(token);
+        }
+        consumeLine();
+        push(OBJECT, -1, frame.indent);
+        return startObject();
+    }
+    
+    /**
+     * Inline array: count-delimited values on a single line.
+     */
+    private JsonToken nextInInlineArray(final Frame frame) throws IOException {
+        if (frame.index == frame.count) {
+            if (frame.ownsLine) {
+                if (skipSpaces(cell) < lineEnd) {
+                    markToken(cell);
+                    _reportError("Expected " + frame.count + " array values but found more");
+                }
+                consumeLine();
+            }
+            return endArray();
+        }
+        if (frame.index > 0) {
+            expectComma(frame.count, frame.index, "array values");
+        }
+        frame.index++;
+        return cellValue();
+    }
+    
+    /**
+     * Inline object ({key:value,...}) inside a row or an inline array.
+     */
+    private JsonToken nextInInlineObject(final Frame frame) throws IOException {
+        if (frame.pending) {
+            frame.pending = false;
+            return cellValue();
+        }
+        cell = skipSpaces(cell);
+        if (cell < lineEnd && buf[cell] == '}') {
+            cell++;
+            braceDepth--;
+            return endObject();
+        }
+        if (frame.index > 0) {
+            if (cell >= lineEnd || buf[cell] != ',') {
+                markToken(cell);
+                _reportError("Expected ',' or '}' in inline object");
+            }
+            cell = skipSpaces(cell + 1);
+        }
+        markToken(cell);
+        int colon = cell;
+        while (colon < lineEnd && buf[colon] != ':' && buf[colon] != ',' && buf[colon] != '}') {
+            colon++;
+        }
+        if (colon >= lineEnd || buf[colon] != ':') {
+            _reportError("Expected 'key:value' in inline object");
+        }
+        parsingContext.setCurrentName(names ? key(cell, colon) : null);
+        cell = colon + 1;
+        frame.index++;
+        frame.pending = true;
+        return JsonToken.FIELD_NAME;
+    }
+    
+    /**
+     * Tabular array: one object per row line, fields named by the header schema.
+     */
+    private JsonToken nextInTabularArray(final Frame frame) throws IOException {
+        final String[] schema = frame.schema;
+        if (!frame.inRow) {
+            if (frame.index == frame.count) {
+                return endArray();
+            }
+            frame.inRow = true;
+            frame.field = 0;
+            if (schema.length == 0) {
+                // Rows of an empty schema are blank lines, skipped like any other
+                return startObject();
+            }
+            if (!loadLine() || lineIndent <= frame.owner) {
+                _reportError("Expected " + frame.count + " rows but got " + frame.index);
+            }
+            cell = lineStart;
+            markToken(lineStart);
+            return startObject();
+        }
+        if (frame.pending) {
+            frame.pending = false;
+            if (frame.field > 0) {
+                expectComma(schema.length, frame.field, "row values");
+            }
+            frame.field++;
+            return cellValue();
+        }
+        if (frame.field == schema.length) {
+            if (schema.length > 0) {
+                if (skipSpaces(cell) < lineEnd) {
+                    markToken(cell);
+                    _reportError("Expected " + schema.length + " row values but found more");
+                }
+                consumeLine();
+            }
+            frame.inRow = false;
+            frame.index++;
+            parsingContext = parsingContext.clearAndGetParent();
+            return JsonToken.END_OBJECT;
+        }
+        parsingContext.setCurrentName(schema[frame.field]);
+        frame.pending = true;
+        return JsonToken.FIELD_NAME;
+    }
+    
+    /**
+     * Expanded array: "- " items, each an object, a nested array or a scalar.
+     */
+    private JsonToken nextInListArray(final Frame frame) throws IOException {
+        if (frame.index == frame.count) {
+            return endArray();
+        }
+        if (!loadLine() || lineIndent <= frame.owner) {
+            _reportError("Expected " + frame.count + " list items but got " + frame.index);
+        }
+        markToken(lineStart);
+        if (lineIndent != frame.indent || !isListItem()) {
+            _reportError("Expected list item '- ' but found '" + lineText() + "'");
+        }
+        frame.index++;
+        
+        final int content = skipSpaces(lineStart + 1);
+        if (content >= lineEnd) {
+            // Bare "-": an object whose fields (if any) follow on deeper lines
+            consumeLine();
+            push(OBJECT, -1, frame.indent);
+            return startObject();
+        }
+        
+        // The item content behaves as a line of its own, indented past the "- " marker
+        lineIndent += content - lineStart;
+        lineStart = content;
+        markToken(content);
+        if (isArrayHeader(content)) {
+            return startArray(content, frame.indent);
+        }
+        if (findKeyEnd(content) >= 0) {
+            push(OBJECT, lineIndent, frame.indent);
+            return startObject();
+        }
+        final JsonToken token = scalar(content, lineEnd, false);
+        consumeLine();
+        return value(token);
+    }
+    
+    /**
+     * Array whose items start on the line after its header: the first item line decides
+     * between "- " items and values on a line of their own.
+     */
+    private JsonToken nextInBlockArray(final Frame frame) throws IOException {
+        if (!loadLine() || lineIndent <= frame.owner) {
+            _reportError("Expected " + frame.count + " array items but got 0");
+        }
+        if (isListItem()) {
+            frame.type = LIST_ARRAY;
+            frame.indent = lineIndent;
+            return nextInListArray(frame);
+        }
+        frame.type = INLINE_ARRAY;
+        frame.ownsLine = true;
+        cell = lineStart;
+        return nextInInlineArray(frame);
+    }
+    
+    /**
+     * Opens an array from a header line ([N]: values, [N]{schema}: or [N]: followed by deeper lines).
+     * 
+     * @param at Offset of the '['
+     * @param owner Indentation of the line owning the array; items must be indented deeper
+     */
+    private JsonToken startArray(final int at, final int owner) throws IOException {
+        final int rest = skipSpaces(parseHeader(at));
+        final int count = headerCount;
+        if (headerSchema != null) {
+            if (rest < lineEnd) {
+                _reportError("Unexpected content after tabular array header");
+            }
+            consumeLine();
+            push(TABULAR_ARRAY, -1, owner).schema = headerSchema;
+        } else if (rest < lineEnd || count == 0) {
+            // Values on the header line itself
+            final Frame frame = push(INLINE_ARRAY, -1, owner);
+            frame.ownsLine = true;
+            cell = rest;
+        } else {
+            // Items on the following lines, read by nextInBlockArray
+            consumeLine();
+            push(BLOCK_ARRAY, -1, owner);
+        }
+        frames[depth - 1].count = count;
+        return startArrayToken();
+    }
+    
+    /**
+     * Reads a single value at the cell cursor (row cell, inline array item or inline object value).
+     */
+    private JsonToken cellValue() throws IOException {
+        cell = skipSpaces(cell);
+        markToken(cell);
+        if (cell < lineEnd) {
+            final char c = buf[cell];
+            if (c == '"') {
+                final int close = closingQuote(cell);
+                final JsonToken token = quoted(cell + 1, close);
+                cell = close + 1;
+                return value(token);
+            }
+            if (isArrayHeader(cell)) {
+                cell = parseHeader(cell);
+                if (headerSchema != null) {
+                    _reportError("Tabular arrays are not supported inside values");
+                }
+                push(INLINE_ARRAY, -1, lineIndent).count = headerCount;
+                return startArrayToken();
+            }
+            if (c == '{') {
+                cell++;
+                braceDepth++;
+                push(INLINE_OBJECT, -1, lineIndent);
+                return startObject();
+            }
+        }
+        int stop = cell;
+        while (stop < lineEnd) {
+            final char c = buf[stop];
+            if (c == ',' || (c == '}' && braceDepth > 0)) {
+                break;
+            }
+            stop++;
+        }
+        int last = stop;
+        while (last > cell && isSpace(buf[last - 1])) {
+            last--;
+        }
+        final JsonToken token = scalar(cell, last, true);
+        cell = stop;
+        return value(token);
+    }
+    
+    /**
+     * Parses [N] and the optional {schema} plus ':' of an array header.
+     * Sets headerCount and headerSchema and returns the offset after the ':'.
+     */
+    private int parseHeader(final int at) throws IOException {
+        int p = at + 1;
+        long count = 0;
+        while (p < lineEnd && buf[p] >= '0' && buf[p] <= '9') {
+            count = count * 10 + (buf[p] - '0');
+            if (count > Integer.MAX_VALUE) {
+                _reportError("Array length out of range");
+            }
+            p++;
+        }
+        if (p >= lineEnd || buf[p] != ']') {
+            _reportError("Expected ']' after array length");
+        }
+        p++;
+        headerCount = (int) count;
+        headerSchema = null;
+        if (p < lineEnd && buf[p] == '{') {
+            final int close = indexOf('}', p);
+            if (close < 0) {
+                _reportError("Expected '}' after array schema");
+            }
+            headerSchema = schemaKeys(p + 1, close);
+            p = close + 1;
+        }
+        if (p >= lineEnd || buf[p] != ':') {
+            _reportError("Expected ':' after array header");
+        }
+        return p + 1;
+    }
+    
+    /**
+     * Splits the comma separated schema keys of a tabular header ("{}" has none).
+     */
+    private String[] schemaKeys(final int start, final int stop) {
+        if (skipSpaces(start) >= stop) {
+            return NO_KEYS;
+        }
+        int count = 1;
+        for (int p = start; p < stop; p++) {
+            if (buf[p] == ',') {
+                count++;
+            }
+        }
+        final String[] keys = new String[count];
+        int from = start;
+        for (int i = 0; i < count; i++) {
+            int to = from;
+            while (to < stop && buf[to] != ',') {
+                to++;
+            }
+            keys[i] = key(skipSpaces(from), to);
+            from = to + 1;
+        }
+        return keys;
+    }
+    
+    /**
+     * Classifies a scalar as null, boolean, number or string.
+     * Cells treat an empty value as null; quoted values are always strings.
+     */
+    private JsonToken scalar(final int start, final int stop, final boolean isCell) {
+        final int len = stop - start;
+        if (len == 0) {
+            return JsonToken.VALUE_NULL;
+        }
+        if (!isCell && len >= 2 && buf[start] == '"' && buf[stop - 1] == '"') {
+            return quoted(start + 1, stop - 1);
+        }
+        textStart = start;
+        textEnd = stop;
+        switch (ToonScalars.classify(buf, start, stop)) {
+            case ToonScalars.NULL:
+                return JsonToken.VALUE_NULL;
+            case ToonScalars.TRUE:
+                return JsonToken.VALUE_TRUE;
+            case ToonScalars.FALSE:
+                return JsonToken.VALUE_FALSE;
+            case ToonScalars.INTEGER:
+                numberKind = NUMBER_INT;
+                return JsonToken.VALUE_NUMBER_INT;
+            case ToonScalars.DECIMAL:
+                numberKind = NUMBER_FLOAT;
+                return JsonToken.VALUE_NUMBER_FLOAT;
+            default:
+                return JsonToken.VALUE_STRING;
+        }
+    }
+    
+    
+    /**
+     * Sets a string token from the content between quotes; escapes (\" \\ \n \r \t) are
+     * resolved when the text is read.
+     */
+    private JsonToken quoted(final int start, final int stop) {
+        textStart = start;
+        textEnd = stop;
+        escaped = indexOf('\\', start, stop) >= 0;
+        return JsonToken.VALUE_STRING;
+    }
+    
+    private String unescape(final int start, final int stop) {
+        final StringBuilder sb = new StringBuilder(stop - start);
+        for (int p = start; p < stop; p++) {
+            char c = buf[p];
+            if (c == '\\' && p + 1 < stop) {
+                final char next = buf[++p];
+                switch (next) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case '"':
+                    case '\\':
+                        c = next;
+                        break;
+                    default:
+                        // Unknown escape: keep it as written
+                        sb.append(c);
+                        c = next;
+                        break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Returns the offset of the ':' or '[' ending the key that starts at the given offset,
+     * or -1 if the text there is not a key.
+     */
+    private int findKeyEnd(final int start) {
+        int p = start;
+        if (buf[p] == '"') {
+            p = indexOf('"', p + 1);
+            if (p < 0) {
+                return -1;
+            }
+            p = skipSpaces(p + 1);
+            return p < lineEnd && (buf[p] == ':' || isArrayHeader(p)) ? p : -1;
+        }
+        for (; p < lineEnd; p++) {
+            final char c = buf[p];
+            if (c == ':' || (c == '[' && p > start && isArrayHeader(p))) {
+                return p;
+            }
+            if (c == '"' || c == ',') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Creates the key string for the range, trimming spaces and surrounding quotes.
+     */
+    private String key(final int start, final int stop) {
+        int last = stop;
+        while (last > start && isSpace(buf[last - 1])) {
+            last--;
+        }
+        if (last - start >= 2 && buf[start] == '"' && buf[last - 1] == '"') {
+            return unescape(start + 1, last - 1);
+        }
+        return dictionary != null ? dictionary.intern(buf, start, last - start) : new String(buf, start, last - start);
+    }
+    
+    private boolean isArrayHeader(final int at) {
+        return buf[at] == '[' && at + 1 < lineEnd && buf[at + 1] >= '0' && buf[at + 1] <= '9';
+    }
+    
+    private boolean isListItem() {
+        return buf[lineStart] == '-' && (lineStart + 1 == lineEnd || buf[lineStart + 1] == ' ');
+    }
+    
+    private void expectComma(final int expected, final int got, final String what) throws IOException {
+        cell = skipSpaces(cell);
+        if (cell >= lineEnd) {
+            markToken(cell);
+            _reportError("Expected " + expected + " " + what + " but got " + got);
+        }
+        if (buf[cell] != ',') {
+            markToken(cell);
+            _reportError("Unexpected character '" + buf[cell] + "', expected ','");
+        }
+        cell++;
+    }
+    
+    private int closingQuote(final int open) throws IOException {
+        for (int p = open + 1; p < lineEnd; p++) {
+            if (buf[p] == '\\') {
+                p++;
+            } else if (buf[p] == '"') {
+                return p;
+            }
+        }
+        _reportError("Unterminated quoted value");
+        return -1;
+    }
+    
+    /**
+     * Loads the next non-blank line, unless the current one has not been consumed yet.
+     * Spaces count as one column of indentation, tabs as two.
+     * 
+     * @return false at the end of the input
+     */
+    private boolean loadLine() throws IOException {
+        if (lineLoaded) {
+            return true;
+        }
+        while (true) {
+            int eol = pos;
+            while (eol < end && buf[eol] != '\n') {
+                eol++;
+            }
+            if (eol == end && !eof) {
+                // Partial line: the rest is still in the reader
+                fill();
+                continue;
+            }
+            if (pos >= end) {
+                return false;
+            }
+            final int begin = pos;
+            int p = pos;
+            int indent = 0;
+            while (p < eol && (buf[p] == ' ' || buf[p] == '\t')) {
+                indent += buf[p] == '\t' ? 2 : 1;
+                p++;
+            }
+            pos = eol < end ? eol + 1 : end;
+            final int number = nextLineNumber++;
+            while (eol > p && buf[eol - 1] <= ' ') {
+                eol--;
+            }
+            if (eol > p) {
+                lineLoaded = true;
+                lineNumber = number;
+                lineBegin = begin;
+                lineStart = p;
+                lineEnd = eol;
+                lineIndent = indent;
+                cell = p;
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Reads more input. Consumed lines are dropped first, and the buffer only grows when
+     * a single line does not fit.
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, end - pos);
+            end -= pos;
+            pos = 0;
+        }
+        if (end == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        final int read = reader.read(buf, end, buf.length - end);
+        if (read < 0) {
+            eof = true;
+        } else {
+            end += read;
+        }
+    }
+    
+    /**
+     * Appends input to a parser created for feeding. Call after nextToken has returned
+     * NOT_AVAILABLE (or before the first call), when no line is in use.
+     * 
+     * @param chunk The text to append; a line may span any number of chunks
+     */
+    void feed(final CharSequence chunk) {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, end - pos);
+            end -= pos;
+            pos = 0;
+        }
+        final int len = chunk.length();
+        if (end + len > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, end + len));
+        }
+        if (chunk instanceof String) {
+            ((String) chunk).getChars(0, len, buf, end);
+        } else {
+            for (int i = 0; i < len; i++) {
+                buf[end + i] = chunk.charAt(i);
+            }
+        }
+        end += len;
+    }
+    
+    /**
+     * Marks the end of fed input; a last line without a newline is complete from now on.
+     */
+    void endOfInput() {
+        eof = true;
+    }
+    
+    /**
+     * Returns true if the next token is read from a line that is not loaded yet.
+     */
+    private boolean needsLine() {
+        if (lineLoaded) {
+            return false;
+        }
+        if (depth == 0) {
+            return true;
+        }
+        final Frame frame = frames[depth - 1];
+        switch (frame.type) {
+            case OBJECT:
+            case BLOCK_ARRAY:
+                return true;
+            case TABULAR_ARRAY:
+                return !frame.inRow && frame.index < frame.count;
+            case LIST_ARRAY:
+                return frame.index < frame.count;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Returns true if a non-blank line terminated by a newline follows the consumed input.
+     */
+    private boolean hasCompleteLine() {
+        boolean blank = true;
+        for (int p = pos; p < end; p++) {
+            final char c = buf[p];
+            if (c == '\n') {
+                if (!blank) {
+                    return true;
+                }
+            } else if (c > ' ') {
+                blank = false;
+            }
+        }
+        return false;
+    }
+    
+    private void consumeLine() {
+        lineLoaded = false;
+    }
+    
+    private String lineText() {
+        return new String(buf, lineStart, lineEnd - lineStart);
+    }
+    
+    private Frame push(final int type, final int indent, final int owner) throws IOException {
+        if (ioContext != null) {
+            ioContext.streamReadConstraints().validateNestingDepth(depth + 1);
+        }
+        if (depth >= maxDepth) {
+            _reportError("Nesting depth exceeds the maximum of " + maxDepth);
+        }
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            frames[depth] = frame;
+        }
+        depth++;
+        frame.type = type;
+        frame.indent = indent;
+        frame.owner = owner;
+        frame.count = 0;
+        frame.index = 0;
+        frame.field = 0;
+        frame.valueAt = 0;
+        frame.pending = false;
+        frame.inRow = false;
+        frame.ownsLine = false;
+        frame.schema = null;
+        frame.rowSchema = null;
+        return frame;
+    }
+    
+    private JsonToken startObject() {
+        if (parsingContext.inArray()) {
+            parsingContext.expectComma();
+        }
+        parsingContext = parsingContext.createChildObjectContext(tokenLine, tokenColumn);
+        return JsonToken.START_OBJECT;
+    }
+    
+    private JsonToken startArrayToken() {
+        if (parsingContext.inArray()) {
+            parsingContext.expectComma();
+        }
+        parsingContext = parsingContext.createChildArrayContext(tokenLine, tokenColumn);
+        return JsonToken.START_ARRAY;
+    }
+    
+    private JsonToken endObject() {
+        depth--;
+        parsingContext = parsingContext.clearAndGetParent();
+        return JsonToken.END_OBJECT;
+    }
+    
+    private JsonToken endArray() {
+        depth--;
+        parsingContext = parsingContext.clearAndGetParent();
+        return JsonToken.END_ARRAY;
+    }
+    
+    private JsonToken value(final JsonToken token) {
+        if (parsingContext.inArray()) {
+            parsingContext.expectComma();
+        }
+        return token;
+    }
+    
+    private void markToken(final int at) {
+        tokenLine = lineNumber;
+        tokenColumn = at - lineBegin + 1;
+    }
+    
+    private int skipSpaces(int p) {
+        while (p < lineEnd && isSpace(buf[p])) {
+            p++;
+        }
+        return p;
+    }
+    
+    private int indexOf(final char c, final int from) {
+        return indexOf(c, from, lineEnd);
+    }
+    
+    private int indexOf(final char c, final int from, final int stop) {
+        for (int p = from; p < stop; p++) {
+            if (buf[p] == c) {
+                return p;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean isSpace(final char c) {
+        return c == ' ' || c == '\t';
+    }
+    
+    @Override
+    protected void _handleEOF() throws JsonParseException {
+        if (!parsingContext.inRoot()) {
+            _reportInvalidEOF(": expected close marker for " + parsingContext.typeDesc(), null);
+        }
+    }
+    
+    @Override
+    public String getCurrentName() {
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            final JsonReadContext parent = parsingContext.getParent();
+            if (parent != null) {
+                return parent.getCurrentName();
+            }
+        }
+        return parsingContext.getCurrentName();
+    }
+    
+    @Override
+    public void overrideCurrentName(final String name) {
+        JsonReadContext ctxt = parsingContext;
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            ctxt = ctxt.getParent();
+        }
+        try {
+            ctxt.setCurrentName(name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (bufferRecyclable) {
+            ioContext.releaseTokenBuffer(buf);
+        }
+        buf = null;
+        end = 0;
+        if (reader != null && ((ioContext != null && ioContext.isResourceManaged())
+                || isEnabled(Feature.AUTO_CLOSE_SOURCE))) {
+            reader.close();
+        }
+    }
+    
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    @Override
+    public JsonStreamContext getParsingContext() {
+        return parsingContext;
+    }
+    
+    @Override
+    public JsonLocation getTokenLocation() {
+        return new JsonLocation(contentReference(), -1L, -1L, tokenLine, tokenColumn);
+    }
+    
+    @Override
+    public JsonLocation getCurrentLocation() {
+        final int column = lineLoaded ? cell - lineBegin + 1 : tokenColumn;
+        return new JsonLocation(contentReference(), -1L, -1L, lineLoaded ? lineNumber : tokenLine, column);
+    }
+    
+    private ContentReference contentReference() {
+        return ioContext != null ? ioContext.contentReference() : ContentReference.unknown();
+    }
+    
+    @Override
+    public String getText() throws IOException {
+        if (_currToken == null) {
+            return null;
+        }
+        switch (_currToken) {
+            case FIELD_NAME:
+                return parsingContext.getCurrentName();
+            case VALUE_STRING:
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                if (text == null && escaped) {
+                    text = unescape(textStart, textEnd);
+                } else if (text == null) {
+                    final int length = textEnd - textStart;
+                    text = dictionary != null && _currToken == JsonToken.VALUE_STRING && length <= MAX_INTERNED_LENGTH
+                            ? dictionary.intern(buf, textStart, length) : new String(buf, textStart, length);
+                }
+                return text;
+            default:
+                return _currToken.asString();
+        }
+    }
+    
+    @Override
+    public boolean hasTextCharacters() {
+        return isSlice();
+    }
+    
+    @Override
+    public char[] getTextCharacters() throws IOException {
+        if (isSlice()) {
+            return buf;
+        }
+        final String value = getText();
+        return value == null ? null : value.toCharArray();
+    }
+    
+    @Override
+    public int getTextLength() throws IOException {
+        if (isSlice()) {
+            return textEnd - textStart;
+        }
+        final String value = getText();
+        return value == null ? 0 : value.length();
+    }
+    
+    @Override
+    public int getTextOffset() throws IOException {
+        return isSlice() ? textStart : 0;
+    }
+    
+    /**
+     * Returns true when the current token text is a range of the input buffer.
+     */
+    private boolean isSlice() {
+        if (_currToken == JsonToken.VALUE_STRING) {
+            return !escaped;
+        }
+        return _currToken == JsonToken.VALUE_NUMBER_INT || _currToken == JsonToken.VALUE_NUMBER_FLOAT;
+    }
+    
+    @Override
+    public byte[] getBinaryValue(final Base64Variant variant) throws IOException {
+        if (_currToken != JsonToken.VALUE_STRING) {
+            _reportError("Current token (" + _currToken + ") not VALUE_STRING, can not access as binary");
+        }
+        final ByteArrayBuilder builder = new ByteArrayBuilder();
+        _decodeBase64(getText(), builder, variant);
+        return builder.toByteArray();
+    }
+    
+    @Override
+    public Number getNumberValue() throws IOException {
+        switch (getNumberType()) {
+            case INT:
+                return (int) longValue;
+            case LONG:
+                return longValue;
+            case BIG_INTEGER:
+                return getBigIntegerValue();
+            default:
+                return getDoubleValue();
+        }
+    }
+    
+    @Override
+    public NumberType getNumberType() throws IOException {
+        if (numberType != null) {
+            return numberType;
+        }
+        if (numberKind == NUMBER_FLOAT) {
+            numberType = NumberType.DOUBLE;
+        } else if (numberKind != NUMBER_INT) {
+            _reportError("Current token (" + _currToken + ") not numeric, can not use numeric value accessors");
+        } else if (!ToonScalars.fitsLong(buf, textStart, textEnd)) {
+            numberType = NumberType.BIG_INTEGER;
+        } else {
+            // Parsed once per token, straight from the buffer
+            longValue = ToonScalars.parseLong(buf, textStart, textEnd);
+            numberType = longValue == (int) longValue ? NumberType.INT : NumberType.LONG;
+        }
+        return numberType;
+    }
+    
+    @Override
+    public int getIntValue() throws IOException {
+        final long value = getLongValue();
+        if (value != (int) value) {
+            reportOverflowInt();
+        }
+        return (int) value;
+    }
+    
+    @Override
+    public long getLongValue() throws IOException {
+        final NumberType type = getNumberType();
+        if (type == NumberType.DOUBLE) {
+            final double value = getDoubleValue();
+            if (value < Long.MIN_VALUE || value > Long.MAX_VALUE) {
+                reportOverflowLong();
+            }
+            return (long) value;
+        }
+        if (type == NumberType.BIG_INTEGER) {
+            reportOverflowLong();
+        }
+        return longValue;
+    }
+    
+    @Override
+    public BigInteger getBigIntegerValue() throws IOException {
+        if (getNumberType() == NumberType.DOUBLE) {
+            return getDecimalValue().toBigInteger();
+        }
+        return new BigInteger(getText());
+    }
+    
+    @Override
+    public float getFloatValue() throws IOException {
+        return (float) getDoubleValue();
+    }
+    
+    @Override
+    public double getDoubleValue() throws IOException {
+        final NumberType type = getNumberType();
+        if (type == NumberType.DOUBLE) {
+            return ToonScalars.parseDouble(buf, textStart, textEnd);
+        }
+        return type == NumberType.BIG_INTEGER ? getBigIntegerValue().doubleValue() : longValue;
+    }
+    
+    @Override
+    public BigDecimal getDecimalValue() throws IOException {
+        if (numberKind == NUMBER_NONE) {
+            _reportError("Current token (" + _currToken + ") not numeric, can not use numeric value accessors");
+        }
+        return new BigDecimal(getText());
+    }
+    
+    /**
+     * Returns the schema shared by the rows of the tabular array being read.
+     * Valid while the current token is START_ARRAY or a row start.
+     */
+    ToonRow.Schema rowSchema() {
+        return rowSchema(ToonProjection.ALL);
+    }
+    
+    /**
+     * Returns the schema shared by the rows of the tabular array being read, keeping only the
+     * columns selected by a projection. Every reader of one array must pass the same projection.
+     * Valid while the current token is START_ARRAY or a row start.
+     * 
+     * @param projection The projection below the array
+     */
+    ToonRow.Schema rowSchema(final ToonProjection projection) {
+        final Frame frame = frames[depth - 1];
+        if (frame.rowSchema == null) {
+            frame.rowSchema = new ToonRow.Schema(frame.schema, projection);
+        }
+        return frame.rowSchema;
+    }
+    
+    /**
+     * Moves past the value of the current FIELD_NAME token without decoding it, so that the
+     * next token is the following field or the end of the object. The value is only scanned:
+     * no String is created and no number is parsed. The value of an indented field is skipped
+     * by indentation, together with every deeper line below it, without reading its tokens.
+     * 
+     * @throws IOException if the value cannot be skipped
+     */
+    void skipValue() throws IOException {
+        final Frame frame = frames[depth - 1];
+        frame.pending = false;
+        if (frame.type == OBJECT) {
+            consumeLine();
+            while (loadLine() && lineIndent > frame.indent) {
+                consumeLine();
+            }
+            return;
+        }
+        if (frame.type == TABULAR_ARRAY) {
+            if (frame.field > 0) {
+                expectComma(frame.schema.length, frame.field, "row values");
+            }
+            frame.field++;
+            cell = skipSpaces(cell);
+            if (cell < lineEnd && buf[cell] == '"') {
+                cell = closingQuote(cell) + 1;
+                return;
+            }
+            if (cell >= lineEnd || (buf[cell] != '{' && !isArrayHeader(cell))) {
+                while (cell < lineEnd && buf[cell] != ',') {
+                    cell++;
+                }
+                return;
+            }
+        }
+        // Inline objects and arrays nested in a line: read their tokens
+        if ((_currToken = cellValue()).isStructStart()) {
+            skipChildren();
+        }
+    }
+    
+    /**
+     * Moves past the remaining cells of the current tabular row, at a FIELD_NAME token, so
+     * that the next token is the END_OBJECT of the row. The cells are not scanned, so a row with
+     * more values than its header is not reported.
+     */
+    void skipRow() {
+        final Frame frame = frames[depth - 1];
+        frame.pending = false;
+        frame.field = frame.schema.length;
+        cell = lineEnd;
+    }
+    
+    /**
+     * Shares keys and short string values through a dictionary: equal text read while it is set
+     * returns the same String instance.
+     * 
+     * @param dictionary The dictionary, or null to stop interning
+     */
+    void intern(final StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+    
+    /**
+     * Stops creating the names of object fields: FIELD_NAME tokens of objects then have a null
+     * name. Names of row cells come from their header and are kept. For scans that only check
+     * the structure of the text.
+     */
+    void discardNames() {
+        this.names = false;
+    }
+    
+    /**
+     * Sets the maximum number of nested objects and arrays, beyond which reading fails.
+     * 
+     * @param maxDepth The maximum nesting depth
+     */
+    void maxDepth(final int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+    
+    /**
+     * Returns the item count declared by the header of the array just opened.
+     * Valid while the current token is START_ARRAY.
+     */
+    int declaredCount() {
+        return frames[depth - 1].count;
+    }
+    
+    /**
+     * Returns the field names declared by the header of the array just opened, or null
+     * unless it is a tabular array. Valid while the current token is START_ARRAY.
+     */
+    String[] declaredSchema() {
+        return frames[depth - 1].schema;
+    }
+    
+    /**
+     * Returns the schema index of the current FIELD_NAME token if it names a cell of a tabular
+     * row, or -1 otherwise.
+     */
+    int rowField() {
+        if (_currToken != JsonToken.FIELD_NAME) {
+            return -1;
+        }
+        final Frame frame = frames[depth - 1];
+        return frame.type == TABULAR_ARRAY ? frame.field : -1;
+    }
+    
+    /**
+     * Returns true if the array just opened has its items on the header line ("[N]: a,b").
+     * Valid while the current token is START_ARRAY.
+     */
+    boolean hasInlineItems() {
+        return frames[depth - 1].type == INLINE_ARRAY;
+    }
+    
+    /**
+     * Returns true if the current START_OBJECT token opens a row of a tabular array.
+     */
+    boolean isRowStart() {
+        return _currToken == JsonToken.START_OBJECT && depth > 0 && frames[depth - 1].type == TABULAR_ARRAY;
+    }
+    
+    /**
+     * Splits the rows of the tabular array just opened into chunks of consecutive lines and
+     * moves past them, so that the next token is the END_ARRAY of the array. Each chunk gets
+     * a parser of its own over the shared buffer, which returns the rows of the chunk as
+     * objects followed by END_ARRAY, so chunks can be decoded on different threads. The chunk
+     * parsers intern into this parser's dictionary, which must then be shared, each through a
+     * dictionary of its own.
+     * Only for parsers over a complete buffer.
+     * 
+     * @param chunks The number of chunks wanted
+     * @return One parser per chunk, in row order
+     * @throws IOException if there are fewer row lines than declared
+     */
+    ToonParser[] splitRows(final int chunks) throws IOException {
+        final Frame frame = frames[depth - 1];
+        rowSchema();
+        final int count = frame.count;
+        final int perChunk = (count + chunks - 1) / chunks;
+        final ToonParser[] parsers = new ToonParser[(count + perChunk - 1) / perChunk];
+        int chunkStart = 0;
+        int chunkLine = 0;
+        for (int i = 0; i < count; i++) {
+            if (!loadLine() || lineIndent <= frame.owner) {
+                _reportError("Expected " + count + " rows but got " + i);
+            }
+            if (i % perChunk == 0) {
+                if (i > 0) {
+                    parsers[i / perChunk - 1] = itemParser(frame, chunkStart, lineBegin, chunkLine, perChunk);
+                }
+                chunkStart = lineBegin;
+                chunkLine = lineNumber;
+            }
+            consumeLine();
+        }
+        final int last = parsers.length - 1;
+        parsers[last] = itemParser(frame, chunkStart, pos, chunkLine, count - last * perChunk);
+        frame.index = count;
+        if (dictionary != null) {
+            for (final ToonParser parser : parsers) {
+                parser.dictionary = new StringDictionary(dictionary);
+            }
+        }
+        return parsers;
+    }
+    
+    /**
+     * Creates a parser over some of the items of the array just opened (current token START_ARRAY),
+     * found by the caller between start and stop: rows of a tabular array, or the items on the
+     * lines below a "[N]:" header. The parser starts as if the header had just been read.
+     * 
+     * @param start Offset of the first item line
+     * @param stop Offset after the last item line
+     * @param line Line number of the first item line
+     * @param count Number of items in the range
+     * @return A parser returning the items, then END_ARRAY
+     * @throws IOException if the parser cannot be set up
+     */
+    ToonParser itemParser(final int start, final int stop, final int line, final int count) throws IOException {
+        return itemParser(frames[depth - 1], start, stop, line, count);
+    }
+    
+    private ToonParser itemParser(final Frame array, final int start, final int stop, final int line, final int count)
+            throws IOException {
+        final ToonParser parser = new ToonParser(null, _features, null, null, buf, start, stop, false);
+        parser.started = true;
+        // The array opened below sits at the depth of this one
+        parser.maxDepth = maxDepth - depth + 1;
+        parser.nextLineNumber = line;
+        parser.parsingContext = parser.parsingContext.createChildArrayContext(line, 1);
+        final Frame frame = parser.push(array.schema != null ? TABULAR_ARRAY : BLOCK_ARRAY, -1, array.owner);
+        frame.schema = array.schema;
+        frame.rowSchema = array.rowSchema;
+        frame.count = count;
+        parser.dictionary = dictionary;
+        return parser;
+    }
+    
+    /**
+     * An open object or array.
+     */
+    private static final class Frame {
+        int type;
+        // Column of the fields or items (-1 until known) and of the line owning the container
+        int indent;
+        int owner;
+        // Declared item count and items read so far
+        int count;
+        int index;
+        // Tabular arrays: schema, shared row schema (created on first use) and current field of the row
+        String[] schema;
+        ToonRow.Schema rowSchema;
+        int field;
+        boolean inRow;
+        // A FIELD_NAME was returned and its value comes next
+        boolean pending;
+        int valueAt;
+        // Inline arrays: the values occupy the rest of the current line
+        boolean ownsLine;
+    }
+}
@@ -0,0 +1,93 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tree of the fields selected by projection paths such as "meta.total" or "items.price".
+ * Arrays are transparent: a path continues into every item of an array it reaches, so
+ * "items.price" selects the price column of a tabular array. A selected field keeps its whole subtree.
+ */
+final class ToonProjection {
+    
+    /**
+     * Selects everything below it.
+     */
+    static final ToonProjection ALL = new ToonProjection(null);
+    
+    // Selected fields and their own projection; null selects all fields
+    private final Map<String, ToonProjection> fields;
+    
+    private ToonProjection(final Map<String, ToonProjection> fields) {
+        this.fields = fields;
+    }
+    
+    /**
+     * Builds the projection of a set of dotted paths.
+     * 
+     * @param paths The selected paths
+     * @return The projection (ALL if paths is empty)
+     * @throws IllegalArgumentException if a path is null or malformed
+     */
+    static ToonProjection of(final Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return ALL;
+        }
+        final Map<String, Object> tree = new HashMap<>();
+        for (final String path : paths) {
+            if (path == null || path.isEmpty() || path.startsWith(".") || path.endsWith(".") || path.contains("..")) {
+                throw new IllegalArgumentException("Invalid projection path: " + path);
+            }
+            add(tree, path.split("\\."), 0);
+        }
+        return build(tree);
+    }
+    
+    /**
+     * Returns the projection of a field, or null if the field is not selected.
+     * 
+     * @param name The field name
+     * @return The projection below the field, or null to skip it
+     */
+    ToonProjection field(final String name) {
+        return fields == null ? ALL : fields.get(name);
+    }
+    
+    /**
+     * Returns true if everything below this point is selected.
+     * 
+     * @return Whether no field is skipped
+     */
+    boolean isAll() {
+        return fields == null;
+    }
+    
+    // Nodes of the tree are maps of their fields; a selected leaf is marked with ALL
+    @SuppressWarnings("unchecked")
+    private static void add(final Map<String, Object> tree, final String[] names, final int at) {
+        final String name = names[at];
+        if (at == names.length - 1) {
+            tree.put(name, ALL);
+            return;
+        }
+        final Object child = tree.get(name);
+        if (child == ALL) {
+            // A shorter path already selects the whole subtree
+            return;
+        }
+        final Map<String, Object> next = child != null ? (Map<String, Object>) child : new HashMap<>();
+        tree.put(name, next);
+        add(next, names, at + 1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static ToonProjection build(final Map<String, Object> tree) {
+        final Map<String, ToonProjection> fields = new HashMap<>();
+        for (final Map.Entry<String, Object> entry : tree.entrySet()) {
+            final Object child = entry.getValue();
+            fields.put(entry.getKey(), child == ALL ? ALL : build((Map<String, Object>) child));
+        }
+        return new ToonProjection(fields);
+    }
+}
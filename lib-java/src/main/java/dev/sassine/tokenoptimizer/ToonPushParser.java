@@ -0,0 +1,229 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental TOON parser for text that arrives in pieces, such as a model response streamed
+ * as server-sent event deltas. Chunks may split lines anywhere; each line is parsed as soon as
+ * its newline arrives, and the listener is told about every row and item the moment it is
+ * complete, so downstream work overlaps with generation. Rows are checked against the
+ * [N]{schema} header of their array as they arrive.
+ * 
+ * <p>Example:
+ * <pre>
+ * ToonPushParser parser = new ToonPushParser(new ToonPushParser.Listener() {
+ *     &#64;Override
+ *     public void onRow(String array, int index, Map&lt;String, Object&gt; row) {
+ *         process(row);
+ *     }
+ * });
+ * stream.onDelta(parser::feed);
+ * Object answer = parser.finish();
+ * </pre>
+ */
+public final class ToonPushParser {
+    
+    /**
+     * Receives values as soon as they are complete. All methods do nothing by default.
+     */
+    public interface Listener {
+        
+        /**
+         * Called for each row of a tabular array.
+         * 
+         * @param array Name of the field holding the array (null for a root or nested array)
+         * @param index Index of the row in the array
+         * @param row The row, keyed by the header schema
+         */
+        default void onRow(final String array, final int index, final Map<String, Object> row) {
+        }
+        
+        /**
+         * Called for each item of an expanded ("- ") or inline array.
+         * 
+         * @param array Name of the field holding the array (null for a root or nested array)
+         * @param index Index of the item in the array
+         * @param item The item (Map, List or scalar)
+         */
+        default void onItem(final String array, final int index, final Object item) {
+        }
+        
+        /**
+         * Called for each field of the root object once its value is complete.
+         * 
+         * @param name The field name
+         * @param value The value (Map, List or scalar)
+         */
+        default void onField(final String name, final Object value) {
+        }
+    }
+    
+    private static final Listener NO_LISTENER = new Listener() {
+    };
+    
+    private final ToonParser parser = new ToonParser(JsonParser.Feature.collectDefaults());
+    private final Listener listener;
+    
+    // Open containers, innermost last, with the field name owning each and whether it is a row
+    private final List<Object> containers = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Boolean> rows = new ArrayList<>();
+    private Object root;
+    private boolean finished;
+    
+    /**
+     * Creates a parser that only builds the document returned by {@link #finish()}.
+     */
+    public ToonPushParser() {
+        this(NO_LISTENER);
+    }
+    
+    /**
+     * Creates a parser that reports complete rows, items and fields to a listener.
+     * 
+     * @param listener The listener to call
+     */
+    public ToonPushParser(final Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        this.listener = listener;
+    }
+    
+    /**
+     * Appends a chunk of TOON text and parses every line it completes.
+     * 
+     * @param chunk The next piece of text
+     * @throws IllegalStateException if {@link #finish()} was already called
+     * @throws RuntimeException if the text is not valid TOON
+     */
+    public void feed(final CharSequence chunk) {
+        if (finished) {
+            throw new IllegalStateException("Parser is already finished");
+        }
+        if (chunk == null || chunk.length() == 0) {
+            return;
+        }
+        parser.feed(chunk);
+        drain();
+    }
+    
+    /**
+     * Marks the end of the text, parses the last line and returns the whole document.
+     * 
+     * @return The decoded document (Map, List or scalar), or null if no text was fed
+     * @throws RuntimeException if the text is not valid TOON or ends early
+     */
+    public Object finish() {
+        if (!finished) {
+            finished = true;
+            parser.endOfInput();
+            drain();
+        }
+        return root;
+    }
+    
+    /**
+     * Returns true once {@link #finish()} has been called.
+     * 
+     * @return Whether the input has ended
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+    
+    private void drain() {
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case FIELD_NAME:
+                        break;
+                    case START_OBJECT:
+                        open(new LinkedHashMap<String, Object>(), parser.isRowStart());
+                        break;
+                    case START_ARRAY:
+                        open(new ArrayList<Object>(), false);
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        close();
+                        break;
+                    default:
+                        add(ToonDecoder.scalar(parser, token), false);
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
+        }
+    }
+    
+    private void open(final Object container, final boolean row) {
+        final String name = parser.getCurrentName();
+        if (containers.isEmpty()) {
+            root = container;
+        } else {
+            attach(container, name);
+        }
+        containers.add(container);
+        names.add(name);
+        rows.add(row);
+    }
+    
+    private void close() {
+        final int last = containers.size() - 1;
+        final Object container = containers.remove(last);
+        final String name = names.remove(last);
+        final boolean row = rows.remove(last);
+        if (last > 0) {
+            completed(container, name, row);
+        }
+    }
+    
+    private void add(final Object value, final boolean row) {
+        if (containers.isEmpty()) {
+            root = value;
+            return;
+        }
+        final String name = parser.getCurrentName();
+        attach(value, name);
+        completed(value, name, row);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void attach(final Object value, final String name) {
+        final Object parent = containers.get(containers.size() - 1);
+        if (parent instanceof List) {
+            ((List<Object>) parent).add(value);
+        } else {
+            ((Map<String, Object>) parent).put(name, value);
+        }
+    }
+    
+    /**
+     * Reports a value whose last line has been parsed to the listener.
+     */
+    @SuppressWarnings("unchecked")
+    private void completed(final Object value, final String name, final boolean row) {
+        final int parent = containers.size() - 1;
+        final Object container = containers.get(parent);
+        if (container instanceof List) {
+            final int index = ((List<Object>) container).size() - 1;
+            final String array = names.get(parent);
+            if (row) {
+                listener.onRow(array, index, (Map<String, Object>) value);
+            } else {
+                listener.onItem(array, index, value);
+            }
+        } else if (parent == 0) {
+            listener.onField(name, value);
+        }
+    }
+}
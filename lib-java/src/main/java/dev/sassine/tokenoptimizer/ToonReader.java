@@ -0,0 +1,238 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pull reader for TOON documents.
+ * Reads its input a line at a time and reports the document as a sequence of events, so large
+ * exports can be consumed row by row in constant memory, starting before the input is complete.
+ * Each row of a tabular array is a single {@link Event#ROW} event with its values in schema order.
+ * 
+ * <p>Example:
+ * <pre>
+ * try (ToonReader reader = new ToonReader(Files.newBufferedReader(path))) {
+ *     ToonReader.Event event;
+ *     while ((event = reader.next()) != null) {
+ *         if (event == ToonReader.Event.ROW) {
+ *             process(reader.getRowAsMap());
+ *         }
+ *     }
+ * }
+ * </pre>
+ */
+public final class ToonReader implements Closeable {
+    
+    /**
+     * Events reported by {@link #next()}.
+     */
+    public enum Event {
+        /** Start of an object; its fields follow */
+        START_OBJECT,
+        /** A field name ({@link #getName()}); its value follows */
+        FIELD,
+        /** Start of an array ({@link #getCount()}, and {@link #getSchema()} for tabular arrays) */
+        START_ARRAY,
+        /** A complete row of a tabular array ({@link #getRow()}) */
+        ROW,
+        /** A scalar value ({@link #getValue()}) */
+        VALUE,
+        /** End of an object */
+        END_OBJECT,
+        /** End of an array */
+        END_ARRAY
+    }
+    
+    private static final ToonFactory FACTORY = new ToonFactory();
+    
+    private final ToonParser parser;
+    private Event event;
+    private int count;
+    private List<String> schema;
+    private Object value;
+    private Object[] row;
+    
+    /**
+     * Creates a reader over TOON text.
+     * 
+     * @param reader The reader supplying TOON text, closed with this reader
+     */
+    public ToonReader(final Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+        try {
+            this.parser = (ToonParser) FACTORY.createParser(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating TOON reader: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Creates a reader over UTF-8 encoded TOON text.
+     * 
+     * @param in The stream supplying TOON text, closed with this reader
+     */
+    public ToonReader(final InputStream in) {
+        this(in == null ? null : new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Opens a reader over a UTF-8 TOON file. The file is memory-mapped and decoded as it is
+     * read, so its size does not drive heap usage.
+     * 
+     * @param path The TOON file
+     * @return A new reader, closing the file when closed
+     * @throws IOException if the file cannot be opened
+     */
+    public static ToonReader open(final Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        return new ToonReader(ToonConverter.openMapped(path));
+    }
+    
+    /**
+     * Advances to the next event, reading more input as needed.
+     * 
+     * @return The next event, or null at the end of the document
+     * @throws IOException if reading fails or the text is not valid TOON
+     */
+    public Event next() throws IOException {
+        value = null;
+        final JsonToken token = parser.nextToken();
+        if (token == null) {
+            return event = null;
+        }
+        switch (token) {
+            case START_OBJECT:
+                if (parser.isRowStart()) {
+                    readRow();
+                    return event = Event.ROW;
+                }
+                return event = Event.START_OBJECT;
+            case FIELD_NAME:
+                return event = Event.FIELD;
+            case START_ARRAY:
+                count = parser.declaredCount();
+                final String[] keys = parser.declaredSchema();
+                schema = keys == null ? null : Collections.unmodifiableList(Arrays.asList(keys));
+                return event = Event.START_ARRAY;
+            case END_OBJECT:
+                return event = Event.END_OBJECT;
+            case END_ARRAY:
+                return event = Event.END_ARRAY;
+            default:
+                value = ToonDecoder.scalar(parser, token);
+                return event = Event.VALUE;
+        }
+    }
+    
+    /**
+     * Reads the cells of a tabular row; inline objects and arrays in cells decode to Map/List.
+     */
+    private void readRow() throws IOException {
+        final int width = schema.size();
+        row = new Object[width];
+        for (int i = 0; i < width; i++) {
+            parser.nextToken();
+            row[i] = ToonDecoder.read(parser);
+        }
+        parser.nextToken();
+    }
+    
+    /**
+     * Returns the last event returned by {@link #next()}.
+     * 
+     * @return The current event, or null before the first event and at the end
+     */
+    public Event getEvent() {
+        return event;
+    }
+    
+    /**
+     * Returns the name of the current field. After {@link Event#FIELD} this is the field just read;
+     * for the value that follows (scalar, object or array) it is the field owning that value.
+     * 
+     * @return The field name, or null outside objects
+     */
+    public String getName() {
+        return parser.getCurrentName();
+    }
+    
+    /**
+     * Returns the item count declared by the header of the array opened by the last
+     * {@link Event#START_ARRAY}.
+     * 
+     * @return The declared item count
+     */
+    public int getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the field names of the tabular array opened by the last {@link Event#START_ARRAY};
+     * they also name the values of its {@link Event#ROW} events.
+     * 
+     * @return The schema, or null if the last array opened is not tabular
+     */
+    public List<String> getSchema() {
+        return schema;
+    }
+    
+    /**
+     * Returns the value of a {@link Event#VALUE} event.
+     * 
+     * @return String, Long (BigInteger when out of range), Double, Boolean or null
+     */
+    public Object getValue() {
+        return value;
+    }
+    
+    /**
+     * Returns the values of a {@link Event#ROW} event in schema order.
+     * 
+     * @return The row values (unmodifiable)
+     */
+    public List<Object> getRow() {
+        return Collections.unmodifiableList(Arrays.asList(row));
+    }
+    
+    /**
+     * Returns the values of a {@link Event#ROW} event keyed by the schema.
+     * 
+     * @return A new map in schema order
+     */
+    public Map<String, Object> getRowAsMap() {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < row.length; i++) {
+            map.put(schema.get(i), row[i]);
+        }
+        return map;
+    }
+    
+    /**
+     * Returns the line number of the current event, for error reporting.
+     * 
+     * @return The 1-based line number
+     */
+    public int getLineNumber() {
+        return parser.currentTokenLocation().getLineNr();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
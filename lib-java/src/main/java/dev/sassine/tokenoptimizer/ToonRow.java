@@ -0,0 +1,207 @@
+package dev.sassine.tokenoptimizer;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable map holding one row of a tabular array, as decoded by {@link ToonConverter#fromToon(String)}.
+ * All rows of a [N]{schema} block share one {@link Schema} (key to index), so a row only holds
+ * its values in an array instead of a hash table of entries. Iteration follows the header order.
+ */
+final class ToonRow extends AbstractMap<String, Object> {
+    
+    private final Schema schema;
+    private final Object[] values;
+    // Cells added so far while the row is decoded
+    private int cells;
+    
+    /**
+     * Creates an empty row, filled in header order with {@link #add}; cells of columns left out
+     * of the schema are not added.
+     * 
+     * @param schema The schema shared by the rows of the block
+     */
+    ToonRow(final Schema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.keys.length];
+    }
+    
+    /**
+     * Sets the value of the next cell while decoding.
+     * 
+     * @param value The cell value
+     */
+    void add(final Object value) {
+        int slot = schema.slots[cells++];
+        while (slot < 0) {
+            // Column left out by a projection
+            slot = schema.slots[cells++];
+        }
+        values[slot] = value;
+    }
+    
+    @Override
+    public int size() {
+        return values.length;
+    }
+    
+    @Override
+    public boolean containsKey(final Object key) {
+        return schema.indexOf(key) >= 0;
+    }
+    
+    @Override
+    public Object get(final Object key) {
+        final int index = schema.indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+    
+    @Override
+    public Object getOrDefault(final Object key, final Object defaultValue) {
+        final int index = schema.indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+    
+    @Override
+    public void forEach(final BiConsumer<? super String, ? super Object> action) {
+        for (int i = 0; i < values.length; i++) {
+            action.accept(schema.keys[i], values[i]);
+        }
+    }
+    
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public int size() {
+                return values.length;
+            }
+            
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+                    private int next;
+                    
+                    @Override
+                    public boolean hasNext() {
+                        return next < values.length;
+                    }
+                    
+                    @Override
+                    public Map.Entry<String, Object> next() {
+                        if (next >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final int i = next++;
+                        return new AbstractMap.SimpleImmutableEntry<>(schema.keys[i], values[i]);
+                    }
+                };
+            }
+        };
+    }
+    
+    /**
+     * Keys of a tabular header and their index in the value array of each row.
+     * A key repeated in the header keeps its first position and its last value, as a
+     * LinkedHashMap filled in header order would. A schema built for a projection only holds
+     * the selected columns.
+     */
+    static final class Schema {
+        
+        // Above this many keys, lookups go through a hash map instead of a scan
+        private static final int SCAN_LIMIT = 8;
+        
+        // Distinct keys in header order, the value index of each header cell (-1 if left out),
+        // and the index by key
+        private final String[] keys;
+        private final int[] slots;
+        private final Map<String, Integer> index;
+        // Projection below each header cell (null if left out) and the last cell kept
+        private final ToonProjection[] projections;
+        private final int lastSelected;
+        
+        /**
+         * Creates the schema of a header.
+         * 
+         * @param header The keys of the header, in order
+         */
+        Schema(final String[] header) {
+            this(header, ToonProjection.ALL);
+        }
+        
+        /**
+         * Creates the schema of a header, keeping only the columns selected by a projection.
+         * 
+         * @param header The keys of the header, in order
+         * @param projection The projection below the array
+         */
+        Schema(final String[] header, final ToonProjection projection) {
+            final Map<String, Integer> positions = new HashMap<>();
+            final String[] distinct = new String[header.length];
+            slots = new int[header.length];
+            projections = new ToonProjection[header.length];
+            int last = -1;
+            for (int i = 0; i < header.length; i++) {
+                projections[i] = projection.field(header[i]);
+                if (projections[i] == null) {
+                    slots[i] = -1;
+                    continue;
+                }
+                last = i;
+                Integer position = positions.get(header[i]);
+                if (position == null) {
+                    position = positions.size();
+                    positions.put(header[i], position);
+                    distinct[position] = header[i];
+                }
+                slots[i] = position;
+            }
+            keys = positions.size() == header.length ? distinct : Arrays.copyOf(distinct, positions.size());
+            index = keys.length > SCAN_LIMIT ? positions : null;
+            lastSelected = last;
+        }
+        
+        /**
+         * Returns the projection below a header cell, or null if the column is left out.
+         * 
+         * @param cell The index of the cell in the header
+         */
+        ToonProjection projection(final int cell) {
+            return projections[cell];
+        }
+        
+        /**
+         * Returns true if no cell from the given one on is kept, so the rest of a row can be skipped.
+         * 
+         * @param cell The index of the cell in the header
+         */
+        boolean isPastSelection(final int cell) {
+            return cell > lastSelected;
+        }
+        
+        private int indexOf(final Object key) {
+            if (index != null) {
+                final Integer position = index.get(key);
+                return position != null ? position : -1;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package dev.sassine.tokenoptimizer;
+
+/**
+ * Scanner for unquoted TOON scalars.
+ * Classifies a char range as null, boolean, integer, decimal or string in one pass, and parses
+ * numbers straight from the range. Nothing throws on the way: a string that looks almost like
+ * a number is just a string, with no NumberFormatException to create and catch.
+ */
+final class ToonScalars {
+    
+    static final int NULL = 0;
+    static final int TRUE = 1;
+    static final int FALSE = 2;
+    static final int INTEGER = 3;
+    static final int DECIMAL = 4;
+    static final int STRING = 5;
+    
+    // Powers of ten that are exact in a double
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    // Longest mantissa that is exact in a double (10^15 < 2^53)
+    private static final int MAX_EXACT_DIGITS = 15;
+    
+    private static final String LONG_MAX_DIGITS = "9223372036854775807";
+    private static final String LONG_MIN_DIGITS = "9223372036854775808";
+    
+    // Prevent instantiation
+    private ToonScalars() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+    
+    /**
+     * Classifies an unquoted scalar. An empty range is null, like an empty cell.
+     * Booleans are matched ignoring case. An exponent needs a decimal point (1.5e3):
+     * without one, as in 1e5, the scalar is a string.
+     * 
+     * @param buf The buffer holding the scalar
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @return One of NULL, TRUE, FALSE, INTEGER, DECIMAL or STRING
+     */
+    static int classify(final char[] buf, final int start, final int end) {
+        if (start == end) {
+            return NULL;
+        }
+        switch (buf[start]) {
+            case 'n':
+                return matches(buf, start, end, "null") ? NULL : STRING;
+            case 't':
+            case 'T':
+                return matchesIgnoreCase(buf, start, end, "true") ? TRUE : STRING;
+            case 'f':
+            case 'F':
+                return matchesIgnoreCase(buf, start, end, "false") ? FALSE : STRING;
+            case '-':
+            case '+':
+            case '.':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                return classifyNumber(buf, start, end);
+            default:
+                return STRING;
+        }
+    }
+    
+    /**
+     * Checks the number grammar: [sign] digits, or [sign] [digits] . [digits] [e|E [sign] digits]
+     * with at least one digit around the point. Leading zeros are allowed (007 is 7).
+     */
+    private static int classifyNumber(final char[] buf, final int start, final int end) {
+        int p = start;
+        if (buf[p] == '-' || buf[p] == '+') {
+            p++;
+        }
+        final int digits = p;
+        p = skipDigits(buf, p, end);
+        if (p == end) {
+            return p == digits ? STRING : INTEGER;
+        }
+        if (buf[p] != '.') {
+            return STRING;
+        }
+        final int fraction = p + 1;
+        p = skipDigits(buf, fraction, end);
+        if (p == fraction && fraction - 1 == digits) {
+            return STRING;
+        }
+        if (p < end && (buf[p] == 'e' || buf[p] == 'E')) {
+            p++;
+            if (p < end && (buf[p] == '-' || buf[p] == '+')) {
+                p++;
+            }
+            final int exponent = p;
+            p = skipDigits(buf, exponent, end);
+            if (p == exponent) {
+                return STRING;
+            }
+        }
+        return p == end ? DECIMAL : STRING;
+    }
+    
+    /**
+     * Returns true if an INTEGER range fits in a long.
+     * 
+     * @param buf The buffer holding the integer
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @return true if {@link #parseLong} can parse the range
+     */
+    static boolean fitsLong(final char[] buf, final int start, final int end) {
+        int first = buf[start] == '-' || buf[start] == '+' ? start + 1 : start;
+        while (first < end - 1 && buf[first] == '0') {
+            first++;
+        }
+        final int digits = end - first;
+        if (digits != LONG_MAX_DIGITS.length()) {
+            return digits < LONG_MAX_DIGITS.length();
+        }
+        final String limit = buf[start] == '-' ? LONG_MIN_DIGITS : LONG_MAX_DIGITS;
+        for (int i = 0; i < digits; i++) {
+            final char c = buf[first + i];
+            if (c != limit.charAt(i)) {
+                return c < limit.charAt(i);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Parses an INTEGER range that fits in a long.
+     * 
+     * @param buf The buffer holding the integer
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @return The parsed value
+     */
+    static long parseLong(final char[] buf, final int start, final int end) {
+        int p = start;
+        final boolean negative = buf[p] == '-';
+        if (negative || buf[p] == '+') {
+            p++;
+        }
+        // Accumulate negatively so that Long.MIN_VALUE does not overflow
+        long value = 0;
+        for (; p < end; p++) {
+            value = value * 10 - (buf[p] - '0');
+        }
+        return negative ? value : -value;
+    }
+    
+    /**
+     * Parses an INTEGER or DECIMAL range.
+     * Mantissas of up to 15 digits with a power of ten up to 22 are computed directly, with a
+     * single correctly rounded multiplication or division. Anything else goes to Double.parseDouble.
+     * 
+     * @param buf The buffer holding the number
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @return The parsed value
+     */
+    static double parseDouble(final char[] buf, final int start, final int end) {
+        int p = start;
+        final boolean negative = buf[p] == '-';
+        if (negative || buf[p] == '+') {
+            p++;
+        }
+        
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; p < end; p++) {
+            final char c = buf[p];
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (mantissa != 0 || c != '0') {
+                if (++significant > MAX_EXACT_DIGITS) {
+                    return slowParseDouble(buf, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            }
+            if (fraction) {
+                scale--;
+            }
+        }
+        
+        if (p < end) {
+            // Exponent
+            p++;
+            final boolean negativeExponent = buf[p] == '-';
+            if (negativeExponent || buf[p] == '+') {
+                p++;
+            }
+            if (end - p > 3) {
+                return slowParseDouble(buf, start, end);
+            }
+            int exponent = 0;
+            for (; p < end; p++) {
+                exponent = exponent * 10 + (buf[p] - '0');
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (scale < -POW10.length + 1 || scale > POW10.length - 1) {
+            return slowParseDouble(buf, start, end);
+        }
+        final double value = scale >= 0 ? mantissa * POW10[scale] : mantissa / POW10[-scale];
+        return negative ? -value : value;
+    }
+    
+    /**
+     * Returns true if an INTEGER or DECIMAL range is written exactly as Java prints the parsed
+     * value (Long.toString, BigInteger.toString or Double.toString), so it can be copied as-is.
+     * Decimals qualify in plain notation from 0.001 up to 10^7, with at most 15 significant digits
+     * (which always print back the same) and no trailing zeros other than a lone ".0".
+     * 
+     * @param buf The buffer holding the number
+     * @param start Offset of the first char
+     * @param end Offset after the last char
+     * @return true if the text is the canonical form of its value
+     */
+    static boolean isCanonical(final char[] buf, final int start, final int end) {
+        final int digits = buf[start] == '-' ? start + 1 : start;
+        int p = skipDigits(buf, digits, end);
+        final int integerDigits = p - digits;
+        final boolean zero = buf[digits] == '0';
+        if (integerDigits == 0 || (integerDigits > 1 && zero)) {
+            return false;
+        }
+        if (p == end) {
+            // -0 prints as 0
+            return !zero || digits == start;
+        }
+        if (buf[p] != '.' || integerDigits > 7) {
+            return false;
+        }
+        final int fraction = p + 1;
+        if (fraction == end || skipDigits(buf, fraction, end) != end) {
+            return false;
+        }
+        if (end - fraction == 1 && buf[fraction] == '0') {
+            return true;
+        }
+        if (buf[end - 1] == '0') {
+            return false;
+        }
+        if (!zero) {
+            return integerDigits + end - fraction <= MAX_EXACT_DIGITS;
+        }
+        // 0.xxx: at most two leading zeros, below 0.001 Java switches to E notation
+        p = fraction;
+        while (buf[p] == '0') {
+            p++;
+        }
+        return p - fraction <= 2 && end - p <= MAX_EXACT_DIGITS;
+    }
+    
+    private static double slowParseDouble(final char[] buf, final int start, final int end) {
+        return Double.parseDouble(new String(buf, start, end - start));
+    }
+    
+    private static boolean matches(final char[] buf, final int start, final int end, final String literal) {
+        if (end - start != literal.length()) {
+            return false;
+        }
+        for (int i = 1; i < literal.length(); i++) {
+            if (buf[start + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean matchesIgnoreCase(final char[] buf, final int start, final int end,
+            final String literal) {
+        if (end - start != literal.length()) {
+            return false;
+        }
+        // Same folding as String.equalsIgnoreCase, for a lowercase literal
+        for (int i = 0; i < literal.length(); i++) {
+            if (Character.toLowerCase(Character.toUpperCase(buf[start + i])) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int skipDigits(final char[] buf, int p, final int end) {
+        while (p < end && buf[p] >= '0' && buf[p] <= '9') {
+            p++;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,685 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Column-oriented view of a tabular TOON array ([N]{a,b,c}: followed by N rows).
+ * Each column is stored in a primitive array (long[], double[], boolean[]) or, for strings,
+ * as int codes into a per-column dictionary, with nulls in a bitmap. Decoding writes cells
+ * straight into the columns, so no Map and no boxed value is created per row.
+ * 
+ * <p>Column types are inferred from the data: integers are LONG, decimals DOUBLE (a column
+ * mixing both becomes DOUBLE), booleans BOOLEAN and strings STRING. Columns mixing other
+ * types or holding inline arrays and objects fall back to OBJECT. A type can also be
+ * given per column; values that do not fit it are rejected, and a STRING column keeps the
+ * text of every value as written.
+ * 
+ * <p>Example:
+ * <pre>
+ * ToonTable table = ToonTable.fromToon(toon, "metrics");
+ * int value = table.columnIndex("value");
+ * ToonTable.Cursor cursor = table.cursor();
+ * while (cursor.next()) {
+ *     total += cursor.getDouble(value);
+ * }
+ * </pre>
+ */
+public final class ToonTable {
+    
+    /**
+     * Storage type of a column.
+     */
+    public enum ColumnType {
+        /** Integers in a long[] */
+        LONG,
+        /** Numbers in a double[] */
+        DOUBLE,
+        /** Booleans in a boolean[] */
+        BOOLEAN,
+        /** Dictionary-encoded strings */
+        STRING,
+        /** Boxed values, for mixed columns and inline arrays or objects */
+        OBJECT
+    }
+    
+    // Rows the columns are sized for before any is read; the declared count is not trusted further
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private final Column[] columns;
+    private final List<String> columnNames;
+    private final int rowCount;
+    
+    private ToonTable(final Column[] columns, final int rowCount) {
+        this.columns = columns;
+        this.rowCount = rowCount;
+        final String[] names = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].name;
+        }
+        this.columnNames = Collections.unmodifiableList(Arrays.asList(names));
+    }
+    
+    /**
+     * Decodes a document whose root is a tabular array.
+     * 
+     * @param toonString The TOON string
+     * @return The table
+     * @throws IllegalArgumentException if toonString is null or empty, or the root is not a tabular array
+     * @throws RuntimeException if the text is not valid TOON
+     */
+    public static ToonTable fromToon(final String toonString) {
+        return fromToon(toonString, null, Collections.emptyMap());
+    }
+    
+    /**
+     * Decodes the tabular array held by a field of the root object.
+     * 
+     * @param toonString The TOON string
+     * @param field The root field holding the array, or null if the root is the array
+     * @return The table
+     * @throws IllegalArgumentException if toonString is null or empty, or there is no such tabular array
+     * @throws RuntimeException if the text is not valid TOON
+     */
+    public static ToonTable fromToon(final String toonString, final String field) {
+        return fromToon(toonString, field, Collections.emptyMap());
+    }
+    
+    /**
+     * Decodes the tabular array held by a field of the root object, with column type hints.
+     * 
+     * @param toonString The TOON string
+     * @param field The root field holding the array, or null if the root is the array
+     * @param types Column types by column name; columns not listed are inferred
+     * @return The table
+     * @throws IllegalArgumentException if toonString is null or empty, there is no such tabular array,
+     *         or a value does not fit its hinted type
+     * @throws RuntimeException if the text is not valid TOON
+     */
+    public static ToonTable fromToon(final String toonString, final String field,
+            final Map<String, ColumnType> types) {
+        if (toonString == null) {
+            throw new IllegalArgumentException("TOON string cannot be null");
+        }
+        if (toonString.trim().isEmpty()) {
+            throw new IllegalArgumentException("TOON string cannot be empty");
+        }
+        final char[] chars = toonString.toCharArray();
+        return read(new ToonParser(null, JsonParser.Feature.collectDefaults(), null, null,
+                chars, 0, chars.length, false), field, types);
+    }
+    
+    /**
+     * Decodes the tabular array held by a field of the root object, reading the text incrementally.
+     * Only the current line is buffered besides the columns themselves.
+     * 
+     * @param toon The reader supplying TOON text
+     * @param field The root field holding the array, or null if the root is the array
+     * @param types Column types by column name; columns not listed are inferred
+     * @return The table
+     * @throws IllegalArgumentException if toon is null, there is no such tabular array,
+     *         or a value does not fit its hinted type
+     * @throws RuntimeException if reading fails or the text is not valid TOON
+     */
+    public static ToonTable fromToon(final Reader toon, final String field, final Map<String, ColumnType> types) {
+        if (toon == null) {
+            throw new IllegalArgumentException("TOON reader cannot be null");
+        }
+        return read(new ToonParser(null, JsonParser.Feature.collectDefaults(), null, toon), field, types);
+    }
+    
+    private static ToonTable read(final ToonParser parser, final String field, final Map<String, ColumnType> types) {
+        try (parser) {
+            if (!seek(parser, field)) {
+                throw new IllegalArgumentException(field == null
+                        ? "TOON root is not a tabular array" : "No tabular array found at field: " + field);
+            }
+            final String[] schema = parser.declaredSchema();
+            final int declared = parser.declaredCount();
+            final Column[] columns = new Column[schema.length];
+            for (int i = 0; i < schema.length; i++) {
+                columns[i] = new Column(schema[i], types == null ? null : types.get(schema[i]), declared);
+            }
+            // Columns grow as rows arrive, so a header claiming more rows than the text holds costs nothing
+            int rows = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                for (final Column column : columns) {
+                    parser.nextToken();
+                    column.put(rows, parser, parser.nextToken());
+                }
+                parser.nextToken();
+                rows++;
+            }
+            if (rows != declared) {
+                throw new RuntimeException("Error parsing TOON: Expected " + declared + " rows but got " + rows);
+            }
+            // The parser ends the array after the declared rows: reading on reports any row past them
+            parser.nextToken();
+            for (final Column column : columns) {
+                column.finish();
+            }
+            return new ToonTable(columns, rows);
+        } catch (IOException e) {
+            throw new RuntimeException("Error parsing TOON: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Advances the parser to the START_ARRAY of the wanted tabular array.
+     */
+    private static boolean seek(final ToonParser parser, final String field) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (field == null) {
+            return token == JsonToken.START_ARRAY && parser.declaredSchema() != null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            final boolean match = field.equals(parser.getCurrentName());
+            token = parser.nextToken();
+            if (match) {
+                return token == JsonToken.START_ARRAY && parser.declaredSchema() != null;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the number of rows.
+     * 
+     * @return The row count
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Returns the number of columns.
+     * 
+     * @return The column count
+     */
+    public int columnCount() {
+        return columns.length;
+    }
+    
+    /**
+     * Returns the column names in header order.
+     * 
+     * @return The column names (unmodifiable)
+     */
+    public List<String> columnNames() {
+        return columnNames;
+    }
+    
+    /**
+     * Returns the index of a column.
+     * 
+     * @param name The column name
+     * @return The column index, or -1 if there is no such column
+     */
+    public int columnIndex(final String name) {
+        return columnNames.indexOf(name);
+    }
+    
+    /**
+     * Returns the storage type of a column. A column holding only nulls is STRING unless hinted.
+     * 
+     * @param column The column index
+     * @return The column type
+     */
+    public ColumnType columnType(final int column) {
+        return columns[column].type;
+    }
+    
+    /**
+     * Returns true if a cell is null.
+     * 
+     * @param row The row index
+     * @param column The column index
+     * @return Whether the cell is null
+     */
+    public boolean isNull(final int row, final int column) {
+        return columns[column].nulls.get(Objects.checkIndex(row, rowCount));
+    }
+    
+    /**
+     * Returns a cell of a LONG column (0 for null).
+     * 
+     * @param row The row index
+     * @param column The column index
+     * @return The value
+     * @throws IllegalStateException if the column is not LONG
+     */
+    public long getLong(final int row, final int column) {
+        final Column c = columns[column];
+        c.expect(ColumnType.LONG);
+        return c.longs[Objects.checkIndex(row, rowCount)];
+    }
+    
+    /**
+     * Returns a cell of a DOUBLE or LONG column (0 for null).
+     * 
+     * @param row The row index
+     * @param column The column index
+     * @return The value
+     * @throws IllegalStateException if the column is not numeric
+     */
+    public double getDouble(final int row, final int column) {
+        final Column c = columns[column];
+        Objects.checkIndex(row, rowCount);
+        if (c.type == ColumnType.LONG) {
+            return c.longs[row];
+        }
+        c.expect(ColumnType.DOUBLE);
+        return c.doubles[row];
+    }
+    
+    /**
+     * Returns a cell of a BOOLEAN column (false for null).
+     * 
+     * @param row The row index
+     * @param column The column index
+     * @return The value
+     * @throws IllegalStateException if the column is not BOOLEAN
+     */
+    public boolean getBoolean(final int row, final int column) {
+        final Column c = columns[column];
+        c.expect(ColumnType.BOOLEAN);
+        return c.booleans[Objects.checkIndex(row, rowCount)];
+    }
+    
+    /**
+     * Returns a cell as a string. STRING columns return the shared dictionary value; other
+     * columns return the value's string form.
+     * 
+     * @param row The row index
+     * @param column The column index
+     * @return The value, or null for a null cell
+     */
+    public String getString(final int row, final int column) {
+        final Column c = columns[column];
+        if (c.type == ColumnType.STRING) {
+            return c.nulls.get(Objects.checkIndex(row, rowCount)) ? null : c.dictionary.value(c.codes[row]);
+        }
+        final Object value = get(row, column);
+        return value == null ? null : String.valueOf(value);
+    }
+    
+    /**
+     * Returns a cell as an object: Long, Double, Boolean, String, or for OBJECT columns the
+     * value as {@link ToonConverter#fromToon(String)} would decode it.
+     * 
+     * @param row The row index
+     * @param column The column index
+     * @return The value, or null for a null cell
+     */
+    public Object get(final int row, final int column) {
+        final Column c = columns[column];
+        if (c.nulls.get(Objects.checkIndex(row, rowCount))) {
+            return null;
+        }
+        return c.box(row);
+    }
+    
+    /**
+     * Returns the number of distinct values of a STRING column.
+     * 
+     * @param column The column index
+     * @return The dictionary size
+     * @throws IllegalStateException if the column is not STRING
+     */
+    public int distinctCount(final int column) {
+        final Column c = columns[column];
+        c.expect(ColumnType.STRING);
+        return c.dictionary.size();
+    }
+    
+    /**
+     * Returns a cursor positioned before the first row.
+     * 
+     * @return A new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+    
+    /**
+     * Converts the table to one map per row, keyed by column name.
+     * 
+     * @return A new list of maps in row order
+     */
+    public List<Map<String, Object>> toMaps() {
+        final List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            for (int column = 0; column < columns.length; column++) {
+                map.put(columns[column].name, get(row, column));
+            }
+            rows.add(map);
+        }
+        return rows;
+    }
+    
+    /**
+     * Forward-only cursor over the rows of a table; reads cells without creating row objects.
+     */
+    public final class Cursor {
+        
+        private int row = -1;
+        
+        private Cursor() {
+        }
+        
+        /**
+         * Moves to the next row.
+         * 
+         * @return false once there are no more rows
+         */
+        public boolean next() {
+            if (row < rowCount) {
+                row++;
+            }
+            return row < rowCount;
+        }
+        
+        /**
+         * Returns the index of the current row.
+         * 
+         * @return The row index
+         */
+        public int getRow() {
+            return row;
+        }
+        
+        /**
+         * Returns true if a cell of the current row is null.
+         * 
+         * @param column The column index
+         * @return Whether the cell is null
+         */
+        public boolean isNull(final int column) {
+            return ToonTable.this.isNull(row, column);
+        }
+        
+        /**
+         * Returns a cell of the current row from a LONG column.
+         * 
+         * @param column The column index
+         * @return The value
+         */
+        public long getLong(final int column) {
+            return ToonTable.this.getLong(row, column);
+        }
+        
+        /**
+         * Returns a cell of the current row from a DOUBLE or LONG column.
+         * 
+         * @param column The column index
+         * @return The value
+         */
+        public double getDouble(final int column) {
+            return ToonTable.this.getDouble(row, column);
+        }
+        
+        /**
+         * Returns a cell of the current row from a BOOLEAN column.
+         * 
+         * @param column The column index
+         * @return The value
+         */
+        public boolean getBoolean(final int column) {
+            return ToonTable.this.getBoolean(row, column);
+        }
+        
+        /**
+         * Returns a cell of the current row as a string.
+         * 
+         * @param column The column index
+         * @return The value, or null for a null cell
+         */
+        public String getString(final int column) {
+            return ToonTable.this.getString(row, column);
+        }
+        
+        /**
+         * Returns a cell of the current row as an object.
+         * 
+         * @param column The column index
+         * @return The value, or null for a null cell
+         */
+        public Object get(final int column) {
+            return ToonTable.this.get(row, column);
+        }
+    }
+    
+    /**
+     * Storage of one column. The typed array is allocated on the first non-null value, and
+     * an inferred column is widened (LONG to DOUBLE, anything else to OBJECT) when a later
+     * value does not fit. Arrays double as rows arrive, up to the declared row count.
+     */
+    private static final class Column {
+        final String name;
+        final boolean hinted;
+        final int maxRows;
+        int capacity;
+        ColumnType type;
+        final BitSet nulls = new BitSet();
+        long[] longs;
+        double[] doubles;
+        boolean[] booleans;
+        int[] codes;
+        StringDictionary dictionary;
+        Object[] objects;
+        
+        Column(final String name, final ColumnType hint, final int maxRows) {
+            this.name = name;
+            this.hinted = hint != null;
+            this.maxRows = maxRows;
+            this.capacity = Math.min(maxRows, INITIAL_CAPACITY);
+            if (hint != null) {
+                allocate(hint);
+            }
+        }
+        
+        void put(final int row, final ToonParser parser, final JsonToken token) throws IOException {
+            if (row >= capacity) {
+                grow(row);
+            }
+            if (token == JsonToken.VALUE_NULL) {
+                nulls.set(row);
+                return;
+            }
+            if (type == ColumnType.STRING && hinted && token.isScalarValue()) {
+                // Keep the text as written, e.g. 007 or 1.50
+                putString(row, parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                return;
+            }
+            switch (token) {
+                case VALUE_NUMBER_INT:
+                    if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                        putObject(row, parser.getBigIntegerValue());
+                    } else {
+                        putLong(row, parser.getLongValue());
+                    }
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    putDouble(row, parser.getDoubleValue());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    putBoolean(row, token == JsonToken.VALUE_TRUE);
+                    break;
+                case VALUE_STRING:
+                    putString(row, parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    break;
+                default:
+                    putObject(row, ToonDecoder.read(parser, token));
+                    break;
+            }
+        }
+        
+        private void putLong(final int row, final long value) {
+            switch (target(ColumnType.LONG, row)) {
+                case LONG:
+                    longs[row] = value;
+                    break;
+                case DOUBLE:
+                    doubles[row] = value;
+                    break;
+                default:
+                    objects[row] = value;
+                    break;
+            }
+        }
+        
+        private void putDouble(final int row, final double value) {
+            if (target(ColumnType.DOUBLE, row) == ColumnType.DOUBLE) {
+                doubles[row] = value;
+            } else {
+                objects[row] = value;
+            }
+        }
+        
+        private void putBoolean(final int row, final boolean value) {
+            if (target(ColumnType.BOOLEAN, row) == ColumnType.BOOLEAN) {
+                booleans[row] = value;
+            } else {
+                objects[row] = value;
+            }
+        }
+        
+        private void putString(final int row, final char[] buf, final int offset, final int length) {
+            if (target(ColumnType.STRING, row) == ColumnType.STRING) {
+                codes[row] = dictionary.code(buf, offset, length);
+            } else {
+                objects[row] = new String(buf, offset, length);
+            }
+        }
+        
+        private void putObject(final int row, final Object value) {
+            target(ColumnType.OBJECT, row);
+            objects[row] = value;
+        }
+        
+        /**
+         * Returns the storage to use for a value of the given kind, widening the column if needed.
+         */
+        private ColumnType target(final ColumnType kind, final int row) {
+            if (type == kind || type == ColumnType.OBJECT) {
+                return type;
+            }
+            if (type == null) {
+                allocate(kind);
+                return kind;
+            }
+            if (type == ColumnType.DOUBLE && kind == ColumnType.LONG) {
+                return type;
+            }
+            if (hinted) {
+                throw new IllegalArgumentException("Column '" + name + "' is " + type + " but row " + row
+                        + " holds a " + kind + " value");
+            }
+            if (type == ColumnType.LONG && kind == ColumnType.DOUBLE) {
+                doubles = new double[capacity];
+                for (int i = 0; i < row; i++) {
+                    doubles[i] = longs[i];
+                }
+                longs = null;
+                type = ColumnType.DOUBLE;
+                return type;
+            }
+            final Object[] boxed = new Object[capacity];
+            for (int i = 0; i < row; i++) {
+                boxed[i] = nulls.get(i) ? null : box(i);
+            }
+            longs = null;
+            doubles = null;
+            booleans = null;
+            codes = null;
+            dictionary = null;
+            objects = boxed;
+            type = ColumnType.OBJECT;
+            return type;
+        }
+        
+        private void grow(final int row) {
+            capacity = (int) Math.max(row + 1L, Math.min(maxRows, capacity * 2L));
+            if (longs != null) {
+                longs = Arrays.copyOf(longs, capacity);
+            }
+            if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, capacity);
+            }
+            if (booleans != null) {
+                booleans = Arrays.copyOf(booleans, capacity);
+            }
+            if (codes != null) {
+                codes = Arrays.copyOf(codes, capacity);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+        }
+        
+        private void allocate(final ColumnType kind) {
+            type = kind;
+            switch (kind) {
+                case LONG:
+                    longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                case BOOLEAN:
+                    booleans = new boolean[capacity];
+                    break;
+                case STRING:
+                    codes = new int[capacity];
+                    dictionary = new StringDictionary();
+                    break;
+                default:
+                    objects = new Object[capacity];
+                    break;
+            }
+        }
+        
+        void finish() {
+            if (type == null) {
+                allocate(ColumnType.STRING);
+            }
+        }
+        
+        Object box(final int row) {
+            switch (type) {
+                case LONG:
+                    return longs[row];
+                case DOUBLE:
+                    return doubles[row];
+                case BOOLEAN:
+                    return booleans[row];
+                case STRING:
+                    return dictionary.value(codes[row]);
+                default:
+                    return objects[row];
+            }
+        }
+        
+        void expect(final ColumnType expected) {
+            if (type != expected) {
+                throw new IllegalStateException("Column '" + name + "' is " + type + ", not " + expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.sassine.tokenoptimizer;
+
+/**
+ * Outcome of {@link ToonConverter#validate(CharSequence)}: either valid, or the first error
+ * found with its position in the text.
+ */
+public final class ToonValidationResult {
+    
+    private static final ToonValidationResult VALID = new ToonValidationResult(-1, 0, 0, null);
+    
+    private final int errorOffset;
+    private final int lineNumber;
+    private final int columnNumber;
+    private final String message;
+    
+    /**
+     * Creates a new ToonValidationResult.
+     * 
+     * @param errorOffset Offset of the first error in the text (-1 if valid)
+     * @param lineNumber 1-based line of the error (0 if valid)
+     * @param columnNumber 1-based column of the error (0 if valid)
+     * @param message Description of the error (null if valid)
+     */
+    private ToonValidationResult(final int errorOffset, final int lineNumber, final int columnNumber,
+            final String message) {
+        this.errorOffset = errorOffset;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.message = message;
+    }
+    
+    static ToonValidationResult valid() {
+        return VALID;
+    }
+    
+    static ToonValidationResult invalid(final int errorOffset, final int lineNumber, final int columnNumber,
+            final String message) {
+        return new ToonValidationResult(errorOffset, lineNumber, columnNumber, message);
+    }
+    
+    /**
+     * Returns true if the text passed validation.
+     * 
+     * @return Whether no error was found
+     */
+    public boolean isValid() {
+        return errorOffset < 0;
+    }
+    
+    /**
+     * Returns the offset of the first error in the validated text.
+     * 
+     * @return The char offset of the error, or -1 if the text is valid
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+    
+    /**
+     * Returns the 1-based line of the first error.
+     * 
+     * @return The line number, or 0 if the text is valid
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+    
+    /**
+     * Returns the 1-based column of the first error.
+     * 
+     * @return The column number, or 0 if the text is valid
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+    
+    /**
+     * Returns the description of the first error.
+     * 
+     * @return The error message, or null if the text is valid
+     */
+    public String getMessage() {
+        return message;
+    }
+    
+    @Override
+    public String toString() {
+        if (isValid()) {
+            return "ToonValidationResult{valid}";
+        }
+        return String.format("ToonValidationResult{offset=%d, line=%d, column=%d, message=%s}",
+            errorOffset, lineNumber, columnNumber, message);
+    }
+}
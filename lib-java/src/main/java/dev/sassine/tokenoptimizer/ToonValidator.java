@@ -0,0 +1,189 @@
+package dev.sassine.tokenoptimizer;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks TOON text for {@link ToonConverter#validate(CharSequence)} in one scan of the
+ * {@link ToonParser} token stream, applying the same rules as decoding: declared counts of
+ * arrays and rows, the field count of each row and consistent indentation. Tokens are read but
+ * never converted, so no value is created: the text is read through a fixed buffer, quoted
+ * values are not unescaped, numbers are not parsed and field names are not built (when headers
+ * are checked, names are built once per distinct key to track paths).
+ */
+final class ToonValidator {
+    
+    // Distinct field names shared while checking headers
+    private static final int MAX_NAMES = 4096;
+    
+    // Prevent instantiation
+    private ToonValidator() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+    
+    /**
+     * Validates TOON text, optionally checking the headers of some tabular arrays.
+     * 
+     * @param toon The TOON text
+     * @param headers Expected header fields by dotted path of the array (empty to only check structure)
+     * @return The result, with the position of the first error if any
+     */
+    static ToonValidationResult validate(final CharSequence toon, final Map<String, List<String>> headers) {
+        // Leading whitespace is skipped, as fromToon trims its input
+        int start = 0;
+        while (start < toon.length() && toon.charAt(start) <= ' ') {
+            start++;
+        }
+        final Set<String> found = headers.isEmpty() ? null : new HashSet<>();
+        // Last step of each expected path, so paths are only built for arrays that may match
+        final Set<String> keys = new HashSet<>();
+        for (final String path : headers.keySet()) {
+            keys.add(path.isEmpty() ? null : path.substring(path.lastIndexOf('.') + 1));
+        }
+        try (ToonParser parser = new ToonParser(null, JsonParser.Feature.collectDefaults(), null,
+                new CharSequenceReader(toon, start))) {
+            if (headers.isEmpty()) {
+                parser.discardNames();
+            } else {
+                // Names give the path of each array; sharing them keeps their cost per distinct key
+                parser.intern(new StringDictionary(MAX_NAMES, false));
+            }
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return errorAtEnd(toon, "TOON input cannot be empty");
+            }
+            for (; token != null; token = parser.nextToken()) {
+                if (token != JsonToken.START_ARRAY || headers.isEmpty()) {
+                    continue;
+                }
+                final JsonStreamContext owner = parser.getParsingContext().getParent();
+                if (!keys.contains(owner.getCurrentName())) {
+                    continue;
+                }
+                final String path = path(owner);
+                final List<String> expected = headers.get(path);
+                if (expected == null) {
+                    continue;
+                }
+                found.add(path);
+                final String[] schema = parser.declaredSchema();
+                final boolean matches = schema != null ? Arrays.asList(schema).equals(expected)
+                        : parser.declaredCount() == 0;
+                if (!matches) {
+                    final JsonLocation location = parser.getTokenLocation();
+                    return error(toon, start, location.getLineNr(), location.getColumnNr(),
+                            "Expected tabular array '" + path + "' with fields " + expected);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            final JsonLocation location = e.getLocation();
+            return error(toon, start, location.getLineNr(), location.getColumnNr(), e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new RuntimeException("Error validating TOON: " + e.getMessage(), e);
+        }
+        for (final String path : headers.keySet()) {
+            if (!found.contains(path)) {
+                return errorAtEnd(toon, "Missing tabular array '" + path + "'");
+            }
+        }
+        return ToonValidationResult.valid();
+    }
+    
+    /**
+     * Builds the dotted path of a context from the field names of its enclosing objects; arrays
+     * do not add to the path.
+     */
+    private static String path(final JsonStreamContext context) {
+        final StringBuilder path = new StringBuilder();
+        for (JsonStreamContext ctx = context; ctx != null && !ctx.inRoot(); ctx = ctx.getParent()) {
+            if (ctx.inObject() && ctx.getCurrentName() != null) {
+                path.insert(0, path.length() > 0 ? ctx.getCurrentName() + "." : ctx.getCurrentName());
+            }
+        }
+        return path.toString();
+    }
+    
+    /**
+     * Creates an error from a 1-based line and column as reported by the parser, which counts
+     * them from the start offset, converted to the offset, line and column in the whole text.
+     */
+    private static ToonValidationResult error(final CharSequence toon, final int start, final int line,
+            final int column, final String message) {
+        final int length = toon.length();
+        int p = start;
+        for (int l = 1; l < line && p < length; l++) {
+            while (p < length && toon.charAt(p) != '\n') {
+                p++;
+            }
+            p++;
+        }
+        final int offset = Math.min(length, p + Math.max(column, 1) - 1);
+        int lineNumber = 1;
+        int lineStart = 0;
+        for (int i = 0; i < offset; i++) {
+            if (toon.charAt(i) == '\n') {
+                lineNumber++;
+                lineStart = i + 1;
+            }
+        }
+        return ToonValidationResult.invalid(offset, lineNumber, offset - lineStart + 1, message);
+    }
+    
+    private static ToonValidationResult errorAtEnd(final CharSequence toon, final String message) {
+        int line = 1;
+        int lineStart = 0;
+        for (int p = 0; p < toon.length(); p++) {
+            if (toon.charAt(p) == '\n') {
+                line++;
+                lineStart = p + 1;
+            }
+        }
+        return ToonValidationResult.invalid(toon.length(), line, toon.length() - lineStart + 1, message);
+    }
+    
+    /**
+     * Reader over a CharSequence, copying chars into the parser's buffer as it reads.
+     */
+    private static final class CharSequenceReader extends Reader {
+        
+        private final CharSequence text;
+        private int next;
+        
+        CharSequenceReader(final CharSequence text, final int start) {
+            this.text = text;
+            this.next = start;
+        }
+        
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) {
+            final int remaining = text.length() - next;
+            if (remaining <= 0) {
+                return len == 0 ? 0 : -1;
+            }
+            final int count = Math.min(len, remaining);
+            if (text instanceof String) {
+                ((String) text).getChars(next, next + count, cbuf, off);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    cbuf[off + i] = text.charAt(next + i);
+                }
+            }
+            next += count;
+            return count;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
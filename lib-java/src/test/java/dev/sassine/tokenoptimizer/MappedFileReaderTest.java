@@ -0,0 +1,82 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+class MappedFileReaderTest {
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    void testDecodesCharactersSplitAcrossWindows() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("row ").append(i).append(": café, naïve, 日本語, 😀\n");
+        }
+        final Path file = dir.resolve("text.toon");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        
+        for (final long window : new long[] {4, 7, 1000, MappedFileReader.DEFAULT_WINDOW}) {
+            final StringBuilder read = new StringBuilder();
+            try (Reader reader = new MappedFileReader(FileChannel.open(file, StandardOpenOption.READ), window)) {
+                final char[] buf = new char[13];
+                int n;
+                while ((n = reader.read(buf, 0, buf.length)) != -1) {
+                    read.append(buf, 0, n);
+                }
+            }
+            assertEquals(text.toString(), read.toString(), "window " + window);
+        }
+    }
+    
+    @Test
+    void testHandsOutSurrogatePairsOneCharAtATime() throws Exception {
+        final String text = "a😀b😀\n";
+        final Path file = dir.resolve("pairs.toon");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        
+        for (final long window : new long[] {5, MappedFileReader.DEFAULT_WINDOW}) {
+            final StringBuilder read = new StringBuilder();
+            try (Reader reader = new MappedFileReader(FileChannel.open(file, StandardOpenOption.READ), window)) {
+                final char[] buf = new char[1];
+                int n;
+                while ((n = reader.read(buf, 0, 1)) != -1) {
+                    assertEquals(1, n);
+                    read.append(buf[0]);
+                }
+            }
+            assertEquals(text, read.toString(), "window " + window);
+        }
+        
+        // The emoji starts at the last char of the parser's buffer
+        final String toon = "a: " + "x".repeat(8188) + "😀\n";
+        final Path doc = Files.write(dir.resolve("emoji.toon"), toon.getBytes(StandardCharsets.UTF_8));
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertEquals(ToonConverter.fromToon(toon), ToonConverter.fromToon(doc)));
+    }
+    
+    @Test
+    void testFromToonPathMatchesFromToonString() throws Exception {
+        final String toon = "name: Café\nitems[2]{id,label}:\n  1,日本\n  2,\"a, b\"\ntags[2]: x,y\n";
+        final Path file = dir.resolve("doc.toon");
+        Files.write(file, toon.getBytes(StandardCharsets.UTF_8));
+        final Path empty = Files.write(dir.resolve("empty.toon"), new byte[] {' ', '\n'});
+        
+        assertEquals(ToonConverter.fromToon(toon), ToonConverter.fromToon(file));
+        assertThrows(IllegalArgumentException.class, () -> ToonConverter.fromToon(empty));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon(dir.resolve("missing.toon")));
+        try (ToonReader reader = ToonReader.open(file)) {
+            assertEquals(ToonReader.Event.START_OBJECT, reader.next());
+        }
+    }
+}
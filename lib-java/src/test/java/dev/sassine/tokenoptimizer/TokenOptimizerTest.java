@@ -4,8 +4,12 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.ModelType;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -116,6 +120,50 @@ class TokenOptimizerTest {
         assertEquals(0, TokenCounter.countTokens(""));
     }
     
+    @Test
+    void testTokenCounterMatchesEncodedTokens() {
+        final String[] texts = {ToonConverter.toToon(rows(50, "Product")),
+                "Hello, world! It's 2024 — naïve café, 東京, emoji 🚀\n\n  indented\ttext", " ", "'s'll"};
+        for (final ModelType modelType : new ModelType[] {ModelType.GPT_4, ModelType.GPT_4O}) {
+            final Encoding encoding = Encodings.newDefaultEncodingRegistry().getEncodingForModel(modelType);
+            for (final String text : texts) {
+                assertEquals(encoding.encode(text).size(), TokenCounter.countTokens(text, modelType));
+            }
+        }
+        // Special tokens are not encoded; they fall back to generic estimation
+        assertEquals(TokenCounter.countTokens("a<|endoftext|>b"),
+                TokenCounter.countTokens("a<|endoftext|>b", ModelType.GPT_4));
+    }
+    
+    @Test
+    void testTokenCounterUpToLimit() {
+        final String text = ToonConverter.toToon(rows(200, "Product"));
+        for (final ModelType modelType : new ModelType[] {null, ModelType.GPT_4}) {
+            final int exact = TokenCounter.countTokens(text, modelType);
+            assertEquals(exact, TokenCounter.countTokensUpTo(text, modelType, exact));
+            assertEquals(exact, TokenCounter.countTokensUpTo(text, modelType, Integer.MAX_VALUE));
+            final int bounded = TokenCounter.countTokensUpTo(text, modelType, 10);
+            assertTrue(bounded > 10 && bounded <= exact);
+        }
+        assertEquals(0, TokenCounter.countTokensUpTo("", 0));
+        assertThrows(IllegalArgumentException.class, () -> TokenCounter.countTokensUpTo(text, -1));
+        assertThrows(IllegalArgumentException.class, () -> TokenCounter.countTokensUpTo(null, 10));
+    }
+    
+    @Test
+    void testWarmUp() {
+        final String text = ToonConverter.toToon(rows(20, "Product"));
+        final int gpt4 = TokenCounter.countTokens(text, ModelType.GPT_4);
+        
+        TokenOptimizer.warmUp();
+        TokenCounter.warmUp(ModelType.GPT_4, ModelType.GPT_3_5_TURBO, null);
+        
+        // Models sharing an encoding count the same way
+        assertEquals(gpt4, TokenCounter.countTokens(text, ModelType.GPT_4));
+        assertEquals(gpt4, TokenCounter.countTokens(text, ModelType.GPT_3_5_TURBO));
+        assertThrows(IllegalArgumentException.class, () -> TokenCounter.warmUp((ModelType[]) null));
+    }
+    
     @Test
     void testToonConverterWithNull() {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -616,4 +664,339 @@ class TokenOptimizerTest {
         assertTrue(resultBytes.getOptimalByteCount() <= resultBytes.getJsonByteCount());
         assertTrue(resultChars.getOptimalCharacterCount() <= resultChars.getJsonCharacterCount());
     }
+    
+    @Test
+    void testOptimizeRendersBeansInOneWalk() throws Exception {
+        final Basket basket = new Basket("weekly", List.of(new Item("Apple", 1.5), new Item("Pear", 2.0)));
+        
+        final OptimizationResult result = TokenOptimizer.optimize(basket);
+        
+        assertEquals(new ObjectMapper().writeValueAsString(basket), result.getJsonContent());
+        assertEquals(ToonConverter.toToon(basket), result.getToonContent());
+        assertEquals("name: weekly\nitems[2]{product,price}:\n  Apple,1.5\n  Pear,2.0", result.getToonContent());
+    }
+    
+    @Test
+    void testPredictFormatRendersOnlyTheWinner() throws Exception {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", "Product " + i);
+            row.put("active", i % 2 == 0);
+            rows.add(row);
+        }
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .predictFormat(true)
+                .build();
+        
+        final OptimizationResult predicted = TokenOptimizer.optimize(rows, policy);
+        final OptimizationResult measured = TokenOptimizer.optimize(rows, (OptimizationPolicy) null);
+        
+        assertTrue(predicted.isPredicted());
+        assertFalse(measured.isPredicted());
+        assertEquals(OptimizationResult.FormatType.TOON, predicted.getOptimalFormat());
+        assertEquals(measured.getOptimalFormat(), predicted.getOptimalFormat());
+        assertEquals(ToonConverter.toToon(rows), predicted.getOptimalContent());
+        assertEquals(measured.getToonTokenCount(), predicted.getOptimalTokenCount());
+        assertEquals(measured.getToonByteCount(), predicted.getOptimalByteCount());
+        // JSON was not rendered, its counts are predicted
+        assertNull(predicted.getJsonContent());
+        assertEquals(measured.getJsonCharacterCount(), predicted.getJsonCharacterCount());
+        assertTrue(predicted.getJsonTokenCount() > predicted.getOptimalTokenCount());
+    }
+    
+    @Test
+    void testPredictFormatCostsNestedRowCellsInline() {
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .predictFormat(true)
+                .build();
+        final OptimizationPolicy measuring = OptimizationPolicy.builder().build();
+        for (final int count : new int[] {5, 20, 100}) {
+            // Tabular because the first row has no nested value; later rows hold {k:v,...} and [n]: cells
+            final List<Map<String, Object>> users = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final Map<String, Object> user = new LinkedHashMap<>();
+                user.put("id", i);
+                user.put("name", "User " + i);
+                user.put("address", i == 0 ? null : Map.of("street", "Main St " + i, "zip", 10000 + i));
+                user.put("tags", i == 0 ? null : List.of("a", "b"));
+                users.add(user);
+            }
+            final Map<String, Object> payload = Map.of("users", users);
+            
+            final OptimizationResult predicted = TokenOptimizer.optimize(payload, policy);
+            final OptimizationResult measured = TokenOptimizer.optimize(payload, measuring);
+            
+            assertTrue(predicted.isPredicted());
+            assertEquals(OptimizationResult.FormatType.TOON, measured.getOptimalFormat());
+            assertEquals(measured.getOptimalFormat(), predicted.getOptimalFormat());
+            assertEquals(measured.getJsonCharacterCount(), predicted.getJsonCharacterCount());
+        }
+    }
+    
+    @Test
+    void testPredictFormatCostsEmptyObjectRowsAsBlankLines() {
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .predictFormat(true)
+                .build();
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(Map.of());
+        }
+        
+        final OptimizationResult predicted = TokenOptimizer.optimize(rows, ModelType.GPT_4, policy,
+                OptimizationCriteria.TOKENS);
+        final OptimizationResult measured = TokenOptimizer.optimize(rows, ModelType.GPT_4,
+                OptimizationPolicy.builder().build(), OptimizationCriteria.TOKENS);
+        
+        assertEquals(OptimizationResult.FormatType.TOON, measured.getOptimalFormat());
+        assertEquals(measured.getOptimalFormat(), predicted.getOptimalFormat());
+    }
+    
+    @Test
+    void testPredictFormatFallsBackWhenTooClose() {
+        final Map<String, Object> obj = new HashMap<>();
+        obj.put("a", 1);
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .predictFormat(true)
+                .build();
+        
+        final OptimizationResult result = TokenOptimizer.optimize(obj, policy);
+        
+        assertFalse(result.isPredicted());
+        assertNotNull(result.getJsonContent());
+        assertNotNull(result.getToonContent());
+        assertFalse(OptimizationPolicy.builder().build().isPredictFormat());
+        
+        // An inline object inside inline arrays: 24 TOON tokens against 25 JSON tokens with GPT_4
+        final Map<String, Object> cell = new LinkedHashMap<>();
+        cell.put("a0", "a");
+        cell.put("name1", "?? 42");
+        cell.put("name2", false);
+        cell.put("S3", null);
+        final OptimizationResult tie = TokenOptimizer.optimize(List.of(List.of(cell)), ModelType.GPT_4, policy,
+                OptimizationCriteria.TOKENS);
+        
+        assertFalse(tie.isPredicted());
+        assertEquals(OptimizationResult.FormatType.TOON, tie.getOptimalFormat());
+    }
+    
+    @Test
+    void testDecisionCacheRendersOnlyTheCachedFormat() throws Exception {
+        final FormatDecisionCache cache = FormatDecisionCache.builder()
+                .sampleRate(0.0)
+                .build();
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .decisionCache(cache)
+                .build();
+        
+        final OptimizationResult first = TokenOptimizer.optimize(rows(100, "Product"), policy);
+        assertFalse(first.isPredicted());
+        assertEquals(1, cache.size());
+        
+        // Same shape and size bucket, other values: only the cached winner is rendered
+        final List<Map<String, Object>> second = rows(120, "Item");
+        final OptimizationResult cached = TokenOptimizer.optimize(second, policy);
+        final OptimizationResult measured = TokenOptimizer.optimize(second, (OptimizationPolicy) null);
+        assertTrue(cached.isPredicted());
+        assertEquals(first.getOptimalFormat(), cached.getOptimalFormat());
+        assertEquals(measured.getOptimalFormat(), cached.getOptimalFormat());
+        assertEquals(ToonConverter.toToon(second), cached.getOptimalContent());
+        assertEquals(measured.getToonTokenCount(), cached.getOptimalTokenCount());
+        assertNull(cached.getJsonContent());
+        assertTrue(cached.getJsonTokenCount() > cached.getOptimalTokenCount());
+        
+        // Another shape is measured and cached on its own
+        final Map<String, Object> obj = new HashMap<>();
+        obj.put("name", "John");
+        assertFalse(TokenOptimizer.optimize(obj, policy).isPredicted());
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    void testDecisionCacheSeparatesArrayLayouts() throws Exception {
+        final FormatDecisionCache cache = FormatDecisionCache.builder()
+                .sampleRate(0.0)
+                .build();
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .decisionCache(cache)
+                .build();
+        // Same first row and size bucket; later rows hold a nested tag (tabular) or other keys (expanded)
+        final List<Map<String, Object>> tabular = new ArrayList<>();
+        final List<Map<String, Object>> expanded = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("name", "User " + i);
+            row.put("tag", i == 0 ? "new" : Map.of("label", "vip", "level", i));
+            tabular.add(row);
+            final Map<String, Object> other = new LinkedHashMap<>();
+            other.put("id", i);
+            other.put("name", "User " + i);
+            other.put(i == 0 ? "tag" : "tag" + i % 2, i == 0 ? "new" : "new guest");
+            expanded.add(other);
+        }
+        
+        final ObjectMapper mapper = new ObjectMapper();
+        assertNotEquals(ShapeFingerprint.of(mapper, Map.of("users", expanded)),
+                ShapeFingerprint.of(mapper, Map.of("users", tabular)));
+        
+        final OptimizationResult first = TokenOptimizer.optimize(Map.of("users", expanded), policy);
+        final OptimizationResult second = TokenOptimizer.optimize(Map.of("users", tabular), policy);
+        final OptimizationResult measured = TokenOptimizer.optimize(Map.of("users", tabular),
+                OptimizationPolicy.builder().build());
+        
+        assertEquals(OptimizationResult.FormatType.JSON, first.getOptimalFormat());
+        assertFalse(second.isPredicted());
+        assertEquals(OptimizationResult.FormatType.TOON, second.getOptimalFormat());
+        assertEquals(measured.getToonTokenCount(), second.getToonTokenCount());
+        assertEquals(2, cache.size());
+    }
+    
+    @Test
+    void testDecisionCacheRechecksSampledCallsAndEvicts() {
+        final FormatDecisionCache cache = FormatDecisionCache.builder()
+                .maxEntries(1)
+                .sampleRate(1.0)
+                .build();
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .decisionCache(cache)
+                .build();
+        
+        TokenOptimizer.optimize(rows(100, "Product"), policy);
+        final OptimizationResult rechecked = TokenOptimizer.optimize(rows(100, "Product"), policy);
+        assertFalse(rechecked.isPredicted());
+        assertNotNull(rechecked.getJsonContent());
+        
+        final Map<String, Object> obj = new HashMap<>();
+        obj.put("name", "John");
+        TokenOptimizer.optimize(obj, policy);
+        assertEquals(1, cache.size());
+        
+        assertThrows(IllegalArgumentException.class, () -> FormatDecisionCache.builder().maxEntries(0).build());
+        assertThrows(IllegalArgumentException.class, () -> FormatDecisionCache.builder().sampleRate(1.5).build());
+    }
+    
+    @Test
+    void testOptimizeCountsTheOtherFormatOnlyUpToTheDecision() {
+        final List<Map<String, Object>> rows = rows(200, "Product");
+        final OptimizationPolicy bounded = OptimizationPolicy.builder()
+                .boundTokenCounts(true)
+                .build();
+        final OptimizationResult result = TokenOptimizer.optimize(rows, ModelType.GPT_4, bounded,
+                OptimizationCriteria.TOKENS);
+        
+        assertEquals(OptimizationResult.FormatType.TOON, result.getOptimalFormat());
+        assertTrue(result.isTokenCountLowerBound());
+        assertEquals(TokenCounter.countTokens(result.getToonContent(), ModelType.GPT_4), result.getToonTokenCount());
+        assertTrue(result.getJsonTokenCount() > result.getToonTokenCount());
+        assertTrue(result.getJsonTokenCount() <= TokenCounter.countTokens(result.getJsonContent(), ModelType.GPT_4));
+        assertEquals(result.getJsonContent().length(), result.getJsonCharacterCount());
+        
+        // Counts are exact by default, and when characters decide the format
+        for (final OptimizationResult exact : List.of(TokenOptimizer.optimize(rows, ModelType.GPT_4),
+                TokenOptimizer.optimize(rows, ModelType.GPT_4, OptimizationPolicy.builder().build(),
+                        OptimizationCriteria.TOKENS),
+                TokenOptimizer.optimize(rows, ModelType.GPT_4, null, OptimizationCriteria.CHARACTERS))) {
+            assertFalse(exact.isTokenCountLowerBound());
+            assertEquals(TokenCounter.countTokens(exact.getJsonContent(), ModelType.GPT_4), exact.getJsonTokenCount());
+        }
+        assertFalse(OptimizationPolicy.builder().build().isBoundTokenCounts());
+    }
+    
+    @Test
+    void testDecisionCacheEstimatesFromExactCounts() {
+        final List<Map<String, Object>> rows = rows(200, "Product");
+        final FormatDecisionCache cache = FormatDecisionCache.builder()
+                .sampleRate(0.0)
+                .build();
+        final OptimizationPolicy policy = OptimizationPolicy.builder()
+                .decisionCache(cache)
+                .boundTokenCounts(true)
+                .build();
+        final OptimizationResult measured = TokenOptimizer.optimize(rows, ModelType.GPT_4O, policy,
+                OptimizationCriteria.TOKENS);
+        final OptimizationResult cached = TokenOptimizer.optimize(rows, ModelType.GPT_4O, policy,
+                OptimizationCriteria.TOKENS);
+        final int exact = TokenCounter.countTokens(TokenOptimizer.optimize(rows, ModelType.GPT_4O).getJsonContent(),
+                ModelType.GPT_4O);
+        
+        assertFalse(measured.isTokenCountLowerBound());
+        assertEquals(exact, measured.getJsonTokenCount());
+        assertTrue(cached.isPredicted());
+        assertFalse(cached.isTokenCountLowerBound());
+        assertEquals(exact, cached.getJsonTokenCount());
+    }
+    
+    @Test
+    void testOptimizeWithoutRetainingTheOtherContent() {
+        final OptimizationPolicy lean = OptimizationPolicy.builder()
+                .retainOtherContent(false)
+                .build();
+        assertTrue(OptimizationPolicy.builder().build().isRetainOtherContent());
+        assertFalse(lean.isRetainOtherContent());
+        
+        // TOON wins: the JSON is rendered again when requested
+        final List<Map<String, Object>> rows = rows(100, "Product");
+        final OptimizationResult full = TokenOptimizer.optimize(rows, (OptimizationPolicy) null);
+        final OptimizationResult result = TokenOptimizer.optimize(rows, lean);
+        assertEquals(OptimizationResult.FormatType.TOON, result.getOptimalFormat());
+        assertEquals(full.getToonContent(), result.getOptimalContent());
+        assertEquals(full.getJsonContent(), result.getJsonContent());
+        assertEquals(full.getJsonTokenCount(), result.getJsonTokenCount());
+        assertEquals(full.toString(), result.toString());
+        
+        // JSON wins, from a JSON string: the TOON is transcoded again when requested
+        final String json = "{\n  \"name\": \"John\",\n  \"tags\": [\"a\", \"b\"]\n} ";
+        final OptimizationResult fromJson = TokenOptimizer.optimizeFromJson(json, OptimizationPolicy.builder()
+                .preferFormat(PayloadFormat.JSON_ONLY)
+                .retainOtherContent(false)
+                .build());
+        final OptimizationResult fullFromJson = TokenOptimizer.optimizeFromJson(json);
+        assertEquals(OptimizationResult.FormatType.JSON, fromJson.getOptimalFormat());
+        assertEquals(fullFromJson.getJsonContent(), fromJson.getJsonContent());
+        assertEquals(fullFromJson.getToonContent(), fromJson.getToonContent());
+        
+        // Predicted results render the other format on request too
+        final OptimizationPolicy predicted = OptimizationPolicy.builder()
+                .predictFormat(true)
+                .retainOtherContent(false)
+                .build();
+        final OptimizationResult predictedResult = TokenOptimizer.optimize(rows, predicted);
+        assertTrue(predictedResult.isPredicted());
+        assertEquals(full.getJsonContent(), predictedResult.getJsonContent());
+    }
+    
+    private static List<Map<String, Object>> rows(final int count, final String name) {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", name + " " + i);
+            row.put("active", i % 2 == 0);
+            rows.add(row);
+        }
+        return rows;
+    }
+    
+    static final class Basket {
+        public final String name;
+        public final List<Item> items;
+        
+        Basket(final String name, final List<Item> items) {
+            this.name = name;
+            this.items = items;
+        }
+    }
+    
+    static final class Item {
+        public final String product;
+        public final double price;
+        
+        Item(final String product, final double price) {
+            this.product = product;
+            this.price = price;
+        }
+    }
 }
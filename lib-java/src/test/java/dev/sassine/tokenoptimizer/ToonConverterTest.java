@@ -0,0 +1,507 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+class ToonConverterTest {
+    
+    private static final String SAMPLE_JSON = "{"
+            + "\"name\":\"Store\",\"open\":true,\"rating\":4.5,\"owner\":null,"
+            + "\"address\":{\"street\":\"Main Street\",\"geo\":{\"lat\":1.5,\"lng\":-2}},"
+            + "\"tags\":[\"food\",\"12\",\"a b\"],"
+            + "\"items\":[{\"id\":1,\"name\":\"Apple\"},{\"id\":2,\"name\":\"Pear\"}],"
+            + "\"orders\":[{\"id\":7,\"lines\":[1,2]},{\"id\":8,\"note\":\"x\"}],"
+            + "\"empty\":{},\"none\":[]"
+            + "}";
+    
+    @Test
+    void testStreamingJsonToToonMatchesTreeConversion() throws Exception {
+        final Map<?, ?> tree = new ObjectMapper().readValue(SAMPLE_JSON, Map.class);
+        final String expected = ToonConverter.toToon(tree);
+        
+        final StringWriter toon = new StringWriter();
+        ToonConverter.jsonToToon(new StringReader(SAMPLE_JSON), toon);
+        
+        assertEquals(expected, toon.toString());
+        assertEquals(expected, ToonConverter.jsonToToon(SAMPLE_JSON));
+    }
+    
+    @Test
+    void testStreamingJsonToToonWithStreams() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ToonConverter.jsonToToon(new ByteArrayInputStream(SAMPLE_JSON.getBytes(StandardCharsets.UTF_8)), out);
+        
+        assertEquals(ToonConverter.jsonToToon(SAMPLE_JSON), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    void testStreamingJsonToToonRootArray() {
+        final String toon = ToonConverter.jsonToToon("[{\"a\":1,\"b\":\"x\"},{\"a\":2,\"b\":\"y\"}]");
+        
+        assertEquals("[2]{a,b}:\n  1,x\n  2,y", toon);
+    }
+    
+    @Test
+    void testStreamingJsonToToonRejectsEmptyInput() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            ToonConverter.jsonToToon(new StringReader("  "), new StringWriter());
+        });
+        
+        assertThrows(IllegalArgumentException.class, () -> {
+            ToonConverter.jsonToToon((StringReader) null, new StringWriter());
+        });
+    }
+    
+    @Test
+    void testOptimizeFromJsonMatchesObjectOptimization() throws Exception {
+        final Object tree = new ObjectMapper().readValue(SAMPLE_JSON, Object.class);
+        
+        final OptimizationResult fromJson = TokenOptimizer.optimizeFromJson(SAMPLE_JSON);
+        final OptimizationResult fromObject = TokenOptimizer.optimize(tree);
+        
+        assertEquals(fromObject.getJsonContent(), fromJson.getJsonContent());
+        assertEquals(fromObject.getToonContent(), fromJson.getToonContent());
+        assertEquals(fromObject.getOptimalFormat(), fromJson.getOptimalFormat());
+    }
+    
+    @Test
+    void testToonToJsonMatchesTreeSerialization() throws Exception {
+        final String toon = "meta:\n  source: \"a \\\"b\\\"\"\n  ratio: 1.50\nitems[3]{id,name,price,tags}:\n"
+                + "  1,\"Item, 1\",0.99,[2]: a,b\n  2,Item 2,12.0,[0]:\n  3,null,1e3,{k:v}\n"
+                + "big: 123456789012345678901\nzip: 01234";
+        final String expected = new ObjectMapper().writeValueAsString(ToonConverter.fromToon(toon));
+        
+        assertEquals(expected, ToonConverter.toJson(toon));
+        
+        final StringWriter writer = new StringWriter();
+        ToonConverter.toonToJson(new StringReader(toon), writer);
+        assertEquals(expected, writer.toString());
+        
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ToonConverter.toonToJson(new ByteArrayInputStream(toon.getBytes(StandardCharsets.UTF_8)), out);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        
+        assertEquals("[1,2]", ToonConverter.toJson("[2]: 1,2"));
+        assertThrows(IllegalArgumentException.class, () -> ToonConverter.toonToJson(new StringReader("  \n"), writer));
+        assertThrows(IllegalArgumentException.class, () -> ToonConverter.toonToJson((Reader) null, writer));
+        assertThrows(RuntimeException.class, () -> ToonConverter.toonToJson(new StringReader("items[2]{a}:\n  1"), writer));
+    }
+    
+    @Test
+    void testToonToJsonRejectsRepeatedKeys() {
+        for (final String toon : new String[] {"a: 1\na: 2", "x[2]{a,b,a}:\n  1,2,3\n  4,5,6",
+                "x[1]:\n  - a: 1\n    a: 2", "x:\n  a: 1\n  b: 2\n  c: 3\n  b: 4"}) {
+            final RuntimeException error = assertThrows(RuntimeException.class, () -> ToonConverter.toJson(toon));
+            assertTrue(error.getMessage().contains("Duplicate key"), error.getMessage());
+            assertThrows(RuntimeException.class, () -> ToonConverter.toonToJson(new StringReader(toon), new StringWriter()));
+        }
+        // Same keys in sibling objects and at other levels are not repeats
+        assertEquals("{\"a\":{\"a\":1},\"b\":[{\"a\":1,\"b\":2},{\"a\":3,\"b\":4}],\"c\":{\"a\":2}}",
+                ToonConverter.toJson("a:\n  a: 1\nb[2]{a,b}:\n  1,2\n  3,4\nc:\n  a: 2"));
+    }
+    
+    @Test
+    void testWriteToAppendableMatchesToToon() throws Exception {
+        final Map<?, ?> tree = new ObjectMapper().readValue(SAMPLE_JSON, Map.class);
+        
+        final StringWriter out = new StringWriter();
+        ToonConverter.write(tree, out);
+        
+        assertEquals(ToonConverter.toToon(tree), out.toString());
+    }
+    
+    @Test
+    void testWriteDeeplyNestedObject() {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("leaf", 1);
+        for (int i = 0; i < 40; i++) {
+            final Map<String, Object> parent = new LinkedHashMap<>();
+            parent.put("n", node);
+            node = parent;
+        }
+        
+        final StringBuilder out = new StringBuilder();
+        ToonConverter.write(node, out);
+        
+        final String[] lines = out.toString().split("\n");
+        assertEquals(41, lines.length);
+        assertEquals("  ".repeat(40) + "leaf: 1", lines[40]);
+    }
+    
+    @Test
+    void testWriteRootArrayAndScalar() {
+        final StringBuilder array = new StringBuilder();
+        ToonConverter.write(List.of(1, 2, 3), array);
+        assertEquals("[3]: 1,2,3", array.toString());
+        
+        final StringBuilder scalar = new StringBuilder();
+        ToonConverter.write(42, scalar);
+        assertEquals("42", scalar.toString());
+        
+        assertThrows(IllegalArgumentException.class, () -> {
+            ToonConverter.write(null, new StringBuilder());
+        });
+    }
+    
+    @Test
+    void testToToonRootListsAndScalars() {
+        // Root lists are TOON arrays, not their toString()
+        assertEquals("[2]{id}:\n  1\n  2", ToonConverter.toToon(List.of(Map.of("id", 1), Map.of("id", 2))));
+        assertEquals("[3]: 1,2,3", ToonConverter.toToon(List.of(1, 2, 3)));
+        assertEquals("[2]: a,b", ToonConverter.toToon(new String[] {"a", "b"}));
+        assertEquals("[0]:", ToonConverter.toToon(List.of()));
+        assertEquals("[2]: 1,2", ToonConverter.toToon("[1,2]"));
+        
+        assertEquals("42", ToonConverter.toToon(42));
+        assertEquals("true", ToonConverter.toToon(true));
+        assertEquals("1.5", ToonConverter.toToon(1.5));
+        assertEquals("hello", ToonConverter.toToon("hello"));
+        assertEquals("", ToonConverter.toToon(Map.of()));
+    }
+    
+    @Test
+    void testFromToonDecodesTabularRows() {
+        final Map<?, ?> decoded = (Map<?, ?>) ToonConverter.fromToon("items[2]{id,name}:\n  1,Apple\n  2,Pear");
+        
+        final List<?> items = (List<?>) decoded.get("items");
+        assertEquals(2, items.size());
+        assertEquals(Map.of("id", 1L, "name", "Apple"), items.get(0));
+        assertEquals(Map.of("id", 2L, "name", "Pear"), items.get(1));
+    }
+    
+    @Test
+    void testFromToonKeepsFieldsAfterNestedObjectAtTheirLevel() {
+        final Map<?, ?> decoded = (Map<?, ?>) ToonConverter.fromToon(
+                "a:\n  b:\n    c: 1\n  d: 2\ne: 3\nf: x");
+        
+        assertEquals(List.of("a", "e", "f"), new ArrayList<>(decoded.keySet()));
+        assertEquals(Map.of("b", Map.of("c", 1L), "d", 2L), decoded.get("a"));
+        assertEquals(3L, decoded.get("e"));
+        assertEquals("x", decoded.get("f"));
+    }
+    
+    @Test
+    void testFromToonDecodesUnquotedScalars() {
+        final Map<?, ?> decoded = (Map<?, ?>) ToonConverter.fromToon(
+                "a: TRUE\nb: False\nc: 01\nd: .5\ne: 5.\nf: 1e5\ng: 12345678901234567890\nh: 1.5e3\ni: Null");
+        
+        // Booleans ignore case and numbers may have leading zeros or no digits on one side of the point
+        assertEquals(Boolean.TRUE, decoded.get("a"));
+        assertEquals(Boolean.FALSE, decoded.get("b"));
+        assertEquals(1L, decoded.get("c"));
+        assertEquals(0.5, decoded.get("d"));
+        assertEquals(5.0, decoded.get("e"));
+        // An exponent needs a decimal point, as 1e5 is also a word
+        assertEquals("1e5", decoded.get("f"));
+        assertEquals(1500.0, decoded.get("h"));
+        // Integers past a long are written unquoted by toToon, and decode back to BigInteger
+        assertEquals(new BigInteger("12345678901234567890"), decoded.get("g"));
+        assertEquals(decoded.get("g"), ((Map<?, ?>) ToonConverter.fromToon(ToonConverter.toToon(decoded))).get("g"));
+        assertEquals("Null", decoded.get("i"));
+        assertEquals("{\"a\":true,\"c\":1,\"d\":0.5,\"f\":\"1e5\"}", ToonConverter.toJson("a: TRUE\nc: 01\nd: .5\nf: 1e5"));
+    }
+    
+    @Test
+    void testFromToonRejectsItemCountsNotMatchingTheHeader() {
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("items[3]: 1,2"));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("items[1]: 1,2"));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("items[2]{id}:\n  1"));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("items[1]{id}:\n  1\n  2"));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("items[2]:\n  - 1"));
+    }
+    
+    @Test
+    void testEmptyObjectsRoundTrip() {
+        final Map<String, Object> obj = new LinkedHashMap<>();
+        obj.put("x", List.of(Map.of(), Map.of()));
+        obj.put("y", "z");
+        final String toon = ToonConverter.toToon(obj);
+        
+        assertEquals(obj, ToonConverter.fromToon(toon));
+        assertEquals("{\"x\":[{},{}],\"y\":\"z\"}", ToonConverter.toJson(toon));
+        assertTrue(ToonConverter.validate(toon).isValid());
+        assertEquals(List.of(Map.of(), Map.of(), Map.of()),
+                ToonConverter.fromToon(ToonConverter.toToon(List.of(Map.of(), Map.of(), Map.of()))));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("x[1]{}:\n  1"));
+    }
+    
+    @Test
+    void testParallelRowsMatchSequentialDecoding() {
+        final StringBuilder toon = new StringBuilder("meta:\n  source: test\nitems[9999]{id,name,price,tags}:\n");
+        for (int i = 0; i < 9999; i++) {
+            toon.append("  ").append(i).append(",\"Item, ").append(i).append("\",").append(i / 4.0)
+                    .append(",[2]: a,{k:").append(i).append("}\n");
+            if (i % 1000 == 0) {
+                toon.append('\n');
+            }
+        }
+        toon.append("count: 9999");
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final ToonDecodeOptions parallel = ToonDecodeOptions.builder().parallelThreshold(1).pool(pool).build();
+            final ToonDecodeOptions sequential = ToonDecodeOptions.builder().sequential().build();
+            
+            assertEquals(ToonConverter.fromToon(toon.toString(), sequential),
+                    ToonConverter.fromToon(toon.toString(), parallel));
+            
+            final String broken = toon.toString().replace("  5000,\"Item, 5000\",1250.0,", "  5000,1250.0,");
+            final RuntimeException e = assertThrows(RuntimeException.class,
+                    () -> ToonConverter.fromToon(broken, parallel));
+            assertTrue(e.getMessage().contains("line: 5009"), e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    void testParallelDecodingIsOptIn() {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertFalse(ToonDecodeOptions.defaults().isParallel());
+            assertEquals(Integer.MAX_VALUE, ToonDecodeOptions.defaults().getParallelThreshold());
+            
+            final ToonDecodeOptions withPool = ToonDecodeOptions.builder().pool(pool).build();
+            assertTrue(withPool.isParallel());
+            assertEquals(ToonDecodeOptions.DEFAULT_PARALLEL_THRESHOLD, withPool.getParallelThreshold());
+            assertSame(pool, withPool.getPool());
+            
+            final ToonDecodeOptions withThreshold = ToonDecodeOptions.builder().parallelThreshold(500).build();
+            assertTrue(withThreshold.isParallel());
+            assertSame(ForkJoinPool.commonPool(), withThreshold.getPool());
+            
+            assertFalse(ToonDecodeOptions.builder().parallelThreshold(1).pool(pool).sequential().build().isParallel());
+            assertThrows(IllegalArgumentException.class, () -> ToonDecodeOptions.builder().parallelThreshold(0).build());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    void testInternedStringsAreSharedAcrossParallelChunks() {
+        final StringBuilder toon = new StringBuilder("[8000]{id,status}:");
+        for (int i = 0; i < 8000; i++) {
+            toon.append("\n  ").append(i).append(",s").append(i % 4);
+        }
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final ToonDecodeOptions.Builder parallel = ToonDecodeOptions.builder().parallelThreshold(1).pool(pool);
+            
+            // One dictionary per document: each value is one instance whichever chunk decoded it
+            assertEquals(4, statusInstances(ToonConverter.fromToon(toon.toString(), parallel.internStrings(100).build())));
+            
+            // The limit bounds the document: after the two keys, only one value is interned
+            assertEquals(6001, statusInstances(ToonConverter.fromToon(toon.toString(), parallel.internStrings(3).build())));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static int statusInstances(final Object rows) {
+        final Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final Object row : (List<?>) rows) {
+            instances.add(((Map<?, ?>) row).get("status"));
+        }
+        return instances.size();
+    }
+    
+    @Test
+    void testInternedStringsAreSharedWithinDocument() {
+        final String toon = "orders[2]:\n"
+                + "  - id: 1\n    lines[2]{sku,status}:\n      A1,shipped\n      B2,shipped\n"
+                + "  - id: 2\n    lines[1]{sku,status}:\n      A1,pending";
+        final ToonDecodeOptions interned = ToonDecodeOptions.builder().internStrings(100).build();
+        
+        final Object plain = ToonConverter.fromToon(toon);
+        final Object decoded = ToonConverter.fromToon(toon, interned);
+        
+        assertEquals(plain, decoded);
+        final List<?> orders = (List<?>) ((Map<?, ?>) decoded).get("orders");
+        final List<?> first = (List<?>) ((Map<?, ?>) orders.get(0)).get("lines");
+        final List<?> second = (List<?>) ((Map<?, ?>) orders.get(1)).get("lines");
+        assertSame(((Map<?, ?>) first.get(0)).get("status"), ((Map<?, ?>) first.get(1)).get("status"));
+        assertSame(((Map<?, ?>) first.get(0)).get("sku"), ((Map<?, ?>) second.get(0)).get("sku"));
+        assertSame(key((Map<?, ?>) first.get(0), "status"), key((Map<?, ?>) second.get(0), "status"));
+        assertSame(key((Map<?, ?>) orders.get(0), "id"), key((Map<?, ?>) orders.get(1), "id"));
+        
+        // A full dictionary stops sharing new values
+        final Object bounded = ToonConverter.fromToon(toon, ToonDecodeOptions.builder().internStrings(1).build());
+        final List<?> lines = (List<?>) ((Map<?, ?>) ((List<?>) ((Map<?, ?>) bounded).get("orders")).get(0)).get("lines");
+        assertEquals(plain, bounded);
+        assertNotSame(((Map<?, ?>) lines.get(0)).get("status"), ((Map<?, ?>) lines.get(1)).get("status"));
+        assertThrows(IllegalArgumentException.class, () -> ToonDecodeOptions.builder().internStrings(-1).build());
+    }
+    
+    @Test
+    void testTabularRowsAreImmutableOrderedMaps() throws Exception {
+        final Map<?, ?> root = (Map<?, ?>) ToonConverter.fromToon("items[2]{z,a,m,a}:\n  1,x,,2\n  3,\"y\",[1]: q,4");
+        final List<?> items = (List<?>) root.get("items");
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> row = (Map<String, Object>) items.get(1);
+        
+        final Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("z", 3L);
+        expected.put("a", 4L);
+        expected.put("m", List.of("q"));
+        assertEquals(expected, row);
+        assertEquals(row, expected);
+        assertEquals(expected.hashCode(), row.hashCode());
+        assertEquals(List.of("z", "a", "m"), List.copyOf(row.keySet()));
+        assertTrue(((Map<?, ?>) items.get(0)).containsKey("m"));
+        assertNull(((Map<?, ?>) items.get(0)).get("m"));
+        assertFalse(row.containsKey("b"));
+        assertThrows(UnsupportedOperationException.class, () -> row.put("b", 1));
+        assertThrows(UnsupportedOperationException.class, () -> row.remove("z"));
+        assertThrows(UnsupportedOperationException.class, () -> row.entrySet().iterator().next().setValue(0));
+        assertEquals("{\"z\":3,\"a\":4,\"m\":[\"q\"]}", new ObjectMapper().writeValueAsString(row));
+    }
+    
+    private static Object key(final Map<?, ?> map, final String name) {
+        return map.keySet().stream().filter(name::equals).findFirst().orElseThrow();
+    }
+    
+    @Test
+    void testProjectionDecodesOnlySelectedPaths() {
+        final String toon = "id: 7\nmeta:\n  total: 3\n  tags[2]: a,b\nitems[2]{sku,name,price}:\n"
+                + "  A1,\"Apple, red\",1.5\n  B2,[1]: x,2\nnotes[1]:\n  - text: hi\n    by: ann\n";
+        
+        final Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("meta", Map.of("total", 3L));
+        expected.put("items", List.of(Map.of("price", 1.5), Map.of("price", 2L)));
+        expected.put("notes", List.of(Map.of("by", "ann")));
+        assertEquals(expected, ToonConverter.fromToon(toon, List.of("meta.total", "items.price", "notes.by", "missing")));
+        
+        assertEquals(Map.of("meta", Map.of("total", 3L, "tags", List.of("a", "b"))),
+                ToonConverter.fromToon(toon, List.of("meta", "meta.tags")));
+        assertEquals(ToonConverter.fromToon(toon), ToonConverter.fromToon(toon, List.of()));
+        assertThrows(IllegalArgumentException.class, () -> ToonConverter.fromToon(toon, List.of("items..price")));
+    }
+    
+    @Test
+    void testValidateReportsFirstError() {
+        final String toon = "id: 7\nitems[2]{sku,qty}:\n  A1,2\n  B2,3\ntags[2]: a,b\n";
+        assertTrue(ToonConverter.validate(toon).isValid());
+        assertEquals(-1, ToonConverter.validate(toon).getErrorOffset());
+        
+        final ToonValidationResult missingCell = ToonConverter.validate(toon.replace("B2,3", "B2"));
+        assertFalse(missingCell.isValid());
+        assertEquals(4, missingCell.getLineNumber());
+        assertEquals(toon.indexOf("B2") + 2, missingCell.getErrorOffset());
+        
+        final ToonValidationResult badCount = ToonConverter.validate(toon.replace("tags[2]", "tags[3]"));
+        assertEquals(toon.length() - 1, badCount.getErrorOffset());
+        assertTrue(badCount.getMessage().contains("Expected 3 array values"));
+        
+        final ToonValidationResult badIndent = ToonConverter.validate("a:\n  b: 1\n   c: 2");
+        assertEquals("a:\n  b: 1\n   ".length(), badIndent.getErrorOffset());
+        assertFalse(ToonConverter.validate(" \n").isValid());
+    }
+    
+    @Test
+    void testValidateChecksExpectedHeaders() {
+        final String toon = "order:\n  lines[2]{sku,qty}:\n    A1,2\n    B2,3\n";
+        assertTrue(ToonConverter.validate(toon, Map.of("order.lines", List.of("sku", "qty"))).isValid());
+        
+        final ToonValidationResult wrongHeader = ToonConverter.validate(toon, Map.of("order.lines", List.of("sku")));
+        assertFalse(wrongHeader.isValid());
+        assertEquals(toon.indexOf('['), wrongHeader.getErrorOffset());
+        
+        final ToonValidationResult missing = ToonConverter.validate(toon, Map.of("items", List.of("sku")));
+        assertFalse(missing.isValid());
+        assertEquals(toon.length(), missing.getErrorOffset());
+    }
+    
+    @Test
+    void testDeepNestingIsBoundedByMaxDepth() {
+        final List<Object> root = new ArrayList<>();
+        List<Object> list = root;
+        for (int i = 0; i < 5000; i++) {
+            final List<Object> child = new ArrayList<>();
+            list.add(child);
+            list = child;
+        }
+        list.add(1);
+        
+        assertThrows(IllegalArgumentException.class, () -> ToonConverter.toToon(root));
+        
+        final StringBuilder toon = new StringBuilder();
+        ToonConverter.write(root, toon, 6000);
+        assertTrue(toon.toString().startsWith("[1]: [1]: [1]: "));
+        
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon(toon.toString()));
+        
+        Object value = ToonConverter.fromToon(toon.toString(), ToonDecodeOptions.builder().maxDepth(6000).build());
+        for (int i = 0; i <= 5000; i++) {
+            assertEquals(1, ((List<?>) value).size());
+            value = ((List<?>) value).get(0);
+        }
+        assertEquals(1L, value);
+    }
+    
+    @Test
+    void testToonMapperMatchesMapConversion() throws Exception {
+        final Order order = new Order(42, Arrays.asList(new Line("Apple", 2), new Line("Pear", 1)));
+        final Map<?, ?> tree = new ObjectMapper().convertValue(order, Map.class);
+        
+        final String toon = new ToonMapper().writeValueAsString(order);
+        
+        assertEquals(ToonConverter.toToon(tree), toon);
+        assertEquals(toon, ToonConverter.toToon(order));
+        assertEquals("lines[2]{product,qty}:\n  Apple,2\n  Pear,1\norder_id: 42", toon);
+    }
+    
+    @Test
+    void testToonMapperWritesToOutputStream() throws Exception {
+        final Order order = new Order(7, Arrays.asList(new Line("Milk", 3)));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        new ToonMapper().writeValue(out, order);
+        
+        assertEquals(ToonConverter.toToon(order), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+    
+    static final class Order {
+        @JsonProperty("order_id")
+        public final int id;
+        public final List<Line> lines;
+        
+        Order(final int id, final List<Line> lines) {
+            this.id = id;
+            this.lines = lines;
+        }
+        
+        @JsonIgnore
+        public int getLineCount() {
+            return lines.size();
+        }
+    }
+    
+    static final class Line {
+        public final String product;
+        public final int qty;
+        
+        Line(final String product, final int qty) {
+            this.product = product;
+            this.qty = qty;
+        }
+    }
+}
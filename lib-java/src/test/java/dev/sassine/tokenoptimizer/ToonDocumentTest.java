@@ -0,0 +1,71 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+class ToonDocumentTest {
+    
+    private static final String TOON = "meta:\n  total: 3\n  source:\n    name: \"shop, main\"\n"
+            + "items[3]{id,name,price}:\n  1,Apple,0.5\n\n  2,Pear,1.25\n  3,\"Fig, dried\",4\n"
+            + "tags[2]: fresh,local\n"
+            + "orders[2]:\n  - id: 7\n    lines[1]{sku,qty}:\n      A1,2\n  - [2]: x,y\n"
+            + "empty:\n"
+            + "\"odd key\": yes";
+    
+    @Test
+    void testResolvesPathsLikeFullDecoding() {
+        final ToonDocument document = ToonDocument.fromToon(TOON);
+        final Map<?, ?> tree = (Map<?, ?>) ToonConverter.fromToon(TOON);
+        
+        assertEquals(3L, document.get("meta.total"));
+        assertEquals("shop, main", document.get("meta.source.name"));
+        assertEquals(Map.of("name", "shop, main"), document.get("meta.source"));
+        assertEquals(1.25, document.get("items[1].price"));
+        assertEquals("Fig, dried", document.get("items[2].name"));
+        assertEquals(tree.get("items"), document.get("items"));
+        assertEquals(((List<?>) tree.get("items")).get(2), document.get("items[2]"));
+        assertEquals("local", document.get("tags[1]"));
+        assertEquals(2L, document.get("orders[0].lines[0].qty"));
+        assertEquals(List.of("x", "y"), document.get("orders[1]"));
+        assertEquals(Map.of(), document.get("empty"));
+        assertEquals("yes", document.get("odd key"));
+        assertEquals(tree, document.get(""));
+    }
+    
+    @Test
+    void testMissingPathsAndSizes() {
+        final ToonDocument document = ToonDocument.fromToon(TOON);
+        
+        assertNull(document.get("meta.missing"));
+        assertFalse(document.contains("items[3]"));
+        assertFalse(document.contains("tags.name"));
+        assertFalse(document.contains("meta[0]"));
+        assertTrue(document.contains("items[0].id"));
+        assertEquals(3, document.size("items"));
+        assertEquals(2, document.size("meta"));
+        assertEquals(1, document.size("orders[0].lines"));
+        assertEquals(-1, document.size("meta.total"));
+        assertEquals(-1, document.size("nothing"));
+        assertThrows(IllegalArgumentException.class, () -> document.get("items[x]"));
+        assertThrows(IllegalArgumentException.class, () -> document.get("meta..total"));
+        assertThrows(IllegalArgumentException.class, () -> ToonDocument.fromToon(" \n "));
+    }
+    
+    @Test
+    void testRootArrayAndMalformedRows() {
+        final ToonDocument rows = ToonDocument.fromToon("[2]{a,b}:\n  1,x\n  2,y");
+        assertEquals("y", rows.get("[1].b"));
+        assertEquals(2, rows.size(""));
+        assertEquals(42L, ToonDocument.fromToon("42").get(""));
+        
+        // Only the lines a path touches are decoded, so errors show up where they are read
+        final ToonDocument broken = ToonDocument.fromToon("ok: 1\nitems[2]{a,b}:\n  1,x\n  2");
+        assertEquals(1L, broken.get("ok"));
+        assertEquals("x", broken.get("items[0].b"));
+        final RuntimeException e = assertThrows(RuntimeException.class, () -> broken.get("items[1]"));
+        assertTrue(e.getMessage().contains("line: 4"), e.getMessage());
+    }
+}
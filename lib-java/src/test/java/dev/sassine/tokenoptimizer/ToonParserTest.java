@@ -0,0 +1,116 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class ToonParserTest {
+    
+    private static final String SAMPLE_JSON = "{"
+            + "\"name\":\"Store\",\"open\":true,\"rating\":4.5,\"owner\":null,"
+            + "\"address\":{\"street\":\"Main Street\",\"geo\":{\"lat\":1.5,\"lng\":-2}},"
+            + "\"tags\":[\"food\",\"12\",\"a b\"],"
+            + "\"items\":[{\"id\":1,\"name\":\"Apple\"},{\"id\":2,\"name\":\"Pear\"}],"
+            + "\"orders\":[{\"id\":7,\"lines\":[1,2]},{\"id\":8,\"note\":\"x\"}],"
+            + "\"empty\":{},\"none\":[]"
+            + "}";
+    
+    @Test
+    void testReadTabularArrayTokens() throws Exception {
+        final List<JsonToken> tokens = new ArrayList<>();
+        try (JsonParser parser = new ToonFactory().createParser("[2]{a,b}:\n  1,x\n  2,\"3\"")) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                tokens.add(token);
+            }
+        }
+        
+        assertEquals(List.of(
+                JsonToken.START_ARRAY,
+                JsonToken.START_OBJECT, JsonToken.FIELD_NAME, JsonToken.VALUE_NUMBER_INT,
+                JsonToken.FIELD_NAME, JsonToken.VALUE_STRING, JsonToken.END_OBJECT,
+                JsonToken.START_OBJECT, JsonToken.FIELD_NAME, JsonToken.VALUE_NUMBER_INT,
+                JsonToken.FIELD_NAME, JsonToken.VALUE_STRING, JsonToken.END_OBJECT,
+                JsonToken.END_ARRAY), tokens);
+    }
+    
+    @Test
+    void testReadValueMatchesJson() throws Exception {
+        final ObjectMapper json = new ObjectMapper();
+        final String toon = ToonConverter.jsonToToon(SAMPLE_JSON);
+        
+        final Map<?, ?> fromToon = new ToonMapper().readValue(toon, Map.class);
+        
+        assertEquals(json.readValue(SAMPLE_JSON, Map.class), fromToon);
+    }
+    
+    @Test
+    void testFromToonBindsPojo() {
+        final Catalog catalog = new Catalog();
+        catalog.name = "Fruits";
+        catalog.products = List.of(new Product(1, "Apple", 0.5), new Product(2, "Pear, ripe", 1.25));
+        catalog.tags = List.of("fresh", "12");
+        final String toon = ToonConverter.toToon(catalog);
+        
+        final Catalog result = TokenOptimizer.fromToon(toon, Catalog.class);
+        
+        assertEquals("Fruits", result.name);
+        assertEquals(List.of("fresh", "12"), result.tags);
+        assertEquals(2, result.products.size());
+        assertEquals("Pear, ripe", result.products.get(1).name);
+        assertEquals(1.25, result.products.get(1).price);
+    }
+    
+    @Test
+    void testReadExpandedAndInlineArrays() throws Exception {
+        final String toon = "orders[2]:\n"
+                + "  - id: 7\n"
+                + "    lines[2]: 1,2\n"
+                + "\n"
+                + "  - id: 8\n"
+                + "    note: x\n"
+                + "mixed[3]: 1,{a:[2]: x,y},[1]: \"b c\"";
+        
+        final Map<?, ?> result = new ToonMapper().readValue(toon, Map.class);
+        
+        assertEquals(Map.of("id", 7, "lines", List.of(1, 2)), ((List<?>) result.get("orders")).get(0));
+        assertEquals(List.of(1, Map.of("a", List.of("x", "y")), List.of("b c")), result.get("mixed"));
+    }
+    
+    @Test
+    void testRejectsRowsNotMatchingHeader() {
+        final ToonMapper mapper = new ToonMapper();
+        
+        assertThrows(Exception.class, () -> mapper.readValue("items[3]{a,b}:\n  1,2\n  3,4", Object.class));
+        assertThrows(Exception.class, () -> mapper.readValue("items[2]{a,b}:\n  1,2\n  3", Object.class));
+        assertThrows(Exception.class, () -> mapper.readValue("items[2]: 1,2,3", Object.class));
+        assertThrows(RuntimeException.class, () -> TokenOptimizer.fromToon("items[2]{a,b}:\n  1", Map.class));
+    }
+    
+    static final class Catalog {
+        public String name;
+        public List<Product> products;
+        public List<String> tags;
+    }
+    
+    static final class Product {
+        public long id;
+        public String name;
+        public double price;
+        
+        Product() {
+        }
+        
+        Product(final long id, final String name, final double price) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class ToonPushParserTest {
+    
+    private static final String TOON = "answer: Found 3 products\n"
+            + "items[3]{id,name,price}:\n"
+            + "  1,Apple,0.5\n"
+            + "  2,\"Pear, ripe\",1.25\n"
+            + "  3,Fig,2\n"
+            + "steps[2]:\n"
+            + "  - action: search\n"
+            + "    query: fruit\n"
+            + "  - action: rank\n"
+            + "tags[2]: fresh,cheap";
+    
+    @Test
+    void testReportsRowsAsSoonAsTheirLineEnds() {
+        final List<String> calls = new ArrayList<>();
+        final ToonPushParser parser = new ToonPushParser(recorder(calls));
+        
+        parser.feed("answer: Found 3 pro");
+        assertEquals(List.of(), calls);
+        parser.feed("ducts\nitems[3]{id,name,price}:\n  1,Apple,0.");
+        assertEquals(List.of("field answer=Found 3 products"), calls);
+        parser.feed("5\n  2,\"Pear");
+        assertEquals(List.of("field answer=Found 3 products", "row items[0]={id=1, name=Apple, price=0.5}"), calls);
+        parser.feed(", ripe\",1.25\n");
+        assertEquals("row items[1]={id=2, name=Pear, ripe, price=1.25}", calls.get(2));
+    }
+    
+    @Test
+    void testFinishMatchesFromToonForAnyChunking() {
+        final Object expected = ToonConverter.fromToon(TOON);
+        final Random random = new Random(7);
+        for (int run = 0; run < 50; run++) {
+            final List<String> calls = new ArrayList<>();
+            final ToonPushParser parser = new ToonPushParser(recorder(calls));
+            int at = 0;
+            while (at < TOON.length()) {
+                final int next = Math.min(TOON.length(), at + 1 + random.nextInt(12));
+                parser.feed(TOON.substring(at, next));
+                at = next;
+            }
+            
+            assertEquals(expected, parser.finish());
+            assertEquals(List.of(
+                    "field answer=Found 3 products",
+                    "row items[0]={id=1, name=Apple, price=0.5}",
+                    "row items[1]={id=2, name=Pear, ripe, price=1.25}",
+                    "row items[2]={id=3, name=Fig, price=2}",
+                    "field items=[{id=1, name=Apple, price=0.5}, {id=2, name=Pear, ripe, price=1.25}, {id=3, name=Fig, price=2}]",
+                    "item steps[0]={action=search, query=fruit}",
+                    "item steps[1]={action=rank}",
+                    "field steps=[{action=search, query=fruit}, {action=rank}]",
+                    "item tags[0]=fresh",
+                    "item tags[1]=cheap",
+                    "field tags=[fresh, cheap]"), calls);
+        }
+    }
+    
+    @Test
+    void testRejectsRowsNotMatchingHeader() {
+        final ToonPushParser wide = new ToonPushParser();
+        wide.feed("items[2]{a,b}:\n  1,2\n");
+        assertThrows(RuntimeException.class, () -> wide.feed("  3,4,5\n"));
+        
+        final ToonPushParser shortCount = new ToonPushParser();
+        shortCount.feed("items[3]{a,b}:\n  1,2\n  3,4\n");
+        assertThrows(RuntimeException.class, shortCount::finish);
+        
+        final ToonPushParser finished = new ToonPushParser();
+        assertNull(finished.finish());
+        assertThrows(IllegalStateException.class, () -> finished.feed("a: 1"));
+    }
+    
+    private static ToonPushParser.Listener recorder(final List<String> calls) {
+        return new ToonPushParser.Listener() {
+            @Override
+            public void onRow(final String array, final int index, final Map<String, Object> row) {
+                calls.add("row " + array + "[" + index + "]=" + row);
+            }
+            
+            @Override
+            public void onItem(final String array, final int index, final Object item) {
+                calls.add("item " + array + "[" + index + "]=" + item);
+            }
+            
+            @Override
+            public void onField(final String name, final Object value) {
+                calls.add("field " + name + "=" + value);
+            }
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class ToonReaderTest {
+    
+    @Test
+    void testReadEvents() throws Exception {
+        final String toon = "meta:\n"
+                + "  source: shop\n"
+                + "items[2]{id,name,tags}:\n"
+                + "  1,Apple,[2]: red,green\n"
+                + "  2,\"Pear, ripe\",[0]:\n"
+                + "ids[3]: 4,5,6";
+        final List<String> events = new ArrayList<>();
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        
+        try (ToonReader reader = new ToonReader(new StringReader(toon))) {
+            ToonReader.Event event;
+            while ((event = reader.next()) != null) {
+                switch (event) {
+                    case FIELD:
+                        events.add("FIELD " + reader.getName());
+                        break;
+                    case START_ARRAY:
+                        events.add("START_ARRAY " + reader.getCount() + " " + reader.getSchema());
+                        break;
+                    case ROW:
+                        events.add("ROW " + reader.getRow().get(0));
+                        rows.add(reader.getRowAsMap());
+                        break;
+                    case VALUE:
+                        events.add("VALUE " + reader.getValue());
+                        break;
+                    default:
+                        events.add(event.name());
+                        break;
+                }
+            }
+        }
+        
+        assertEquals(List.of(
+                "START_OBJECT",
+                "FIELD meta", "START_OBJECT", "FIELD source", "VALUE shop", "END_OBJECT",
+                "FIELD items", "START_ARRAY 2 [id, name, tags]", "ROW 1", "ROW 2", "END_ARRAY",
+                "FIELD ids", "START_ARRAY 3 null", "VALUE 4", "VALUE 5", "VALUE 6", "END_ARRAY",
+                "END_OBJECT"), events);
+        assertEquals(Map.of("id", 1L, "name", "Apple", "tags", List.of("red", "green")), rows.get(0));
+        assertEquals("Pear, ripe", rows.get(1).get("name"));
+    }
+    
+    @Test
+    void testStreamsRowsBeforeInputIsComplete() throws Exception {
+        final int rows = 100_000;
+        final RowSource source = new RowSource(rows);
+        long firstRowAt = -1;
+        long sum = 0;
+        int read = 0;
+        
+        try (ToonReader reader = new ToonReader(source)) {
+            ToonReader.Event event;
+            while ((event = reader.next()) != null) {
+                if (event == ToonReader.Event.ROW) {
+                    if (firstRowAt < 0) {
+                        firstRowAt = source.supplied;
+                    }
+                    sum += (Long) reader.getRow().get(0);
+                    read++;
+                }
+            }
+        }
+        
+        assertEquals(rows, read);
+        assertEquals((long) rows * (rows - 1) / 2, sum);
+        assertTrue(firstRowAt < 64 * 1024, "First row needed " + firstRowAt + " chars");
+        assertTrue(source.supplied > 1_000_000);
+    }
+    
+    @Test
+    void testReadsInputStreamAndReportsErrors() throws Exception {
+        final byte[] toon = "name: Café\nitems[2]{a}:\n  1".getBytes(StandardCharsets.UTF_8);
+        
+        try (ToonReader reader = new ToonReader(new ByteArrayInputStream(toon))) {
+            assertEquals(ToonReader.Event.START_OBJECT, reader.next());
+            assertEquals(ToonReader.Event.FIELD, reader.next());
+            assertEquals(ToonReader.Event.VALUE, reader.next());
+            assertEquals("Café", reader.getValue());
+            assertEquals(ToonReader.Event.FIELD, reader.next());
+            assertEquals(ToonReader.Event.START_ARRAY, reader.next());
+            assertEquals(ToonReader.Event.ROW, reader.next());
+            assertEquals(3, reader.getLineNumber());
+            assertThrows(IOException.class, reader::next);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ToonReader((Reader) null));
+    }
+    
+    /**
+     * Generates a tabular document on demand and counts the chars handed out.
+     */
+    private static final class RowSource extends Reader {
+        private final int rows;
+        private final StringBuilder pending = new StringBuilder("items[");
+        private int next;
+        private long supplied;
+        
+        RowSource(final int rows) {
+            this.rows = rows;
+            pending.append(rows).append("]{id,name,price}:\n");
+        }
+        
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) {
+            while (pending.length() < len && next < rows) {
+                pending.append("  ").append(next).append(",item").append(next).append(',').append(next * 0.5).append('\n');
+                next++;
+            }
+            if (pending.length() == 0) {
+                return -1;
+            }
+            final int n = Math.min(len, pending.length());
+            pending.getChars(0, n, cbuf, off);
+            pending.delete(0, n);
+            supplied += n;
+            return n;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+class ToonScalarsTest {
+    
+    @Test
+    void testClassify() {
+        assertEquals(ToonScalars.NULL, classify(""));
+        assertEquals(ToonScalars.NULL, classify("null"));
+        assertEquals(ToonScalars.TRUE, classify("true"));
+        assertEquals(ToonScalars.FALSE, classify("false"));
+        assertEquals(ToonScalars.INTEGER, classify("-42"));
+        assertEquals(ToonScalars.INTEGER, classify("0"));
+        assertEquals(ToonScalars.DECIMAL, classify("3.14"));
+        assertEquals(ToonScalars.DECIMAL, classify("1.0E-5"));
+        assertEquals(ToonScalars.TRUE, classify("True"));
+        assertEquals(ToonScalars.FALSE, classify("FALSE"));
+        assertEquals(ToonScalars.INTEGER, classify("007"));
+        assertEquals(ToonScalars.INTEGER, classify("+5"));
+        assertEquals(ToonScalars.DECIMAL, classify("1."));
+        assertEquals(ToonScalars.DECIMAL, classify("-.5"));
+        assertEquals(ToonScalars.DECIMAL, classify("1.e5"));
+        
+        assertEquals(ToonScalars.STRING, classify("nullable"));
+        assertEquals(ToonScalars.STRING, classify("Null"));
+        assertEquals(ToonScalars.STRING, classify("trueish"));
+        assertEquals(ToonScalars.STRING, classify("2e10"));
+        assertEquals(ToonScalars.STRING, classify("."));
+        assertEquals(ToonScalars.STRING, classify("1.5e"));
+        assertEquals(ToonScalars.STRING, classify("1e"));
+        assertEquals(ToonScalars.STRING, classify("-"));
+        assertEquals(ToonScalars.STRING, classify("12abc"));
+        assertEquals(ToonScalars.STRING, classify("2024-01-01"));
+    }
+    
+    @Test
+    void testParseNumbers() {
+        assertEquals(Long.MAX_VALUE, parseLong("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, parseLong("-9223372036854775808"));
+        assertTrue(fitsLong("-9223372036854775808"));
+        assertFalse(fitsLong("9223372036854775808"));
+        assertTrue(fitsLong("+0009223372036854775807"));
+        assertEquals(7, parseLong("007"));
+        assertEquals(0.5, parseDouble(".5"));
+        assertEquals(5.0, parseDouble("5."));
+        
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final double value;
+            switch (i % 3) {
+                case 0:
+                    value = Math.round(random.nextDouble() * 1_000_000) / 100.0;
+                    break;
+                case 1:
+                    value = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+                    break;
+                default:
+                    value = Double.longBitsToDouble(random.nextLong());
+                    break;
+            }
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            final String text = Double.toString(value);
+            assertEquals(Double.parseDouble(text), parseDouble(text), text);
+        }
+        assertEquals(-0.0, parseDouble("-0.0"));
+        assertEquals(1.7976931348623157E308, parseDouble("1.7976931348623157E308"));
+    }
+    
+    @Test
+    void testCanonicalNumbersPrintBackUnchanged() {
+        for (final String text : new String[] {"0", "-42", "9223372036854775808", "0.0", "-0.0", "3.14",
+                "0.001", "1234567.5", "12.0", "0.123456789012345", "-99.99"}) {
+            assertTrue(isCanonical(text), text);
+        }
+        for (final String text : new String[] {"-0", "+1", "1.50", "1.00", "0.0001", "12345678.5", "1e5", "1.0E-5",
+                "0.1234567890123456", "1234567.123456789"}) {
+            assertFalse(isCanonical(text), text);
+        }
+        
+        final Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            final String text = (random.nextBoolean() ? "-" : "") + random.nextInt(10_000_000) + "."
+                    + random.nextInt(100_000_000);
+            if (isCanonical(text)) {
+                assertEquals(text, Double.toString(Double.parseDouble(text)));
+            }
+        }
+    }
+    
+    private static int classify(final String text) {
+        return ToonScalars.classify(text.toCharArray(), 0, text.length());
+    }
+    
+    private static long parseLong(final String text) {
+        return ToonScalars.parseLong(text.toCharArray(), 0, text.length());
+    }
+    
+    private static boolean fitsLong(final String text) {
+        return ToonScalars.fitsLong(text.toCharArray(), 0, text.length());
+    }
+    
+    private static boolean isCanonical(final String text) {
+        return ToonScalars.isCanonical(text.toCharArray(), 0, text.length());
+    }
+    
+    private static double parseDouble(final String text) {
+        return ToonScalars.parseDouble(text.toCharArray(), 0, text.length());
+    }
+}
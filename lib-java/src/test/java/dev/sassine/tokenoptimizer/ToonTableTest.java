@@ -0,0 +1,126 @@
+package dev.sassine.tokenoptimizer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+class ToonTableTest {
+    
+    private static final String TOON = "source: sensors\n"
+            + "metrics[4]{id,host,value,ok,zip,tags}:\n"
+            + "  1,web-1,0.5,true,01234,[1]: a\n"
+            + "  2,web-2,3,false,98765,[0]:\n"
+            + "  3,web-1,null,true,null,null\n"
+            + "  4,\"db, main\",2.25,null,00042,[2]: b,c\n"
+            + "count: 4";
+    
+    @Test
+    void testInfersColumnTypes() {
+        final ToonTable table = ToonTable.fromToon(TOON, "metrics");
+        
+        assertEquals(4, table.rowCount());
+        assertEquals(List.of("id", "host", "value", "ok", "zip", "tags"), table.columnNames());
+        assertEquals(ToonTable.ColumnType.LONG, table.columnType(0));
+        assertEquals(ToonTable.ColumnType.STRING, table.columnType(1));
+        assertEquals(ToonTable.ColumnType.DOUBLE, table.columnType(2));
+        assertEquals(ToonTable.ColumnType.BOOLEAN, table.columnType(3));
+        assertEquals(ToonTable.ColumnType.OBJECT, table.columnType(5));
+        
+        assertEquals(4L, table.getLong(3, 0));
+        assertEquals(3.0, table.getDouble(1, 2));
+        assertTrue(table.isNull(2, 2));
+        assertFalse(table.getBoolean(1, 3));
+        assertEquals("db, main", table.getString(3, 1));
+        assertSame(table.getString(0, 1), table.getString(2, 1));
+        assertEquals(3, table.distinctCount(1));
+        assertEquals(List.of("b", "c"), table.get(3, 5));
+        assertThrows(IllegalStateException.class, () -> table.getLong(0, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(4, 0));
+    }
+    
+    @Test
+    void testCursorMatchesFromToon() {
+        final ToonTable table = ToonTable.fromToon(TOON, "metrics");
+        final List<?> expected = (List<?>) ((Map<?, ?>) ToonConverter.fromToon(TOON)).get("metrics");
+        final int id = table.columnIndex("id");
+        final int host = table.columnIndex("host");
+        
+        final ToonTable.Cursor cursor = table.cursor();
+        int rows = 0;
+        while (cursor.next()) {
+            final Map<?, ?> row = (Map<?, ?>) expected.get(cursor.getRow());
+            assertEquals(row.get("id"), cursor.getLong(id));
+            assertEquals(row.get("host"), cursor.getString(host));
+            rows++;
+        }
+        
+        assertEquals(4, rows);
+        assertFalse(cursor.next());
+        assertEquals(expected.get(3), table.toMaps().get(3));
+    }
+    
+    @Test
+    void testColumnTypeHints() {
+        final Map<String, ToonTable.ColumnType> types = Map.of(
+                "zip", ToonTable.ColumnType.STRING, "value", ToonTable.ColumnType.DOUBLE);
+        
+        final ToonTable table = ToonTable.fromToon(new StringReader(TOON), "metrics", types);
+        
+        assertEquals(ToonTable.ColumnType.STRING, table.columnType(4));
+        assertEquals("01234", table.getString(0, 4));
+        assertEquals("98765", table.getString(1, 4));
+        assertTrue(table.isNull(2, 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> ToonTable.fromToon(TOON, "metrics", Map.of("host", ToonTable.ColumnType.LONG)));
+    }
+    
+    @Test
+    void testRootTableAndMissingField() {
+        final ToonTable table = ToonTable.fromToon("[2]{a,b}:\n  1,x\n  2.5,y");
+        
+        assertEquals(ToonTable.ColumnType.DOUBLE, table.columnType(0));
+        assertEquals(1.0, table.getDouble(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> ToonTable.fromToon(TOON, "source"));
+        assertThrows(IllegalArgumentException.class, () -> ToonTable.fromToon(TOON));
+        assertThrows(RuntimeException.class, () -> ToonTable.fromToon("items[3]{a}:\n  1\n  2", "items"));
+    }
+    
+    @Test
+    void testRowsPastTheDeclaredCountAreRejected() {
+        assertThrows(RuntimeException.class, () -> ToonTable.fromToon("items[2]{a,b}:\n  1,2\n  3,4\n  5,6", "items"));
+        assertThrows(RuntimeException.class, () -> ToonTable.fromToon("[2]{a,b}:\n  1,2\n  3,4\n  5,6"));
+        assertThrows(RuntimeException.class, () -> ToonConverter.fromToon("[2]{a,b}:\n  1,2\n  3,4\n  5,6"));
+        assertEquals(2, ToonTable.fromToon("items[2]{a,b}:\n  1,2\n  3,4\ncount: 2", "items").rowCount());
+    }
+    
+    @Test
+    void testDeclaredRowCountIsNotTrustedForAllocation() {
+        final RuntimeException error = assertThrows(RuntimeException.class,
+                () -> ToonTable.fromToon("[2000000000]{a}:\n  1\n"));
+        assertTrue(error.getMessage().contains("Expected 2000000000 rows but got 1"), error.getMessage());
+        assertThrows(RuntimeException.class,
+                () -> ToonTable.fromToon(new StringReader("rows[2000000000]{a,b}:\n  1,x"), "rows", null));
+    }
+    
+    @Test
+    void testColumnsGrowPastInitialCapacity() {
+        final StringBuilder toon = new StringBuilder("[3000]{id,value,name}:");
+        for (int i = 0; i < 3000; i++) {
+            toon.append("\n  ").append(i).append(',').append(i < 2500 ? String.valueOf(i) : i + ".5")
+                    .append(',').append(i % 2 == 0 ? "even" : "null");
+        }
+        
+        final ToonTable table = ToonTable.fromToon(toon.toString());
+        
+        assertEquals(3000, table.rowCount());
+        assertEquals(2999L, table.getLong(2999, 0));
+        assertEquals(ToonTable.ColumnType.DOUBLE, table.columnType(1));
+        assertEquals(1500.0, table.getDouble(1500, 1));
+        assertEquals(2999.5, table.getDouble(2999, 1));
+        assertEquals("even", table.getString(2998, 2));
+        assertTrue(table.isNull(2999, 2));
+    }
+}